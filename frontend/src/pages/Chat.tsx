@@ -35,6 +35,11 @@ interface Conversation {
     title?: string;
 }
 
+interface CursorPage<T> {
+    items: T[];
+    nextCursor: string | null;
+}
+
 interface CodeBlockProps {
     inline?: boolean;
     className?: string;
@@ -94,6 +99,8 @@ export default function Chat() {
     const [conversations, setConversations] = useState<Conversation[]>([]);
     const [activeConversationId, setActiveConversationId] = useState<string | null>(null);
     const [messages, setMessages] = useState<Message[]>([]);
+    const [conversationsCursor, setConversationsCursor] = useState<string | null>(null);
+    const [messagesCursor, setMessagesCursor] = useState<string | null>(null);
     const [input, setInput] = useState('');
     const [sidebarOpen, setSidebarOpen] = useState(true);
     const [loading, setLoading] = useState(false);
@@ -110,17 +117,15 @@ export default function Chat() {
                 setConversations([]);
                 return;
             }
-            const response = await api.get('/conversations');
+            const response = await api.get<CursorPage<Conversation>>('/conversations');
 
-            if (Array.isArray(response.data)) {
-                setConversations(response.data);
+            if (Array.isArray(response.data?.items)) {
+                setConversations(response.data.items);
+                setConversationsCursor(response.data.nextCursor);
             } else {
                 console.error('Invalid conversations response:', response.data);
                 setConversations([]);
-            }
-
-            if (response.data.length > 0 && !activeConversationId) {
-                // Optionally select first one
+                setConversationsCursor(null);
             }
         } catch (error) {
             console.error('Failed to fetch conversations', error);
@@ -150,12 +155,41 @@ export default function Chat() {
 
 
 
+    const loadMoreConversations = async () => {
+        if (!conversationsCursor) return;
+        try {
+            const response = await api.get<CursorPage<Conversation>>('/conversations', {
+                params: { cursor: conversationsCursor }
+            });
+            setConversations(prev => [...prev, ...response.data.items]);
+            setConversationsCursor(response.data.nextCursor);
+        } catch (error) {
+            console.error('Failed to fetch more conversations', error);
+        }
+    };
+
+    // Pages arrive newest first; the chat view shows them oldest first
     const fetchMessages = async (id: string) => {
         try {
-            const response = await api.get(`/conversations/${id}/messages`);
-            setMessages(response.data);
+            const response = await api.get<CursorPage<Message>>(`/conversations/${id}/messages`);
+            setMessages([...response.data.items].reverse());
+            setMessagesCursor(response.data.nextCursor);
         } catch (error) {
             console.error('Failed to fetch messages', error);
+            setMessagesCursor(null);
+        }
+    };
+
+    const loadEarlierMessages = async () => {
+        if (!activeConversationId || !messagesCursor) return;
+        try {
+            const response = await api.get<CursorPage<Message>>(`/conversations/${activeConversationId}/messages`, {
+                params: { before: messagesCursor }
+            });
+            setMessages(prev => [...[...response.data.items].reverse(), ...prev]);
+            setMessagesCursor(response.data.nextCursor);
+        } catch (error) {
+            console.error('Failed to fetch earlier messages', error);
         }
     };
 
@@ -307,6 +341,14 @@ export default function Chat() {
                                 </div>
                             );
                         })}
+                        {conversationsCursor && (
+                            <button
+                                onClick={loadMoreConversations}
+                                className="w-full text-center text-xs text-gray-400 hover:text-white py-2"
+                            >
+                                Load more
+                            </button>
+                        )}
                     </div>
 
                     <div className="p-4 border-t border-gray-800 space-y-2">
@@ -364,6 +406,16 @@ export default function Chat() {
 
                 {/* Messages */}
                 <div className="flex-1 overflow-y-auto p-4 md:p-6 custom-scrollbar space-y-6">
+                    {messagesCursor && (
+                        <div className="flex justify-center">
+                            <button
+                                onClick={loadEarlierMessages}
+                                className="text-xs text-gray-400 hover:text-white px-3 py-1 rounded-full border border-gray-700"
+                            >
+                                Load earlier messages
+                            </button>
+                        </div>
+                    )}
                     {messages.length === 0 ? (
                         <div className="h-full flex flex-col items-center justify-center text-gray-500 opacity-50">
                             <Bot className="w-16 h-16 mb-4" />
@@ -15,8 +15,21 @@ interface JobStatus {
     status: string;
     totalFiles: number;
     processedFiles: number;
+    phase?: 'PARSING' | 'EMBEDDING' | 'STORING' | 'SUMMARIZING';
+    currentFile?: string;
+    etaSeconds?: number;
 }
 
+// Parses the `data:` lines of a server-sent event block
+const parseSseData = (block: string): string | null => {
+    const data = block
+        .split('\n')
+        .filter(line => line.startsWith('data:'))
+        .map(line => line.slice(5).trim())
+        .join('\n');
+    return data.length > 0 ? data : null;
+};
+
 interface Document {
     id: number;
     filename: string;
@@ -93,30 +106,81 @@ export default function Documents() {
             const newJobId = response.data.jobId;
             setJobId(newJobId);
 
-            // Poll job status
-            const pollInterval = setInterval(async () => {
-                try {
-                    const statusResponse = await api.get(`/documents/status/${newJobId}`);
-                    setJobStatus(statusResponse.data);
-
-                    if (statusResponse.data.status === 'COMPLETED') {
-                        clearInterval(pollInterval);
-                        setSuccess(true);
-                        setUploading(false);
-                        setFiles([]);
-                        fetchDocuments(); // Refresh list
-                        setTimeout(() => setSuccess(false), 5000);
-                    } else if (statusResponse.data.status === 'FAILED') {
+            // Returns true once the job has reached a final state
+            const handleStatus = (data: JobStatus): boolean => {
+                setJobStatus(data);
+                if (data.status === 'COMPLETED') {
+                    setSuccess(true);
+                    setUploading(false);
+                    setFiles([]);
+                    fetchDocuments(); // Refresh list
+                    setTimeout(() => setSuccess(false), 5000);
+                    return true;
+                }
+                if (data.status === 'FAILED') {
+                    setError('Upload failed. Please try again.');
+                    setUploading(false);
+                    return true;
+                }
+                return false;
+            };
+
+            // Fallback when the event stream is unavailable
+            const pollStatus = () => {
+                const pollInterval = setInterval(async () => {
+                    try {
+                        const statusResponse = await api.get(`/documents/status/${newJobId}`);
+                        if (handleStatus(statusResponse.data)) {
+                            clearInterval(pollInterval);
+                        }
+                    } catch {
                         clearInterval(pollInterval);
-                        setError('Upload failed. Please try again.');
+                        setError('Failed to check upload status.');
                         setUploading(false);
                     }
-                } catch {
-                    clearInterval(pollInterval);
-                    setError('Failed to check upload status.');
-                    setUploading(false);
+                }, 2000);
+            };
+
+            // Stream job progress; EventSource cannot send the Authorization header, so read the stream via fetch
+            const streamStatus = async () => {
+                let finished = false;
+                try {
+                    const token = localStorage.getItem('jwtToken');
+                    const streamResponse = await fetch(`/api/v1/documents/status/${newJobId}/stream`, {
+                        headers: {
+                            Accept: 'text/event-stream',
+                            ...(token ? { Authorization: `Bearer ${token}` } : {}),
+                        },
+                    });
+                    if (!streamResponse.ok || !streamResponse.body) {
+                        throw new Error(`Stream unavailable: ${streamResponse.status}`);
+                    }
+
+                    const reader = streamResponse.body.getReader();
+                    const decoder = new TextDecoder();
+                    let buffer = '';
+                    while (!finished) {
+                        const { value, done } = await reader.read();
+                        if (done) break;
+                        buffer += decoder.decode(value, { stream: true });
+                        const blocks = buffer.split('\n\n');
+                        buffer = blocks.pop() ?? '';
+                        for (const block of blocks) {
+                            const data = parseSseData(block);
+                            if (data && handleStatus(JSON.parse(data))) {
+                                finished = true;
+                            }
+                        }
+                    }
+                } catch (streamError) {
+                    console.warn('Job progress stream failed, falling back to polling', streamError);
+                }
+                if (!finished) {
+                    pollStatus();
                 }
-            }, 2000);
+            };
+
+            streamStatus();
 
         } catch (err: unknown) {
             if (axios.isAxiosError(err)) {
@@ -263,6 +327,12 @@ export default function Documents() {
                                             />
                                         </div>
                                         <p className="text-center text-lg font-medium text-blue-400">{progress}%</p>
+                                        {jobStatus.phase && jobStatus.currentFile && (
+                                            <p className="text-center text-sm text-gray-400">
+                                                {jobStatus.phase.charAt(0) + jobStatus.phase.slice(1).toLowerCase()} {jobStatus.currentFile}
+                                                {jobStatus.etaSeconds != null && ` · about ${Math.max(1, Math.round(jobStatus.etaSeconds))}s left`}
+                                            </p>
+                                        )}
                                     </div>
                                 </div>
                             )}
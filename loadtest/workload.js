@@ -0,0 +1,197 @@
+// Scripted workload for the loadtest profile, see loadtest/README.md.
+//
+//   k6 run loadtest/workload.js
+//   k6 run -e BASE_URL=http://host:8080/api/v1 -e CHAT_RATE=50 -e DURATION=10m loadtest/workload.js
+//
+// Each scenario drives one part of the API at a fixed arrival rate. k6 reports throughput and
+// p50/p95/p99 per endpoint through the `endpoint` tag, in the summary and in summary.json.
+
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+import exec from 'k6/execution';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/api/v1';
+const USERS = parseInt(__ENV.USERS || '20');
+const DURATION = __ENV.DURATION || '5m';
+const PASSWORD = 'loadtest-password';
+
+// Messages and personalities from postman/collection.json
+const MESSAGES = [
+    { message: 'Hello, how can you help me today?', personality: 'friendly' },
+    { message: 'Explain quantum computing.', personality: 'professional' },
+    { message: 'What is JDK?', personality: 'concise' },
+    { message: 'How does RAG work?', personality: 'detailed' },
+];
+const DOCUMENT = open('./fixtures/sample.txt');
+
+function rate(name, fallback) {
+    return parseInt(__ENV[name] || fallback);
+}
+
+function scenario(exec, rateName, fallback) {
+    return {
+        executor: 'constant-arrival-rate',
+        exec,
+        rate: rate(rateName, fallback),
+        timeUnit: '1s',
+        duration: DURATION,
+        preAllocatedVUs: 50,
+        maxVUs: 2000,
+    };
+}
+
+// p95 targets in ms; a breach fails the run
+const ENDPOINTS = {
+    chat: 30000,
+    chat_stream: 30000,
+    ingest: 5000,
+    job_status: 500,
+    statistics: 1000,
+};
+
+// One sub-metric per endpoint, so each shows up in the summary
+const thresholds = { checks: ['rate>0.95'] };
+for (const [endpoint, p95] of Object.entries(ENDPOINTS)) {
+    thresholds[`http_req_duration{endpoint:${endpoint}}`] = [`p(95)<${p95}`];
+    thresholds[`http_reqs{endpoint:${endpoint}}`] = ['count>=0'];
+    thresholds[`http_req_failed{endpoint:${endpoint}}`] = ['rate<0.05'];
+}
+
+export const options = {
+    scenarios: {
+        chat: scenario('chat', 'CHAT_RATE', '10'),
+        stream: scenario('stream', 'STREAM_RATE', '5'),
+        upload: scenario('upload', 'UPLOAD_RATE', '1'),
+        statistics: scenario('statistics', 'STATISTICS_RATE', '2'),
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max', 'count'],
+    thresholds,
+};
+
+function json(body) {
+    return { headers: { 'Content-Type': 'application/json' }, body: JSON.stringify(body) };
+}
+
+function auth(token) {
+    return { Authorization: `Bearer ${token}` };
+}
+
+// Registers the load test users, or logs them in if they exist from an earlier run
+export function setup() {
+    const tokens = [];
+    for (let i = 0; i < USERS; i++) {
+        const credentials = { username: `loadtest-user-${i}`, password: PASSWORD };
+        const request = json(credentials);
+        http.post(`${BASE_URL}/auth/register`, request.body, { headers: request.headers });
+        const login = http.post(`${BASE_URL}/auth/login`, request.body, { headers: request.headers });
+        check(login, { 'login succeeded': (r) => r.status === 200 });
+        tokens.push(login.json('token'));
+    }
+    return { tokens };
+}
+
+function token(data) {
+    return data.tokens[exec.scenario.iterationInTest % data.tokens.length];
+}
+
+function pick(list) {
+    return list[Math.floor(Math.random() * list.length)];
+}
+
+export function chat(data) {
+    const headers = auth(token(data));
+    const { message, personality } = pick(MESSAGES);
+    const request = json({ conversationId: null, message, botConfig: { personality } });
+    const first = http.post(`${BASE_URL}/chat`, request.body, {
+        headers: { ...request.headers, ...headers },
+        tags: { endpoint: 'chat' },
+    });
+    check(first, { 'chat answered': (r) => r.status === 200 });
+    if (first.status !== 200) {
+        return;
+    }
+    // A follow-up in the same conversation exercises chat memory
+    const followUp = json({ conversationId: first.json('conversationId'), message: 'Can you go into more detail?',
+        botConfig: { personality } });
+    const second = http.post(`${BASE_URL}/chat`, followUp.body, {
+        headers: { ...followUp.headers, ...headers },
+        tags: { endpoint: 'chat' },
+    });
+    check(second, { 'chat answered': (r) => r.status === 200 });
+}
+
+// k6 has no SSE client; the request completes when the stream does, so the duration is the
+// time to the last token
+export function stream(data) {
+    const { message, personality } = pick(MESSAGES);
+    const request = json({ conversationId: null, message, botConfig: { personality } });
+    const response = http.post(`${BASE_URL}/chat/stream`, request.body, {
+        headers: { ...request.headers, ...auth(token(data)), Accept: 'text/event-stream' },
+        tags: { endpoint: 'chat_stream' },
+    });
+    check(response, { 'stream completed': (r) => r.status === 200 && r.body.includes('event:done') });
+}
+
+export function upload(data) {
+    const headers = auth(token(data));
+    const response = http.post(`${BASE_URL}/documents/ingest`, {
+        files: http.file(`${DOCUMENT}\n\nUpload ${exec.scenario.iterationInTest}`,
+            `loadtest-${exec.scenario.iterationInTest}.txt`, 'text/plain'),
+    }, { headers, tags: { endpoint: 'ingest' } });
+    check(response, { 'upload accepted': (r) => r.status === 202 });
+    if (response.status !== 202) {
+        return;
+    }
+
+    // Poll the job like the frontend does until it completes or the budget runs out
+    const jobId = response.json('jobId');
+    for (let attempt = 0; attempt < 60; attempt++) {
+        sleep(1);
+        const status = http.get(`${BASE_URL}/documents/status/${jobId}`, {
+            headers,
+            tags: { endpoint: 'job_status' },
+        });
+        if (status.status === 200 && status.json('status') === 'COMPLETED') {
+            check(status, { 'ingestion completed': (r) => r.json('errors').length === 0 });
+            return;
+        }
+    }
+    check(null, { 'ingestion completed': () => false });
+}
+
+export function statistics(data) {
+    const response = http.get(`${BASE_URL}/statistics`, {
+        headers: auth(token(data)),
+        tags: { endpoint: 'statistics' },
+    });
+    check(response, { 'statistics returned': (r) => r.status === 200 });
+}
+
+export function handleSummary(data) {
+    return {
+        stdout: textSummary(data),
+        'loadtest/summary.json': JSON.stringify(data, null, 2),
+    };
+}
+
+// Throughput and latency percentiles per endpoint
+function textSummary(data) {
+    const lines = ['', 'endpoint        req/s     p50 ms    p95 ms    p99 ms    failed'];
+    for (const endpoint of Object.keys(ENDPOINTS)) {
+        const duration = data.metrics[`http_req_duration{endpoint:${endpoint}}`];
+        const requests = data.metrics[`http_reqs{endpoint:${endpoint}}`];
+        if (!duration || !requests || requests.values.count === 0) {
+            continue;
+        }
+        const failed = data.metrics[`http_req_failed{endpoint:${endpoint}}`];
+        lines.push([
+            endpoint.padEnd(14),
+            requests.values.rate.toFixed(2).padStart(7),
+            duration.values['p(50)'].toFixed(0).padStart(9),
+            duration.values['p(95)'].toFixed(0).padStart(9),
+            duration.values['p(99)'].toFixed(0).padStart(9),
+            `${(failed.values.rate * 100).toFixed(1)}%`.padStart(9),
+        ].join(' '));
+    }
+    return lines.join('\n') + '\n';
+}
@@ -0,0 +1,9 @@
+package com.example.aichatbot.cache;
+
+/**
+ * Pub/sub payload announcing a change to a cache entry. {@code origin} identifies the
+ * publishing instance so it can skip its own messages; a {@code null} key means the whole
+ * cache was cleared.
+ */
+public record CacheInvalidation(String origin, String cacheName, String key) {
+}
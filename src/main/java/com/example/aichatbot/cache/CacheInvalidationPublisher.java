@@ -0,0 +1,14 @@
+package com.example.aichatbot.cache;
+
+/**
+ * Tells other instances to drop their local copy of a cache entry.
+ */
+@FunctionalInterface
+public interface CacheInvalidationPublisher {
+
+    /**
+     * @param cacheName the cache that changed
+     * @param key       the changed key, or {@code null} if the whole cache was cleared
+     */
+    void publish(String cacheName, String key);
+}
@@ -0,0 +1,25 @@
+package com.example.aichatbot.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.SimpleCacheErrorHandler;
+
+/**
+ * Treats an entry that cannot be read, for example one written by a release with another
+ * value type or an unreachable Redis, as a miss: the method runs and the entry is replaced.
+ * Write and eviction failures still propagate, since ignoring them would leave stale data.
+ */
+@Slf4j
+public class ReadTolerantCacheErrorHandler extends SimpleCacheErrorHandler {
+
+    @Override
+    public void handleCacheGetError(RuntimeException exception, Cache cache, Object key) {
+        log.warn("Could not read {} from cache {}, treating it as a miss: {}", key, cache.getName(),
+                exception.getMessage());
+        try {
+            cache.evict(key);
+        } catch (RuntimeException e) {
+            log.debug("Could not evict unreadable entry {} from cache {}", key, cache.getName(), e);
+        }
+    }
+}
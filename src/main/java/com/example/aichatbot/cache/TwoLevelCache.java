@@ -0,0 +1,122 @@
+package com.example.aichatbot.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A bounded in-process Caffeine tier in front of a shared Redis cache. Reads are served
+ * locally when possible and fall through to Redis on a miss, populating the local tier on
+ * the way back. Writes go to Redis first and are then announced so other instances drop
+ * their now stale local copy.
+ * <p>
+ * Local entries are the deserialized objects themselves and are shared between callers, so
+ * cached values must be treated as read-only.
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final Cache remote;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final CacheInvalidationPublisher invalidationPublisher;
+
+    public TwoLevelCache(String name,
+                         Cache remote,
+                         com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+                         CacheInvalidationPublisher invalidationPublisher) {
+        super(false);
+        this.name = name;
+        this.remote = remote;
+        this.local = local;
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            return value;
+        }
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            return null;
+        }
+        local.put(localKey, wrapper.get());
+        return wrapper.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            return (T) value;
+        }
+        T loaded = remote.get(key, valueLoader);
+        if (loaded != null) {
+            local.put(localKey, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            // Null values are not cached; treat as removal like the Redis tier would
+            evict(key);
+            return;
+        }
+        remote.put(key, value);
+        local.put(localKey(key), value);
+        invalidationPublisher.publish(name, localKey(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(localKey(key));
+        invalidationPublisher.publish(name, localKey(key));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        invalidationPublisher.publish(name, null);
+    }
+
+    /**
+     * Drops a local entry after another instance changed it.
+     */
+    void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    /**
+     * Drops all local entries after another instance cleared the cache.
+     */
+    void clearLocal() {
+        local.invalidateAll();
+    }
+
+    /**
+     * Local keys use the same string form Redis does, so they can be named in invalidation
+     * messages and matched on the receiving side.
+     */
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.aichatbot.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Builds a {@link TwoLevelCache} per cache name on top of a Redis-backed {@link CacheManager}
+ * and keeps the local tiers of all instances coherent: every write is published on the
+ * invalidation channel, and messages from other instances evict the matching local entries.
+ * <p>
+ * Pub/sub delivery is best effort, so the local TTL bounds how long a missed invalidation can
+ * serve a stale value.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, CacheInvalidationPublisher, MessageListener {
+
+    /**
+     * Local tier limits for a single cache.
+     */
+    public record LocalSpec(Duration ttl, long maxSize) {
+    }
+
+    private final CacheManager remoteCacheManager;
+    private final Function<String, LocalSpec> localSpecs;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String invalidationChannel;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                Function<String, LocalSpec> localSpecs,
+                                StringRedisTemplate redisTemplate,
+                                ObjectMapper objectMapper,
+                                String invalidationChannel) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.localSpecs = localSpecs;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.invalidationChannel = invalidationChannel;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    @Override
+    public void publish(String cacheName, String key) {
+        try {
+            String payload = objectMapper.writeValueAsString(new CacheInvalidation(instanceId, cacheName, key));
+            redisTemplate.convertAndSend(invalidationChannel, payload);
+        } catch (JsonProcessingException | RuntimeException e) {
+            // The write itself succeeded; peers fall back to their local TTL
+            log.warn("Failed to publish invalidation for cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        CacheInvalidation invalidation;
+        try {
+            invalidation = objectMapper.readValue(message.getBody(), CacheInvalidation.class);
+        } catch (Exception e) {
+            log.warn("Ignoring malformed cache invalidation: {}", e.getMessage());
+            return;
+        }
+        if (instanceId.equals(invalidation.origin())) {
+            return;
+        }
+
+        TwoLevelCache cache = caches.get(invalidation.cacheName());
+        if (cache == null) {
+            // Nothing cached locally under that name yet
+            return;
+        }
+        if (invalidation.key() == null) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(invalidation.key());
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            throw new IllegalStateException("No remote cache configured for " + name);
+        }
+        LocalSpec spec = localSpecs.apply(name);
+        com.github.benmanes.caffeine.cache.Cache<String, Object> local = Caffeine.newBuilder()
+                .expireAfterWrite(spec.ttl())
+                .maximumSize(spec.maxSize())
+                .build();
+        return new TwoLevelCache(name, remote, local, this);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.aichatbot.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes values behind a one byte header naming the encoding, so the format of a cache can be
+ * changed without flushing it: readers decode whatever header they find, regardless of the
+ * format they are configured to write.
+ * <p>
+ * Layout: {@code [header][payload]}, where the low bits of the header are the {@link Format}
+ * and {@link #LZ4_FLAG} marks an LZ4 block prefixed with the uncompressed length. Payloads are
+ * only compressed at or above the configured threshold, where the saving outweighs the CPU.
+ * Values without a known header are read as plain JSON, which covers entries written before
+ * the header existed.
+ * <p>
+ * {@link Format#JSON} is written exactly as before the header existed, headerless and never
+ * compressed, so releases without this class can still read it during a rolling deploy. Only
+ * switch a cache to {@link Format#SMILE} once no such release is running.
+ */
+public class VersionedRedisSerializer<T> implements RedisSerializer<T> {
+
+    static final byte LZ4_FLAG = (byte) 0x80;
+    private static final byte FORMAT_MASK = 0x0F;
+
+    public enum Format {
+        JSON((byte) 1),
+        SMILE((byte) 2);
+
+        private final byte id;
+
+        Format(byte id) {
+            this.id = id;
+        }
+
+        private static Format fromHeader(byte header) {
+            if ((header & ~(FORMAT_MASK | LZ4_FLAG)) != 0) {
+                return null;
+            }
+            byte id = (byte) (header & FORMAT_MASK);
+            for (Format format : values()) {
+                if (format.id == id) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final JavaType type;
+    private final Format format;
+    private final int compressionThreshold;
+
+    /**
+     * @param objectMapper         configured JSON mapper; the Smile mapper is derived from it
+     *                             so both share modules and features
+     * @param type                 the cached value type
+     * @param format               the format new entries are written in
+     * @param compressionThreshold payload size in bytes from which entries are compressed;
+     *                             zero or less disables compression
+     */
+    public VersionedRedisSerializer(ObjectMapper objectMapper, JavaType type, Format format, int compressionThreshold) {
+        this.jsonMapper = objectMapper;
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.type = type;
+        this.format = format;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] payload;
+        try {
+            payload = mapperFor(format).writerFor(type).writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write " + format + " cache value", e);
+        }
+
+        if (format == Format.JSON) {
+            return payload;
+        }
+        if (compressionThreshold <= 0 || payload.length < compressionThreshold) {
+            return ByteBuffer.allocate(1 + payload.length)
+                    .put(format.id)
+                    .put(payload)
+                    .array();
+        }
+
+        byte[] compressed = new byte[COMPRESSOR.maxCompressedLength(payload.length)];
+        int compressedLength = COMPRESSOR.compress(payload, 0, payload.length, compressed, 0);
+        return ByteBuffer.allocate(1 + Integer.BYTES + compressedLength)
+                .put((byte) (format.id | LZ4_FLAG))
+                .putInt(payload.length)
+                .put(compressed, 0, compressedLength)
+                .array();
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        Format stored = Format.fromHeader(bytes[0]);
+        try {
+            if (stored == null) {
+                return jsonMapper.readValue(bytes, type);
+            }
+            if ((bytes[0] & LZ4_FLAG) == 0) {
+                return mapperFor(stored).readValue(bytes, 1, bytes.length - 1, type);
+            }
+            int originalLength = ByteBuffer.wrap(bytes, 1, Integer.BYTES).getInt();
+            byte[] payload = DECOMPRESSOR.decompress(bytes, 1 + Integer.BYTES, originalLength);
+            return mapperFor(stored).readValue(payload, type);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Could not read cache value", e);
+        }
+    }
+
+    private ObjectMapper mapperFor(Format format) {
+        return format == Format.SMILE ? smileMapper : jsonMapper;
+    }
+}
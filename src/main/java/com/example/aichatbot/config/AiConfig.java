@@ -1,31 +1,58 @@
 package com.example.aichatbot.config;
 
+import ai.onnxruntime.OrtSession;
 import com.example.aichatbot.exception.InfrastructureException;
 import com.example.aichatbot.service.Assistant;
+import com.example.aichatbot.service.StreamingAssistant;
+import com.example.aichatbot.service.embedding.BatchingEmbeddingModel;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import com.example.aichatbot.service.llm.GatewayChatModel;
+import com.example.aichatbot.service.llm.GatewayStreamingChatModel;
+import com.example.aichatbot.service.llm.LlmGateway;
+import com.example.aichatbot.service.llm.LlmPriority;
+import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
 import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.HuggingFaceTokenCountEstimator;
+import dev.langchain4j.model.embedding.onnx.OnnxEmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import dev.langchain4j.model.scoring.ScoringModel;
+import dev.langchain4j.model.scoring.onnx.OnnxScoringModel;
 import dev.langchain4j.model.googleai.GoogleAiEmbeddingModel;
 import dev.langchain4j.model.googleai.GoogleAiGeminiChatModel;
+import dev.langchain4j.model.googleai.GoogleAiGeminiStreamingChatModel;
 import dev.langchain4j.model.huggingface.HuggingFaceEmbeddingModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.service.AiServices;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import dev.langchain4j.store.embedding.qdrant.QdrantEmbeddingStore;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.QdrantGrpcClient;
 import io.qdrant.client.grpc.Collections;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.concurrent.Executor;
 
 @Configuration
 @Slf4j
@@ -53,8 +80,6 @@ public class AiConfig {
 
     @Value("${langchain4j.document.splitter.max-overlap-size}")
     private int maxOverlapSize;
-    @Value("${langchain4j.document.splitter.maxResults}")
-    private int maxResults;
 
     @Value("${langchain4j.embedding.provider:huggingface}")
     private String embeddingProvider;
@@ -66,9 +91,22 @@ public class AiConfig {
     private Integer huggingfaceTimeout;
     @Value("${langchain4j.embedding.google.model-name:text-embedding-004}")
     private String googleEmbeddingModel;
+    @Value("${langchain4j.embedding.local.model:all-minilm-l6-v2}")
+    private String localModel;
+    @Value("${langchain4j.embedding.local.model-path:}")
+    private String localModelPath;
+    @Value("${langchain4j.embedding.local.tokenizer-path:}")
+    private String localTokenizerPath;
+    @Value("${langchain4j.embedding.local.pooling-mode:mean}")
+    private String localPoolingMode;
+    @Value("${langchain4j.embedding.local.max-batch-size:32}")
+    private int localMaxBatchSize;
+    @Value("${langchain4j.embedding.local.max-batch-wait:5ms}")
+    private Duration localMaxBatchWait;
 
     @Bean
-    public ChatModel chatLanguageModel() {
+    @Profile("!loadtest")
+    public ChatModel geminiChatModel() {
         return GoogleAiGeminiChatModel.builder()
                 .apiKey(googleApiKey)
                 .modelName(model)
@@ -77,8 +115,79 @@ public class AiConfig {
                 .build();
     }
 
+    /**
+     * The chat model for user-facing calls. Inject {@code backgroundChatModel} for work that
+     * can wait behind them.
+     */
     @Bean
-    public EmbeddingModel embeddingModel() {
+    @Primary
+    public ChatModel interactiveChatModel(@Qualifier("geminiChatModel") ChatModel geminiChatModel,
+            LlmGateway llmGateway) {
+        return new GatewayChatModel(geminiChatModel, llmGateway, LlmPriority.INTERACTIVE);
+    }
+
+    @Bean
+    public ChatModel backgroundChatModel(@Qualifier("geminiChatModel") ChatModel geminiChatModel,
+            LlmGateway llmGateway) {
+        return new GatewayChatModel(geminiChatModel, llmGateway, LlmPriority.BACKGROUND);
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    public StreamingChatModel geminiStreamingChatModel() {
+        return GoogleAiGeminiStreamingChatModel.builder()
+                .apiKey(googleApiKey)
+                .modelName(model)
+                .temperature(temperature)
+                .timeout(Duration.ofSeconds(timeout))
+                .build();
+    }
+
+    @Bean
+    @Primary
+    public StreamingChatModel streamingChatModel(
+            @Qualifier("geminiStreamingChatModel") StreamingChatModel geminiStreamingChatModel,
+            LlmGateway llmGateway) {
+        return new GatewayStreamingChatModel(geminiStreamingChatModel, llmGateway, LlmPriority.INTERACTIVE);
+    }
+
+    /**
+     * Counts prompt tokens locally with a WordPiece tokenizer. Gemini tokenizes differently, so
+     * counts are an estimate, but they need no call to the provider.
+     */
+    @Bean
+    public TokenCountEstimator tokenCountEstimator() {
+        return new HuggingFaceTokenCountEstimator();
+    }
+
+    /**
+     * In-process cross-encoder for reranking. Scores are normalized to 0..1 so that
+     * {@code skip-grading-score} reads the same for any model.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.retrieval.rerank.model-path")
+    public ScoringModel scoringModel(RetrievalConfig retrievalConfig) {
+        RetrievalConfig.Rerank rerank = retrievalConfig.getRerank();
+        if (rerank.getTokenizerPath() == null || rerank.getTokenizerPath().isEmpty()) {
+            throw new IllegalStateException("tokenizer-path is required for the rerank model");
+        }
+        log.info("Using rerank model: {}", rerank.getModelPath());
+        return new OnnxScoringModel(rerank.getModelPath(), new OrtSession.SessionOptions(),
+                rerank.getTokenizerPath(), rerank.getMaxLength(), true);
+    }
+
+    /**
+     * Conversation memory shared by {@link Assistant} and {@link StreamingAssistant}.
+     */
+    @Bean
+    public ChatMemoryStore chatMemoryStore() {
+        return new InMemoryChatMemoryStore();
+    }
+
+    @Bean
+    @Profile("!loadtest")
+    public EmbeddingModel embeddingModel(@Qualifier("embeddingExecutor") Executor embeddingExecutor,
+                                         MeterRegistry meterRegistry) {
         log.info("Initializing embedding model with provider: {}", embeddingProvider);
 
         return switch (embeddingProvider.toLowerCase()) {
@@ -102,21 +211,56 @@ public class AiConfig {
                         .build();
             }
 
+            case "local" -> {
+                BatchingEmbeddingModel batcher = new BatchingEmbeddingModel(localEmbeddingModel(embeddingExecutor),
+                        localMaxBatchSize, localMaxBatchWait);
+                Gauge.builder("embedding.batcher.queued", batcher, BatchingEmbeddingModel::getQueueSize)
+                        .description("Texts waiting for an embedding batch")
+                        .register(meterRegistry);
+                yield batcher;
+            }
+
             default -> throw new IllegalArgumentException(
                     "Unknown embedding provider: " + embeddingProvider +
-                            ". Supported providers: google, huggingface");
+                            ". Supported providers: google, huggingface, local");
         };
     }
 
+    /**
+     * An ONNX model run in-process on {@code embeddingExecutor}, so embeddings need no
+     * network call and are not rate limited.
+     */
+    private EmbeddingModel localEmbeddingModel(Executor executor) {
+        log.info("Using local embedding model: {}", localModel);
+        return switch (localModel.toLowerCase()) {
+            case "all-minilm-l6-v2" -> new AllMiniLmL6V2EmbeddingModel(executor);
+            case "all-minilm-l6-v2-q" -> new AllMiniLmL6V2QuantizedEmbeddingModel(executor);
+            case "onnx" -> {
+                if (localModelPath.isEmpty() || localTokenizerPath.isEmpty()) {
+                    throw new IllegalStateException(
+                            "model-path and tokenizer-path are required for the local onnx embedding model");
+                }
+                yield new OnnxEmbeddingModel(Path.of(localModelPath), Path.of(localTokenizerPath),
+                        PoolingMode.valueOf(localPoolingMode.toUpperCase()), executor);
+            }
+            default -> throw new IllegalArgumentException(
+                    "Unknown local embedding model: " + localModel +
+                            ". Supported models: all-minilm-l6-v2, all-minilm-l6-v2-q, onnx");
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    public QdrantClient qdrantClient() {
+        return new QdrantClient(QdrantGrpcClient.newBuilder(qdrantHost, qdrantPort, false).build());
+    }
+
     @Bean
     @Primary
-    public EmbeddingStore<TextSegment> embeddingStore() {
+    @ConditionalOnProperty(name = "app.loadtest.in-memory-store", havingValue = "false", matchIfMissing = true)
+    public EmbeddingStore<TextSegment> embeddingStore(QdrantClient client, EmbeddingModel embeddingModel) {
         log.info("Initializing embedding store at {}:{} with collection '{}'",
                 qdrantHost, qdrantPort, collectionName);
 
-        QdrantClient client = new QdrantClient(
-                QdrantGrpcClient.newBuilder(qdrantHost, qdrantPort, false).build());
-
         try {
             Boolean exists = client.collectionExistsAsync(collectionName).get();
             if (exists != null && !exists) {
@@ -124,7 +268,7 @@ public class AiConfig {
                 client.createCollectionAsync(
                         collectionName,
                         Collections.VectorParams.newBuilder()
-                                .setSize(embeddingModel().dimension())
+                                .setSize(embeddingModel.dimension())
                                 .setDistance(Collections.Distance.Cosine)
                                 .build())
                         .get();
@@ -143,35 +287,47 @@ public class AiConfig {
     }
 
     @Bean
-    public EmbeddingStoreIngestor embeddingStoreIngestor(
-            EmbeddingStore<TextSegment> embeddingStore,
-            EmbeddingModel embeddingModel) {
-
-        return EmbeddingStoreIngestor.builder()
-                .embeddingStore(embeddingStore)
-                .embeddingModel(embeddingModel)
-                .documentSplitter(DocumentSplitters.recursive(maxSegmentSize, maxOverlapSize))
-                .build();
+    public DocumentSplitter documentSplitter() {
+        return DocumentSplitters.recursive(maxSegmentSize, maxOverlapSize);
     }
 
+    /**
+     * Retrieves with the default retrieval profile; chats use their tenant's profile instead.
+     */
     @Bean
     public ContentRetriever contentRetriever(EmbeddingStore<TextSegment> embeddingStore,
-            EmbeddingModel embeddingModel) {
+            EmbeddingModel embeddingModel, RetrievalConfig retrievalConfig) {
+        RetrievalProfile defaults = retrievalConfig.getDefaults().toProfile();
         return EmbeddingStoreContentRetriever.builder()
                 .embeddingStore(embeddingStore)
                 .embeddingModel(embeddingModel)
-                .maxResults(maxResults)
-                .minScore(temperature)
+                .maxResults(defaults.maxResults())
+                .minScore(defaults.minScore())
                 .build();
     }
 
     @Bean
-    public Assistant assistant(ChatModel chatLanguageModel) {
+    public Assistant assistant(ChatModel interactiveChatModel, ChatMemoryStore chatMemoryStore) {
         return AiServices.builder(Assistant.class)
-                .chatModel(chatLanguageModel)
-                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.builder()
-                        .maxMessages(maxMemorySize)
-                        .build())
+                .chatModel(interactiveChatModel)
+                .chatMemoryProvider(memoryId -> chatMemory(memoryId, chatMemoryStore))
+                .build();
+    }
+
+    @Bean
+    public StreamingAssistant streamingAssistant(StreamingChatModel streamingChatModel,
+            ChatMemoryStore chatMemoryStore) {
+        return AiServices.builder(StreamingAssistant.class)
+                .streamingChatModel(streamingChatModel)
+                .chatMemoryProvider(memoryId -> chatMemory(memoryId, chatMemoryStore))
+                .build();
+    }
+
+    private MessageWindowChatMemory chatMemory(Object memoryId, ChatMemoryStore chatMemoryStore) {
+        return MessageWindowChatMemory.builder()
+                .id(memoryId)
+                .maxMessages(maxMemorySize)
+                .chatMemoryStore(chatMemoryStore)
                 .build();
     }
 }
\ No newline at end of file
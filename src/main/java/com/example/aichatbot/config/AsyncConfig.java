@@ -1,12 +1,17 @@
 package com.example.aichatbot.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -24,8 +29,42 @@ public class AsyncConfig {
     @Value("${async.ingestion.thread-name-prefix}")
     private String threadNamePrefix;
 
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${async.rag-graph.pool-size:32}")
+    private int ragGraphPoolSize;
+
+    @Value("${async.rag-graph.queue-capacity:200}")
+    private int ragGraphQueueCapacity;
+
+    @Value("${async.rag-graph.virtual-threads:${spring.threads.virtual.enabled:false}}")
+    private boolean ragGraphVirtualThreads;
+
+    @Value("${async.rag-graph.thread-name-prefix:rag-}")
+    private String ragGraphThreadNamePrefix;
+
+    @Value("${async.embedding.pool-size:4}")
+    private int embeddingPoolSize;
+
+    /**
+     * Creates an executor that starts a virtual thread per task. Requires Java 21+.
+     */
+    public static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
     @Bean(name = "ingestionExecutor")
     public Executor ingestionExecutor() {
+        if (virtualThreads) {
+            // Parsing and embedding are CPU and memory heavy; keep the same bound as the pool
+            SimpleAsyncTaskExecutor executor = virtualThreadExecutor(threadNamePrefix);
+            executor.setConcurrencyLimit(maxPoolSize);
+            return executor;
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(corePoolSize);
         executor.setMaxPoolSize(maxPoolSize);
@@ -34,4 +73,47 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs the RAG graph nodes, which block on Gemini, the embedding provider and Qdrant.
+     * Sized independently of the common pool so chat throughput does not depend on the
+     * number of cores. On Java 21+ it can use virtual threads instead; the LLM gateway
+     * still bounds the number of concurrent model calls.
+     */
+    @Bean(name = "ragGraphExecutor")
+    public Executor ragGraphExecutor(MeterRegistry meterRegistry) {
+        if (ragGraphVirtualThreads) {
+            return virtualThreadExecutor(ragGraphThreadNamePrefix);
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(ragGraphPoolSize);
+        executor.setMaxPoolSize(ragGraphPoolSize);
+        executor.setQueueCapacity(ragGraphQueueCapacity);
+        executor.setThreadNamePrefix(ragGraphThreadNamePrefix);
+        // The submitting request thread waits for the node anyway; let it do the work when saturated.
+        // RagGraph arms the node's deadline before submitting, so it still interrupts inline work.
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        // Exposes executor.active, executor.queued and executor.pool.* tagged name=ragGraph
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "ragGraph", Tags.empty())
+                .bindTo(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Runs in-process embedding inference. It is CPU bound, so it stays on a small pool of
+     * platform threads even in virtual thread mode.
+     */
+    @Bean(name = "embeddingExecutor")
+    public Executor embeddingExecutor(MeterRegistry meterRegistry) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(embeddingPoolSize);
+        executor.setMaxPoolSize(embeddingPoolSize);
+        executor.setThreadNamePrefix("embed-");
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), "embedding", Tags.empty())
+                .bindTo(meterRegistry);
+        return executor;
+    }
+}
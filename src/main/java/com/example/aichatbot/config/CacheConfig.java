@@ -1,38 +1,145 @@
 package com.example.aichatbot.config;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.CacheManager;
+import com.example.aichatbot.cache.ReadTolerantCacheErrorHandler;
+import com.example.aichatbot.cache.TwoLevelCacheManager;
+import com.example.aichatbot.cache.VersionedRedisSerializer;
+import com.example.aichatbot.dto.CursorPage;
+import com.example.aichatbot.dto.MessageDto;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.CacheErrorHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Caches are two-level: a bounded Caffeine tier per instance in front of Redis, kept
+ * coherent over the {@code app.cache.invalidation-channel} pub/sub channel. TTLs and local
+ * sizes are set per cache under {@code app.cache.caches}, falling back to
+ * {@code app.cache.defaults}.
+ */
 @Configuration
 @EnableCaching
-public class CacheConfig {
+@ConfigurationProperties(prefix = "app.cache")
+@Data
+public class CacheConfig implements CachingConfigurer {
 
-    @Value("${REDIS_TTL}")
-    private int redisTtl;
+    /**
+     * Holds {@code CursorPage<MessageDto>}; renamed from {@link #LEGACY_MESSAGES_CACHE} when
+     * the value type changed, so neither release reads the other's entries.
+     */
+    public static final String MESSAGES_CACHE = "messages-v2";
+    /**
+     * Message lists of releases before cursor pagination. Still evicted on writes so those
+     * instances do not serve stale pages during a rolling deploy.
+     */
+    public static final String LEGACY_MESSAGES_CACHE = "messages";
+    public static final String RETRIEVAL_PROFILES_CACHE = "retrieval-profiles";
+
+    private String invalidationChannel = "cache-invalidation";
+
+    private Spec defaults = new Spec();
+
+    private Map<String, Spec> caches = new HashMap<>();
+
+    @Data
+    public static class Spec {
+        /**
+         * Redis entry TTL.
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+        /**
+         * Local entry TTL; bounds staleness if an invalidation message is missed.
+         */
+        private Duration localTtl = Duration.ofMinutes(1);
+        private long localMaxSize = 1000;
+        /**
+         * Encoding for new entries of typed caches; existing entries are read in whatever
+         * format they were written. JSON stays readable by releases before the versioned
+         * header, so it is the default until those are gone.
+         */
+        private VersionedRedisSerializer.Format format = VersionedRedisSerializer.Format.JSON;
+        /**
+         * Smile entries at least this many bytes are LZ4-compressed; zero or less disables it.
+         */
+        private int compressionThreshold = 1024;
+    }
+
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new ReadTolerantCacheErrorHandler();
+    }
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
-        RedisCacheConfiguration cacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(redisTtl))
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             ObjectMapper objectMapper) {
+        Map<String, RedisCacheConfiguration> remoteConfigs = new LinkedHashMap<>();
+        valueSerializers(objectMapper).forEach((name, serializer) ->
+                remoteConfigs.put(name, remoteConfig(spec(name), serializer)));
+        caches.keySet().forEach(name -> remoteConfigs.computeIfAbsent(name,
+                n -> remoteConfig(spec(n), new GenericJackson2JsonRedisSerializer())));
+
+        RedisCacheManager remote = RedisCacheManager.builder(redisConnectionFactory)
+                .cacheDefaults(remoteConfig(defaults, new GenericJackson2JsonRedisSerializer()))
+                .withInitialCacheConfigurations(remoteConfigs)
+                .build();
+        remote.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(
+                remote,
+                name -> new TwoLevelCacheManager.LocalSpec(spec(name).getLocalTtl(), spec(name).getLocalMaxSize()),
+                stringRedisTemplate,
+                objectMapper,
+                invalidationChannel);
+    }
+
+    /**
+     * Caches with a known value type are serialized without embedded class names, in the
+     * format configured for the cache, which keeps entries small and avoids reflective type
+     * resolution on every read. Other caches fall back to JSON with type metadata.
+     */
+    private Map<String, RedisSerializer<?>> valueSerializers(ObjectMapper objectMapper) {
+        JavaType messagePage = objectMapper.getTypeFactory()
+                .constructParametricType(CursorPage.class, MessageDto.class);
+        JavaType retrievalProfile = objectMapper.getTypeFactory().constructType(RetrievalProfile.class);
+        return Map.of(
+                MESSAGES_CACHE, versioned(objectMapper, messagePage, spec(MESSAGES_CACHE)),
+                RETRIEVAL_PROFILES_CACHE, versioned(objectMapper, retrievalProfile, spec(RETRIEVAL_PROFILES_CACHE)));
+    }
+
+    private static RedisSerializer<?> versioned(ObjectMapper objectMapper, JavaType type, Spec spec) {
+        return new VersionedRedisSerializer<>(objectMapper, type, spec.getFormat(), spec.getCompressionThreshold());
+    }
+
+    private Spec spec(String name) {
+        return caches.getOrDefault(name, defaults);
+    }
+
+    private static RedisCacheConfiguration remoteConfig(Spec spec, RedisSerializer<?> valueSerializer) {
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(spec.getTtl())
                 .disableCachingNullValues()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair
                         .fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(new GenericJackson2JsonRedisSerializer()));
-
-        return RedisCacheManager.builder(redisConnectionFactory)
-                .cacheDefaults(cacheConfiguration)
-                .build();
+                        .fromSerializer(valueSerializer));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package com.example.aichatbot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * End-to-end latency budget for a chat request. The budget starts when the controller
+ * accepts the request and every step of the pipeline runs against what is left of it.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.deadline")
+@Data
+public class DeadlineConfig {
+
+    private Duration chat = Duration.ofSeconds(45);
+
+    /**
+     * Per-tenant overrides of {@link #chat}, keyed by tenant id.
+     */
+    private Map<String, Duration> tenants = new HashMap<>();
+
+    /**
+     * Time kept back for the answer. Optional steps such as relevance grading are skipped
+     * once less than this is left.
+     */
+    private Duration answerReserve = Duration.ofSeconds(20);
+
+    public Duration budgetFor(String tenantId) {
+        return tenantId == null ? chat : tenants.getOrDefault(tenantId, chat);
+    }
+}
@@ -2,9 +2,17 @@ package com.example.aichatbot.config;
 
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
 
+import java.net.URI;
 import java.util.List;
 
 @Configuration
@@ -18,4 +26,38 @@ public class FileStorageConfig {
     @Value("${app.file-storage.storage-path}")
     private String storagePath;
 
-}
\ No newline at end of file
+    /**
+     * Storage backend: local, content-addressed or s3.
+     */
+    private String backend = "local";
+
+    private S3 s3 = new S3();
+
+    @Data
+    public static class S3 {
+        private String endpoint;
+        private String region = "us-east-1";
+        private String bucket = "documents";
+        private String accessKey;
+        private String secretKey;
+        private String keyPrefix = "blobs/";
+        private long lockTtlSeconds = 60;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.file-storage", name = "backend", havingValue = "s3")
+    public S3Client s3Client() {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(s3.getRegion()))
+                // MinIO and most S3-compatible stores only support path-style addressing
+                .forcePathStyle(true);
+        if (s3.getEndpoint() != null && !s3.getEndpoint().isBlank()) {
+            builder.endpointOverride(URI.create(s3.getEndpoint()));
+        }
+        if (s3.getAccessKey() != null && !s3.getAccessKey().isBlank()) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(s3.getAccessKey(), s3.getSecretKey())));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.aichatbot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Bounds for the adaptive concurrency limit in front of the chat model.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.llm-gateway")
+@Data
+public class LlmGatewayConfig {
+
+    private int initialLimit = 8;
+    private int minLimit = 1;
+    private int maxLimit = 32;
+
+    /**
+     * Factor the limit is multiplied by when the provider rate limits or times out.
+     */
+    private double backoffRatio = 0.5;
+
+    /**
+     * A call slower than this multiple of the smoothed latency counts as a sign of overload.
+     */
+    private double latencyTolerance = 2.0;
+
+    private int maxQueueSize = 200;
+    private Duration maxQueueTime = Duration.ofSeconds(30);
+}
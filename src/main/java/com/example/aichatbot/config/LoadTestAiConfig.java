@@ -0,0 +1,68 @@
+package com.example.aichatbot.config;
+
+import com.example.aichatbot.service.graph.QdrantVectorSearch;
+import com.example.aichatbot.service.loadtest.InMemoryVectorSearch;
+import com.example.aichatbot.service.loadtest.StubBehaviour;
+import com.example.aichatbot.service.loadtest.StubChatModel;
+import com.example.aichatbot.service.loadtest.StubEmbeddingModel;
+import com.example.aichatbot.service.loadtest.StubStreamingChatModel;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Replaces the Gemini and embedding provider clients with local stand-ins for load tests,
+ * see {@code loadtest/README.md}. The stand-ins sit behind the same LLM gateway, guards and
+ * metrics as the real clients.
+ */
+@Configuration
+@Profile("loadtest")
+@RequiredArgsConstructor
+@Slf4j
+public class LoadTestAiConfig {
+
+    private final LoadTestConfig config;
+
+    @Bean("geminiChatModel")
+    public ChatModel stubChatModel() {
+        log.warn("loadtest profile active: chat calls are answered by a local stub");
+        return new StubChatModel(new StubBehaviour(config.getChat()), config.getAnswerWords());
+    }
+
+    @Bean("geminiStreamingChatModel")
+    public StreamingChatModel stubStreamingChatModel() {
+        return new StubStreamingChatModel(new StubBehaviour(config.getChat()), config.getAnswerWords(),
+                config.getTokenInterval());
+    }
+
+    @Bean
+    public EmbeddingModel embeddingModel() {
+        log.warn("loadtest profile active: embeddings are computed by a local stub");
+        return new StubEmbeddingModel(new StubBehaviour(config.getEmbedding()), config.getEmbeddingDimension());
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "app.loadtest.in-memory-store", havingValue = "true")
+    public EmbeddingStore<TextSegment> embeddingStore() {
+        return new InMemoryEmbeddingStore<>();
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "app.loadtest.in-memory-store", havingValue = "true")
+    public QdrantVectorSearch inMemoryVectorSearch() {
+        log.warn("loadtest profile active: chat retrieval searches the in-memory store");
+        return new InMemoryVectorSearch(embeddingStore());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.aichatbot.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Behaviour of the stand-in models used by the {@code loadtest} profile.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.loadtest")
+@Data
+public class LoadTestConfig {
+
+    private Stub chat = new Stub(Duration.ofMillis(1500), Duration.ofSeconds(6), 0.0, 0.0);
+
+    private Stub embedding = new Stub(Duration.ofMillis(40), Duration.ofMillis(250), 0.0, 0.0);
+
+    /**
+     * Words in a generated answer.
+     */
+    private int answerWords = 120;
+
+    /**
+     * Delay between streamed tokens. The {@link #chat} latency is the time to the first one.
+     */
+    private Duration tokenInterval = Duration.ofMillis(20);
+
+    /**
+     * Must match the existing Qdrant collection; 384 is all-MiniLM-L6-v2.
+     */
+    private int embeddingDimension = 384;
+
+    /**
+     * Keep vectors in memory instead of Qdrant. The streaming endpoint still searches Qdrant.
+     */
+    private boolean inMemoryStore = false;
+
+    /**
+     * Latency is log-normal with the given median and 99th percentile. The rates are the
+     * share of calls failed with a server error or a rate limit.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Stub {
+        private Duration median;
+        private Duration p99;
+        private double errorRate;
+        private double rateLimitRate;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.aichatbot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tags applied to the chat and ingestion pipeline metrics. Tenants are grouped into tiers
+ * so the metrics stay low-cardinality however many tenants there are.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.metrics")
+@Data
+public class MetricsConfig {
+
+    /**
+     * Tier reported for tenants not listed in {@link #tenantTiers}.
+     */
+    private String defaultTier = "standard";
+
+    /**
+     * Tenant id to tier name, e.g. {@code enterprise} or {@code free}.
+     */
+    private Map<String, String> tenantTiers = new HashMap<>();
+
+    private String chatModel = "unknown";
+
+    private String embeddingModel = "unknown";
+
+    public String tierOf(String tenantId) {
+        return tenantId == null ? defaultTier : tenantTiers.getOrDefault(tenantId, defaultTier);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.aichatbot.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits on the prompt sent to generate an answer.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.prompt")
+@Data
+public class PromptConfig {
+
+    /**
+     * Input tokens per answer, covering the system prompt, conversation memory, retrieved
+     * context and the question.
+     */
+    private int inputTokenBudget = 4000;
+
+    /**
+     * Largest share of the budget conversation memory may take, so the context always keeps
+     * the rest; older turns are dropped from memory beyond it.
+     */
+    private double historyShare = 0.5;
+
+    /**
+     * Per-tenant overrides of {@link #inputTokenBudget}, keyed by tenant id.
+     */
+    private Map<String, Integer> tenants = new HashMap<>();
+
+    /**
+     * Shortest shared run of characters between two chunks that counts as splitter overlap.
+     */
+    private int minOverlapChars = 20;
+
+    /**
+     * Longest overlap looked for; the document splitter overlaps chunks by up to 200 characters.
+     */
+    private int maxOverlapChars = 300;
+
+    public int budgetFor(String tenantId) {
+        return tenantId == null ? inputTokenBudget : tenants.getOrDefault(tenantId, inputTokenBudget);
+    }
+}
@@ -11,12 +11,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 @Component
+@ConditionalOnProperty(name = "app.loadtest.in-memory-store", havingValue = "false", matchIfMissing = true)
 public class QdrantInitializer {
 
     private static final Logger log = LoggerFactory.getLogger(QdrantInitializer.class);
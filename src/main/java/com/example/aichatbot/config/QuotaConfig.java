@@ -0,0 +1,54 @@
+package com.example.aichatbot.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Limits applied to chat requests before they reach the model. A limit of zero or less
+ * disables that bucket.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.quota")
+@Data
+public class QuotaConfig {
+
+    private boolean enabled = true;
+
+    private Limit tenant = new Limit(300, 500_000);
+
+    private Limit user = new Limit(30, 60_000);
+
+    /**
+     * Requests taken from Redis at once and served locally until used up or expired.
+     */
+    private int leaseRequests = 5;
+
+    /**
+     * How long a lease is served locally before its rest is refunded; also the gap between
+     * a user's requests below which they get one.
+     */
+    private Duration leaseTtl = Duration.ofMinutes(1);
+
+    /**
+     * Rough size of a token, used to estimate the prompt from the message length.
+     */
+    private int charsPerToken = 4;
+
+    /**
+     * Tokens budgeted on top of the message for retrieved context and the response.
+     */
+    private int responseTokenReserve = 1024;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private long requestsPerMinute;
+        private long tokensPerMinute;
+    }
+}
@@ -1,39 +1,32 @@
 package com.example.aichatbot.config;
 
-import com.example.aichatbot.model.IngestionJob;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.aichatbot.cache.TwoLevelCacheManager;
+import com.example.aichatbot.service.messaging.JobProgressBroadcaster;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
-import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 @Configuration
 public class RedisConfig {
 
     @Bean
-    public RedisTemplate<String, IngestionJob> jobRedisTemplate(RedisConnectionFactory connectionFactory,
-            org.springframework.core.env.Environment env,
-            ObjectMapper objectMapper) {
-        // TODO remove this later
-//        String host = env.getProperty("spring.data.redis.host");
-//        String port = env.getProperty("spring.data.redis.port");
-//        System.out.println(">>> CONNECTING TO REDIS AT: " + host + ":" + port);
-
-        RedisTemplate<String, IngestionJob> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
-
-        template.setKeySerializer(new StringRedisSerializer());
-
-        Jackson2JsonRedisSerializer<IngestionJob> serializer = new Jackson2JsonRedisSerializer<>(objectMapper,
-                IngestionJob.class);
-
-        template.setValueSerializer(serializer);
-        template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(serializer);
-
-        template.afterPropertiesSet();
-        return template;
+    public RedisMessageListenerContainer redisMessageListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            JobProgressBroadcaster jobProgressBroadcaster,
+            TwoLevelCacheManager cacheManager,
+            @Value("${app.job.progress-channel:ingestion-job-progress}") String progressChannel,
+            @Value("${app.cache.invalidation-channel:cache-invalidation}") String invalidationChannel,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        if (virtualThreads) {
+            container.setTaskExecutor(AsyncConfig.virtualThreadExecutor("redis-listener-"));
+        }
+        container.addMessageListener(jobProgressBroadcaster, new ChannelTopic(progressChannel));
+        container.addMessageListener(cacheManager, new ChannelTopic(invalidationChannel));
+        return container;
     }
 }
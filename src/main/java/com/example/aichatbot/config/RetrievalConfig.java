@@ -0,0 +1,167 @@
+package com.example.aichatbot.config;
+
+import com.example.aichatbot.enums.GradingMode;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * How the chat pipeline finds documents for a question.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.retrieval")
+@Data
+public class RetrievalConfig {
+
+    private Defaults defaults = new Defaults();
+    private Limits limits = new Limits();
+    private MultiQuery multiQuery = new MultiQuery();
+    private Expansion expansion = new Expansion();
+    private Rerank rerank = new Rerank();
+
+    public enum MultiQueryMode {
+        /**
+         * Search with the question only.
+         */
+        OFF,
+        /**
+         * Search with the question and its variants on every chat.
+         */
+        ALWAYS,
+        /**
+         * Search with the question first, and retry once with variants if grading finds
+         * nothing relevant.
+         */
+        ON_MISS
+    }
+
+    public enum Rewriter {
+        /**
+         * Ask the chat model for rephrasings.
+         */
+        LLM,
+        /**
+         * Derive variants from the question's own words, without a model call.
+         */
+        LOCAL
+    }
+
+    public enum ExpansionMode {
+        /**
+         * Use the matched chunks as they are.
+         */
+        OFF,
+        /**
+         * Add the chunks either side of each match.
+         */
+        NEIGHBORS,
+        /**
+         * Replace each match with the section of the document it belongs to.
+         */
+        PARENT
+    }
+
+    /**
+     * The retrieval profile of tenants that have not set their own, field by field.
+     */
+    @Data
+    public static class Defaults {
+        private int maxResults = RetrievalProfile.DEFAULT.maxResults();
+        private double minScore = RetrievalProfile.DEFAULT.minScore();
+        private int searchEf = RetrievalProfile.DEFAULT.searchEf();
+        private boolean rerank = RetrievalProfile.DEFAULT.rerank();
+        private GradingMode grading = RetrievalProfile.DEFAULT.grading();
+
+        public RetrievalProfile toProfile() {
+            return new RetrievalProfile(maxResults, minScore, searchEf, rerank, grading);
+        }
+    }
+
+    /**
+     * Upper bounds on what a tenant or a request may ask for, since both drive latency.
+     */
+    @Data
+    public static class Limits {
+        private int maxResults = 20;
+        private int searchEf = 512;
+    }
+
+    @Data
+    public static class MultiQuery {
+        private MultiQueryMode mode = MultiQueryMode.OFF;
+        private Rewriter rewriter = Rewriter.LOCAL;
+
+        /**
+         * Variants searched in addition to the question itself.
+         */
+        private int variants = 3;
+
+        /**
+         * Matches kept from each search before fusion.
+         */
+        private int candidatesPerQuery = 10;
+
+        /**
+         * Reciprocal rank fusion constant; higher values flatten the advantage of top ranks.
+         */
+        private int rrfK = 60;
+    }
+
+    @Data
+    public static class Expansion {
+        private ExpansionMode mode = ExpansionMode.OFF;
+
+        /**
+         * Chunks added on each side of a match in {@link ExpansionMode#NEIGHBORS} mode.
+         */
+        private int window = 1;
+
+        /**
+         * Consecutive chunks that make up a section in {@link ExpansionMode#PARENT} mode.
+         */
+        private int sectionChunks = 4;
+    }
+
+    /**
+     * The cross-encoder that reorders candidates for profiles with reranking on. Without a
+     * model path, reranking is unavailable and those profiles keep the vector order.
+     */
+    @Data
+    public static class Rerank {
+        /**
+         * ONNX cross-encoder, e.g. ms-marco-MiniLM-L-6-v2, and its tokenizer.json.
+         */
+        private String modelPath;
+        private String tokenizerPath;
+        private int maxLength = 512;
+
+        /**
+         * Matches fetched from the vector search for the cross-encoder to choose from.
+         */
+        private int candidates = 30;
+
+        /**
+         * Question-chunk pairs scored per model call.
+         */
+        private int batchSize = 8;
+
+        /**
+         * Time after which scoring stops and the vector order is kept.
+         */
+        private Duration maxLatency = Duration.ofMillis(300);
+
+        /**
+         * Chats reranking at once; others keep the vector order instead of queueing for CPU.
+         */
+        private int maxConcurrency = 2;
+
+        /**
+         * A top candidate scoring at least this is taken as relevant without the grading call;
+         * 0 always grades.
+         */
+        private double skipGradingScore = 0.9;
+    }
+}
@@ -7,6 +7,7 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -45,14 +46,18 @@ public class StreamConfig {
 
     @Bean
     public Subscription subscription(RedisConnectionFactory redisConnectionFactory,
-                                     IngestionConsumer ingestionConsumer) {
+                                     IngestionConsumer ingestionConsumer,
+                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
         createGroupIfNotExists(redisConnectionFactory);
 
-        var options = StreamMessageListenerContainer.StreamMessageListenerContainerOptions
+        var optionsBuilder = StreamMessageListenerContainer.StreamMessageListenerContainerOptions
                 .builder()
                 .pollTimeout(Duration.ofMillis(consumer.getPollTimeoutMs()))
-                .targetType(String.class)
-                .build();
+                .targetType(String.class);
+        if (virtualThreads) {
+            optionsBuilder.executor(AsyncConfig.virtualThreadExecutor("stream-listener-"));
+        }
+        var options = optionsBuilder.build();
 
         var listenerContainer = StreamMessageListenerContainer
                 .create(redisConnectionFactory, options);
@@ -7,6 +7,7 @@ import com.example.aichatbot.exception.UserNotFoundException;
 import com.example.aichatbot.model.User;
 import com.example.aichatbot.repository.UserRepository;
 import com.example.aichatbot.security.JwtTokenProvider;
+import com.example.aichatbot.service.StatisticsCounterService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -33,6 +34,7 @@ public class AuthController {
 
     private final JwtTokenProvider jwtTokenProvider;
     private final PasswordEncoder passwordEncoder;
+    private final StatisticsCounterService counterService;
 
     @PostMapping("/register")
     public ResponseEntity<User> register(@RequestBody LoginRequestDto request) {
@@ -45,6 +47,7 @@ public class AuthController {
         user.setHashedPassword(passwordEncoder.encode(request.password()));
 
         User savedUser = userRepository.save(user);
+        counterService.recordGlobal(StatisticsCounterService.Metric.USERS, 1);
         return ResponseEntity.ok(savedUser);
     }
 
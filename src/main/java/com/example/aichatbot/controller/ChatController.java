@@ -2,17 +2,25 @@ package com.example.aichatbot.controller;
 
 import com.example.aichatbot.dto.ChatRequestDto;
 import com.example.aichatbot.dto.ChatResponseDto;
+import com.example.aichatbot.dto.ChatStreamEventDto;
 import com.example.aichatbot.exception.AuthenticationException;
 import com.example.aichatbot.exception.UserNotFoundException;
 import com.example.aichatbot.repository.UserRepository;
 import com.example.aichatbot.service.ChatService;
 import com.example.aichatbot.service.ConversationService;
+import com.example.aichatbot.service.Deadline;
+import com.example.aichatbot.service.DeadlineService;
+import com.example.aichatbot.service.ReactiveChatService;
+import com.example.aichatbot.service.quota.QuotaService;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 
 import java.security.Principal;
 
@@ -23,27 +31,66 @@ public class ChatController {
 
     private final ChatService chatService;
     private final ConversationService conversationService;
+    private final ReactiveChatService reactiveChatService;
+    private final DeadlineService deadlineService;
     private final com.example.aichatbot.repository.UserRepository userRepository;
+    private final QuotaService quotaService;
 
     public ChatController(ChatService chatService, ConversationService conversationService,
-            UserRepository userRepository) {
+            ReactiveChatService reactiveChatService, DeadlineService deadlineService, UserRepository userRepository,
+            QuotaService quotaService) {
         this.chatService = chatService;
         this.conversationService = conversationService;
+        this.reactiveChatService = reactiveChatService;
+        this.deadlineService = deadlineService;
         this.userRepository = userRepository;
+        this.quotaService = quotaService;
     }
 
     @PostMapping
     public ResponseEntity<ChatResponseDto> chat(@RequestBody ChatRequestDto request,
             Principal principal) {
+        String userId = resolveUserId(principal);
+        // The budget covers everything from here, including the conversation lookup
+        Deadline deadline = deadlineService.forChat(userId);
+        // Admit before anything is written, so a throttled client cannot pile up new conversations
+        quotaService.admit(userId, request.message());
+        Long conversationId = resolveConversation(userId, request.conversationId());
+
+        String responseText = chatService.processChat(userId, conversationId, request.message(),
+                request.botConfig(), deadline);
+
+        return ResponseEntity.ok(new ChatResponseDto(responseText, conversationId));
+    }
+
+    /**
+     * Streams the answer as server-sent events while it is generated. The request thread is
+     * released as soon as the stream is set up.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChatStreamEventDto>> streamChat(@RequestBody ChatRequestDto request,
+            Principal principal) {
+        String userId = resolveUserId(principal);
+        Deadline deadline = deadlineService.forChat(userId);
+        quotaService.admit(userId, request.message());
+        Long conversationId = resolveConversation(userId, request.conversationId());
+
+        return reactiveChatService.streamChat(userId, conversationId, request.message(), request.botConfig(),
+                        deadline)
+                .map(event -> ServerSentEvent.builder(event).event(event.type()).build());
+    }
+
+    private String resolveUserId(Principal principal) {
         if (principal == null) {
             throw new AuthenticationException("No authentication found");
         }
         String username = principal.getName();
-        String userId = userRepository.findByUsername(username)
+        return userRepository.findByUsername(username)
                 .map(com.example.aichatbot.model.User::getId)
                 .orElseThrow(() -> new UserNotFoundException("User", username));
+    }
 
-        Long conversationId = request.conversationId();
+    private Long resolveConversation(String userId, Long conversationId) {
         boolean existsAndOwned = false;
         if (conversationId != null) {
             existsAndOwned = conversationService.getConversation(conversationId)
@@ -55,10 +102,6 @@ public class ChatController {
             var conv = conversationService.createConversation(userId, "New Chat");
             conversationId = conv.getId();
         }
-
-        String responseText = chatService.processChat(userId, conversationId, request.message(),
-                request.botConfig());
-
-        return ResponseEntity.ok(new ChatResponseDto(responseText, conversationId));
+        return conversationId;
     }
 }
@@ -1,9 +1,11 @@
 package com.example.aichatbot.controller;
 
+import com.example.aichatbot.dto.ConversationSummaryDto;
+import com.example.aichatbot.dto.CursorPage;
+import com.example.aichatbot.dto.MessageDto;
 import com.example.aichatbot.exception.AuthenticationException;
 import com.example.aichatbot.exception.UserNotFoundException;
 import com.example.aichatbot.model.Conversation;
-import com.example.aichatbot.model.Message;
 import com.example.aichatbot.model.User;
 import com.example.aichatbot.repository.UserRepository;
 import com.example.aichatbot.service.ConversationService;
@@ -16,8 +18,6 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.security.Principal;
-import java.util.Comparator;
-import java.util.List;
 
 @RestController
 @RequestMapping("/api/v1/conversations")
@@ -32,9 +32,11 @@ public class ConversationController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Conversation>> getConversations(
+    public ResponseEntity<CursorPage<ConversationSummaryDto>> getConversations(
             Principal principal,
-            @RequestParam(required = false) String tenantId) {
+            @RequestParam(required = false) String tenantId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
         if (principal == null) {
             throw new AuthenticationException("No authentication found");
         }
@@ -43,7 +45,7 @@ public class ConversationController {
                 .map(User::getId)
                 .orElseThrow(() -> new UserNotFoundException("User", username));
 
-        return ResponseEntity.ok(conversationService.getUserConversations(userId));
+        return ResponseEntity.ok(conversationService.getUserConversations(userId, cursor, limit));
     }
 
     @GetMapping("/{id}")
@@ -54,13 +56,15 @@ public class ConversationController {
     }
 
     @GetMapping("/{id}/messages")
-    public ResponseEntity<List<Message>> getMessages(@PathVariable Long id) {
-        List<Message> conversationMessages = conversationService.getConversationMessages(id);
-        if (conversationMessages.isEmpty()) {
+    public ResponseEntity<CursorPage<MessageDto>> getMessages(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit) {
+        CursorPage<MessageDto> page = conversationService.getConversationMessages(id, before, limit);
+        if (before == null && page.items().isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        conversationMessages.sort(Comparator.comparing(Message::getId).reversed());
-        return ResponseEntity.ok(conversationMessages);
+        return ResponseEntity.ok(page);
     }
 
     @DeleteMapping("/{id}")
@@ -9,10 +9,13 @@ import com.example.aichatbot.repository.UserRepository;
 import com.example.aichatbot.service.DocumentService;
 import com.example.aichatbot.service.JobService;
 import com.example.aichatbot.service.messaging.IngestionProducer;
+import com.example.aichatbot.service.messaging.JobProgressBroadcaster;
 import com.example.aichatbot.service.storage.FileStorageService;
+import com.example.aichatbot.service.storage.StoredFile;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -21,12 +24,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @RestController
@@ -39,6 +45,7 @@ public class DocumentController {
     private final FileStorageService fileStorageService;
     private final DocumentService documentService;
     private final UserRepository userRepository;
+    private final JobProgressBroadcaster jobProgressBroadcaster;
 
     @PostMapping("/ingest")
     public ResponseEntity<Map<String, String>> ingestDocs(
@@ -65,8 +72,8 @@ public class DocumentController {
         String userId = user.getId();
         log.debug("Found user {} with ID {}", user.getUsername(), userId);
 
-        IngestionJob job = jobService.createJob(files.size());
-        List<String> validPaths = new ArrayList<>();
+        List<String> fileKeys = new ArrayList<>();
+        Set<String> contentHashes = new HashSet<>();
 
         try {
             for (MultipartFile file : files) {
@@ -74,28 +81,35 @@ public class DocumentController {
                     log.warn("Skipping empty file: {}", file.getOriginalFilename());
                     continue;
                 }
-                String path = fileStorageService.store(file.getInputStream(), file.getOriginalFilename());
-                validPaths.add(path);
-                log.debug("Stored file: {} at {}", file.getOriginalFilename(), path);
+                StoredFile stored = fileStorageService.store(file);
+                if (!contentHashes.add(stored.contentHash())) {
+                    log.info("Skipping duplicate file {} from user {}", file.getOriginalFilename(), userId);
+                    fileStorageService.delete(stored.key());
+                    continue;
+                }
+                fileKeys.add(stored.key());
+                log.debug("Stored file: {} at {}", file.getOriginalFilename(), stored.key());
             }
 
-            if (validPaths.isEmpty()) {
+            if (fileKeys.isEmpty()) {
                 log.warn("No valid files were stored from the request");
                 return ResponseEntity.badRequest().body(Map.of("error", "All provided files were empty"));
             }
 
-            // Publish Event
-            IngestionEvent event = new IngestionEvent(job.getJobId(), userId, validPaths);
+            // Created only now, so its total counts the files that will actually be processed
+            IngestionJob job = jobService.createJob(fileKeys.size());
+            IngestionEvent event = new IngestionEvent(job.getJobId(), userId, fileKeys);
             ingestionProducer.publish(event);
-            log.info("Ingestion job {} queued with {} files for user {}", job.getJobId(), validPaths.size(), userId);
+            log.info("Ingestion job {} queued with {} files for user {}", job.getJobId(), fileKeys.size(), userId);
 
             return ResponseEntity.accepted().body(Map.of(
                     "message", "Processing queued",
                     "jobId", job.getJobId()));
 
         } catch (IOException e) {
-            log.error("Failed to store files for job {}: {}", job.getJobId(), e.getMessage(), e);
-            jobService.addError(job.getJobId(), "Failed to save files: " + e.getMessage());
+            log.error("Failed to store files for user {}: {}", userId, e.getMessage(), e);
+            // No job was created, so nothing would ever process or clean up what was stored
+            fileKeys.forEach(fileStorageService::delete);
             return ResponseEntity.internalServerError().build();
         }
     }
@@ -109,6 +123,16 @@ public class DocumentController {
         return ResponseEntity.ok(job);
     }
 
+    /**
+     * Streams job progress as server-sent {@code progress} events until the job completes.
+     */
+    @GetMapping(value = "/status/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamStatus(@PathVariable String jobId) {
+        return jobProgressBroadcaster.subscribe(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @GetMapping
     public ResponseEntity<List<DocumentDto>> getDocuments(Principal principal) {
         if (principal == null) {
@@ -1,6 +1,7 @@
 package com.example.aichatbot.controller;
 
 import com.example.aichatbot.dto.LoginRequestDto;
+import com.example.aichatbot.dto.RetrievalProfileDto;
 import com.example.aichatbot.dto.TenantRegistrationDto;
 import com.example.aichatbot.dto.UserUpdateDto;
 import com.example.aichatbot.enums.Role;
@@ -9,6 +10,9 @@ import com.example.aichatbot.model.Tenant;
 import com.example.aichatbot.model.User;
 import com.example.aichatbot.repository.TenantRepository;
 import com.example.aichatbot.repository.UserRepository;
+import com.example.aichatbot.service.RetrievalProfileService;
+import com.example.aichatbot.service.StatisticsCounterService;
+import com.example.aichatbot.service.graph.RetrievalProfile;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -38,7 +42,9 @@ public class TenantController {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final com.example.aichatbot.service.DocumentService documentService;
-    private final com.example.aichatbot.repository.ConversationRepository conversationRepository;
+    private final com.example.aichatbot.service.ConversationService conversationService;
+    private final StatisticsCounterService counterService;
+    private final RetrievalProfileService retrievalProfileService;
 
     @PostMapping("/register")
     public ResponseEntity<Tenant> registerTenant(@RequestBody TenantRegistrationDto request) {
@@ -60,6 +66,7 @@ public class TenantController {
             admin.setTenant(tenant);
             admin.setRoles(Set.of(Role.ADMIN, Role.USER));
             userRepository.save(admin);
+            counterService.recordGlobal(StatisticsCounterService.Metric.USERS, 1);
             log.info("Created admin user: {}", admin.getUsername());
 
             return ResponseEntity.ok(tenant);
@@ -87,7 +94,9 @@ public class TenantController {
         newUser.setTenant(admin.getTenant());
         newUser.setRoles(Set.of(Role.USER));
 
-        return ResponseEntity.ok(userRepository.save(newUser));
+        User saved = userRepository.save(newUser);
+        counterService.recordGlobal(StatisticsCounterService.Metric.USERS, 1);
+        return ResponseEntity.ok(saved);
     }
 
     @GetMapping("/users")
@@ -147,13 +156,33 @@ public class TenantController {
 
         documentService.deleteUserContent(userId);
 
-        conversationRepository.deleteByUserId(userId);
+        conversationService.deleteUserConversations(userId);
 
         userRepository.delete(user);
+        counterService.recordGlobal(StatisticsCounterService.Metric.USERS, -1);
+        counterService.forgetUser(userId);
 
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * The retrieval settings chats in the admin's tenant use by default.
+     */
+    @GetMapping("/retrieval-profile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RetrievalProfile> getRetrievalProfile(Principal principal) {
+        User admin = getAdmin(principal);
+        return ResponseEntity.ok(retrievalProfileService.forTenant(admin.getTenant().getId()));
+    }
+
+    @PutMapping("/retrieval-profile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RetrievalProfile> updateRetrievalProfile(@RequestBody RetrievalProfileDto request,
+            Principal principal) {
+        User admin = getAdmin(principal);
+        return ResponseEntity.ok(retrievalProfileService.update(admin.getTenant().getId(), request));
+    }
+
     private User getAdmin(Principal principal) {
         return userRepository.findByUsername(principal.getName())
                 .orElseThrow(() -> new UserNotFoundException("User", principal.getName()));
@@ -0,0 +1,63 @@
+package com.example.aichatbot.controller;
+
+import com.example.aichatbot.dto.UsageBucketDto;
+import com.example.aichatbot.dto.UsageTotalDto;
+import com.example.aichatbot.exception.UserNotFoundException;
+import com.example.aichatbot.model.TokenUsageRollup.Granularity;
+import com.example.aichatbot.model.User;
+import com.example.aichatbot.repository.UserRepository;
+import com.example.aichatbot.service.TokenUsageService;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Token usage of the caller's tenant, for quota checks and billing. Periods are half-open,
+ * {@code [from, to)}, in UTC.
+ */
+@Tag(name = "Usage", description = "Token usage per tenant")
+@RestController
+@RequestMapping("/api/v1/usage")
+@RequiredArgsConstructor
+public class UsageController {
+
+    private final TokenUsageService tokenUsageService;
+    private final UserRepository userRepository;
+
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<UsageBucketDto>> getUsage(
+            Principal principal,
+            @RequestParam(defaultValue = "DAY") Granularity granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String userId) {
+        String tenantId = getAdmin(principal).getTenant().getId();
+        return ResponseEntity.ok(tokenUsageService.getUsage(tenantId, granularity, from, to, userId));
+    }
+
+    @GetMapping("/total")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UsageTotalDto> getTotal(
+            Principal principal,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        String tenantId = getAdmin(principal).getTenant().getId();
+        return ResponseEntity.ok(tokenUsageService.getTotal(tenantId, from, to));
+    }
+
+    private User getAdmin(Principal principal) {
+        return userRepository.findByUsername(principal.getName())
+                .orElseThrow(() -> new UserNotFoundException("User", principal.getName()));
+    }
+}
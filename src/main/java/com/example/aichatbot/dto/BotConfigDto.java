@@ -2,6 +2,12 @@ package com.example.aichatbot.dto;
 
 /**
  * Configuration for bot personality and behavior
+ *
+ * @param retrieval overrides of the tenant's retrieval profile for this request, or null
  */
-public record BotConfigDto(String personality) {
+public record BotConfigDto(String personality, RetrievalProfileDto retrieval) {
+
+    public BotConfigDto(String personality) {
+        this(personality, null);
+    }
 }
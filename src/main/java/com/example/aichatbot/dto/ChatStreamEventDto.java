@@ -0,0 +1,25 @@
+package com.example.aichatbot.dto;
+
+/**
+ * One server-sent event of a streamed chat answer. {@code token} events carry the next piece
+ * of the answer; {@code replace} means the output guard blocked the answer and the client
+ * should show {@code content} instead of what it has received; {@code done} ends the stream.
+ */
+public record ChatStreamEventDto(String type, String content, Long conversationId) {
+
+    public static final String TOKEN = "token";
+    public static final String REPLACE = "replace";
+    public static final String DONE = "done";
+
+    public static ChatStreamEventDto token(String content) {
+        return new ChatStreamEventDto(TOKEN, content, null);
+    }
+
+    public static ChatStreamEventDto replace(String content) {
+        return new ChatStreamEventDto(REPLACE, content, null);
+    }
+
+    public static ChatStreamEventDto done(Long conversationId) {
+        return new ChatStreamEventDto(DONE, null, conversationId);
+    }
+}
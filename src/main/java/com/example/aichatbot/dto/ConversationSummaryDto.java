@@ -0,0 +1,10 @@
+package com.example.aichatbot.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conversation list entry. Unlike the {@code Conversation} entity it never touches the
+ * messages, so listing does not load any message content.
+ */
+public record ConversationSummaryDto(Long id, String title, LocalDateTime createdAt, LocalDateTime updatedAt) {
+}
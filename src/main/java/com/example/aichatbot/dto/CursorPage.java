@@ -0,0 +1,10 @@
+package com.example.aichatbot.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Pass {@code nextCursor} back to fetch the following
+ * page; it is {@code null} on the last page.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+}
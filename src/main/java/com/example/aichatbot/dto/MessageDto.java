@@ -0,0 +1,8 @@
+package com.example.aichatbot.dto;
+
+/**
+ * Message as listed in a conversation, read straight from the {@code messages} columns
+ * without hydrating the entity or its conversation.
+ */
+public record MessageDto(Long id, String role, String content, int inputTokens, int outputTokens) {
+}
@@ -0,0 +1,7 @@
+package com.example.aichatbot.dto;
+
+/**
+ * Message count and token sums over a set of messages.
+ */
+public record MessageTotalsDto(long messages, long inputTokens, long outputTokens) {
+}
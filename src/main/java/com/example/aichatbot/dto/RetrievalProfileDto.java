@@ -0,0 +1,14 @@
+package com.example.aichatbot.dto;
+
+import com.example.aichatbot.enums.GradingMode;
+
+/**
+ * Retrieval settings to override; null fields keep the value they override.
+ */
+public record RetrievalProfileDto(
+        Integer maxResults,
+        Double minScore,
+        Integer searchEf,
+        Boolean rerank,
+        GradingMode grading) {
+}
@@ -0,0 +1,16 @@
+package com.example.aichatbot.dto;
+
+import java.time.Instant;
+
+/**
+ * Token usage of one user, step and model within a time bucket.
+ */
+public record UsageBucketDto(
+        Instant bucketStart,
+        String userId,
+        String step,
+        String model,
+        long inputTokens,
+        long outputTokens,
+        long calls) {
+}
@@ -0,0 +1,11 @@
+package com.example.aichatbot.dto;
+
+/**
+ * Token usage summed over a period.
+ */
+public record UsageTotalDto(long inputTokens, long outputTokens, long calls) {
+
+    public long totalTokens() {
+        return inputTokens + outputTokens;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.aichatbot.enums;
+
+/**
+ * How retrieved documents are checked for relevance before answering.
+ */
+public enum GradingMode {
+    /**
+     * Ask the chat model whether the documents answer the question.
+     */
+    LLM,
+    /**
+     * Trust the search's score threshold; any match counts as relevant.
+     */
+    THRESHOLD
+}
@@ -2,6 +2,7 @@ package com.example.aichatbot.enums;
 
 public enum RagStateName {
     RETRIEVE("retrieve"),
+    RERANK("rerank"),
     GRADE("grade"),
     GENERATE("generate"),
     CLARIFY("clarify");
@@ -0,0 +1,17 @@
+package com.example.aichatbot.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a request runs out of its latency budget. The step that was cut short is
+ * named so slow stages show up in the logs. Results in HTTP 504 GATEWAY TIMEOUT response.
+ */
+@Getter
+public class DeadlineExceededException extends RuntimeException {
+    private final String step;
+
+    public DeadlineExceededException(String step) {
+        super("Request deadline exceeded during " + step);
+        this.step = step;
+    }
+}
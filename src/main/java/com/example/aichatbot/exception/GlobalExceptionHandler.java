@@ -119,6 +119,19 @@ public class GlobalExceptionHandler {
         return problem;
     }
 
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ProblemDetail handleDeadlineExceededException(DeadlineExceededException ex, WebRequest request) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(
+                HttpStatus.GATEWAY_TIMEOUT,
+                "The request took too long to answer. Please try again.");
+        problem.setTitle("Request Timed Out");
+        problem.setType(URI.create(ERROR_TYPE_BASE + "deadline-exceeded"));
+        problem.setProperty("timestamp", Instant.now());
+        problem.setProperty("path", getPath(request));
+        problem.setProperty("step", ex.getStep());
+        return problem;
+    }
+
     @ExceptionHandler(NoResourceFoundException.class)
     public ProblemDetail handleNoResourceFoundException(NoResourceFoundException ex, WebRequest request) {
         ProblemDetail problem = ProblemDetail.forStatusAndDetail(
@@ -0,0 +1,17 @@
+package com.example.aichatbot.exception;
+
+/**
+ * Thrown when the LLM gateway turns a call away because its queue is full or no model slot
+ * freed up in time. The provider was never called, so it must not count against the circuit
+ * breaker. Results in HTTP 503 SERVICE UNAVAILABLE response.
+ */
+public class LlmGatewayRejectedException extends InfrastructureException {
+
+    public LlmGatewayRejectedException(String message) {
+        super("LLM gateway", message);
+    }
+
+    public LlmGatewayRejectedException(String message, Throwable cause) {
+        super("LLM gateway", message, cause);
+    }
+}
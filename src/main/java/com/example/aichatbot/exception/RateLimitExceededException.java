@@ -0,0 +1,13 @@
+package com.example.aichatbot.exception;
+
+/**
+ * Thrown when a chat request is rejected by admission control before any model call is
+ * made. Unlike a quota error reported by the model provider, it says nothing about the
+ * health of the provider and must not count against the circuit breaker.
+ */
+public class RateLimitExceededException extends QuotaExceededException {
+
+    public RateLimitExceededException(String message, String retryAfter) {
+        super(message, retryAfter);
+    }
+}
@@ -30,6 +30,12 @@ public class Document {
     @Column(name = "file_type")
     private String fileType;
 
+    /**
+     * Identifies the document's chunks in the vector store and the chunk table.
+     */
+    @Column(name = "document_key")
+    private String documentKey;
+
     @Column(name = "chunk_count")
     private Integer chunkCount;
 
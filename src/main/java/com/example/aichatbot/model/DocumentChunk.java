@@ -0,0 +1,39 @@
+package com.example.aichatbot.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The text of one chunk of an ingested document, in the order the splitter produced it.
+ */
+@Entity
+@Table(name = "document_chunks")
+@Data
+@NoArgsConstructor
+public class DocumentChunk {
+
+    // Pooled sequence so a document's chunks go out as batched inserts (see V10 migration)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_chunks_seq")
+    @SequenceGenerator(name = "document_chunks_seq", sequenceName = "document_chunks_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "document_key", nullable = false)
+    private String documentKey;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String content;
+}
@@ -1,10 +1,13 @@
 package com.example.aichatbot.model;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -12,5 +15,21 @@ import java.util.List;
 public class IngestionEvent {
     private String jobId;
     private String userId;
-    private List<String> filePaths;
+    /**
+     * Storage keys of the uploaded files. Events queued before keys replaced absolute
+     * paths still deserialize through the alias; the local backend keys are those paths.
+     */
+    @JsonAlias("filePaths")
+    private List<String> fileKeys;
+    /**
+     * Trace propagation headers (e.g. {@code traceparent}) of the request that queued the
+     * job, so the consumer's spans join the same trace.
+     */
+    private Map<String, String> traceContext = new HashMap<>();
+
+    public IngestionEvent(String jobId, String userId, List<String> fileKeys) {
+        this.jobId = jobId;
+        this.userId = userId;
+        this.fileKeys = fileKeys;
+    }
 }
@@ -17,8 +17,18 @@ public class IngestionJob {
     private List<String> errors = new ArrayList<>();
     private LocalDateTime startTime;
     private LocalDateTime endTime;
+    private JobPhase phase;
+    private String currentFile;
+    /**
+     * Estimated seconds until completion, derived from the average time per processed file.
+     */
+    private Long etaSeconds;
 
     public enum JobStatus {
         PENDING, PROCESSING, COMPLETED
     }
+
+    public enum JobPhase {
+        PARSING, EMBEDDING, STORING, SUMMARIZING
+    }
 }
\ No newline at end of file
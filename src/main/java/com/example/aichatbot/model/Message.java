@@ -9,19 +9,27 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Table(name = "messages")
 @Data
 @NoArgsConstructor
 public class Message {
 
+    // Sequence ids let Hibernate batch inserts; IDENTITY forces one round trip per row.
+    // allocationSize must match the sequence INCREMENT BY (see V6 migration).
+    // Each instance draws its own block of ids, so ids are not in write order across
+    // instances; listings order by createdAt and use the id only as a tie-breaker.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -42,7 +50,8 @@ public class Message {
     @Column(name = "output_tokens", nullable = false)
     private int outputTokens = 0;
 
-    // @Column(name = "timestamp")
-    // private LocalDateTime timestamp = LocalDateTime.now();
+    // Set by the database default (the transaction start), so instances agree on the clock
+    @Column(name = "timestamp", insertable = false, updatable = false)
+    private LocalDateTime createdAt;
 
 }
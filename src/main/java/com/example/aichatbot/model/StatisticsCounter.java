@@ -0,0 +1,40 @@
+package com.example.aichatbot.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * A running total for one metric within a scope ({@code global} or {@code user:<id>}).
+ */
+@Entity
+@Table(name = "statistics_counters")
+@Data
+@NoArgsConstructor
+public class StatisticsCounter {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(nullable = false)
+    private long value;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        @Column(nullable = false)
+        private String scope;
+
+        @Column(nullable = false)
+        private String metric;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.aichatbot.model;
+
+import com.example.aichatbot.enums.GradingMode;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A tenant's retrieval settings. Null fields use the application defaults.
+ */
+@Entity
+@Table(name = "retrieval_profiles")
+@Data
+@NoArgsConstructor
+public class TenantRetrievalProfile {
+
+    @Id
+    @Column(name = "tenant_id")
+    private String tenantId;
+
+    @Column(name = "max_results")
+    private Integer maxResults;
+
+    @Column(name = "min_score")
+    private Double minScore;
+
+    @Column(name = "search_ef")
+    private Integer searchEf;
+
+    private Boolean rerank;
+
+    @Enumerated(EnumType.STRING)
+    private GradingMode grading;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
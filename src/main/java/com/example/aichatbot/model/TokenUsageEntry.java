@@ -0,0 +1,53 @@
+package com.example.aichatbot.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One model call's token usage in the append-only ledger.
+ */
+@Entity
+@Table(name = "token_usage_ledger")
+@Data
+@NoArgsConstructor
+public class TokenUsageEntry {
+
+    // Pooled sequence so ledger batches go out as batched inserts (see V9 migration)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "token_usage_ledger_seq")
+    @SequenceGenerator(name = "token_usage_ledger_seq", sequenceName = "token_usage_ledger_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+
+    @Column(name = "tenant_id", nullable = false)
+    private String tenantId;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "conversation_id")
+    private Long conversationId;
+
+    @Column(nullable = false)
+    private String step;
+
+    @Column(nullable = false)
+    private String model;
+
+    @Column(name = "input_tokens", nullable = false)
+    private int inputTokens;
+
+    @Column(name = "output_tokens", nullable = false)
+    private int outputTokens;
+}
@@ -0,0 +1,63 @@
+package com.example.aichatbot.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Token usage summed per time bucket, tenant, user, step and model.
+ */
+@Entity
+@Table(name = "token_usage_rollups")
+@Data
+@NoArgsConstructor
+public class TokenUsageRollup {
+
+    public enum Granularity {
+        HOUR, DAY
+    }
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "input_tokens", nullable = false)
+    private long inputTokens;
+
+    @Column(name = "output_tokens", nullable = false)
+    private long outputTokens;
+
+    @Column(nullable = false)
+    private long calls;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        @Column(nullable = false)
+        private String granularity;
+
+        @Column(name = "bucket_start", nullable = false)
+        private Instant bucketStart;
+
+        @Column(name = "tenant_id", nullable = false)
+        private String tenantId;
+
+        @Column(name = "user_id", nullable = false)
+        private String userId;
+
+        @Column(nullable = false)
+        private String step;
+
+        @Column(nullable = false)
+        private String model;
+    }
+}
@@ -1,13 +1,25 @@
 package com.example.aichatbot.repository;
 
+import com.example.aichatbot.dto.ConversationSummaryDto;
 import com.example.aichatbot.model.Conversation;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ConversationRepository extends JpaRepository<Conversation, Long> {
-    List<Conversation> findByUserIdOrderByUpdatedAtDesc(String userId);
+    @Query("SELECT new com.example.aichatbot.dto.ConversationSummaryDto(c.id, c.title, c.createdAt, c.updatedAt) "
+            + "FROM Conversation c WHERE c.userId = :userId ORDER BY c.updatedAt DESC, c.id DESC")
+    List<ConversationSummaryDto> findLatestSummaries(String userId, Limit limit);
+
+    @Query("SELECT new com.example.aichatbot.dto.ConversationSummaryDto(c.id, c.title, c.createdAt, c.updatedAt) "
+            + "FROM Conversation c WHERE c.userId = :userId "
+            + "AND (c.updatedAt < :updatedAt OR (c.updatedAt = :updatedAt AND c.id < :id)) "
+            + "ORDER BY c.updatedAt DESC, c.id DESC")
+    List<ConversationSummaryDto> findSummariesBefore(String userId, LocalDateTime updatedAt, Long id, Limit limit);
 
     long countByUpdatedAtAfter(LocalDateTime timestamp);
 
@@ -16,4 +28,8 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
     long countByUserIdAndUpdatedAtAfter(String userId, LocalDateTime timestamp);
 
     void deleteByUserId(String userId);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.updatedAt = :updatedAt WHERE c.id = :id AND c.userId = :userId")
+    int touch(Long id, String userId, LocalDateTime updatedAt);
 }
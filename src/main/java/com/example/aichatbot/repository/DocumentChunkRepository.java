@@ -0,0 +1,22 @@
+package com.example.aichatbot.repository;
+
+import com.example.aichatbot.model.DocumentChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Long> {
+
+    /**
+     * The user's chunks of the given documents within one index range, in document order.
+     */
+    List<DocumentChunk> findByUserIdAndDocumentKeyInAndChunkIndexBetweenOrderByChunkIndex(
+            String userId, Collection<String> documentKeys, int from, int to);
+
+    @Modifying
+    @Query("DELETE FROM DocumentChunk c WHERE c.userId = :userId")
+    void deleteByUserId(String userId);
+}
@@ -8,5 +8,7 @@ import java.util.List;
 public interface DocumentRepository extends JpaRepository<Document, Long> {
     List<Document> findByUserId(String userId);
 
+    long countByUserId(String userId);
+
     void deleteByUserId(String userId);
 }
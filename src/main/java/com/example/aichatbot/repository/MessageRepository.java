@@ -1,25 +1,37 @@
 package com.example.aichatbot.repository;
 
+import com.example.aichatbot.dto.MessageDto;
+import com.example.aichatbot.dto.MessageTotalsDto;
 import com.example.aichatbot.model.Message;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
-    List<Message> findByConversationId(Long conversationId);
-
-    long countByConversationUserId(String userId);
-
-    @Query("SELECT SUM(m.inputTokens) FROM Message m")
-    Long sumInputTokens();
-
-    @Query("SELECT SUM(m.outputTokens) FROM Message m")
-    Long sumOutputTokens();
-
-    @Query("SELECT SUM(m.inputTokens) FROM Message m WHERE m.conversation.userId = :userId")
-    Long sumInputTokensByUserId(String userId);
-
-    @Query("SELECT SUM(m.outputTokens) FROM Message m WHERE m.conversation.userId = :userId")
-    Long sumOutputTokensByUserId(String userId);
+    @Query("SELECT new com.example.aichatbot.dto.MessageDto(m.id, m.role, m.content, m.inputTokens, m.outputTokens) "
+            + "FROM Message m WHERE m.conversation.id = :conversationId ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageDto> findLatest(Long conversationId, Limit limit);
+
+    /**
+     * Messages written before the given one. Ids come from per-instance sequence blocks, so
+     * the position is the cursor message's {@code (createdAt, id)}, looked up by its id.
+     */
+    @Query("SELECT new com.example.aichatbot.dto.MessageDto(m.id, m.role, m.content, m.inputTokens, m.outputTokens) "
+            + "FROM Message m WHERE m.conversation.id = :conversationId "
+            + "AND (m.createdAt < (SELECT b.createdAt FROM Message b WHERE b.id = :beforeId) "
+            + "OR (m.createdAt = (SELECT b.createdAt FROM Message b WHERE b.id = :beforeId) AND m.id < :beforeId)) "
+            + "ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageDto> findBefore(Long conversationId, Long beforeId, Limit limit);
+
+    @Query("SELECT new com.example.aichatbot.dto.MessageTotalsDto(COUNT(m), "
+            + "COALESCE(SUM(m.inputTokens), 0), COALESCE(SUM(m.outputTokens), 0)) "
+            + "FROM Message m WHERE m.conversation.id = :conversationId")
+    MessageTotalsDto totalsByConversationId(Long conversationId);
+
+    @Query("SELECT new com.example.aichatbot.dto.MessageTotalsDto(COUNT(m), "
+            + "COALESCE(SUM(m.inputTokens), 0), COALESCE(SUM(m.outputTokens), 0)) "
+            + "FROM Message m WHERE m.conversation.userId = :userId")
+    MessageTotalsDto totalsByUserId(String userId);
 }
@@ -0,0 +1,34 @@
+package com.example.aichatbot.repository;
+
+import com.example.aichatbot.model.StatisticsCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface StatisticsCounterRepository extends JpaRepository<StatisticsCounter, StatisticsCounter.Key> {
+    @Query("SELECT c FROM StatisticsCounter c WHERE c.id.scope = :scope")
+    List<StatisticsCounter> findByScope(String scope);
+
+    /**
+     * Adds a delta to a counter, creating it if needed. Deltas commute, so concurrent
+     * instances can flush without coordination.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO statistics_counters (scope, metric, value) VALUES (:scope, :metric, :delta) "
+            + "ON CONFLICT (scope, metric) DO UPDATE SET value = statistics_counters.value + EXCLUDED.value",
+            nativeQuery = true)
+    void add(String scope, String metric, long delta);
+
+    /**
+     * Runs in its own transaction so it can be called from after-commit callbacks.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query("DELETE FROM StatisticsCounter c WHERE c.id.scope = :scope")
+    void deleteByScope(String scope);
+}
@@ -0,0 +1,7 @@
+package com.example.aichatbot.repository;
+
+import com.example.aichatbot.model.TenantRetrievalProfile;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TenantRetrievalProfileRepository extends JpaRepository<TenantRetrievalProfile, String> {
+}
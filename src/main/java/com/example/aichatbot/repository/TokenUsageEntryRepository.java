@@ -0,0 +1,7 @@
+package com.example.aichatbot.repository;
+
+import com.example.aichatbot.model.TokenUsageEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TokenUsageEntryRepository extends JpaRepository<TokenUsageEntry, Long> {
+}
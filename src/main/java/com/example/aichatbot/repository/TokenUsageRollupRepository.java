@@ -0,0 +1,45 @@
+package com.example.aichatbot.repository;
+
+import com.example.aichatbot.dto.UsageBucketDto;
+import com.example.aichatbot.dto.UsageTotalDto;
+import com.example.aichatbot.model.TokenUsageRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface TokenUsageRollupRepository extends JpaRepository<TokenUsageRollup, TokenUsageRollup.Key> {
+    @Modifying
+    @Query(value = "INSERT INTO token_usage_rollups "
+            + "(granularity, bucket_start, tenant_id, user_id, step, model, input_tokens, output_tokens, calls) "
+            + "VALUES (:granularity, :bucketStart, :tenantId, :userId, :step, :model, :inputTokens, :outputTokens, :calls) "
+            + "ON CONFLICT (granularity, tenant_id, bucket_start, user_id, step, model) DO UPDATE SET "
+            + "input_tokens = token_usage_rollups.input_tokens + EXCLUDED.input_tokens, "
+            + "output_tokens = token_usage_rollups.output_tokens + EXCLUDED.output_tokens, "
+            + "calls = token_usage_rollups.calls + EXCLUDED.calls",
+            nativeQuery = true)
+    void add(String granularity, Instant bucketStart, String tenantId, String userId, String step, String model,
+             long inputTokens, long outputTokens, long calls);
+
+    @Query("SELECT new com.example.aichatbot.dto.UsageBucketDto(r.id.bucketStart, r.id.userId, r.id.step, "
+            + "r.id.model, r.inputTokens, r.outputTokens, r.calls) "
+            + "FROM TokenUsageRollup r WHERE r.id.granularity = :granularity AND r.id.tenantId = :tenantId "
+            + "AND r.id.bucketStart >= :from AND r.id.bucketStart < :to "
+            + "ORDER BY r.id.bucketStart, r.id.userId, r.id.step, r.id.model")
+    List<UsageBucketDto> findBuckets(String granularity, String tenantId, Instant from, Instant to);
+
+    @Query("SELECT new com.example.aichatbot.dto.UsageBucketDto(r.id.bucketStart, r.id.userId, r.id.step, "
+            + "r.id.model, r.inputTokens, r.outputTokens, r.calls) "
+            + "FROM TokenUsageRollup r WHERE r.id.granularity = :granularity AND r.id.tenantId = :tenantId "
+            + "AND r.id.userId = :userId AND r.id.bucketStart >= :from AND r.id.bucketStart < :to "
+            + "ORDER BY r.id.bucketStart, r.id.step, r.id.model")
+    List<UsageBucketDto> findUserBuckets(String granularity, String tenantId, String userId, Instant from, Instant to);
+
+    @Query("SELECT new com.example.aichatbot.dto.UsageTotalDto(COALESCE(SUM(r.inputTokens), 0), "
+            + "COALESCE(SUM(r.outputTokens), 0), COALESCE(SUM(r.calls), 0)) "
+            + "FROM TokenUsageRollup r WHERE r.id.granularity = :granularity AND r.id.tenantId = :tenantId "
+            + "AND r.id.bucketStart >= :from AND r.id.bucketStart < :to")
+    UsageTotalDto sumTotals(String granularity, String tenantId, Instant from, Instant to);
+}
@@ -2,6 +2,7 @@ package com.example.aichatbot.repository;
 
 import com.example.aichatbot.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -10,4 +11,7 @@ public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByUsername(String username);
 
     List<User> findByTenantId(String tenantId);
+
+    @Query("SELECT u.tenant.id FROM User u WHERE u.id = :userId")
+    Optional<String> findTenantIdById(String userId);
 }
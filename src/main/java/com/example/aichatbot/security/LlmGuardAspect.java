@@ -1,5 +1,8 @@
 package com.example.aichatbot.security;
 
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import com.example.aichatbot.service.metrics.PipelineMetrics.ChatStage;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -14,13 +17,17 @@ import org.springframework.stereotype.Component;
 public class LlmGuardAspect {
 
     private final LlmGuardService guardService;
+    private final PipelineMetrics metrics;
 
     @Around("@annotation(ValidateInput)")
     public Object validateInput(ProceedingJoinPoint joinPoint) throws Throwable {
         Object[] args = joinPoint.getArgs();
         for (Object arg : args) {
             if (arg instanceof String) {
+                Timer.Sample sample = metrics.start();
                 GuardResult result = guardService.validateInput((String) arg);
+                metrics.stop(sample, ChatStage.GUARD_INPUT, null,
+                        result.isBlocked() ? PipelineMetrics.BLOCKED : PipelineMetrics.SUCCESS);
                 if (result.isBlocked()) {
                     String violations = String.join(", ", result.getViolations());
                     throw new IllegalArgumentException("Input validation failed: " + violations);
@@ -34,7 +41,10 @@ public class LlmGuardAspect {
     public Object validateOutput(ProceedingJoinPoint joinPoint) throws Throwable {
         Object result = joinPoint.proceed();
         if (result instanceof String) {
+            Timer.Sample sample = metrics.start();
             GuardResult validation = guardService.validateOutput((String) result);
+            metrics.stop(sample, ChatStage.GUARD_OUTPUT, null,
+                    validation.isBlocked() ? PipelineMetrics.BLOCKED : PipelineMetrics.SUCCESS);
             if (validation.isBlocked()) {
                 log.warn("Output validation failed: {}", validation.getReason());
                 return "I'm sorry, but I can't provide a response to that request.";
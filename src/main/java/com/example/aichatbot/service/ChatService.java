@@ -1,12 +1,17 @@
 package com.example.aichatbot.service;
 
 import com.example.aichatbot.dto.BotConfigDto;
+import com.example.aichatbot.exception.DeadlineExceededException;
+import com.example.aichatbot.exception.LlmGatewayRejectedException;
 import com.example.aichatbot.exception.QuotaExceededException;
 import com.example.aichatbot.security.LlmGuardService;
 import com.example.aichatbot.security.ValidateInput;
 import com.example.aichatbot.security.ValidateOutput;
 import com.example.aichatbot.service.graph.RagState;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import com.example.aichatbot.service.metrics.PipelineMetrics.ChatStage;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.CompiledGraph;
@@ -25,19 +30,28 @@ public class ChatService {
 
     private final CompiledGraph<RagState> ragGraphRunner;
     private final ConversationService conversationService;
+    private final PipelineMetrics metrics;
+    private final RetrievalProfileResolver retrievalProfileResolver;
     @SuppressWarnings("unused")
     private final LlmGuardService guardService;
 
     @ValidateInput
     @ValidateOutput
     @CircuitBreaker(name = "gemini", fallbackMethod = "processChatFallback")
-    public String processChat(String userId, Long conversationId, String message, BotConfigDto botConfig) {
+    public String processChat(String userId, Long conversationId, String message, BotConfigDto botConfig,
+            Deadline deadline) {
+        Timer.Sample total = metrics.start();
+        String outcome = PipelineMetrics.ERROR;
         try {
             // LangGraph State Setup
             Map<String, Object> inputs = new HashMap<>();
             inputs.put("query", message);
             inputs.put("conversationId", String.valueOf(conversationId));
             inputs.put("userId", userId);
+            inputs.put("retrievalProfile", retrievalProfileResolver.resolve(userId, botConfig));
+            if (deadline != null) {
+                inputs.put("deadline", deadline);
+            }
 
             Optional<RagState> result = ragGraphRunner.invoke(inputs);
 
@@ -49,18 +63,30 @@ public class ChatService {
                 response = "I encountered an error processing your request.";
             }
 
-            conversationService.addMessage(conversationId, "user", message);
-
             Map<String, Integer> tokenUsage = finalState.getTokenUsage();
             int inputTokens = tokenUsage.getOrDefault("totalInputTokens", 0);
             int outputTokens = tokenUsage.getOrDefault("totalOutputTokens", 0);
 
-            conversationService.addMessage(conversationId, "assistant", response, inputTokens, outputTokens);
+            String answer = response;
+            metrics.time(ChatStage.PERSIST, userId, () -> conversationService.appendTurn(userId, conversationId,
+                    message, answer, inputTokens, outputTokens));
 
+            outcome = PipelineMetrics.SUCCESS;
             return response;
         } catch (IllegalStateException e) {
             throw e;
         } catch (Exception e) {
+            DeadlineExceededException deadlineExceeded = findCause(e, DeadlineExceededException.class);
+            if (deadlineExceeded != null) {
+                log.warn("Chat for user {} ran out of time in {}", userId, deadlineExceeded.getStep());
+                throw deadlineExceeded;
+            }
+            LlmGatewayRejectedException rejected = findCause(e, LlmGatewayRejectedException.class);
+            if (rejected != null) {
+                log.warn("Chat for user {} was turned away by the LLM gateway: {}", userId, rejected.getMessage());
+                throw rejected;
+            }
+
             log.error("Error processing chat for user {}: {}", userId, e.getMessage(), e);
 
             // Check if this is a Gemini API quota exceeded error
@@ -72,16 +98,47 @@ public class ChatService {
             }
 
             throw new IllegalStateException("Failed to process chat message: " + e.getMessage(), e);
+        } finally {
+            metrics.stop(total, ChatStage.TOTAL, userId, outcome);
         }
     }
 
+    /**
+     * A timed-out request still counts against the circuit breaker, but the client is told it
+     * timed out (504) rather than given a canned answer.
+     */
+    @SuppressWarnings("unused")
+    public String processChatFallback(String userId, Long conversationId, String message, BotConfigDto botConfig,
+            Deadline deadline, DeadlineExceededException e) {
+        throw e;
+    }
+
+    /**
+     * The gateway's own backpressure says nothing about the provider either; the client gets
+     * a 503 rather than a canned answer.
+     */
     @SuppressWarnings("unused")
     public String processChatFallback(String userId, Long conversationId, String message, BotConfigDto botConfig,
-            Throwable t) {
+            Deadline deadline, LlmGatewayRejectedException e) {
+        throw e;
+    }
+
+    @SuppressWarnings("unused")
+    public String processChatFallback(String userId, Long conversationId, String message, BotConfigDto botConfig,
+            Deadline deadline, Throwable t) {
         log.error("Circuit breaker open or exception fallback for user {}: {}", userId, t.getMessage());
         return "The AI service is currently unavailable. Please try again later.";
     }
 
+    private static <T extends Throwable> T findCause(Throwable e, Class<T> type) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return type.cast(t);
+            }
+        }
+        return null;
+    }
+
     private String extractRetryTime(String errorMessage) {
         try {
             // Match patterns like "retry in 26.467792637s" or "retry in X seconds"
@@ -1,51 +1,86 @@
 package com.example.aichatbot.service;
 
+import com.example.aichatbot.config.CacheConfig;
+import com.example.aichatbot.dto.ConversationSummaryDto;
+import com.example.aichatbot.dto.CursorPage;
+import com.example.aichatbot.dto.MessageDto;
+import com.example.aichatbot.dto.MessageTotalsDto;
 import com.example.aichatbot.exception.ResourceNotFoundException;
 import com.example.aichatbot.model.Conversation;
 import com.example.aichatbot.model.Message;
 import com.example.aichatbot.repository.ConversationRepository;
 import com.example.aichatbot.repository.MessageRepository;
+import com.example.aichatbot.service.StatisticsCounterService.Metric;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Service
 @Transactional
 public class ConversationService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
+    private final StatisticsCounterService counterService;
 
-    public ConversationService(ConversationRepository conversationRepository, MessageRepository messageRepository) {
+    public ConversationService(ConversationRepository conversationRepository, MessageRepository messageRepository,
+                               StatisticsCounterService counterService) {
         this.conversationRepository = conversationRepository;
         this.messageRepository = messageRepository;
+        this.counterService = counterService;
     }
 
     public Conversation createConversation(String userId, String title) {
         Conversation conversation = new Conversation();
         conversation.setUserId(userId);
         conversation.setTitle(title);
-        return conversationRepository.save(conversation);
+        Conversation saved = conversationRepository.save(conversation);
+        counterService.record(userId, Metric.CONVERSATIONS, 1);
+        return saved;
     }
 
-    public List<Conversation> getUserConversations(String userId) {
-        return conversationRepository.findByUserIdOrderByUpdatedAtDesc(userId);
+    /**
+     * Lists the user's conversations, most recently updated first, keyed on
+     * {@code (updated_at, id)}. The cursor is opaque to clients.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ConversationSummaryDto> getUserConversations(String userId, String cursor, int limit) {
+        int pageSize = pageSize(limit);
+        List<ConversationSummaryDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = conversationRepository.findLatestSummaries(userId, Limit.of(pageSize + 1));
+        } else {
+            String[] position = decodeCursor(cursor);
+            rows = conversationRepository.findSummariesBefore(userId,
+                    LocalDateTime.parse(position[0]), Long.parseLong(position[1]), Limit.of(pageSize + 1));
+        }
+        return toPage(rows, pageSize, last -> encodeCursor(last.updatedAt() + "|" + last.id()));
     }
 
     public Optional<Conversation> getConversation(Long id) {
         return conversationRepository.findById(id);
     }
 
-    @CacheEvict(value = "messages", key = "#conversationId")
+    @CacheEvict(cacheNames = {CacheConfig.MESSAGES_CACHE, CacheConfig.LEGACY_MESSAGES_CACHE}, key = "#conversationId")
     public Message addMessage(Long conversationId, String role, String content) {
         return addMessage(conversationId, role, content, 0, 0);
     }
 
-    @CacheEvict(value = "messages", key = "#conversationId")
+    @CacheEvict(cacheNames = {CacheConfig.MESSAGES_CACHE, CacheConfig.LEGACY_MESSAGES_CACHE}, key = "#conversationId")
     public Message addMessage(Long conversationId, String role, String content, int inputTokens, int outputTokens) {
         Conversation conversation = conversationRepository.findById(conversationId)
                 .orElseThrow(() -> new ResourceNotFoundException("Conversation", conversationId));
@@ -60,16 +95,121 @@ public class ConversationService {
         conversation.setUpdatedAt(java.time.LocalDateTime.now());
         conversationRepository.save(conversation);
 
-        return messageRepository.save(message);
+        Message saved = messageRepository.save(message);
+        recordMessages(conversation.getUserId(), 1, inputTokens, outputTokens);
+        return saved;
+    }
+
+    /**
+     * Persists a full chat turn: one UPDATE of the conversation's {@code updated_at} and a
+     * single batched INSERT of the user and assistant messages, without loading the
+     * conversation. Token usage is recorded on the assistant message. The conversation must
+     * belong to {@code userId}, who is credited with the turn.
+     */
+    @CacheEvict(cacheNames = {CacheConfig.MESSAGES_CACHE, CacheConfig.LEGACY_MESSAGES_CACHE}, key = "#conversationId")
+    public List<Message> appendTurn(String userId, Long conversationId, String userContent, String assistantContent,
+            int inputTokens, int outputTokens) {
+        if (conversationRepository.touch(conversationId, userId, LocalDateTime.now()) == 0) {
+            throw new ResourceNotFoundException("Conversation", conversationId);
+        }
+        Conversation conversation = conversationRepository.getReferenceById(conversationId);
+
+        List<Message> saved = messageRepository.saveAll(List.of(
+                newMessage(conversation, "user", userContent, 0, 0),
+                newMessage(conversation, "assistant", assistantContent, inputTokens, outputTokens)));
+        recordMessages(userId, 2, inputTokens, outputTokens);
+        return saved;
     }
 
-    @Cacheable(value = "messages", key = "#conversationId")
-    public List<Message> getConversationMessages(Long conversationId) {
-        return messageRepository.findByConversationId(conversationId);
+    /**
+     * Lists messages newest first, keyed on {@code (timestamp, id)}; pass the returned
+     * cursor as {@code beforeId} for older messages. Only the default-sized first page is
+     * cached, which is what every chat view opens with.
+     */
+    @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.MESSAGES_CACHE, key = "#conversationId",
+            condition = "#beforeId == null and #limit == T(com.example.aichatbot.service.ConversationService).DEFAULT_PAGE_SIZE")
+    public CursorPage<MessageDto> getConversationMessages(Long conversationId, Long beforeId, int limit) {
+        int pageSize = pageSize(limit);
+        List<MessageDto> rows = beforeId == null
+                ? messageRepository.findLatest(conversationId, Limit.of(pageSize + 1))
+                : messageRepository.findBefore(conversationId, beforeId, Limit.of(pageSize + 1));
+        return toPage(rows, pageSize, last -> String.valueOf(last.id()));
     }
 
-    @CacheEvict(value = "messages", key = "#id")
+    @CacheEvict(cacheNames = {CacheConfig.MESSAGES_CACHE, CacheConfig.LEGACY_MESSAGES_CACHE}, key = "#id")
     public void deleteConversation(Long id) {
-        conversationRepository.deleteById(id);
+        conversationRepository.findById(id).ifPresent(conversation -> {
+            MessageTotalsDto totals = messageRepository.totalsByConversationId(id);
+            conversationRepository.delete(conversation);
+            counterService.record(conversation.getUserId(), Metric.CONVERSATIONS, -1);
+            recordMessages(conversation.getUserId(), -totals.messages(), -totals.inputTokens(), -totals.outputTokens());
+        });
+    }
+
+    /**
+     * Deletes all of a user's conversations and their messages.
+     */
+    @CacheEvict(cacheNames = {CacheConfig.MESSAGES_CACHE, CacheConfig.LEGACY_MESSAGES_CACHE}, allEntries = true)
+    public void deleteUserConversations(String userId) {
+        long conversations = conversationRepository.countByUserId(userId);
+        MessageTotalsDto totals = messageRepository.totalsByUserId(userId);
+        conversationRepository.deleteByUserId(userId);
+        counterService.record(userId, Metric.CONVERSATIONS, -conversations);
+        recordMessages(userId, -totals.messages(), -totals.inputTokens(), -totals.outputTokens());
+    }
+
+    private void recordMessages(String userId, long messages, long inputTokens, long outputTokens) {
+        counterService.record(userId, Metric.MESSAGES, messages);
+        counterService.record(userId, Metric.INPUT_TOKENS, inputTokens);
+        counterService.record(userId, Metric.OUTPUT_TOKENS, outputTokens);
+    }
+
+    private static int pageSize(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Rows are fetched with one extra element to detect whether another page exists.
+     */
+    private static <T> CursorPage<T> toPage(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        boolean hasMore = rows.size() > pageSize;
+        // ArrayList keeps the page serializable by the JSON cache serializer
+        List<T> items = new ArrayList<>(hasMore ? rows.subList(0, pageSize) : rows);
+        String nextCursor = hasMore ? cursorOf.apply(items.get(items.size() - 1)) : null;
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    private static String encodeCursor(String position) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (position.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            // Validate eagerly so a tampered cursor is a client error rather than a query failure
+            LocalDateTime.parse(position[0]);
+            Long.parseLong(position[1]);
+            return position;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private Message newMessage(Conversation conversation, String role, String content,
+            int inputTokens, int outputTokens) {
+        Message message = new Message();
+        message.setConversation(conversation);
+        message.setRole(role);
+        message.setContent(content);
+        message.setInputTokens(inputTokens);
+        message.setOutputTokens(outputTokens);
+        return message;
     }
 }
@@ -0,0 +1,54 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.exception.DeadlineExceededException;
+
+import java.time.Duration;
+
+/**
+ * The point in time by which a request must be answered. Created once per request and
+ * passed down, so each step derives its timeout from what is left instead of applying its
+ * own fixed one.
+ */
+public final class Deadline {
+
+    private final long expiresAtNanos;
+    private final Duration answerReserve;
+
+    private Deadline(long expiresAtNanos, Duration answerReserve) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.answerReserve = answerReserve;
+    }
+
+    /**
+     * @param budget        time from now until the deadline
+     * @param answerReserve time kept back for the answer; optional steps are skipped once
+     *                      less than this is left
+     */
+    public static Deadline after(Duration budget, Duration answerReserve) {
+        return new Deadline(System.nanoTime() + budget.toNanos(), answerReserve);
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Whether there is time for an optional step and still the reserve for the answer.
+     */
+    public boolean allowsOptionalStep() {
+        return remaining().compareTo(answerReserve) > 0;
+    }
+
+    /**
+     * Fails fast if the deadline has passed before {@code step} starts.
+     */
+    public void check(String step) {
+        if (isExpired()) {
+            throw new DeadlineExceededException(step);
+        }
+    }
+}
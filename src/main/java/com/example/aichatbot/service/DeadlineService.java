@@ -0,0 +1,20 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.config.DeadlineConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Starts the latency budget of a chat request, using the tenant's override if it has one.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeadlineService {
+
+    private final DeadlineConfig config;
+    private final UserTenantResolver tenantResolver;
+
+    public Deadline forChat(String userId) {
+        return Deadline.after(config.budgetFor(tenantResolver.tenantOf(userId)), config.getAnswerReserve());
+    }
+}
@@ -1,24 +1,37 @@
 package com.example.aichatbot.service;
 
 import com.example.aichatbot.dto.DocumentDto;
+import com.example.aichatbot.model.DocumentChunk;
+import com.example.aichatbot.repository.DocumentChunkRepository;
 import com.example.aichatbot.repository.DocumentRepository;
+import com.example.aichatbot.service.graph.ChunkExpander;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import com.example.aichatbot.service.metrics.PipelineMetrics.IngestionStage;
 import com.example.aichatbot.service.storage.FileStorageService;
+import com.example.aichatbot.model.IngestionJob;
 import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.InputStream;
-import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -26,26 +39,31 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DocumentService {
 
+    @Qualifier("backgroundChatModel")
     private final ChatModel chatModel;
-    private final EmbeddingStoreIngestor ingestor;
+    private final DocumentSplitter documentSplitter;
+    private final EmbeddingModel embeddingModel;
     private final JobService jobService;
     private final DocumentRepository documentRepository;
+    private final DocumentChunkRepository chunkRepository;
     private final EmbeddingStore<TextSegment> embeddingStore;
     private final FileStorageService fileStorageService;
+    private final StatisticsCounterService counterService;
+    private final PipelineMetrics metrics;
+    private final TokenUsageRecorder tokenUsageRecorder;
 
-    public void ingestFiles(String jobId, List<Path> filePaths, String userId) {
+    public void ingestFiles(String jobId, List<String> fileKeys, String userId) {
         log.info("Job {}: Starting ingestion for user {}...", jobId, userId);
 
-        for (Path path : filePaths) {
-            String filename = path.toString();
+        for (String fileKey : fileKeys) {
             try {
-                processSingleFile(filename, userId);
+                processSingleFile(jobId, fileKey, userId);
                 jobService.updateProgress(jobId);
             } catch (Exception e) {
-                log.error("Job {}: Failed to process file {}", jobId, filename, e);
-                jobService.addError(jobId, "File " + filename + ": " + e.getMessage());
+                log.error("Job {}: Failed to process file {}", jobId, fileKey, e);
+                jobService.addError(jobId, "File " + fileKey + ": " + e.getMessage());
             } finally {
-                fileStorageService.delete(filename);
+                fileStorageService.delete(fileKey);
             }
         }
 
@@ -64,29 +82,60 @@ public class DocumentService {
             log.error("Failed to remove embeddings for user: {}", userId, e);
         }
 
+        chunkRepository.deleteByUserId(userId);
+        long documents = documentRepository.countByUserId(userId);
         documentRepository.deleteByUserId(userId);
+        counterService.record(userId, StatisticsCounterService.Metric.DOCUMENTS, -documents);
     }
 
-    private void processSingleFile(String filename, String userId) throws Exception {
-        try (InputStream inputStream = fileStorageService.load(filename)) {
+    private void processSingleFile(String jobId, String fileKey, String userId) throws Exception {
+        String filename = fileStorageService.filenameOf(fileKey);
+        jobService.updatePhase(jobId, filename, IngestionJob.JobPhase.PARSING);
+        try (InputStream inputStream = fileStorageService.load(fileKey)) {
             ApacheTikaDocumentParser parser = new ApacheTikaDocumentParser();
-            Document document = parser.parse(inputStream);
-            document.metadata().put("filename", fileStorageService.resolve(filename).getFileName().toString());
+            Document document = metrics.time(IngestionStage.PARSE, () -> parser.parse(inputStream));
+            document.metadata().put("filename", filename);
             document.metadata().put("userId", userId);
-            ingestor.ingest(document);
+            String documentKey = UUID.randomUUID().toString();
+
+            // Split, embed and store as separate steps so each phase can be reported
+            List<TextSegment> segments = metrics.time(IngestionStage.SPLIT, () -> documentSplitter.split(document));
+            for (int i = 0; i < segments.size(); i++) {
+                segments.get(i).metadata()
+                        .put(ChunkExpander.DOCUMENT_KEY, documentKey)
+                        .put(ChunkExpander.CHUNK_INDEX, i);
+            }
+            if (!segments.isEmpty()) {
+                jobService.updatePhase(jobId, filename, IngestionJob.JobPhase.EMBEDDING);
+                List<Embedding> embeddings = metrics.time(IngestionStage.EMBED,
+                        () -> embeddingModel.embedAll(segments).content());
+
+                jobService.updatePhase(jobId, filename, IngestionJob.JobPhase.STORING);
+                metrics.time(IngestionStage.STORE, () -> {
+                    embeddingStore.addAll(embeddings, segments);
+                    // Kept next to the vectors so retrieval can widen a match to its neighbours
+                    return chunkRepository.saveAll(chunksOf(documentKey, userId, segments));
+                });
+            }
 
             com.example.aichatbot.model.Document dbDocument = new com.example.aichatbot.model.Document();
-            dbDocument.setFilename(fileStorageService.resolve(filename).getFileName().toString());
+            dbDocument.setFilename(filename);
             dbDocument.setUserId(userId);
             dbDocument.setFileType(getFileExtension(filename));
+            dbDocument.setDocumentKey(documentKey);
+            dbDocument.setChunkCount(segments.size());
             dbDocument.setUploadDate(LocalDateTime.now());
 
             try {
                 String text = document.text();
                 if (text != null && !text.isBlank()) {
+                    jobService.updatePhase(jobId, filename, IngestionJob.JobPhase.SUMMARIZING);
                     String limitedText = text.substring(0, Math.min(text.length(), 2000));
                     String prompt = "Summarize the following text in 50 words or less:\n\n" + limitedText;
-                    String summary = chatModel.chat(prompt);
+                    ChatResponse response = metrics.time(IngestionStage.SUMMARIZE,
+                            () -> chatModel.chat(ChatRequest.builder().messages(UserMessage.from(prompt)).build()));
+                    tokenUsageRecorder.record(userId, null, "summarize", response.tokenUsage());
+                    String summary = response.aiMessage().text();
                     dbDocument.setSummary(summary);
                     log.debug("Generated summary for document {}: {}", filename, summary);
                 }
@@ -94,12 +143,27 @@ public class DocumentService {
                 log.warn("Failed to generate summary for document {}: {}", filename, e.getMessage());
             }
 
-            com.example.aichatbot.model.Document saved = documentRepository.save(dbDocument);
+            com.example.aichatbot.model.Document saved = metrics.time(IngestionStage.PERSIST,
+                    () -> documentRepository.save(dbDocument));
+            counterService.record(userId, StatisticsCounterService.Metric.DOCUMENTS, 1);
             log.info("Successfully persisted document to DB. ID: {}, Filename: {}, UserID: {}",
                     saved.getId(), saved.getFilename(), saved.getUserId());
         }
     }
 
+    private static List<DocumentChunk> chunksOf(String documentKey, String userId, List<TextSegment> segments) {
+        List<DocumentChunk> chunks = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            DocumentChunk chunk = new DocumentChunk();
+            chunk.setDocumentKey(documentKey);
+            chunk.setUserId(userId);
+            chunk.setChunkIndex(i);
+            chunk.setContent(segments.get(i).text());
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
     private String getFileExtension(String filename) {
         int lastDot = filename.lastIndexOf('.');
         return lastDot > 0 ? filename.substring(lastDot + 1).toUpperCase() : "UNKNOWN";
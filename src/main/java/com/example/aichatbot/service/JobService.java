@@ -4,19 +4,47 @@ import com.example.aichatbot.model.IngestionJob;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * Tracks ingestion jobs as Redis hashes ({@code ingestion-job:<id>}) with the errors in a
+ * capped list ({@code ingestion-job:<id>:errors}). Workers only issue atomic field updates
+ * (HINCRBY, HSET, RPUSH), so concurrent consumers never overwrite each other's progress,
+ * and every update plus its TTL refresh goes out as a single pipelined round trip.
+ * <p>
+ * Each update also publishes the job id on {@code app.job.progress-channel}, so subscribers
+ * are pushed changes instead of polling {@link #getJob(String)}.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class JobService {
 
-    private final RedisTemplate<String, IngestionJob> redisTemplate;
+    private static final String KEY_PREFIX = "ingestion-job:";
+    private static final String ERRORS_SUFFIX = ":errors";
+
+    private static final String FIELD_JOB_ID = "jobId";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_TOTAL_FILES = "totalFiles";
+    private static final String FIELD_PROCESSED_FILES = "processedFiles";
+    private static final String FIELD_START_TIME = "startTime";
+    private static final String FIELD_END_TIME = "endTime";
+    private static final String FIELD_PHASE = "phase";
+    private static final String FIELD_CURRENT_FILE = "currentFile";
+
+    private final StringRedisTemplate redisTemplate;
 
     @Value("${app.job.ttl.active-minutes}")
     private long activeJobTtlMinutes;
@@ -24,6 +52,12 @@ public class JobService {
     @Value("${app.job.ttl.completed-minutes}")
     private long completedJobTtlMinutes;
 
+    @Value("${app.job.max-errors:100}")
+    private int maxErrors;
+
+    @Value("${app.job.progress-channel:ingestion-job-progress}")
+    private String progressChannel;
+
     public IngestionJob createJob(int totalFiles) {
         String id = UUID.randomUUID().toString();
         IngestionJob job = new IngestionJob();
@@ -32,43 +66,144 @@ public class JobService {
         job.setTotalFiles(totalFiles);
         job.setStartTime(LocalDateTime.now());
 
-        saveJob(job, activeJobTtlMinutes);
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(FIELD_JOB_ID, id);
+        fields.put(FIELD_STATUS, job.getStatus().name());
+        fields.put(FIELD_TOTAL_FILES, String.valueOf(totalFiles));
+        fields.put(FIELD_PROCESSED_FILES, "0");
+        fields.put(FIELD_START_TIME, job.getStartTime().toString());
+
+        pipelined(ops -> {
+            ops.opsForHash().putAll(jobKey(id), fields);
+            ops.expire(jobKey(id), Duration.ofMinutes(activeJobTtlMinutes));
+            ops.convertAndSend(progressChannel, id);
+        });
         return job;
     }
 
+    /**
+     * Assembles the job view from the hash and the error list, or returns {@code null} if the
+     * job is unknown or has expired.
+     */
+    @SuppressWarnings("unchecked")
     public IngestionJob getJob(String jobId) {
-        return redisTemplate.opsForValue().get(jobId);
+        List<Object> results = pipelined(ops -> {
+            ops.opsForHash().entries(jobKey(jobId));
+            ops.opsForList().range(errorsKey(jobId), 0, -1);
+        });
+
+        Map<Object, Object> fields = results.isEmpty() ? null : (Map<Object, Object>) results.get(0);
+        // Updates racing an expiry can leave a fragment without the fields set by createJob
+        if (fields == null || !fields.containsKey(FIELD_JOB_ID)) {
+            return null;
+        }
+        List<String> errors = results.size() > 1 && results.get(1) != null
+                ? new ArrayList<>((List<String>) results.get(1))
+                : new ArrayList<>();
+
+        IngestionJob job = new IngestionJob();
+        job.setJobId((String) fields.get(FIELD_JOB_ID));
+        job.setStatus(IngestionJob.JobStatus.valueOf((String) fields.get(FIELD_STATUS)));
+        job.setTotalFiles(parseInt(fields.get(FIELD_TOTAL_FILES)));
+        job.setProcessedFiles(parseInt(fields.get(FIELD_PROCESSED_FILES)));
+        job.setStartTime(parseTime(fields.get(FIELD_START_TIME)));
+        job.setEndTime(parseTime(fields.get(FIELD_END_TIME)));
+        job.setPhase(fields.containsKey(FIELD_PHASE)
+                ? IngestionJob.JobPhase.valueOf((String) fields.get(FIELD_PHASE))
+                : null);
+        job.setCurrentFile((String) fields.get(FIELD_CURRENT_FILE));
+        job.setErrors(errors);
+        job.setEtaSeconds(estimateRemainingSeconds(job));
+        return job;
+    }
+
+    /**
+     * Records which file is being worked on and in which phase.
+     */
+    public void updatePhase(String jobId, String filename, IngestionJob.JobPhase phase) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(FIELD_STATUS, IngestionJob.JobStatus.PROCESSING.name());
+        fields.put(FIELD_PHASE, phase.name());
+        fields.put(FIELD_CURRENT_FILE, filename);
+
+        pipelined(ops -> {
+            ops.opsForHash().putAll(jobKey(jobId), fields);
+            expireAll(ops, jobId, activeJobTtlMinutes);
+            ops.convertAndSend(progressChannel, jobId);
+        });
     }
 
     public void updateProgress(String jobId) {
-        IngestionJob job = getJob(jobId);
-        if (job != null) {
-            job.setStatus(IngestionJob.JobStatus.PROCESSING);
-            job.setProcessedFiles(job.getProcessedFiles() + 1);
+        pipelined(ops -> {
+            ops.opsForHash().increment(jobKey(jobId), FIELD_PROCESSED_FILES, 1);
+            ops.opsForHash().put(jobKey(jobId), FIELD_STATUS, IngestionJob.JobStatus.PROCESSING.name());
             // Refresh TTL on activity
-            saveJob(job, activeJobTtlMinutes);
-        }
+            expireAll(ops, jobId, activeJobTtlMinutes);
+            ops.convertAndSend(progressChannel, jobId);
+        });
     }
 
     public void markCompleted(String jobId) {
-        IngestionJob job = getJob(jobId);
-        if (job != null) {
-            job.setStatus(IngestionJob.JobStatus.COMPLETED);
-            job.setEndTime(LocalDateTime.now());
+        pipelined(ops -> {
+            ops.opsForHash().put(jobKey(jobId), FIELD_STATUS, IngestionJob.JobStatus.COMPLETED.name());
+            ops.opsForHash().put(jobKey(jobId), FIELD_END_TIME, LocalDateTime.now().toString());
+            ops.opsForHash().delete(jobKey(jobId), FIELD_PHASE, FIELD_CURRENT_FILE);
             // Shorten TTL for completed jobs
-            saveJob(job, completedJobTtlMinutes);
-        }
+            expireAll(ops, jobId, completedJobTtlMinutes);
+            ops.convertAndSend(progressChannel, jobId);
+        });
     }
 
     public void addError(String jobId, String errorMsg) {
-        IngestionJob job = getJob(jobId);
-        if (job != null) {
-            job.getErrors().add(errorMsg);
-            saveJob(job, activeJobTtlMinutes);
+        pipelined(ops -> {
+            ops.opsForList().rightPush(errorsKey(jobId), errorMsg);
+            // Keep only the most recent errors so a bad batch cannot grow the list unbounded
+            ops.opsForList().trim(errorsKey(jobId), -maxErrors, -1);
+            expireAll(ops, jobId, activeJobTtlMinutes);
+            ops.convertAndSend(progressChannel, jobId);
+        });
+    }
+
+    private Long estimateRemainingSeconds(IngestionJob job) {
+        if (job.getStatus() != IngestionJob.JobStatus.PROCESSING
+                || job.getProcessedFiles() <= 0 || job.getStartTime() == null) {
+            return null;
         }
+        long elapsedSeconds = Duration.between(job.getStartTime(), LocalDateTime.now()).toSeconds();
+        int remainingFiles = Math.max(0, job.getTotalFiles() - job.getProcessedFiles());
+        return elapsedSeconds * remainingFiles / job.getProcessedFiles();
+    }
+
+    private void expireAll(RedisOperations<String, String> ops, String jobId, long ttlMinutes) {
+        Duration ttl = Duration.ofMinutes(ttlMinutes);
+        ops.expire(jobKey(jobId), ttl);
+        ops.expire(errorsKey(jobId), ttl);
+    }
+
+    private List<Object> pipelined(Consumer<RedisOperations<String, String>> commands) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept((RedisOperations<String, String>) operations);
+                return null;
+            }
+        });
+    }
+
+    private static String jobKey(String jobId) {
+        return KEY_PREFIX + jobId;
+    }
+
+    private static String errorsKey(String jobId) {
+        return KEY_PREFIX + jobId + ERRORS_SUFFIX;
+    }
+
+    private static int parseInt(Object value) {
+        return value == null ? 0 : Integer.parseInt((String) value);
     }
 
-    private void saveJob(IngestionJob job, long ttlMinutes) {
-        redisTemplate.opsForValue().set(job.getJobId(), job, ttlMinutes, TimeUnit.MINUTES);
+    private static LocalDateTime parseTime(Object value) {
+        return value == null ? null : LocalDateTime.parse((String) value);
     }
-}
\ No newline at end of file
+}
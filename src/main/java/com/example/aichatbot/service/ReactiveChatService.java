@@ -0,0 +1,282 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.dto.BotConfigDto;
+import com.example.aichatbot.dto.ChatStreamEventDto;
+import com.example.aichatbot.exception.DeadlineExceededException;
+import com.example.aichatbot.security.GuardResult;
+import com.example.aichatbot.security.LlmGuardService;
+import com.example.aichatbot.service.graph.PromptAssembler;
+import com.example.aichatbot.service.graph.QdrantVectorSearch;
+import com.example.aichatbot.service.graph.RagPrompts;
+import com.example.aichatbot.service.graph.RetrievalPolicy;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import com.example.aichatbot.service.metrics.PipelineMetrics.ChatStage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming variant of {@link ChatService}. Runs the same steps as the RAG graph (guard,
+ * retrieve, rerank, grade, generate or clarify) as one reactive pipeline and emits the
+ * answer token by token. Quota admission happens in the controller, before the
+ * conversation is created.
+ * <p>
+ * Qdrant and the chat model are called through their asynchronous APIs, so a chat waiting
+ * on them holds no thread. The embedding clients and JPA only offer blocking calls; those
+ * short steps run on the bounded elastic scheduler. Nothing is emitted before the answer
+ * starts, so guard errors still map to their HTTP status.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReactiveChatService {
+
+    static final String BLOCKED_OUTPUT = "I'm sorry, but I can't provide a response to that request.";
+
+    /**
+     * Characters of the answer so far that are checked again with each new chunk. The output
+     * patterns span a few words at most, so one split across chunks is still caught.
+     */
+    static final int GUARD_WINDOW = 64;
+
+    private final LlmGuardService guardService;
+    private final EmbeddingModel embeddingModel;
+    private final QdrantVectorSearch vectorSearch;
+    private final StreamingAssistant streamingAssistant;
+    private final ConversationService conversationService;
+    private final TokenUsageRecorder tokenUsageRecorder;
+    private final PipelineMetrics metrics;
+    private final PromptAssembler promptAssembler;
+    private final RetrievalProfileResolver retrievalProfileResolver;
+    private final RetrievalPolicy retrievalPolicy;
+
+    /**
+     * Per-request state carried through the pipeline.
+     */
+    private static final class Turn {
+        private final String userId;
+        private final Long conversationId;
+        private final String message;
+        private final Deadline deadline;
+        private final BotConfigDto botConfig;
+        private RetrievalProfile profile = RetrievalProfile.DEFAULT;
+        private double rerankScore;
+        private final StringBuilder response = new StringBuilder();
+        private final AtomicInteger inputTokens = new AtomicInteger();
+        private final AtomicInteger outputTokens = new AtomicInteger();
+        private boolean blocked;
+
+        private Turn(String userId, Long conversationId, String message, BotConfigDto botConfig,
+                     Deadline deadline) {
+            this.userId = userId;
+            this.conversationId = conversationId;
+            this.message = message;
+            this.botConfig = botConfig;
+            this.deadline = deadline;
+        }
+
+        private String memoryId() {
+            return String.valueOf(conversationId);
+        }
+    }
+
+    /**
+     * Streams the answer. If the deadline passes before the answer is complete the stream
+     * fails with {@link DeadlineExceededException} and the turn is not saved. Steps not yet
+     * started are skipped; a model stream already running is left to finish on its own.
+     */
+    public Flux<ChatStreamEventDto> streamChat(String userId, Long conversationId, String message,
+                                               BotConfigDto botConfig, Deadline deadline) {
+        return Flux.defer(() -> {
+            Turn turn = new Turn(userId, conversationId, message, botConfig, deadline);
+            Timer.Sample total = metrics.start();
+            return Mono.fromRunnable(() -> prepare(turn))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then(Mono.defer(() -> retrieve(turn)))
+                    .flatMapMany(documents -> grade(turn, documents)
+                            .flatMapMany(relevant -> relevant
+                                    ? generatePrompt(turn, documents)
+                                            .flatMapMany(prompt -> answer(turn, prompt.systemPrompt(),
+                                                    prompt.question(), ChatStage.GENERATE))
+                                    : answer(turn, RagPrompts.ASSISTANT_SYSTEM_PROMPT, RagPrompts.clarify(message),
+                                            ChatStage.CLARIFY)))
+                    .transform(answer -> withDeadline(answer, deadline))
+                    .concatWith(Mono.defer(() -> save(turn)))
+                    .doFinally(signal -> metrics.stop(total, ChatStage.TOTAL, userId, outcomeOf(signal)));
+        });
+    }
+
+    private void prepare(Turn turn) {
+        Timer.Sample sample = metrics.start();
+        GuardResult input = guardService.validateInput(turn.message);
+        metrics.stop(sample, ChatStage.GUARD_INPUT, turn.userId,
+                input.isBlocked() ? PipelineMetrics.BLOCKED : PipelineMetrics.SUCCESS);
+        if (input.isBlocked()) {
+            throw new IllegalArgumentException("Input validation failed: " + String.join(", ", input.getViolations()));
+        }
+        turn.profile = retrievalProfileResolver.resolve(turn.userId, turn.botConfig);
+    }
+
+    private Mono<List<String>> retrieve(Turn turn) {
+        log.info("Retrieving documents for query: {} and user: {}", turn.message, turn.userId);
+        // The embedding providers only have blocking clients
+        return Mono.fromCallable(() -> metrics.time(ChatStage.EMBED, turn.userId,
+                        () -> embeddingModel.embed(turn.message).content()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(embedding -> timed(ChatStage.SEARCH, turn,
+                        vectorSearch.search(embedding, turn.userId, retrievalPolicy.searchProfile(turn.profile))))
+                .doOnNext(matches -> metrics.recordRetrieval(turn.userId, matches.stream()
+                        .map(QdrantVectorSearch.Match::score)
+                        .toList()))
+                .flatMap(matches -> select(turn, matches));
+    }
+
+    /**
+     * Reranks the matches if the profile asks for it and expands them into documents.
+     */
+    private Mono<List<String>> select(Turn turn, List<QdrantVectorSearch.Match> matches) {
+        List<TextSegment> segments = matches.stream().map(QdrantVectorSearch.Match::segment).toList();
+        Mono<RetrievalPolicy.Selection> selection = Mono.fromCallable(() -> retrievalPolicy.select(turn.userId,
+                turn.message, segments, turn.profile, turn.deadline));
+        if (retrievalPolicy.selectionBlocks(turn.profile, segments)) {
+            // Cross-encoder scoring is CPU bound and the chunk table is read through JPA
+            selection = selection.subscribeOn(Schedulers.boundedElastic());
+        }
+        return selection.map(selected -> {
+            turn.rerankScore = selected.rerankScore();
+            return selected.documents();
+        });
+    }
+
+    private Mono<Boolean> grade(Turn turn, List<String> documents) {
+        Optional<Boolean> verdict = retrievalPolicy.verdictWithoutGrader(documents, turn.profile, turn.deadline,
+                turn.rerankScore);
+        if (verdict.isPresent()) {
+            return Mono.just(verdict.get());
+        }
+        return tokens(turn, RagPrompts.GRADER_MEMORY_ID, RagPrompts.GRADER_SYSTEM_PROMPT,
+                RagPrompts.grade(turn.message, documents), ChatStage.GRADE)
+                .collect(Collectors.joining())
+                .map(RagPrompts::isRelevant)
+                .doOnNext(relevant -> log.info("Relevance: {}", relevant));
+    }
+
+    private Mono<PromptAssembler.AssembledPrompt> generatePrompt(Turn turn, List<String> documents) {
+        // Looking up the tenant's token budget may hit the database
+        return Mono.fromCallable(() -> promptAssembler.assemble(turn.userId, turn.memoryId(), turn.message,
+                        documents))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Flux<ChatStreamEventDto> answer(Turn turn, String systemPrompt, String prompt, ChatStage stage) {
+        return tokens(turn, turn.memoryId(), systemPrompt, prompt, stage)
+                .takeWhile(chunk -> !turn.blocked)
+                .map(chunk -> {
+                    // Check the new chunk with the end of what came before, not the whole answer again
+                    String recent = turn.response.substring(Math.max(0, turn.response.length() - GUARD_WINDOW))
+                            + chunk;
+                    turn.response.append(chunk);
+                    // The guard rejects blank output, which the first chunks may well be
+                    if (!recent.isBlank() && isBlocked(turn, recent)) {
+                        log.warn("Output validation failed for user {}", turn.userId);
+                        turn.blocked = true;
+                        return ChatStreamEventDto.replace(BLOCKED_OUTPUT);
+                    }
+                    return ChatStreamEventDto.token(guardService.sanitizeOutput(chunk));
+                });
+    }
+
+    private boolean isBlocked(Turn turn, String output) {
+        Timer.Sample sample = metrics.start();
+        boolean blocked = guardService.validateOutput(output).isBlocked();
+        metrics.stop(sample, ChatStage.GUARD_OUTPUT, turn.userId,
+                blocked ? PipelineMetrics.BLOCKED : PipelineMetrics.SUCCESS);
+        return blocked;
+    }
+
+    /**
+     * Streams one model call and records its latency and token usage when it completes.
+     */
+    private Flux<String> tokens(Turn turn, String memoryId, String systemPrompt, String prompt, ChatStage stage) {
+        Flux<String> stream = Flux.create(sink -> streamingAssistant.chat(memoryId, systemPrompt, prompt)
+                .onPartialResponse(sink::next)
+                .onCompleteResponse(response -> {
+                    recordUsage(turn, stage, response.tokenUsage());
+                    sink.complete();
+                })
+                .onError(sink::error)
+                .start());
+        return timed(stage, turn, stream);
+    }
+
+    private void recordUsage(Turn turn, ChatStage stage, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        tokenUsageRecorder.record(turn.userId, turn.memoryId(), stage.name().toLowerCase(), usage);
+        metrics.recordTokens(stage, turn.userId, usage);
+        turn.inputTokens.addAndGet(usage.inputTokenCount() == null ? 0 : usage.inputTokenCount());
+        turn.outputTokens.addAndGet(usage.outputTokenCount() == null ? 0 : usage.outputTokenCount());
+    }
+
+    private Mono<ChatStreamEventDto> save(Turn turn) {
+        String response = turn.blocked ? BLOCKED_OUTPUT : turn.response.toString();
+        return Mono.fromCallable(() -> {
+                    metrics.time(ChatStage.PERSIST, turn.userId, () -> conversationService.appendTurn(turn.userId,
+                            turn.conversationId, turn.message, response,
+                            turn.inputTokens.get(), turn.outputTokens.get()));
+                    return ChatStreamEventDto.done(turn.conversationId);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private <T> Mono<T> timed(ChatStage stage, Turn turn, Mono<T> step) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = metrics.start();
+            return step.doFinally(signal -> metrics.stop(sample, stage, turn.userId, outcomeOf(signal)));
+        });
+    }
+
+    private <T> Flux<T> timed(ChatStage stage, Turn turn, Flux<T> step) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = metrics.start();
+            return step.doFinally(signal -> metrics.stop(sample, stage, turn.userId, outcomeOf(signal)));
+        });
+    }
+
+    /**
+     * Fails the stream once the deadline passes. Each event re-arms the timeout with what is
+     * left, so this bounds the whole stream rather than the gap between events.
+     */
+    private static <T> Flux<T> withDeadline(Flux<T> stream, Deadline deadline) {
+        if (deadline == null) {
+            return stream;
+        }
+        return stream.timeout(Mono.defer(() -> Mono.delay(deadline.remaining())),
+                        event -> Mono.delay(deadline.remaining()))
+                .onErrorMap(TimeoutException.class, e -> new DeadlineExceededException("answer"));
+    }
+
+    /**
+     * A cancelled step, e.g. the client going away or the output guard cutting the answer
+     * short, is not an error.
+     */
+    private static String outcomeOf(SignalType signal) {
+        return signal == SignalType.ON_ERROR ? PipelineMetrics.ERROR : PipelineMetrics.SUCCESS;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.dto.BotConfigDto;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Works out the retrieval profile for one chat: the user's tenant profile with the request's
+ * overrides on top. Overrides outside the configured limits are capped rather than rejected.
+ */
+@Service
+@RequiredArgsConstructor
+public class RetrievalProfileResolver {
+
+    private final UserTenantResolver tenantResolver;
+    private final RetrievalProfileService profileService;
+
+    public RetrievalProfile resolve(String userId, BotConfigDto botConfig) {
+        RetrievalProfile tenantProfile = profileService.forTenant(tenantResolver.tenantOf(userId));
+        return profileService.apply(tenantProfile, botConfig == null ? null : botConfig.retrieval());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.config.CacheConfig;
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.dto.RetrievalProfileDto;
+import com.example.aichatbot.model.TenantRetrievalProfile;
+import com.example.aichatbot.repository.TenantRetrievalProfileRepository;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Tenants' retrieval profiles, layered over {@code app.retrieval.defaults}. Profiles are
+ * read on every chat, so they are cached per tenant and evicted when an admin changes them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetrievalProfileService {
+
+    private final TenantRetrievalProfileRepository repository;
+    private final RetrievalConfig config;
+
+    @Cacheable(value = CacheConfig.RETRIEVAL_PROFILES_CACHE, key = "#tenantId")
+    public RetrievalProfile forTenant(String tenantId) {
+        RetrievalProfile defaults = config.getDefaults().toProfile();
+        return repository.findById(tenantId)
+                .map(profile -> apply(defaults, new RetrievalProfileDto(profile.getMaxResults(),
+                        profile.getMinScore(), profile.getSearchEf(), profile.getRerank(), profile.getGrading())))
+                .orElse(defaults);
+    }
+
+    /**
+     * Replaces the tenant's settings; null fields go back to the defaults.
+     */
+    @Transactional
+    @CacheEvict(value = CacheConfig.RETRIEVAL_PROFILES_CACHE, key = "#tenantId")
+    public RetrievalProfile update(String tenantId, RetrievalProfileDto settings) {
+        validate(settings);
+        TenantRetrievalProfile profile = repository.findById(tenantId).orElseGet(() -> {
+            TenantRetrievalProfile created = new TenantRetrievalProfile();
+            created.setTenantId(tenantId);
+            return created;
+        });
+        profile.setMaxResults(settings.maxResults());
+        profile.setMinScore(settings.minScore());
+        profile.setSearchEf(settings.searchEf());
+        profile.setRerank(settings.rerank());
+        profile.setGrading(settings.grading());
+        profile.setUpdatedAt(Instant.now());
+        repository.save(profile);
+        log.info("Updated retrieval profile for tenant {}: {}", tenantId, settings);
+        return apply(config.getDefaults().toProfile(), settings);
+    }
+
+    /**
+     * Overrides the non-null fields of {@code base}, capped at {@code app.retrieval.limits}.
+     */
+    public RetrievalProfile apply(RetrievalProfile base, RetrievalProfileDto overrides) {
+        if (overrides == null) {
+            return base;
+        }
+        RetrievalConfig.Limits limits = config.getLimits();
+        return new RetrievalProfile(
+                overrides.maxResults() == null ? base.maxResults()
+                        : Math.max(1, Math.min(overrides.maxResults(), limits.getMaxResults())),
+                overrides.minScore() == null ? base.minScore()
+                        : Math.max(0.0, Math.min(overrides.minScore(), 1.0)),
+                overrides.searchEf() == null ? base.searchEf()
+                        : Math.max(0, Math.min(overrides.searchEf(), limits.getSearchEf())),
+                overrides.rerank() == null ? base.rerank() : overrides.rerank(),
+                overrides.grading() == null ? base.grading() : overrides.grading());
+    }
+
+    private void validate(RetrievalProfileDto settings) {
+        RetrievalConfig.Limits limits = config.getLimits();
+        if (settings.maxResults() != null
+                && (settings.maxResults() < 1 || settings.maxResults() > limits.getMaxResults())) {
+            throw new IllegalArgumentException("maxResults must be between 1 and " + limits.getMaxResults());
+        }
+        if (settings.minScore() != null && (settings.minScore() < 0 || settings.minScore() > 1)) {
+            throw new IllegalArgumentException("minScore must be between 0 and 1");
+        }
+        if (settings.searchEf() != null
+                && (settings.searchEf() < 0 || settings.searchEf() > limits.getSearchEf())) {
+            throw new IllegalArgumentException("searchEf must be between 0 and " + limits.getSearchEf());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.model.StatisticsCounter;
+import com.example.aichatbot.repository.StatisticsCounterRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Maintains the totals shown by {@link StatisticsService} as writes happen, so reading them
+ * costs a few primary key lookups regardless of history size.
+ * <p>
+ * Deltas are buffered per instance once the writing transaction commits and flushed on
+ * {@code app.statistics.flush-interval-ms} as additive upserts. Reads add this instance's
+ * unflushed deltas, so a user sees their own writes immediately; other instances catch up
+ * within one flush interval. Whatever is still buffered is flushed on shutdown.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StatisticsCounterService {
+
+    public enum Metric {
+        USERS, CONVERSATIONS, MESSAGES, DOCUMENTS, INPUT_TOKENS, OUTPUT_TOKENS
+    }
+
+    static final String GLOBAL_SCOPE = "global";
+    private static final String USER_SCOPE_PREFIX = "user:";
+
+    private record CounterKey(String scope, Metric metric) {
+    }
+
+    private final StatisticsCounterRepository counterRepository;
+    private final Map<CounterKey, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Adjusts a metric for the user and the global total.
+     */
+    public void record(String userId, Metric metric, long delta) {
+        afterCommit(() -> {
+            add(GLOBAL_SCOPE, metric, delta);
+            add(userScope(userId), metric, delta);
+        });
+    }
+
+    /**
+     * Adjusts a metric that has no per-user breakdown, such as the number of users.
+     */
+    public void recordGlobal(Metric metric, long delta) {
+        afterCommit(() -> add(GLOBAL_SCOPE, metric, delta));
+    }
+
+    /**
+     * Drops the per-user counters of a deleted user. Global totals are left alone; whatever
+     * deleted the user's content has already adjusted them.
+     */
+    public void forgetUser(String userId) {
+        afterCommit(() -> {
+            String scope = userScope(userId);
+            pending.keySet().removeIf(key -> key.scope().equals(scope));
+            counterRepository.deleteByScope(scope);
+        });
+    }
+
+    public Map<Metric, Long> getGlobalCounters() {
+        return read(GLOBAL_SCOPE);
+    }
+
+    public Map<Metric, Long> getUserCounters(String userId) {
+        return read(userScope(userId));
+    }
+
+    @Scheduled(fixedDelayString = "${app.statistics.flush-interval-ms:5000}")
+    public void flush() {
+        pending.forEach((key, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta == 0) {
+                return;
+            }
+            try {
+                counterRepository.add(key.scope(), key.metric().name(), delta);
+            } catch (RuntimeException e) {
+                // Keep the delta for the next flush rather than losing it
+                adder.add(delta);
+                log.warn("Failed to flush counter {} {}: {}", key.scope(), key.metric(), e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        pending.forEach((key, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                log.error("Dropping counter delta {} for {} {} on shutdown", delta, key.scope(), key.metric());
+            }
+        });
+    }
+
+    private Map<Metric, Long> read(String scope) {
+        Map<Metric, Long> counters = new EnumMap<>(Metric.class);
+        for (Metric metric : Metric.values()) {
+            counters.put(metric, 0L);
+        }
+        for (StatisticsCounter counter : counterRepository.findByScope(scope)) {
+            try {
+                counters.merge(Metric.valueOf(counter.getId().getMetric()), counter.getValue(), Long::sum);
+            } catch (IllegalArgumentException e) {
+                log.debug("Ignoring unknown metric {}", counter.getId().getMetric());
+            }
+        }
+        pending.forEach((key, adder) -> {
+            if (key.scope().equals(scope)) {
+                counters.merge(key.metric(), adder.sum(), Long::sum);
+            }
+        });
+        return counters;
+    }
+
+    private void add(String scope, Metric metric, long delta) {
+        if (delta != 0) {
+            pending.computeIfAbsent(new CounterKey(scope, metric), k -> new LongAdder()).add(delta);
+        }
+    }
+
+    /**
+     * Counts only what was actually committed; outside a transaction the change is applied
+     * right away.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static String userScope(String userId) {
+        return USER_SCOPE_PREFIX + userId;
+    }
+}
@@ -3,53 +3,42 @@ package com.example.aichatbot.service;
 import com.example.aichatbot.dto.StatisticsDto;
 import com.example.aichatbot.dto.UserStatisticsDto;
 import com.example.aichatbot.repository.ConversationRepository;
-import com.example.aichatbot.repository.DocumentRepository;
-import com.example.aichatbot.repository.MessageRepository;
-import com.example.aichatbot.repository.UserRepository;
+import com.example.aichatbot.service.StatisticsCounterService.Metric;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
+/**
+ * Serves totals from {@link StatisticsCounterService}. Only the 24h activity counts are still
+ * queried, as index range scans bounded by recent activity.
+ */
 @Service
 @Transactional(readOnly = true)
 public class StatisticsService {
 
-    private final UserRepository userRepository;
+    private final StatisticsCounterService counterService;
     private final ConversationRepository conversationRepository;
-    private final MessageRepository messageRepository;
-    private final DocumentRepository documentRepository;
 
-    public StatisticsService(UserRepository userRepository,
-                             ConversationRepository conversationRepository,
-                             MessageRepository messageRepository,
-                             DocumentRepository documentRepository) {
-        this.userRepository = userRepository;
+    public StatisticsService(StatisticsCounterService counterService,
+                             ConversationRepository conversationRepository) {
+        this.counterService = counterService;
         this.conversationRepository = conversationRepository;
-        this.messageRepository = messageRepository;
-        this.documentRepository = documentRepository;
     }
 
     public StatisticsDto getStatistics() {
-        long totalUsers = userRepository.count();
-        long totalConversations = conversationRepository.count();
-        long totalMessages = messageRepository.count();
-        long totalDocuments = documentRepository.count();
+        Map<Metric, Long> global = counterService.getGlobalCounters();
         long activeConversations24h = conversationRepository
                 .countByUpdatedAtAfter(LocalDateTime.now().minusHours(24));
 
-        Long totalInputTokens = messageRepository.sumInputTokens();
-        Long totalOutputTokens = messageRepository.sumOutputTokens();
-        long totalTokens = (totalInputTokens != null ? totalInputTokens : 0)
-                           + (totalOutputTokens != null ? totalOutputTokens : 0);
-
         return new StatisticsDto(
-                totalUsers,
-                totalConversations,
-                totalMessages,
-                totalDocuments,
+                global.get(Metric.USERS),
+                global.get(Metric.CONVERSATIONS),
+                global.get(Metric.MESSAGES),
+                global.get(Metric.DOCUMENTS),
                 activeConversations24h,
-                totalTokens);
+                global.get(Metric.INPUT_TOKENS) + global.get(Metric.OUTPUT_TOKENS));
     }
 
     /**
@@ -59,24 +48,17 @@ public class StatisticsService {
      * @return user-specific statistics
      */
     public UserStatisticsDto getUserStatistics(String userId) {
-        long userConversations = conversationRepository.countByUserId(userId);
-        long userMessages = messageRepository.countByConversationUserId(userId);
-        long totalMessages = messageRepository.count(); // Keep for context
-        long totalDocuments = documentRepository.count(); // Shared knowledge base
+        Map<Metric, Long> user = counterService.getUserCounters(userId);
+        Map<Metric, Long> global = counterService.getGlobalCounters();
         long userActive24h = conversationRepository.countByUserIdAndUpdatedAtAfter(
                 userId, LocalDateTime.now().minusHours(24));
 
-        Long userInputTokens = messageRepository.sumInputTokensByUserId(userId);
-        Long userOutputTokens = messageRepository.sumOutputTokensByUserId(userId);
-        long userTotalTokens = (userInputTokens != null ? userInputTokens : 0)
-                               + (userOutputTokens != null ? userOutputTokens : 0);
-
         return new UserStatisticsDto(
-                userConversations,
-                userMessages,
-                totalMessages,
-                totalDocuments,
+                user.get(Metric.CONVERSATIONS),
+                user.get(Metric.MESSAGES),
+                global.get(Metric.MESSAGES), // Keep for context
+                global.get(Metric.DOCUMENTS), // Shared knowledge base
                 userActive24h,
-                userTotalTokens);
+                user.get(Metric.INPUT_TOKENS) + user.get(Metric.OUTPUT_TOKENS));
     }
 }
@@ -0,0 +1,18 @@
+package com.example.aichatbot.service;
+
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
+
+/**
+ * Streaming counterpart of {@link Assistant}. Both share the same chat memory, so a
+ * conversation can switch between the blocking and the streaming endpoint.
+ */
+public interface StreamingAssistant {
+
+    @SystemMessage("{{systemPrompt}}")
+    TokenStream chat(@MemoryId String conversationId, @V("systemPrompt") String systemPrompt,
+            @UserMessage String userMessage);
+}
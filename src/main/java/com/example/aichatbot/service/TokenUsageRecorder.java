@@ -0,0 +1,135 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.model.TokenUsageEntry;
+import dev.langchain4j.model.output.TokenUsage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Collects per-call token usage off the request path and hands it to
+ * {@link TokenUsageService} in batches. Callers only enqueue; the tenant lookup and the
+ * database writes happen on the flushing thread.
+ * <p>
+ * If the queue fills up faster than it is flushed, the caller drains a batch itself rather
+ * than dropping billable usage; entries are only dropped while the database is failing.
+ */
+@Slf4j
+@Component
+public class TokenUsageRecorder {
+
+    private record PendingUsage(Instant occurredAt, String userId, Long conversationId, String step,
+                                String model, int inputTokens, int outputTokens) {
+    }
+
+    private final TokenUsageService tokenUsageService;
+    private final UserTenantResolver userTenantResolver;
+    private final BlockingQueue<PendingUsage> queue;
+    private final int batchSize;
+    private final String defaultModel;
+
+    public TokenUsageRecorder(TokenUsageService tokenUsageService,
+                              UserTenantResolver userTenantResolver,
+                              @Value("${app.usage.queue-capacity:10000}") int queueCapacity,
+                              @Value("${app.usage.batch-size:500}") int batchSize,
+                              @Value("${langchain4j.gemini.chat-model.model-name:unknown}") String defaultModel) {
+        this.tokenUsageService = tokenUsageService;
+        this.userTenantResolver = userTenantResolver;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.defaultModel = defaultModel;
+    }
+
+    /**
+     * Records a call made with the configured chat model.
+     */
+    public void record(String userId, String conversationId, String step, TokenUsage usage) {
+        record(userId, conversationId, step, defaultModel, usage);
+    }
+
+    public void record(String userId, String conversationId, String step, String model, TokenUsage usage) {
+        if (usage == null || userId == null) {
+            return;
+        }
+        PendingUsage pending = new PendingUsage(Instant.now(), userId, parseConversationId(conversationId), step,
+                model, orZero(usage.inputTokenCount()), orZero(usage.outputTokenCount()));
+        if (queue.offer(pending)) {
+            return;
+        }
+        log.warn("Token usage queue full, flushing on the caller thread");
+        flushBatch();
+        if (!queue.offer(pending)) {
+            log.error("Dropping token usage for user {} step {}: ledger writes are failing", userId, step);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.usage.flush-interval-ms:1000}")
+    public void flush() {
+        while (!queue.isEmpty()) {
+            if (flushBatch() == 0) {
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private int flushBatch() {
+        List<PendingUsage> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            List<TokenUsageEntry> entries = new ArrayList<>(batch.size());
+            for (PendingUsage pending : batch) {
+                entries.add(toEntry(pending));
+            }
+            tokenUsageService.writeBatch(entries);
+        } catch (RuntimeException e) {
+            // The ledger is the billing record; never silently lose a batch
+            log.error("Failed to write {} token usage entries, requeueing: {}", batch.size(), e.getMessage());
+            batch.forEach(queue::offer);
+            return 0;
+        }
+        return batch.size();
+    }
+
+    private TokenUsageEntry toEntry(PendingUsage pending) {
+        TokenUsageEntry entry = new TokenUsageEntry();
+        entry.setOccurredAt(pending.occurredAt());
+        entry.setTenantId(userTenantResolver.tenantOf(pending.userId()));
+        entry.setUserId(pending.userId());
+        entry.setConversationId(pending.conversationId());
+        entry.setStep(pending.step());
+        entry.setModel(pending.model());
+        entry.setInputTokens(pending.inputTokens());
+        entry.setOutputTokens(pending.outputTokens());
+        return entry;
+    }
+
+    private static Long parseConversationId(String conversationId) {
+        try {
+            return conversationId == null ? null : Long.valueOf(conversationId);
+        } catch (NumberFormatException e) {
+            // Internal calls such as grading use synthetic memory ids
+            return null;
+        }
+    }
+
+    private static int orZero(Integer count) {
+        return count == null ? 0 : count;
+    }
+}
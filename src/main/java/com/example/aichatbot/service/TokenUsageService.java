@@ -0,0 +1,90 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.dto.UsageBucketDto;
+import com.example.aichatbot.dto.UsageTotalDto;
+import com.example.aichatbot.model.TokenUsageEntry;
+import com.example.aichatbot.model.TokenUsageRollup.Granularity;
+import com.example.aichatbot.repository.TokenUsageEntryRepository;
+import com.example.aichatbot.repository.TokenUsageRollupRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the token usage ledger and answers usage queries from its hourly and daily rollups,
+ * so reads never aggregate raw ledger rows.
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenUsageService {
+
+    private final TokenUsageEntryRepository entryRepository;
+    private final TokenUsageRollupRepository rollupRepository;
+
+    private record BucketKey(Granularity granularity, Instant bucketStart, String tenantId, String userId,
+                             String step, String model) {
+    }
+
+    private static final class BucketTotals {
+        private long inputTokens;
+        private long outputTokens;
+        private long calls;
+    }
+
+    /**
+     * Appends the entries and adds them to the rollups in one transaction, so the rollups
+     * always match the ledger. Entries are pre-aggregated per bucket, which keeps the number
+     * of upserts proportional to the distinct buckets rather than the batch size.
+     */
+    @Transactional
+    public void writeBatch(List<TokenUsageEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        entryRepository.saveAll(entries);
+
+        Map<BucketKey, BucketTotals> buckets = new LinkedHashMap<>();
+        for (TokenUsageEntry entry : entries) {
+            for (Granularity granularity : Granularity.values()) {
+                BucketKey key = new BucketKey(granularity, bucketStart(entry.getOccurredAt(), granularity),
+                        entry.getTenantId(), entry.getUserId(), entry.getStep(), entry.getModel());
+                BucketTotals totals = buckets.computeIfAbsent(key, k -> new BucketTotals());
+                totals.inputTokens += entry.getInputTokens();
+                totals.outputTokens += entry.getOutputTokens();
+                totals.calls++;
+            }
+        }
+        buckets.forEach((key, totals) -> rollupRepository.add(key.granularity().name(), key.bucketStart(),
+                key.tenantId(), key.userId(), key.step(), key.model(),
+                totals.inputTokens, totals.outputTokens, totals.calls));
+    }
+
+    /**
+     * Lists usage buckets for a tenant in {@code [from, to)}, optionally for a single user.
+     */
+    @Transactional(readOnly = true)
+    public List<UsageBucketDto> getUsage(String tenantId, Granularity granularity, Instant from, Instant to,
+                                         String userId) {
+        return userId == null
+                ? rollupRepository.findBuckets(granularity.name(), tenantId, from, to)
+                : rollupRepository.findUserBuckets(granularity.name(), tenantId, userId, from, to);
+    }
+
+    /**
+     * Sums a tenant's usage over the hourly buckets starting in {@code [from, to)}.
+     */
+    @Transactional(readOnly = true)
+    public UsageTotalDto getTotal(String tenantId, Instant from, Instant to) {
+        return rollupRepository.sumTotals(Granularity.HOUR.name(), tenantId, from, to);
+    }
+
+    static Instant bucketStart(Instant instant, Granularity granularity) {
+        return instant.truncatedTo(granularity == Granularity.HOUR ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maps a user to their tenant. Users never move between tenants, so the mapping is cached.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserTenantResolver {
+
+    public static final String UNKNOWN_TENANT = "unknown";
+
+    private final UserRepository userRepository;
+
+    @Cacheable(value = "user-tenants", key = "#userId")
+    public String tenantOf(String userId) {
+        return userRepository.findTenantIdById(userId).orElse(UNKNOWN_TENANT);
+    }
+}
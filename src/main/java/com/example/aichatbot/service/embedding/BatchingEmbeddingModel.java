@@ -0,0 +1,164 @@
+package com.example.aichatbot.service.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects texts from concurrent callers into batches for an in-process model. A batch is
+ * sent once it holds {@code maxBatchSize} texts or the oldest text has waited
+ * {@code maxWait}. One batch runs at a time, so inference never uses more threads than the
+ * model's own executor, however many chats are embedding their question at once.
+ * <p>
+ * Single texts, which are chat questions, go ahead of the segments of a document being
+ * ingested, so a large upload does not hold up chats. Chats embedding several texts at once,
+ * such as a question and its rewrites, use {@link #embedAllInteractive(List)} to keep that
+ * priority.
+ */
+@Slf4j
+public class BatchingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private record Pending(TextSegment segment, boolean bulk, long sequence, CompletableFuture<Embedding> result) {
+    }
+
+    private final EmbeddingModel delegate;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final AtomicLong sequence = new AtomicLong();
+    private final BlockingQueue<Pending> queue = new PriorityBlockingQueue<>(64,
+            Comparator.comparing(Pending::bulk).thenComparingLong(Pending::sequence));
+    private final Thread dispatcher;
+
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, Duration maxWait) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.dispatcher = new Thread(this::dispatch, "embedding-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return embedAll(textSegments, textSegments.size() > 1);
+    }
+
+    /**
+     * Embeds texts a chat is waiting on ahead of queued document segments, however many.
+     */
+    public Response<List<Embedding>> embedAllInteractive(List<TextSegment> textSegments) {
+        return embedAll(textSegments, false);
+    }
+
+    private Response<List<Embedding>> embedAll(List<TextSegment> textSegments, boolean bulk) {
+        List<CompletableFuture<Embedding>> results = new ArrayList<>(textSegments.size());
+        for (TextSegment segment : textSegments) {
+            Pending pending = new Pending(segment, bulk, sequence.getAndIncrement(), new CompletableFuture<>());
+            queue.add(pending);
+            results.add(pending.result());
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(results.size());
+        for (CompletableFuture<Embedding> result : results) {
+            embeddings.add(await(result));
+        }
+        return Response.from(embeddings);
+    }
+
+    /**
+     * Texts waiting for a batch; the backlog when the model cannot keep up.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    @Override
+    public void close() {
+        dispatcher.interrupt();
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Pending> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            run(batch);
+        }
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new IllegalStateException("Embedding model is shut down"));
+        }
+    }
+
+    /**
+     * Waits for the first text, then for more until the batch is full or the first has waited
+     * long enough.
+     */
+    private List<Pending> nextBatch() throws InterruptedException {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        batch.add(queue.take());
+        long sendBy = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long left = sendBy - System.nanoTime();
+            if (batch.size() >= maxBatchSize || left <= 0) {
+                break;
+            }
+            Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void run(List<Pending> batch) {
+        try {
+            List<Embedding> embeddings = delegate.embedAll(batch.stream().map(Pending::segment).toList()).content();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(embeddings.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Embedding batch of {} failed: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private static Embedding await(CompletableFuture<Embedding> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            // The batch still runs; only this caller stops waiting for it
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for an embedding", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Embedding failed", e.getCause());
+        }
+    }
+}
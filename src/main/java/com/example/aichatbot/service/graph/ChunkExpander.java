@@ -0,0 +1,212 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.config.PromptConfig;
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.config.RetrievalConfig.ExpansionMode;
+import com.example.aichatbot.model.DocumentChunk;
+import com.example.aichatbot.repository.DocumentChunkRepository;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import com.example.aichatbot.service.metrics.PipelineMetrics.ChatStage;
+import dev.langchain4j.data.segment.TextSegment;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Small-to-big retrieval: the search runs on small chunks, which match a question precisely,
+ * and each match is then widened to the chunks around it or to its section, read from the
+ * chunk table in one query. Matches from the same part of a document merge into one passage,
+ * also when widening makes two passages meet, and the splitter overlap between neighbouring
+ * chunks is removed when they are joined.
+ * <p>
+ * Chunks ingested before the document key and chunk index were stored in their metadata are
+ * used as they are.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChunkExpander {
+
+    public static final String DOCUMENT_KEY = "documentKey";
+    public static final String CHUNK_INDEX = "chunkIndex";
+
+    private final RetrievalConfig config;
+    private final DocumentChunkRepository chunkRepository;
+    private final PromptConfig promptConfig;
+    private final PipelineMetrics metrics;
+
+    /**
+     * A run of chunks from one document, and the matches it was built from.
+     */
+    private static final class Passage {
+        private final String documentKey;
+        private int from;
+        private int to;
+        private final List<String> matches = new ArrayList<>();
+
+        private Passage(String documentKey, int from, int to) {
+            this.documentKey = documentKey;
+            this.from = from;
+            this.to = to;
+        }
+
+        private boolean touches(String key, int otherFrom, int otherTo) {
+            return documentKey != null && documentKey.equals(key) && otherFrom <= to + 1 && from <= otherTo + 1;
+        }
+
+        private boolean touches(Passage other) {
+            return touches(other.documentKey, other.from, other.to);
+        }
+
+        private void absorb(Passage other) {
+            from = Math.min(from, other.from);
+            to = Math.max(to, other.to);
+            matches.addAll(other.matches);
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.getExpansion().getMode() != ExpansionMode.OFF;
+    }
+
+    /**
+     * Returns the passages for the given matches, best match first.
+     */
+    public List<String> expand(String userId, List<TextSegment> matches) {
+        if (!isEnabled() || matches.isEmpty()) {
+            return matches.stream().map(TextSegment::text).toList();
+        }
+        return metrics.time(ChatStage.EXPAND, userId, () -> {
+            List<Passage> passages = passagesOf(userId, matches);
+            Map<String, List<DocumentChunk>> chunks = chunksOf(userId, passages);
+            return passages.stream()
+                    .map(passage -> textOf(passage, chunks.getOrDefault(passage.documentKey, List.of())))
+                    .toList();
+        });
+    }
+
+    private List<Passage> passagesOf(String userId, List<TextSegment> matches) {
+        RetrievalConfig.Expansion settings = config.getExpansion();
+        List<Passage> passages = new ArrayList<>();
+        for (TextSegment match : matches) {
+            String key = match.metadata().getString(DOCUMENT_KEY);
+            Integer index = match.metadata().getInteger(CHUNK_INDEX);
+            if (key == null || index == null) {
+                Passage passage = new Passage(null, 0, 0);
+                passage.matches.add(match.text());
+                passages.add(passage);
+                continue;
+            }
+
+            int from;
+            int to;
+            if (settings.getMode() == ExpansionMode.PARENT) {
+                int size = Math.max(1, settings.getSectionChunks());
+                from = index / size * size;
+                to = from + size - 1;
+            } else {
+                from = Math.max(0, index - settings.getWindow());
+                to = index + settings.getWindow();
+            }
+
+            Passage passage = passages.stream()
+                    .filter(p -> p.touches(key, from, to))
+                    .findFirst()
+                    .orElse(null);
+            if (passage == null) {
+                passage = new Passage(key, from, to);
+                passages.add(passage);
+            } else {
+                passage.from = Math.min(passage.from, from);
+                passage.to = Math.max(passage.to, to);
+            }
+            passage.matches.add(match.text());
+        }
+        mergeTouching(passages);
+        log.debug("Expanded {} matches into {} passages for user {}", matches.size(), passages.size(), userId);
+        return passages;
+    }
+
+    /**
+     * Merges passages that a later match widened into each other. The earlier passage, which
+     * holds the better match, keeps its place.
+     */
+    private static void mergeTouching(List<Passage> passages) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < passages.size() && !merged; i++) {
+                for (int j = i + 1; j < passages.size(); j++) {
+                    if (passages.get(i).touches(passages.get(j))) {
+                        passages.get(i).absorb(passages.remove(j));
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the chunks of every passage at once, grouped by document in index order.
+     */
+    private Map<String, List<DocumentChunk>> chunksOf(String userId, List<Passage> passages) {
+        Set<String> keys = new HashSet<>();
+        int from = Integer.MAX_VALUE;
+        int to = Integer.MIN_VALUE;
+        for (Passage passage : passages) {
+            if (passage.documentKey != null) {
+                keys.add(passage.documentKey);
+                from = Math.min(from, passage.from);
+                to = Math.max(to, passage.to);
+            }
+        }
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        return chunkRepository.findByUserIdAndDocumentKeyInAndChunkIndexBetweenOrderByChunkIndex(userId, keys,
+                        from, to).stream()
+                .collect(Collectors.groupingBy(DocumentChunk::getDocumentKey));
+    }
+
+    private String textOf(Passage passage, List<DocumentChunk> documentChunks) {
+        if (passage.documentKey == null) {
+            return passage.matches.get(0);
+        }
+        List<DocumentChunk> chunks = documentChunks.stream()
+                .filter(chunk -> chunk.getChunkIndex() >= passage.from && chunk.getChunkIndex() <= passage.to)
+                .toList();
+        if (chunks.isEmpty()) {
+            // The document's chunks were not stored; fall back to what the search found
+            return String.join("\n", passage.matches);
+        }
+        return join(chunks.stream().map(DocumentChunk::getContent).toList());
+    }
+
+    /**
+     * Joins consecutive chunks, dropping the start of each one that repeats the end of the
+     * one before it.
+     */
+    String join(List<String> chunks) {
+        StringBuilder text = new StringBuilder();
+        String previous = "";
+        for (String chunk : chunks) {
+            int overlap = TextOverlap.length(previous, chunk, promptConfig.getMinOverlapChars(),
+                    promptConfig.getMaxOverlapChars());
+            String rest = chunk.substring(overlap);
+            if (!text.isEmpty() && overlap == 0) {
+                text.append('\n');
+            }
+            text.append(rest);
+            previous = chunk;
+        }
+        return text.toString();
+    }
+}
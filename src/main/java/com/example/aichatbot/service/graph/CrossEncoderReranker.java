@@ -0,0 +1,135 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.service.Deadline;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import com.example.aichatbot.service.metrics.PipelineMetrics.ChatStage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.scoring.ScoringModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
+
+/**
+ * Reorders over-fetched search candidates with an in-process cross-encoder, which reads the
+ * question and each chunk together and ranks far more precisely than vector similarity.
+ * <p>
+ * Scoring is CPU bound, so it runs in batches with a latency cap and a cap on concurrent
+ * chats. Whenever reranking cannot finish in time (the deadline is near, the cap is reached,
+ * the CPU is busy or the model fails) the candidates keep their vector order, so a chat is
+ * never slower or worse off than without reranking.
+ */
+@Slf4j
+@Component
+public class CrossEncoderReranker {
+
+    /**
+     * The candidates to keep, best first, and the top one's score; the score is 0 when the
+     * vector order was kept.
+     */
+    public record Reranked(List<TextSegment> segments, double topScore) {
+    }
+
+    private final RetrievalConfig config;
+    private final ObjectProvider<ScoringModel> scoringModel;
+    private final PipelineMetrics metrics;
+    private final Semaphore permits;
+
+    public CrossEncoderReranker(RetrievalConfig config, ObjectProvider<ScoringModel> scoringModel,
+                                PipelineMetrics metrics) {
+        this.config = config;
+        this.scoringModel = scoringModel;
+        this.metrics = metrics;
+        this.permits = new Semaphore(Math.max(1, config.getRerank().getMaxConcurrency()));
+    }
+
+    /**
+     * Whether a chat with this profile should over-fetch and rerank.
+     */
+    public boolean appliesTo(RetrievalProfile profile) {
+        return profile.rerank() && scoringModel.getIfAvailable() != null;
+    }
+
+    /**
+     * Matches to fetch from the vector search for a reranked chat.
+     */
+    public int candidates(RetrievalProfile profile) {
+        return Math.max(config.getRerank().getCandidates(), profile.maxResults());
+    }
+
+    /**
+     * Whether the top reranked score is high enough to answer without grading.
+     */
+    public boolean settlesRelevance(double topScore) {
+        double threshold = config.getRerank().getSkipGradingScore();
+        return threshold > 0 && topScore >= threshold;
+    }
+
+    public Reranked rerank(String userId, String query, List<TextSegment> candidates, int keep,
+                           Deadline deadline) {
+        ScoringModel model = scoringModel.getIfAvailable();
+        if (model == null || candidates.size() <= 1) {
+            return vectorOrder(candidates, keep);
+        }
+        if (deadline != null && !deadline.allowsOptionalStep()) {
+            log.info("Skipping rerank, {} ms left", deadline.remaining().toMillis());
+            return fallback(userId, "deadline", candidates, keep);
+        }
+        if (!permits.tryAcquire()) {
+            return fallback(userId, "busy", candidates, keep);
+        }
+        try {
+            List<Double> scores = metrics.time(ChatStage.RERANK, userId, () -> score(model, query, candidates, deadline));
+            if (scores == null) {
+                return fallback(userId, "slow", candidates, keep);
+            }
+            List<Integer> order = IntStream.range(0, candidates.size()).boxed()
+                    .sorted(Comparator.comparing(scores::get, Comparator.reverseOrder()))
+                    .limit(keep)
+                    .toList();
+            metrics.recordRerank(userId, "reranked");
+            return new Reranked(order.stream().map(candidates::get).toList(), scores.get(order.get(0)));
+        } catch (RuntimeException e) {
+            log.warn("Reranking failed, keeping vector order: {}", e.getMessage());
+            return fallback(userId, "error", candidates, keep);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Scores the candidates batch by batch, or returns null once the latency cap or the
+     * deadline's answer reserve is reached.
+     */
+    private List<Double> score(ScoringModel model, String query, List<TextSegment> candidates, Deadline deadline) {
+        RetrievalConfig.Rerank settings = config.getRerank();
+        int batchSize = Math.max(1, settings.getBatchSize());
+        long cap = System.nanoTime() + settings.getMaxLatency().toNanos();
+
+        List<Double> scores = new ArrayList<>(candidates.size());
+        for (int from = 0; from < candidates.size(); from += batchSize) {
+            if (from > 0 && (System.nanoTime() > cap || (deadline != null && !deadline.allowsOptionalStep()))) {
+                log.warn("Reranking stopped after {} of {} candidates", from, candidates.size());
+                return null;
+            }
+            List<TextSegment> batch = candidates.subList(from, Math.min(from + batchSize, candidates.size()));
+            scores.addAll(model.scoreAll(batch, query).content());
+        }
+        return scores;
+    }
+
+    private Reranked fallback(String userId, String reason, List<TextSegment> candidates, int keep) {
+        metrics.recordRerank(userId, reason);
+        return vectorOrder(candidates, keep);
+    }
+
+    private static Reranked vectorOrder(List<TextSegment> candidates, int keep) {
+        return new Reranked(candidates.stream().limit(keep).toList(), 0);
+    }
+}
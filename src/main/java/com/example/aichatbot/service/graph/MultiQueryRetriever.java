@@ -0,0 +1,232 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.config.RetrievalConfig.MultiQueryMode;
+import com.example.aichatbot.config.RetrievalConfig.Rewriter;
+import com.example.aichatbot.service.Deadline;
+import com.example.aichatbot.service.embedding.BatchingEmbeddingModel;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import com.example.aichatbot.service.metrics.PipelineMetrics.ChatStage;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Searches with the question and a few variants of it, then fuses the results with
+ * reciprocal rank fusion. Variants come from the chat model or, more cheaply, from the
+ * question's own words.
+ * <p>
+ * All queries are embedded in one batch and searched in parallel on the graph executor, with
+ * the profile's HNSW {@code ef}. The calling thread runs any search the executor has not
+ * started yet, so a saturated executor slows the fan-out down instead of deadlocking it.
+ * Searches still running at the deadline are dropped and the results found so far are used.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MultiQueryRetriever {
+
+    /**
+     * Fused matches, best first, and the tokens spent rewriting the question, if any.
+     */
+    public record Retrieval(List<TextSegment> matches, TokenUsage rewriteUsage) {
+    }
+
+    private final RetrievalConfig config;
+    private final QdrantVectorSearch vectorSearch;
+    private final EmbeddingModel embeddingModel;
+    private final ChatModel chatModel;
+    private final PipelineMetrics metrics;
+    @Qualifier("ragGraphExecutor")
+    private final Executor executor;
+
+    /**
+     * Whether to search with variants on the given attempt; attempts count from zero.
+     */
+    public boolean appliesTo(int attempt) {
+        MultiQueryMode mode = config.getMultiQuery().getMode();
+        return mode == MultiQueryMode.ALWAYS || (mode == MultiQueryMode.ON_MISS && attempt > 0);
+    }
+
+    /**
+     * Whether a chat whose first search found nothing relevant gets a second one.
+     */
+    public boolean retriesOnMiss() {
+        return config.getMultiQuery().getMode() == MultiQueryMode.ON_MISS;
+    }
+
+    public Retrieval retrieve(String query, String userId, RetrievalProfile profile, Deadline deadline) {
+        RetrievalConfig.MultiQuery settings = config.getMultiQuery();
+        List<String> queries = new ArrayList<>();
+        queries.add(query);
+        TokenUsage rewriteUsage = null;
+
+        boolean canRewrite = deadline == null || deadline.allowsOptionalStep();
+        if (settings.getRewriter() == Rewriter.LLM && canRewrite) {
+            try {
+                ChatResponse response = metrics.time(ChatStage.REWRITE, userId,
+                        () -> chatModel.chat(ChatRequest.builder()
+                                .messages(UserMessage.from(RagPrompts.rewrite(query, settings.getVariants())))
+                                .build()));
+                rewriteUsage = response.tokenUsage();
+                queries.addAll(parseVariants(response.aiMessage().text()));
+            } catch (RuntimeException e) {
+                // Rewriting only improves recall; fall back to the free variants
+                log.warn("Query rewriting failed, using local variants: {}", e.getMessage());
+                queries.addAll(localVariants(query));
+            }
+        } else {
+            queries.addAll(localVariants(query));
+        }
+        queries = queries.stream()
+                .map(String::trim)
+                .filter(q -> !q.isEmpty())
+                .distinct()
+                .limit(settings.getVariants() + 1L)
+                .toList();
+        log.info("Searching with {} queries for user {}", queries.size(), userId);
+
+        List<TextSegment> segments = queries.stream().map(TextSegment::from).toList();
+        List<Embedding> embeddings = metrics.time(ChatStage.EMBED, userId, () -> embedQueries(segments));
+        List<List<QdrantVectorSearch.Match>> rankings = metrics.time(ChatStage.SEARCH, userId,
+                () -> searchAll(embeddings, userId, profile, deadline));
+
+        List<QdrantVectorSearch.Match> fused = fuse(rankings, settings.getRrfK(), profile.maxResults());
+        metrics.recordRetrieval(userId, fused.stream().map(QdrantVectorSearch.Match::score).toList());
+        return new Retrieval(fused.stream().map(QdrantVectorSearch.Match::segment).toList(), rewriteUsage);
+    }
+
+    /**
+     * The question and its variants are one chat, so the local batcher must not queue them
+     * behind document segments as it does with other multi-text calls.
+     */
+    private List<Embedding> embedQueries(List<TextSegment> segments) {
+        if (embeddingModel instanceof BatchingEmbeddingModel batcher) {
+            return batcher.embedAllInteractive(segments).content();
+        }
+        return embeddingModel.embedAll(segments).content();
+    }
+
+    private List<List<QdrantVectorSearch.Match>> searchAll(List<Embedding> embeddings, String userId,
+                                                           RetrievalProfile profile, Deadline deadline) {
+        RetrievalProfile perQuery = profile.withMaxResults(
+                Math.max(config.getMultiQuery().getCandidatesPerQuery(), profile.maxResults()));
+        List<FutureTask<List<QdrantVectorSearch.Match>>> searches = new ArrayList<>();
+        for (Embedding embedding : embeddings) {
+            FutureTask<List<QdrantVectorSearch.Match>> search = new FutureTask<>(
+                    () -> vectorSearch.search(embedding, userId, perQuery).block());
+            searches.add(search);
+            if (searches.size() > 1) {
+                executor.execute(search);
+            }
+        }
+
+        List<List<QdrantVectorSearch.Match>> rankings = new ArrayList<>();
+        for (FutureTask<List<QdrantVectorSearch.Match>> search : searches) {
+            // No-op if the executor already started it
+            search.run();
+            try {
+                rankings.add(deadline == null
+                        ? search.get()
+                        : search.get(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                search.cancel(true);
+                log.warn("Dropping a query variant search still running at the deadline");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                searches.forEach(s -> s.cancel(true));
+                throw new IllegalStateException("Interrupted during retrieval", e);
+            } catch (ExecutionException e) {
+                if (search == searches.get(0)) {
+                    // The question itself must be searchable; variants may fail
+                    throw e.getCause() instanceof RuntimeException cause
+                            ? cause
+                            : new IllegalStateException("Search failed", e.getCause());
+                }
+                log.warn("Query variant search failed: {}", e.getCause().getMessage());
+            }
+        }
+        return rankings;
+    }
+
+    /**
+     * Reciprocal rank fusion: each match scores {@code 1 / (k + rank)} in every ranking it
+     * appears in. Duplicates are merged by document chunk, or by text for segments without
+     * one, and keep their best similarity score.
+     */
+    static List<QdrantVectorSearch.Match> fuse(List<List<QdrantVectorSearch.Match>> rankings, int k,
+                                               int maxResults) {
+        Map<String, Double> fusedScores = new LinkedHashMap<>();
+        Map<String, QdrantVectorSearch.Match> best = new LinkedHashMap<>();
+        for (List<QdrantVectorSearch.Match> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                QdrantVectorSearch.Match match = ranking.get(rank);
+                String key = match.documentKey() != null && match.chunkIndex() != null
+                        ? match.documentKey() + "#" + match.chunkIndex()
+                        : match.text();
+                fusedScores.merge(key, 1.0 / (k + rank + 1), Double::sum);
+                best.merge(key, match, (a, b) -> a.score() >= b.score() ? a : b);
+            }
+        }
+        return fusedScores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(maxResults)
+                .map(entry -> best.get(entry.getKey()))
+                .toList();
+    }
+
+    /**
+     * Variants built from the question's own words: its content words alone, which matches
+     * documents phrased as statements, and each sentence of a multi-part question.
+     */
+    static List<String> localVariants(String query) {
+        Set<String> variants = new LinkedHashSet<>();
+        String keywords = String.join(" ", QueryTerms.of(query));
+        if (!keywords.isEmpty()) {
+            variants.add(keywords);
+        }
+        String[] sentences = query.split("(?<=[.?!;])\\s+");
+        if (sentences.length > 1) {
+            variants.addAll(Arrays.asList(sentences));
+        }
+        variants.remove(query);
+        return List.copyOf(variants);
+    }
+
+    /**
+     * One variant per line, with any list numbering or bullets removed.
+     */
+    static List<String> parseVariants(String response) {
+        if (response == null) {
+            return Collections.emptyList();
+        }
+        return response.lines()
+                .map(line -> line.replaceFirst("^\\s*(?:[-*•]|\\d+[.)])\\s*", "").trim())
+                .filter(line -> !line.isEmpty())
+                .toList();
+    }
+}
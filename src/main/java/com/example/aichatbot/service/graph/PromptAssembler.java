@@ -0,0 +1,205 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.config.PromptConfig;
+import com.example.aichatbot.service.UserTenantResolver;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the generation prompt within the tenant's input token budget. The budget covers
+ * the system prompt, the conversation memory the assistant adds, the question and the
+ * retrieved context; the context gets whatever the others leave.
+ * <p>
+ * The context travels in the system prompt and the question alone in the user message, so
+ * memory holds only questions and answers. Memory may take at most
+ * {@code app.prompt.history-share} of the budget; older turns beyond that are dropped from it.
+ * <p>
+ * Chunks that repeat each other, as neighbouring chunks do through the splitter overlap,
+ * are trimmed first. If the context still does not fit, each chunk is cut down to the
+ * sentences that mention the question's terms, and chunks are then added in retrieval order
+ * until the budget is spent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PromptAssembler {
+
+    /**
+     * The system prompt with the context, the user message, and the size of the context
+     * before and after compression.
+     */
+    public record AssembledPrompt(String systemPrompt, String question, int contextTokensBefore,
+                                  int contextTokensAfter) {
+    }
+
+    private final PromptConfig config;
+    private final ChatMemoryStore chatMemoryStore;
+    private final TokenCountEstimator tokenCountEstimator;
+    private final UserTenantResolver tenantResolver;
+    private final PipelineMetrics metrics;
+
+    public AssembledPrompt assemble(String userId, String memoryId, String query, List<String> documents) {
+        int budget = config.budgetFor(tenantResolver.tenantOf(userId));
+        int fixed = count(RagPrompts.generate(List.of()))
+                + count(query)
+                + fitHistory(memoryId, (int) (budget * config.getHistoryShare()));
+        int contextBudget = Math.max(0, budget - fixed);
+
+        int before = documents.stream().mapToInt(this::count).sum();
+        List<String> context = fit(dedupe(documents), query, contextBudget);
+        int after = context.stream().mapToInt(this::count).sum();
+
+        metrics.recordContextTokens(userId, before, after);
+        if (after < before) {
+            log.info("Compressed context from {} to {} tokens to fit a budget of {}", before, after, contextBudget);
+        }
+        return new AssembledPrompt(RagPrompts.generate(context), query, before, after);
+    }
+
+    /**
+     * Drops the oldest turns from memory until the rest fits {@code maxTokens} and returns
+     * what is left. The stored system message is not counted; this call replaces it.
+     */
+    private int fitHistory(String memoryId, int maxTokens) {
+        List<ChatMessage> history = chatMemoryStore.getMessages(memoryId);
+        List<ChatMessage> system = history.stream().filter(SystemMessage.class::isInstance).toList();
+        List<ChatMessage> turns = history.stream().filter(message -> !(message instanceof SystemMessage)).toList();
+
+        int from = 0;
+        int tokens = countMessages(turns);
+        while (tokens > maxTokens && from < turns.size()) {
+            from++;
+            // Keep the history starting with a question
+            while (from < turns.size() && !(turns.get(from) instanceof UserMessage)) {
+                from++;
+            }
+            tokens = countMessages(turns.subList(from, turns.size()));
+        }
+        if (from > 0) {
+            List<ChatMessage> kept = new ArrayList<>(system);
+            kept.addAll(turns.subList(from, turns.size()));
+            chatMemoryStore.updateMessages(memoryId, kept);
+            log.info("Dropped {} old messages of conversation {} to fit the history budget", from, memoryId);
+        }
+        return tokens;
+    }
+
+    private int countMessages(List<ChatMessage> messages) {
+        return messages.isEmpty() ? 0 : tokenCountEstimator.estimateTokenCountInMessages(messages);
+    }
+
+    /**
+     * Drops chunks contained in an earlier one and trims the text a chunk shares with an
+     * earlier one at either end.
+     */
+    List<String> dedupe(List<String> documents) {
+        List<String> kept = new ArrayList<>();
+        for (String document : documents) {
+            String text = document.strip();
+            for (String earlier : kept) {
+                if (text.isEmpty() || earlier.contains(text)) {
+                    text = "";
+                    break;
+                }
+                text = trimOverlap(earlier, text);
+            }
+            if (!text.isEmpty()) {
+                kept.add(text);
+            }
+        }
+        return kept;
+    }
+
+    private String trimOverlap(String earlier, String text) {
+        int prefix = overlap(earlier, text);
+        if (prefix > 0) {
+            return text.substring(prefix).strip();
+        }
+        int suffix = overlap(text, earlier);
+        if (suffix > 0) {
+            return text.substring(0, text.length() - suffix).strip();
+        }
+        return text;
+    }
+
+    private int overlap(String first, String second) {
+        return TextOverlap.length(first, second, config.getMinOverlapChars(), config.getMaxOverlapChars());
+    }
+
+    private List<String> fit(List<String> chunks, String query, int contextBudget) {
+        if (chunks.stream().mapToInt(this::count).sum() <= contextBudget) {
+            return chunks;
+        }
+
+        Set<String> terms = Set.copyOf(QueryTerms.of(query));
+        List<String> extracted = chunks.stream()
+                .map(chunk -> relevantSentences(chunk, terms))
+                .filter(chunk -> !chunk.isEmpty())
+                .toList();
+        if (extracted.isEmpty()) {
+            // Nothing matches word for word; trust the retrieval order instead
+            extracted = chunks;
+        }
+
+        List<String> fitted = new ArrayList<>();
+        int used = 0;
+        for (String chunk : extracted) {
+            int tokens = count(chunk);
+            if (used + tokens <= contextBudget) {
+                fitted.add(chunk);
+                used += tokens;
+                continue;
+            }
+            String partial = leadingSentences(chunk, contextBudget - used);
+            if (!partial.isEmpty()) {
+                fitted.add(partial);
+            }
+            break;
+        }
+        return fitted;
+    }
+
+    private static String relevantSentences(String chunk, Set<String> terms) {
+        List<String> relevant = new ArrayList<>();
+        for (String sentence : sentences(chunk)) {
+            if (Arrays.stream(QueryTerms.words(sentence)).anyMatch(terms::contains)) {
+                relevant.add(sentence);
+            }
+        }
+        return String.join(" ", relevant);
+    }
+
+    private String leadingSentences(String chunk, int tokens) {
+        StringBuilder partial = new StringBuilder();
+        int used = 0;
+        for (String sentence : sentences(chunk)) {
+            int sentenceTokens = count(sentence);
+            if (used + sentenceTokens > tokens) {
+                break;
+            }
+            partial.append(partial.isEmpty() ? "" : " ").append(sentence);
+            used += sentenceTokens;
+        }
+        return partial.toString();
+    }
+
+    private static String[] sentences(String text) {
+        return text.split("(?<=[.!?])\\s+");
+    }
+
+    private int count(String text) {
+        return text.isEmpty() ? 0 : tokenCountEstimator.estimateTokenCountInText(text);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.aichatbot.service.graph;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Common.Filter;
+import io.qdrant.client.grpc.JsonWithInt.Value;
+import io.qdrant.client.grpc.Points.ScoredPoint;
+import io.qdrant.client.grpc.Points.SearchParams;
+import io.qdrant.client.grpc.Points.SearchPoints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+import static io.qdrant.client.ConditionFactory.matchKeyword;
+import static io.qdrant.client.WithPayloadSelectorFactory.enable;
+
+/**
+ * Searches the document collection through the Qdrant gRPC client's futures, so the
+ * streaming chat path does not hold a thread while Qdrant works; the graph blocks on it from
+ * its own executor. Reads the same payload layout that {@code QdrantEmbeddingStore} writes.
+ * Unlike the store, it can pass the profile's HNSW {@code ef} to Qdrant, so both chat paths
+ * search with it.
+ */
+@Component
+public class QdrantVectorSearch {
+
+    private static final String TEXT_PAYLOAD_KEY = "text_segment";
+    private static final String USER_ID_PAYLOAD_KEY = "userId";
+
+    /**
+     * A matching segment, its similarity score and, for chunks that have them, the document
+     * key and chunk index that {@link ChunkExpander} expands from.
+     */
+    public record Match(String text, double score, String documentKey, Integer chunkIndex) {
+
+        public Match(String text, double score) {
+            this(text, score, null, null);
+        }
+
+        public TextSegment segment() {
+            Metadata metadata = new Metadata();
+            if (documentKey != null && chunkIndex != null) {
+                metadata.put(ChunkExpander.DOCUMENT_KEY, documentKey).put(ChunkExpander.CHUNK_INDEX, chunkIndex);
+            }
+            return TextSegment.from(text, metadata);
+        }
+    }
+
+    private final QdrantClient qdrantClient;
+    private final String collectionName;
+
+    public QdrantVectorSearch(QdrantClient qdrantClient,
+                              @Value("${langchain4j.qdrant.collection-name}") String collectionName) {
+        this.qdrantClient = qdrantClient;
+        this.collectionName = collectionName;
+    }
+
+    /**
+     * Returns the user's closest segments, best match first.
+     */
+    public Mono<List<Match>> search(Embedding embedding, String userId, RetrievalProfile profile) {
+        SearchPoints.Builder request = SearchPoints.newBuilder()
+                .setCollectionName(collectionName)
+                .addAllVector(embedding.vectorAsList())
+                .setFilter(Filter.newBuilder().addMust(matchKeyword(USER_ID_PAYLOAD_KEY, userId)).build())
+                .setLimit(profile.maxResults())
+                .setScoreThreshold((float) profile.minScore())
+                .setWithPayload(enable(true));
+        if (profile.searchEf() > 0) {
+            request.setParams(SearchParams.newBuilder().setHnswEf(profile.searchEf()).build());
+        }
+
+        return Mono.create(sink -> {
+            ListenableFuture<List<ScoredPoint>> future = qdrantClient.searchAsync(request.build());
+            sink.onCancel(() -> future.cancel(true));
+            Futures.addCallback(future, new FutureCallback<>() {
+                @Override
+                public void onSuccess(List<ScoredPoint> points) {
+                    sink.success(points.stream()
+                            .filter(point -> point.containsPayload(TEXT_PAYLOAD_KEY))
+                            .map(QdrantVectorSearch::toMatch)
+                            .toList());
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    sink.error(t);
+                }
+            }, MoreExecutors.directExecutor());
+        });
+    }
+
+    private static Match toMatch(ScoredPoint point) {
+        Map<String, Value> payload = point.getPayloadMap();
+        Value documentKey = payload.get(ChunkExpander.DOCUMENT_KEY);
+        Value chunkIndex = payload.get(ChunkExpander.CHUNK_INDEX);
+        return new Match(payload.get(TEXT_PAYLOAD_KEY).getStringValue(), point.getScore(),
+                documentKey == null ? null : documentKey.getStringValue(),
+                chunkIndex == null ? null : indexOf(chunkIndex));
+    }
+
+    private static Integer indexOf(Value value) {
+        if (value.hasIntegerValue()) {
+            return (int) value.getIntegerValue();
+        }
+        return value.hasStringValue() ? Integer.valueOf(value.getStringValue()) : null;
+    }
+}
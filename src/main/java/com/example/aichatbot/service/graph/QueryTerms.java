@@ -0,0 +1,34 @@
+package com.example.aichatbot.service.graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The content words of a question, used for the cheap lexical steps of retrieval.
+ */
+final class QueryTerms {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "can", "could", "did", "do", "does",
+            "for", "from", "how", "i", "in", "is", "it", "me", "my", "of", "on", "or", "please",
+            "should", "tell", "that", "the", "this", "to", "was", "we", "what", "when", "where",
+            "which", "who", "why", "will", "with", "would", "you", "your");
+
+    private QueryTerms() {
+    }
+
+    /**
+     * Lower-cased words of the text that are not stop words, in order.
+     */
+    static List<String> of(String text) {
+        return Arrays.stream(words(text))
+                .filter(word -> !word.isEmpty() && !STOP_WORDS.contains(word))
+                .toList();
+    }
+
+    static String[] words(String text) {
+        return text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+    }
+}
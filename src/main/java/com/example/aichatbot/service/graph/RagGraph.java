@@ -1,28 +1,39 @@
 package com.example.aichatbot.service.graph;
 
+import com.example.aichatbot.exception.DeadlineExceededException;
 import com.example.aichatbot.service.Assistant;
+import com.example.aichatbot.service.Deadline;
+import com.example.aichatbot.service.TokenUsageRecorder;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import com.example.aichatbot.service.metrics.PipelineMetrics.ChatStage;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.service.Result;
-import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
-import dev.langchain4j.store.embedding.EmbeddingSearchResult;
-import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.CompiledGraph;
 import org.bsc.langgraph4j.StateGraph;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import static com.example.aichatbot.enums.RagStateName.CLARIFY;
 import static com.example.aichatbot.enums.RagStateName.GENERATE;
 import static com.example.aichatbot.enums.RagStateName.GRADE;
+import static com.example.aichatbot.enums.RagStateName.RERANK;
 import static com.example.aichatbot.enums.RagStateName.RETRIEVE;
 import static org.bsc.langgraph4j.StateGraph.END;
 import static org.bsc.langgraph4j.StateGraph.START;
@@ -32,29 +43,42 @@ import static org.bsc.langgraph4j.StateGraph.START;
 @RequiredArgsConstructor
 public class RagGraph {
 
-    private final EmbeddingStore<TextSegment> embeddingStore;
+    private final QdrantVectorSearch vectorSearch;
     private final EmbeddingModel embeddingModel;
     private final Assistant assistant;
+    private final TokenUsageRecorder tokenUsageRecorder;
+    private final PipelineMetrics metrics;
+    private final MultiQueryRetriever multiQueryRetriever;
+    private final PromptAssembler promptAssembler;
+    private final RetrievalPolicy retrievalPolicy;
+    @Qualifier("ragGraphExecutor")
+    private final Executor executor;
 
     public CompiledGraph<RagState> buildGraph() throws Exception {
         StateGraph<RagState> workflow = new StateGraph<>(RagState::new);
 
         workflow.addNode(RETRIEVE.toString(), this::retrieve);
+        workflow.addNode(RERANK.toString(), this::rerank);
         workflow.addNode(GRADE.toString(), this::grade);
         workflow.addNode(GENERATE.toString(), this::generate);
         workflow.addNode(CLARIFY.toString(), this::clarify);
 
         workflow.addEdge(START, RETRIEVE.toString());
-        workflow.addEdge(RETRIEVE.toString(), GRADE.toString());
+        workflow.addConditionalEdges(
+                RETRIEVE.toString(),
+                state -> CompletableFuture.completedFuture(
+                        state.getCandidates().isEmpty() ? GRADE.toString() : RERANK.toString()),
+                Map.of(
+                        RERANK.toString(), RERANK.toString(),
+                        GRADE.toString(), GRADE.toString()));
+        workflow.addEdge(RERANK.toString(), GRADE.toString());
 
         workflow.addConditionalEdges(
                 GRADE.toString(),
-                state -> CompletableFuture.completedFuture(
-                        Boolean.TRUE.equals(state.getIsRelevant())
-                                ? GENERATE.toString()
-                                : CLARIFY.toString()),
+                state -> CompletableFuture.completedFuture(afterGrade(state)),
                 Map.of(
                         GENERATE.toString(), GENERATE.toString(),
+                        RETRIEVE.toString(), RETRIEVE.toString(),
                         CLARIFY.toString(), CLARIFY.toString()));
 
         workflow.addEdge(GENERATE.toString(), END);
@@ -63,97 +87,207 @@ public class RagGraph {
         return workflow.compile();
     }
 
+    /**
+     * Generates if the documents are relevant. Otherwise searches once more with query
+     * variants if that is configured and there is time, and asks to clarify if not.
+     */
+    private String afterGrade(RagState state) {
+        if (Boolean.TRUE.equals(state.getIsRelevant())) {
+            return GENERATE.toString();
+        }
+        boolean hasTime = state.getDeadline() == null || state.getDeadline().allowsOptionalStep();
+        if (multiQueryRetriever.retriesOnMiss() && state.getRetrievalAttempts() == 1 && hasTime) {
+            log.info("No relevant documents, retrying retrieval with query variants");
+            return RETRIEVE.toString();
+        }
+        return CLARIFY.toString();
+    }
+
     private CompletableFuture<Map<String, Object>> retrieve(RagState state) {
-        return CompletableFuture.supplyAsync(() -> {
+        return runNode(state, "retrieve", () -> {
             log.info("Retrieving documents for query: {} and user: {}", state.getQuery(), state.getUserId());
+            int attempts = state.getRetrievalAttempts();
+            RetrievalProfile profile = state.getRetrievalProfile();
+            boolean reranking = retrievalPolicy.reranks(profile);
+            RetrievalProfile search = retrievalPolicy.searchProfile(profile);
+
+            if (multiQueryRetriever.appliesTo(attempts)) {
+                MultiQueryRetriever.Retrieval retrieval = multiQueryRetriever.retrieve(state.getQuery(),
+                        state.getUserId(), search, state.getDeadline());
+                Map<String, Integer> usage = new java.util.HashMap<>(state.getTokenUsage());
+                updateTokenUsage(state, usage, retrieval.rewriteUsage(), "rewrite");
+                Map<String, Object> found = found(state, retrieval.matches(), reranking);
+                found.put("retrievalAttempts", attempts + 1);
+                found.put("tokenUsage", usage);
+                return found;
+            }
 
             // Embed the query
-            Embedding queryEmbedding = embeddingModel.embed(state.getQuery()).content();
+            Embedding queryEmbedding = metrics.time(ChatStage.EMBED, state.getUserId(),
+                    () -> embeddingModel.embed(state.getQuery()).content());
 
-            // Search with filter
-            EmbeddingSearchRequest request = EmbeddingSearchRequest
-                    .builder()
-                    .queryEmbedding(queryEmbedding)
-                    .filter(MetadataFilterBuilder.metadataKey("userId")
-                            .isEqualTo(state.getUserId()))
-                    .maxResults(5) // Default or config
-                    .minScore(0.7) // Default or config
-                    .build();
+            // Search the user's documents with the profile's HNSW ef; this node already has its own thread
+            List<QdrantVectorSearch.Match> matches = metrics.time(ChatStage.SEARCH, state.getUserId(),
+                    () -> vectorSearch.search(queryEmbedding, state.getUserId(), search).block());
+            metrics.recordRetrieval(state.getUserId(), matches.stream()
+                    .map(QdrantVectorSearch.Match::score)
+                    .toList());
 
-            EmbeddingSearchResult<TextSegment> result = embeddingStore.search(request);
+            Map<String, Object> found = found(state, matches.stream()
+                    .map(QdrantVectorSearch.Match::segment)
+                    .toList(), reranking);
+            found.put("retrievalAttempts", attempts + 1);
+            return found;
+        });
+    }
 
-            List<String> documents = result.matches().stream()
-                    .map(match -> match.embedded().text())
-                    .toList();
+    /**
+     * The search's matches as documents, or as candidates for the rerank node. Both keys are
+     * always set so a second search replaces what the first one left.
+     */
+    private Map<String, Object> found(RagState state, List<TextSegment> matches, boolean reranking) {
+        Map<String, Object> found = new java.util.HashMap<>();
+        if (reranking && !matches.isEmpty()) {
+            found.put("candidates", matches);
+            found.put("documents", List.of());
+        } else {
+            found.put("candidates", List.of());
+            found.put("documents", retrievalPolicy.select(state.getUserId(), state.getQuery(), matches,
+                    state.getRetrievalProfile(), state.getDeadline()).documents());
+        }
+        found.put("rerankScore", 0.0);
+        return found;
+    }
 
-            return Map.of("documents", documents);
+    private CompletableFuture<Map<String, Object>> rerank(RagState state) {
+        return runNode(state, "rerank", () -> {
+            log.info("Reranking {} candidates...", state.getCandidates().size());
+            RetrievalPolicy.Selection selection = retrievalPolicy.select(state.getUserId(), state.getQuery(),
+                    state.getCandidates(), state.getRetrievalProfile(), state.getDeadline());
+            return Map.of(
+                    "documents", selection.documents(),
+                    "candidates", List.of(),
+                    "rerankScore", selection.rerankScore());
         });
     }
 
     private CompletableFuture<Map<String, Object>> grade(RagState state) {
-        return CompletableFuture.supplyAsync(() -> {
+        return runNode(state, "grade", () -> {
             log.info("Grading relevance...");
-            if (state.getDocuments() == null || state.getDocuments().isEmpty()) {
-                return Map.of("isRelevant", false);
+            Optional<Boolean> verdict = retrievalPolicy.verdictWithoutGrader(state.getDocuments(),
+                    state.getRetrievalProfile(), state.getDeadline(), state.getRerankScore());
+            if (verdict.isPresent()) {
+                return Map.of("isRelevant", verdict.get());
             }
 
-            String prompt = "You are a grader. Given the user query and retrieved documents, return 'yes' if the documents are relevant, and 'no' if they are not.\n"
-                            +
-                            "Query: " + state.getQuery() + "\n" +
-                            "Documents: " + String.join("\n", state.getDocuments());
+            String prompt = RagPrompts.grade(state.getQuery(), state.getDocuments());
 
-            Result<String> result = assistant.chat("temp-grade", "You are a grader.", prompt);
-            String response = result.content().trim().toLowerCase();
-            boolean relevant = response.contains("yes");
+            Result<String> result = metrics.time(ChatStage.GRADE, state.getUserId(),
+                    () -> assistant.chat(RagPrompts.GRADER_MEMORY_ID, RagPrompts.GRADER_SYSTEM_PROMPT, prompt));
+            boolean relevant = RagPrompts.isRelevant(result.content());
             log.info("Relevance: {}", relevant);
 
             Map<String, Integer> usage = new java.util.HashMap<>(state.getTokenUsage());
-            updateTokenUsage(usage, result.tokenUsage(), "grade");
+            updateTokenUsage(state, usage, result.tokenUsage(), "grade");
 
             return Map.of("isRelevant", relevant, "tokenUsage", usage);
         });
     }
 
     private CompletableFuture<Map<String, Object>> generate(RagState state) {
-        return CompletableFuture.supplyAsync(() -> {
+        return runNode(state, "generate", () -> {
             log.info("Generating answer...");
-            String context = String.join("\n\n", state.getDocuments());
-            String prompt = "Context:\n" + context + "\n\nQuestion: " + state.getQuery();
-            dev.langchain4j.service.Result<String> result = assistant.chat(state.getConversationId(),
-                    "You are a helpful assistant.", prompt);
+            PromptAssembler.AssembledPrompt prompt = promptAssembler.assemble(state.getUserId(),
+                    state.getConversationId(), state.getQuery(), state.getDocuments());
+            dev.langchain4j.service.Result<String> result = metrics.time(ChatStage.GENERATE, state.getUserId(),
+                    () -> assistant.chat(state.getConversationId(), prompt.systemPrompt(), prompt.question()));
 
             Map<String, Integer> usage = new java.util.HashMap<>(state.getTokenUsage());
-            updateTokenUsage(usage, result.tokenUsage(), "generate");
+            updateTokenUsage(state, usage, result.tokenUsage(), "generate");
 
             return Map.of("response", result.content(), "tokenUsage", usage);
         });
     }
 
     private CompletableFuture<Map<String, Object>> clarify(RagState state) {
-        return CompletableFuture.supplyAsync(() -> {
+        return runNode(state, "clarify", () -> {
             log.info("Generating clarification...");
-            String prompt = "The user asked: " + state.getQuery() +
-                            ". We could not find relevant information in our knowledge base. " +
-                            "Please ask for clarification or provide a general response.";
-            dev.langchain4j.service.Result<String> result = assistant.chat(state.getConversationId(),
-                    "You are a helpful assistant.", prompt);
+            String prompt = RagPrompts.clarify(state.getQuery());
+            dev.langchain4j.service.Result<String> result = metrics.time(ChatStage.CLARIFY, state.getUserId(),
+                    () -> assistant.chat(state.getConversationId(), RagPrompts.ASSISTANT_SYSTEM_PROMPT, prompt));
 
             Map<String, Integer> usage = new java.util.HashMap<>(state.getTokenUsage());
-            updateTokenUsage(usage, result.tokenUsage(), "clarify");
+            updateTokenUsage(state, usage, result.tokenUsage(), "clarify");
 
             return Map.of("response", result.content(), "tokenUsage", usage);
         });
     }
 
-    private void updateTokenUsage(Map<String, Integer> usageMap, TokenUsage tokenUsage,
+    private void updateTokenUsage(RagState state, Map<String, Integer> usageMap, TokenUsage tokenUsage,
                                   String stepPrefix) {
         if (tokenUsage == null)
             return;
 
+        tokenUsageRecorder.record(state.getUserId(), state.getConversationId(), stepPrefix, tokenUsage);
+        metrics.recordTokens(ChatStage.valueOf(stepPrefix.toUpperCase()), state.getUserId(), tokenUsage);
+
         usageMap.merge("totalInputTokens", tokenUsage.inputTokenCount(), Integer::sum);
         usageMap.merge("totalOutputTokens", tokenUsage.outputTokenCount(), Integer::sum);
 
         usageMap.put(stepPrefix + "_input", tokenUsage.inputTokenCount());
         usageMap.put(stepPrefix + "_output", tokenUsage.outputTokenCount());
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Runs a node on the graph executor within what is left of the request's deadline. A node
+     * that overruns is interrupted, so its model or embedding call stops instead of finishing
+     * for a client that has already been told the request timed out.
+     * <p>
+     * The timeout is armed before the node is handed to the executor: a saturated executor
+     * runs it on the calling thread, and the deadline must hold then too.
+     */
+    private CompletableFuture<Map<String, Object>> runNode(RagState state, String step,
+                                                           Supplier<Map<String, Object>> work) {
+        Deadline deadline = state.getDeadline();
+        if (deadline == null) {
+            return CompletableFuture.supplyAsync(work, executor);
+        }
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(new DeadlineExceededException(step));
+        }
+
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        Thread caller = Thread.currentThread();
+        AtomicBoolean ranInline = new AtomicBoolean();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            ranInline.set(Thread.currentThread() == caller);
+            try {
+                result.complete(work.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, null);
+
+        CompletableFuture<Map<String, Object>> node = result
+                .orTimeout(deadline.remaining().toMillis(), TimeUnit.MILLISECONDS)
+                .handle((value, error) -> {
+                    if (error instanceof TimeoutException) {
+                        task.cancel(true);
+                        throw new DeadlineExceededException(step);
+                    }
+                    if (error != null) {
+                        throw error instanceof CompletionException completion
+                                ? completion
+                                : new CompletionException(error);
+                    }
+                    return value;
+                });
+        executor.execute(task);
+        if (ranInline.get() && task.isCancelled()) {
+            // The cancellation interrupted this thread; do not leak that into the caller
+            Thread.interrupted();
+        }
+        return node;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.aichatbot.service.graph;
+
+import java.util.List;
+
+/**
+ * Prompts shared by {@link RagGraph} and the streaming chat path, so both give the same
+ * answer to the same question. Retrieval settings come from the request's
+ * {@link RetrievalProfile}.
+ */
+public final class RagPrompts {
+
+    public static final String GRADER_SYSTEM_PROMPT = "You are a grader.";
+    public static final String ASSISTANT_SYSTEM_PROMPT = "You are a helpful assistant.";
+    public static final String GRADER_MEMORY_ID = "temp-grade";
+
+    private RagPrompts() {
+    }
+
+    public static String grade(String query, List<String> documents) {
+        return "You are a grader. Given the user query and retrieved documents, return 'yes' if the documents are relevant, and 'no' if they are not.\n"
+                + "Query: " + query + "\n"
+                + "Documents: " + String.join("\n", documents);
+    }
+
+    public static boolean isRelevant(String graderResponse) {
+        return graderResponse.trim().toLowerCase().contains("yes");
+    }
+
+    public static String rewrite(String query, int variants) {
+        return "Write " + variants + " different search queries that would find documents answering the question below. "
+                + "Use other words and phrasings than the question. Reply with one query per line and nothing else.\n"
+                + "Question: " + query;
+    }
+
+    /**
+     * System prompt carrying the retrieved context; the question goes in as the user message.
+     * Chat memory keeps only the latest system message, so earlier turns' context never piles
+     * up in the conversation history.
+     */
+    public static String generate(List<String> documents) {
+        return ASSISTANT_SYSTEM_PROMPT + " Answer the user's question using the context below.\n\n"
+                + "Context:\n" + String.join("\n\n", documents);
+    }
+
+    public static String clarify(String query) {
+        return "The user asked: " + query
+                + ". We could not find relevant information in our knowledge base. "
+                + "Please ask for clarification or provide a general response.";
+    }
+}
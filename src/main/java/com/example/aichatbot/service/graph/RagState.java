@@ -1,5 +1,7 @@
 package com.example.aichatbot.service.graph;
 
+import com.example.aichatbot.service.Deadline;
+import dev.langchain4j.data.segment.TextSegment;
 import lombok.Builder;
 import org.bsc.langgraph4j.state.AgentState;
 
@@ -27,6 +29,28 @@ public class RagState extends AgentState {
         return (List<String>) data().get("documents");
     }
 
+    /**
+     * Search matches waiting to be reranked; empty unless the profile reranks.
+     */
+    @SuppressWarnings("unchecked")
+    public List<TextSegment> getCandidates() {
+        return (List<TextSegment>) data().getOrDefault("candidates", List.of());
+    }
+
+    /**
+     * The cross-encoder's score for the best document, or 0 if the documents were not reranked.
+     */
+    public double getRerankScore() {
+        return (Double) data().getOrDefault("rerankScore", 0.0);
+    }
+
+    /**
+     * Searches run so far for this question.
+     */
+    public int getRetrievalAttempts() {
+        return (Integer) data().getOrDefault("retrievalAttempts", 0);
+    }
+
     public Boolean getIsRelevant() {
         return (Boolean) data().get("isRelevant");
     }
@@ -43,6 +67,20 @@ public class RagState extends AgentState {
         return (String) data().get("userId");
     }
 
+    /**
+     * The request's deadline, or null if it has none.
+     */
+    public Deadline getDeadline() {
+        return (Deadline) data().get("deadline");
+    }
+
+    /**
+     * The request's retrieval profile, or the built-in default if none was given.
+     */
+    public RetrievalProfile getRetrievalProfile() {
+        return (RetrievalProfile) data().getOrDefault("retrievalProfile", RetrievalProfile.DEFAULT);
+    }
+
     @SuppressWarnings("unchecked")
     public Map<String, Integer> getTokenUsage() {
         return (Map<String, Integer>) data().getOrDefault("tokenUsage", new HashMap<>());
@@ -0,0 +1,86 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.enums.GradingMode;
+import com.example.aichatbot.service.Deadline;
+import dev.langchain4j.data.segment.TextSegment;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The retrieval and grading rules both chat paths follow: how far to over-fetch for the
+ * cross-encoder, how matches become documents, and when the documents can be judged without
+ * asking the grader.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RetrievalPolicy {
+
+    private final CrossEncoderReranker reranker;
+    private final ChunkExpander chunkExpander;
+
+    /**
+     * Documents for the prompt and the cross-encoder's top score, 0 if they were not reranked.
+     */
+    public record Selection(List<String> documents, double rerankScore) {
+    }
+
+    public boolean reranks(RetrievalProfile profile) {
+        return reranker.appliesTo(profile);
+    }
+
+    /**
+     * The profile to search with; reranked chats over-fetch for the cross-encoder.
+     */
+    public RetrievalProfile searchProfile(RetrievalProfile profile) {
+        return reranks(profile) ? profile.withMaxResults(reranker.candidates(profile)) : profile;
+    }
+
+    /**
+     * Whether {@link #select} does blocking work for these matches: cross-encoder scoring or
+     * reading the chunk table.
+     */
+    public boolean selectionBlocks(RetrievalProfile profile, List<TextSegment> matches) {
+        return !matches.isEmpty() && (reranks(profile) || chunkExpander.isEnabled());
+    }
+
+    /**
+     * Reranks the matches if the profile asks for it and expands them into documents.
+     */
+    public Selection select(String userId, String query, List<TextSegment> matches, RetrievalProfile profile,
+                            Deadline deadline) {
+        if (!reranks(profile) || matches.isEmpty()) {
+            return new Selection(chunkExpander.expand(userId, matches), 0.0);
+        }
+        CrossEncoderReranker.Reranked reranked = reranker.rerank(userId, query, matches, profile.maxResults(),
+                deadline);
+        return new Selection(chunkExpander.expand(userId, reranked.segments()), reranked.topScore());
+    }
+
+    /**
+     * The relevance verdict when the grader is not needed, or empty if it has to decide.
+     */
+    public Optional<Boolean> verdictWithoutGrader(List<String> documents, RetrievalProfile profile,
+                                                  Deadline deadline, double rerankScore) {
+        if (documents == null || documents.isEmpty()) {
+            return Optional.of(false);
+        }
+        if (deadline != null && !deadline.allowsOptionalStep()) {
+            // Spend what is left on the answer; retrieval already applied a score threshold
+            log.info("Skipping grading, {} ms left", deadline.remaining().toMillis());
+            return Optional.of(true);
+        }
+        if (profile.grading() == GradingMode.THRESHOLD) {
+            return Optional.of(true);
+        }
+        if (reranker.settlesRelevance(rerankScore)) {
+            log.info("Skipping grading, top rerank score {}", rerankScore);
+            return Optional.of(true);
+        }
+        return Optional.empty();
+    }
+}
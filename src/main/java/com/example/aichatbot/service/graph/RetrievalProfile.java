@@ -0,0 +1,19 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.enums.GradingMode;
+
+/**
+ * How a chat searches for documents: how many matches it keeps, how close they must be,
+ * how hard Qdrant searches its index, and how the matches are checked before answering.
+ *
+ * @param searchEf HNSW {@code ef} for the search, or 0 for the collection's default
+ */
+public record RetrievalProfile(int maxResults, double minScore, int searchEf, boolean rerank,
+                               GradingMode grading) {
+
+    public static final RetrievalProfile DEFAULT = new RetrievalProfile(5, 0.7, 0, false, GradingMode.LLM);
+
+    public RetrievalProfile withMaxResults(int maxResults) {
+        return new RetrievalProfile(maxResults, minScore, searchEf, rerank, grading);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.aichatbot.service.graph;
+
+/**
+ * Finds the text two neighbouring chunks share through the document splitter's overlap.
+ */
+final class TextOverlap {
+
+    private TextOverlap() {
+    }
+
+    /**
+     * Length of the longest end of {@code first} that {@code second} starts with, up to
+     * {@code max} characters, or 0 if it is shorter than {@code min}.
+     */
+    static int length(String first, String second, int min, int max) {
+        int longest = Math.min(max, Math.min(first.length(), second.length()));
+        for (int length = longest; length >= min; length--) {
+            if (first.regionMatches(first.length() - length, second, 0, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.aichatbot.service.llm;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.Set;
+
+/**
+ * A {@link ChatModel} that sends every call through the {@link LlmGateway} at a fixed
+ * priority. The delegate keeps its own listeners, so wrapping does not change what they see.
+ */
+public class GatewayChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final LlmGateway gateway;
+    private final LlmPriority priority;
+
+    public GatewayChatModel(ChatModel delegate, LlmGateway gateway, LlmPriority priority) {
+        this.delegate = delegate;
+        this.gateway = gateway;
+        this.priority = priority;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        return gateway.execute(priority, () -> delegate.chat(chatRequest), GatewayChatModel::outputTokens);
+    }
+
+    static int outputTokens(ChatResponse response) {
+        if (response == null || response.tokenUsage() == null || response.tokenUsage().outputTokenCount() == null) {
+            return -1;
+        }
+        return response.tokenUsage().outputTokenCount();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.aichatbot.service.llm;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.Set;
+
+/**
+ * A {@link StreamingChatModel} that waits for an {@link LlmGateway} slot without blocking
+ * and holds it until the response stream completes or fails.
+ */
+public class GatewayStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final LlmGateway gateway;
+    private final LlmPriority priority;
+
+    public GatewayStreamingChatModel(StreamingChatModel delegate, LlmGateway gateway, LlmPriority priority) {
+        this.delegate = delegate;
+        this.gateway = gateway;
+        this.priority = priority;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        gateway.acquireAsync(priority).whenComplete((permit, error) -> {
+            if (error != null) {
+                handler.onError(error);
+                return;
+            }
+            try {
+                delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+                    @Override
+                    public void onPartialResponse(String partialResponse) {
+                        handler.onPartialResponse(partialResponse);
+                    }
+
+                    @Override
+                    public void onCompleteResponse(ChatResponse completeResponse) {
+                        permit.succeeded(GatewayChatModel.outputTokens(completeResponse));
+                        handler.onCompleteResponse(completeResponse);
+                    }
+
+                    @Override
+                    public void onError(Throwable streamError) {
+                        permit.failed(streamError);
+                        handler.onError(streamError);
+                    }
+                });
+            } catch (RuntimeException e) {
+                permit.failed(e);
+                handler.onError(e);
+            }
+        });
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.aichatbot.service.llm;
+
+import com.example.aichatbot.config.LlmGatewayConfig;
+import com.example.aichatbot.exception.InfrastructureException;
+import com.example.aichatbot.exception.LlmGatewayRejectedException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.exception.TimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounds the number of concurrent calls to the chat model and queues the rest by
+ * {@link LlmPriority}, so interactive chat is served ahead of background work such as
+ * document summaries.
+ * <p>
+ * The limit adapts AIMD style: it grows by roughly one per limit's worth of successful
+ * calls, shrinks by {@code backoff-ratio} when the provider rate limits or times out, and
+ * shrinks gently when a call is much slower than the smoothed latency, which is usually the
+ * first sign of provider-side queueing.
+ * <p>
+ * A one-word grade and a long answer take very different times, so the smoothed latency is
+ * kept per priority and response length class rather than across all calls. As in TCP, a
+ * call that started before the last decrease cannot trigger another one: a burst of
+ * concurrent 429s is one overload signal, not one per call.
+ * <p>
+ * Blocking callers use {@link #execute}; streaming callers take a {@link Permit} from
+ * {@link #acquireAsync} and report the outcome when the stream ends.
+ */
+@Slf4j
+@Component
+public class LlmGateway {
+
+    private static final double LATENCY_SMOOTHING = 0.05;
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final int UNKNOWN_LENGTH = -1;
+
+    /**
+     * Calls whose latencies are comparable: same priority, output lengths within a factor of
+     * four of each other.
+     */
+    private record LatencyClass(LlmPriority priority, int lengthClass) {
+
+        static LatencyClass of(LlmPriority priority, int outputTokens) {
+            int lengthClass = outputTokens < 0
+                    ? UNKNOWN_LENGTH
+                    : (Integer.SIZE - Integer.numberOfLeadingZeros(outputTokens)) / 2;
+            return new LatencyClass(priority, lengthClass);
+        }
+    }
+
+    private static final class Waiter {
+        private final LlmPriority priority;
+        private final long sequence;
+        private final long queuedAt;
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+        private boolean granted;
+
+        private Waiter(LlmPriority priority, long sequence, long queuedAt) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    /**
+     * A concurrency slot held for one model call. The first reported outcome releases it;
+     * later calls are ignored.
+     */
+    public final class Permit {
+        private final LlmPriority priority;
+        private final long startedAt = clock.getAsLong();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(LlmPriority priority) {
+            this.priority = priority;
+        }
+
+        public void succeeded() {
+            succeeded(UNKNOWN_LENGTH);
+        }
+
+        /**
+         * Releases the slot, telling the limit how long the response was so its latency is
+         * compared with calls of a similar length.
+         */
+        public void succeeded(int outputTokens) {
+            if (released.compareAndSet(false, true)) {
+                release(this, TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - startedAt),
+                        LatencyClass.of(priority, outputTokens), null);
+            }
+        }
+
+        public void failed(Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                release(this, -1, null, error);
+            }
+        }
+
+        /**
+         * Releases the slot without feeding the limit, for calls abandoned by the caller.
+         */
+        public void cancelled() {
+            if (released.compareAndSet(false, true)) {
+                release(this, -1, null, null);
+            }
+        }
+    }
+
+    private final LlmGatewayConfig config;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.<Waiter, LlmPriority>comparing(w -> w.priority).thenComparingLong(w -> w.sequence));
+    private final Map<LlmPriority, Timer> queueTimers = new EnumMap<>(LlmPriority.class);
+    private final Counter overloaded;
+    private final Counter rejected;
+
+    private double limit;
+    private int inFlight;
+    private long sequence;
+    private final Map<LatencyClass, Double> smoothedLatencyMs = new HashMap<>();
+    private long lastDecreaseAt;
+
+    @Autowired
+    public LlmGateway(LlmGatewayConfig config, MeterRegistry meterRegistry) {
+        this(config, meterRegistry, System::nanoTime);
+    }
+
+    LlmGateway(LlmGatewayConfig config, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+        this.limit = config.getInitialLimit();
+        this.lastDecreaseAt = clock.getAsLong() - 1;
+        for (LlmPriority priority : LlmPriority.values()) {
+            queueTimers.put(priority, Timer.builder("llm.gateway.queue.time")
+                    .description("Time model calls wait for a concurrency slot")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.overloaded = Counter.builder("llm.gateway.overloaded")
+                .description("Model calls the provider rate limited or timed out")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("llm.gateway.rejected")
+                .description("Model calls turned away because the queue was full or too slow")
+                .register(meterRegistry);
+        Gauge.builder("llm.gateway.limit", this, LlmGateway::getLimit).register(meterRegistry);
+        Gauge.builder("llm.gateway.in.flight", this, LlmGateway::getInFlight).register(meterRegistry);
+        Gauge.builder("llm.gateway.queue.size", this, LlmGateway::getQueueSize).register(meterRegistry);
+    }
+
+    /**
+     * Runs the call once a concurrency slot is free. Throws {@link LlmGatewayRejectedException}
+     * if the queue is full or no slot frees up within {@code max-queue-time}.
+     */
+    public <T> T execute(LlmPriority priority, Supplier<T> call) {
+        return execute(priority, call, result -> UNKNOWN_LENGTH);
+    }
+
+    /**
+     * Like {@link #execute(LlmPriority, Supplier)}, reading the response length from the
+     * result so its latency is judged against calls of a similar length.
+     */
+    public <T> T execute(LlmPriority priority, Supplier<T> call, ToIntFunction<T> outputTokens) {
+        Permit permit = acquire(priority);
+        try {
+            T result = call.get();
+            permit.succeeded(outputTokens.applyAsInt(result));
+            return result;
+        } catch (RuntimeException e) {
+            permit.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Completes with a permit once a slot is free, or exceptionally with
+     * {@link LlmGatewayRejectedException} if the queue is full or the wait times out. Cancelling
+     * the future gives up the place in the queue.
+     */
+    public CompletableFuture<Permit> acquireAsync(LlmPriority priority) {
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                queueTimers.get(priority).record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(new Permit(priority));
+            }
+            if (waiters.size() >= config.getMaxQueueSize()) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(
+                        new LlmGatewayRejectedException("Request queue is full"));
+            }
+            waiter = new Waiter(priority, sequence++, clock.getAsLong());
+            waiters.add(waiter);
+        } finally {
+            lock.unlock();
+        }
+
+        CompletableFuture.delayedExecutor(config.getMaxQueueTime().toNanos(), TimeUnit.NANOSECONDS)
+                .execute(() -> expire(waiter));
+        waiter.future.whenComplete((permit, error) -> {
+            if (error instanceof CancellationException) {
+                abandon(waiter);
+            }
+        });
+        return waiter.future;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit acquire(LlmPriority priority) {
+        CompletableFuture<Permit> future = acquireAsync(priority);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            // Granted just before the interrupt; hand the slot back
+            future.thenAccept(Permit::cancelled);
+            Thread.currentThread().interrupt();
+            throw new LlmGatewayRejectedException("Interrupted waiting for a model slot", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new InfrastructureException("LLM gateway", "Failed waiting for a model slot", e.getCause());
+        }
+    }
+
+    private void release(Permit permit, long latencyMs, LatencyClass latencyClass, Throwable error) {
+        boolean overload = error != null && isOverloaded(error);
+        if (overload) {
+            overloaded.increment();
+        }
+
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            if (latencyMs >= 0) {
+                adaptToLatency(permit, latencyMs, latencyClass);
+            } else if (overload && decrease(permit, config.getBackoffRatio())) {
+                log.warn("Model provider is overloaded, concurrency limit lowered to {}", (int) limit);
+            }
+            inFlight--;
+            granted = grantWaiters();
+        } finally {
+            lock.unlock();
+        }
+        complete(granted);
+    }
+
+    private void expire(Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiter.granted || !waiters.remove(waiter)) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        rejected.increment();
+        waiter.future.completeExceptionally(
+                new LlmGatewayRejectedException("Timed out waiting for a model slot"));
+    }
+
+    private void abandon(Waiter waiter) {
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            if (waiter.granted) {
+                inFlight--;
+            } else {
+                waiters.remove(waiter);
+            }
+            granted = grantWaiters();
+        } finally {
+            lock.unlock();
+        }
+        complete(granted);
+    }
+
+    /**
+     * Hands free slots to the queue head. Must hold the lock; the returned waiters are
+     * completed after it is released so their continuations do not run under it.
+     */
+    private List<Waiter> grantWaiters() {
+        List<Waiter> granted = new ArrayList<>();
+        while (inFlight < (int) limit && !waiters.isEmpty()) {
+            Waiter next = waiters.poll();
+            next.granted = true;
+            inFlight++;
+            queueTimers.get(next.priority).record(clock.getAsLong() - next.queuedAt, TimeUnit.NANOSECONDS);
+            granted.add(next);
+        }
+        return granted;
+    }
+
+    private void complete(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            // A waiter cancelled in between has already returned its slot in abandon()
+            waiter.future.complete(new Permit(waiter.priority));
+        }
+    }
+
+    private void adaptToLatency(Permit permit, long latencyMs, LatencyClass latencyClass) {
+        double smoothed = smoothedLatencyMs.getOrDefault(latencyClass, (double) latencyMs);
+        if (latencyMs > smoothed * config.getLatencyTolerance()) {
+            decrease(permit, LATENCY_BACKOFF);
+        } else if (inFlight >= (int) limit) {
+            // Only grow while the current limit is actually in use
+            setLimit(limit + 1.0 / limit);
+        }
+        smoothedLatencyMs.put(latencyClass, smoothed + (latencyMs - smoothed) * LATENCY_SMOOTHING);
+    }
+
+    /**
+     * Multiplies the limit by {@code ratio} unless the call started before the last decrease,
+     * whose conditions it already reflects. Must hold the lock.
+     */
+    private boolean decrease(Permit permit, double ratio) {
+        if (permit.startedAt - lastDecreaseAt <= 0) {
+            return false;
+        }
+        setLimit(limit * ratio);
+        lastDecreaseAt = clock.getAsLong();
+        return true;
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), newLimit));
+    }
+
+    private static boolean isOverloaded(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RateLimitException || t instanceof TimeoutException) {
+                return true;
+            }
+            String message = t.getMessage();
+            if (message != null && message.contains("RESOURCE_EXHAUSTED")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.aichatbot.service.llm;
+
+/**
+ * Order in which queued model calls are let through; earlier constants go first.
+ */
+public enum LlmPriority {
+    INTERACTIVE, BACKGROUND
+}
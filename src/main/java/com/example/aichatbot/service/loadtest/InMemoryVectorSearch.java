@@ -0,0 +1,49 @@
+package com.example.aichatbot.service.loadtest;
+
+import com.example.aichatbot.service.graph.ChunkExpander;
+import com.example.aichatbot.service.graph.QdrantVectorSearch;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * A {@link QdrantVectorSearch} over the load test's in-memory embedding store, so both chat
+ * paths find what uploads wrote there without a Qdrant instance. The profile's HNSW
+ * {@code ef} does not apply to an exact in-memory search and is ignored.
+ */
+public class InMemoryVectorSearch extends QdrantVectorSearch {
+
+    private final EmbeddingStore<TextSegment> embeddingStore;
+
+    public InMemoryVectorSearch(EmbeddingStore<TextSegment> embeddingStore) {
+        super(null, "in-memory");
+        this.embeddingStore = embeddingStore;
+    }
+
+    @Override
+    public Mono<List<Match>> search(Embedding embedding, String userId, RetrievalProfile profile) {
+        return Mono.fromCallable(() -> embeddingStore.search(EmbeddingSearchRequest.builder()
+                        .queryEmbedding(embedding)
+                        .filter(MetadataFilterBuilder.metadataKey("userId").isEqualTo(userId))
+                        .maxResults(profile.maxResults())
+                        .minScore(profile.minScore())
+                        .build())
+                .matches().stream()
+                .map(InMemoryVectorSearch::toMatch)
+                .toList());
+    }
+
+    private static Match toMatch(EmbeddingMatch<TextSegment> match) {
+        Metadata metadata = match.embedded().metadata();
+        return new Match(match.embedded().text(), match.score(),
+                metadata.getString(ChunkExpander.DOCUMENT_KEY), metadata.getInteger(ChunkExpander.CHUNK_INDEX));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.aichatbot.service.loadtest;
+
+import com.example.aichatbot.service.graph.RagPrompts;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Canned responses for the stand-in chat models. Grading prompts get "yes" so chats take the
+ * full generate path; everything else gets a fixed-length filler answer.
+ */
+final class StubAnswers {
+
+    private static final String[] WORDS = {
+            "the", "document", "describes", "how", "the", "system", "handles", "requests",
+            "under", "load", "and", "which", "limits", "apply", "to", "each", "tenant"
+    };
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private StubAnswers() {
+    }
+
+    static List<String> tokens(ChatRequest request, int answerWords) {
+        if (isGrading(request)) {
+            return List.of("yes");
+        }
+        List<String> tokens = new ArrayList<>(answerWords);
+        for (int i = 0; i < answerWords; i++) {
+            tokens.add(i == 0 ? "Stub" : " " + WORDS[i % WORDS.length]);
+        }
+        return tokens;
+    }
+
+    /**
+     * Estimates usage from the prompt length, as the quota service does before the call.
+     */
+    static TokenUsage usage(ChatRequest request, List<String> tokens) {
+        int promptChars = request.messages().stream()
+                .mapToInt(message -> text(message).length())
+                .sum();
+        return new TokenUsage(promptChars / CHARS_PER_TOKEN + 1, tokens.size());
+    }
+
+    private static boolean isGrading(ChatRequest request) {
+        return request.messages().stream()
+                .anyMatch(message -> text(message).startsWith(RagPrompts.GRADER_SYSTEM_PROMPT));
+    }
+
+    private static String text(ChatMessage message) {
+        if (message instanceof SystemMessage system) {
+            return system.text();
+        }
+        if (message instanceof UserMessage user && user.hasSingleText()) {
+            return user.singleText();
+        }
+        return "";
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.aichatbot.service.loadtest;
+
+import com.example.aichatbot.config.LoadTestConfig;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.RateLimitException;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples latency and injected failures for a stand-in model.
+ */
+public class StubBehaviour {
+
+    /**
+     * The 99th percentile of the standard normal distribution.
+     */
+    private static final double Z_99 = 2.326;
+
+    private final LoadTestConfig.Stub config;
+    private final double sigma;
+
+    public StubBehaviour(LoadTestConfig.Stub config) {
+        this.config = config;
+        double median = Math.max(1, config.getMedian().toNanos());
+        double p99 = Math.max(median, config.getP99().toNanos());
+        this.sigma = Math.log(p99 / median) / Z_99;
+    }
+
+    public Duration sampleLatency() {
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Duration.ofNanos((long) (config.getMedian().toNanos() * Math.exp(sigma * gaussian)));
+    }
+
+    /**
+     * Returns the failure to report for this call, or null if it should succeed. The rate
+     * limit message matches what Gemini returns, so the LLM gateway backs off as it would
+     * in production.
+     */
+    public RuntimeException sampleFailure() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < config.getRateLimitRate()) {
+            return new RateLimitException("RESOURCE_EXHAUSTED: injected by the loadtest profile");
+        }
+        if (roll < config.getRateLimitRate() + config.getErrorRate()) {
+            return new InternalServerException("Injected by the loadtest profile");
+        }
+        return null;
+    }
+
+    /**
+     * Sleeps for a sampled latency, then throws a sampled failure if there is one.
+     */
+    public void simulateCall() {
+        try {
+            TimeUnit.NANOSECONDS.sleep(sampleLatency().toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during a simulated model call", e);
+        }
+        RuntimeException failure = sampleFailure();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.aichatbot.service.loadtest;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+
+import java.util.List;
+
+/**
+ * A {@link ChatModel} that answers after a simulated delay without calling a provider.
+ */
+public class StubChatModel implements ChatModel {
+
+    private final StubBehaviour behaviour;
+    private final int answerWords;
+
+    public StubChatModel(StubBehaviour behaviour, int answerWords) {
+        this.behaviour = behaviour;
+        this.answerWords = answerWords;
+    }
+
+    @Override
+    public ChatResponse doChat(ChatRequest chatRequest) {
+        behaviour.simulateCall();
+        List<String> tokens = StubAnswers.tokens(chatRequest, answerWords);
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from(String.join("", tokens)))
+                .tokenUsage(StubAnswers.usage(chatRequest, tokens))
+                .finishReason(FinishReason.STOP)
+                .build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.aichatbot.service.loadtest;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An {@link EmbeddingModel} that hashes words into a fixed number of buckets after a
+ * simulated delay. Texts that share words get similar vectors, so retrieval over uploaded
+ * documents still finds matches and exercises grading and generation.
+ */
+public class StubEmbeddingModel implements EmbeddingModel {
+
+    private final StubBehaviour behaviour;
+    private final int dimension;
+
+    public StubEmbeddingModel(StubBehaviour behaviour, int dimension) {
+        this.behaviour = behaviour;
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        behaviour.simulateCall();
+        return Response.from(textSegments.stream()
+                .map(segment -> vectorOf(segment.text()))
+                .toList());
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    private Embedding vectorOf(String text) {
+        float[] vector = new float[dimension];
+        // Blank text still needs a vector that can be normalised
+        vector[0] = 1e-3f;
+        for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (!word.isEmpty()) {
+                vector[Math.floorMod(word.hashCode(), dimension)] += 1;
+            }
+        }
+        Embedding embedding = Embedding.from(vector);
+        embedding.normalize();
+        return embedding;
+    }
+}
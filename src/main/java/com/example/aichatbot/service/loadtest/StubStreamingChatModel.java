@@ -0,0 +1,70 @@
+package com.example.aichatbot.service.loadtest;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.FinishReason;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link StreamingChatModel} that emits a canned answer token by token on its own
+ * scheduler, so like a real provider it holds no caller thread while the stream is in flight.
+ */
+public class StubStreamingChatModel implements StreamingChatModel, AutoCloseable {
+
+    private final StubBehaviour behaviour;
+    private final int answerWords;
+    private final Duration tokenInterval;
+    private final ScheduledExecutorService scheduler;
+
+    public StubStreamingChatModel(StubBehaviour behaviour, int answerWords, Duration tokenInterval) {
+        this.behaviour = behaviour;
+        this.answerWords = answerWords;
+        this.tokenInterval = tokenInterval;
+        this.scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "stub-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        List<String> tokens = StubAnswers.tokens(chatRequest, answerWords);
+        long firstTokenNanos = behaviour.sampleLatency().toNanos();
+        RuntimeException failure = behaviour.sampleFailure();
+        if (failure != null) {
+            scheduler.schedule(() -> handler.onError(failure), firstTokenNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        emit(chatRequest, tokens, 0, handler, firstTokenNanos);
+    }
+
+    private void emit(ChatRequest chatRequest, List<String> tokens, int index,
+            StreamingChatResponseHandler handler, long delayNanos) {
+        scheduler.schedule(() -> {
+            if (index < tokens.size()) {
+                handler.onPartialResponse(tokens.get(index));
+                emit(chatRequest, tokens, index + 1, handler, tokenInterval.toNanos());
+                return;
+            }
+            handler.onCompleteResponse(ChatResponse.builder()
+                    .aiMessage(AiMessage.from(String.join("", tokens)))
+                    .tokenUsage(StubAnswers.usage(chatRequest, tokens))
+                    .finishReason(FinishReason.STOP)
+                    .build());
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
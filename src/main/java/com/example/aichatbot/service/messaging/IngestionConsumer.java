@@ -11,11 +11,6 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.stream.StreamListener;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.List;
-import java.util.stream.Collectors;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -26,6 +21,7 @@ public class IngestionConsumer implements StreamListener<String, ObjectRecord<St
     private final ObjectMapper objectMapper;
     private final StreamDLQService dlqService;
     private final StreamConfig streamConfig;
+    private final StreamTracing streamTracing;
 
     // TODO: Ideally configurable
     private static final int MAX_RETRIES = 3;
@@ -57,10 +53,7 @@ public class IngestionConsumer implements StreamListener<String, ObjectRecord<St
         IngestionEvent event = objectMapper.readValue(message.getValue(), IngestionEvent.class);
         log.info("Job {}: Consumed event for user {}", event.getJobId(), event.getUserId());
 
-        List<Path> paths = event.getFilePaths().stream()
-                .map(Paths::get)
-                .collect(Collectors.toList());
-
-        documentService.ingestFiles(event.getJobId(), paths, event.getUserId());
+        streamTracing.consume(event.getTraceContext(), "ingestion.consume",
+                () -> documentService.ingestFiles(event.getJobId(), event.getFileKeys(), event.getUserId()));
     }
 }
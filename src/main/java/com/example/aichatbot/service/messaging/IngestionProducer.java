@@ -18,9 +18,11 @@ public class IngestionProducer {
     private final StringRedisTemplate redisTemplate;
     private final ObjectMapper objectMapper;
     private final StreamConfig streamConfig;
+    private final StreamTracing streamTracing;
 
     public void publish(IngestionEvent event) {
         try {
+            event.setTraceContext(streamTracing.currentContext());
             String json = objectMapper.writeValueAsString(event);
 
             ObjectRecord<String, String> record = StreamRecords.newRecord()
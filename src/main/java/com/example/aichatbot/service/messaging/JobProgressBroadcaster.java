@@ -0,0 +1,114 @@
+package com.example.aichatbot.service.messaging;
+
+import com.example.aichatbot.model.IngestionJob;
+import com.example.aichatbot.service.JobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Pushes job progress to SSE subscribers connected to this instance. {@link JobService}
+ * publishes the job id on every change; the job is read from Redis once per change and
+ * fanned out locally, so Redis load follows the ingestion rate rather than the number of
+ * watching clients.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JobProgressBroadcaster implements MessageListener {
+
+    private static final String EVENT_NAME = "progress";
+
+    private final JobService jobService;
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    @Value("${app.job.stream-timeout-ms:600000}")
+    private long streamTimeoutMs;
+
+    /**
+     * Opens a stream for the job and sends the current state right away. Returns empty if the
+     * job does not exist.
+     */
+    public Optional<SseEmitter> subscribe(String jobId) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        // Register before the first read so no update between the two is lost
+        subscribers.computeIfAbsent(jobId, id -> new CopyOnWriteArraySet<>()).add(emitter);
+        emitter.onCompletion(() -> unsubscribe(jobId, emitter));
+        emitter.onTimeout(() -> unsubscribe(jobId, emitter));
+        emitter.onError(e -> unsubscribe(jobId, emitter));
+
+        IngestionJob job = jobService.getJob(jobId);
+        if (job == null) {
+            unsubscribe(jobId, emitter);
+            return Optional.empty();
+        }
+
+        send(jobId, emitter, job);
+        if (job.getStatus() == IngestionJob.JobStatus.COMPLETED) {
+            emitter.complete();
+        }
+        return Optional.of(emitter);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String jobId = new String(message.getBody(), StandardCharsets.UTF_8);
+        Set<SseEmitter> emitters = subscribers.get(jobId);
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+
+        IngestionJob job = jobService.getJob(jobId);
+        if (job == null) {
+            log.debug("Job {} expired while being watched", jobId);
+            closeAll(jobId);
+            return;
+        }
+
+        for (SseEmitter emitter : emitters) {
+            send(jobId, emitter, job);
+        }
+        if (job.getStatus() == IngestionJob.JobStatus.COMPLETED) {
+            closeAll(jobId);
+        }
+    }
+
+    private void send(String jobId, SseEmitter emitter, IngestionJob job) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(EVENT_NAME)
+                    .data(job, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the container reports the error and we drop the emitter
+            log.debug("Dropping progress subscriber for job {}: {}", jobId, e.getMessage());
+            unsubscribe(jobId, emitter);
+        }
+    }
+
+    private void closeAll(String jobId) {
+        Set<SseEmitter> emitters = subscribers.remove(jobId);
+        if (emitters != null) {
+            emitters.forEach(SseEmitter::complete);
+        }
+    }
+
+    private void unsubscribe(String jobId, SseEmitter emitter) {
+        subscribers.computeIfPresent(jobId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
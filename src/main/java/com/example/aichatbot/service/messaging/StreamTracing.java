@@ -0,0 +1,55 @@
+package com.example.aichatbot.service.messaging;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Carries trace context across the Redis stream. Producers attach the current context to
+ * the event; consumers continue it, so one trace covers the upload request and the
+ * ingestion on whichever node picks the event up.
+ */
+@Component
+@RequiredArgsConstructor
+public class StreamTracing {
+
+    private final Tracer tracer;
+    private final Propagator propagator;
+
+    /**
+     * Propagation headers for the current span, empty when there is none.
+     */
+    public Map<String, String> currentContext() {
+        Map<String, String> headers = new HashMap<>();
+        Span span = tracer.currentSpan();
+        if (span != null) {
+            propagator.inject(span.context(), headers, Map::put);
+        }
+        return headers;
+    }
+
+    /**
+     * Runs the work in a consumer span that continues the trace in {@code headers}, or
+     * starts a new trace if they are missing.
+     */
+    public void consume(Map<String, String> headers, String name, Runnable work) {
+        Map<String, String> carrier = headers == null ? Map.of() : headers;
+        Span span = propagator.extract(carrier, Map::get)
+                .name(name)
+                .kind(Span.Kind.CONSUMER)
+                .start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            work.run();
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
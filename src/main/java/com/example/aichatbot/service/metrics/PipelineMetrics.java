@@ -0,0 +1,209 @@
+package com.example.aichatbot.service.metrics;
+
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.service.UserTenantResolver;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Timers and distributions for each step of the chat and ingestion pipelines, published
+ * with histograms so latency percentiles can be aggregated across instances.
+ * <p>
+ * Chat steps are tagged with the user's tenant tier, the model the step calls and the
+ * outcome. Synchronous steps are wrapped with {@code time}; asynchronous ones take a
+ * {@link Timer.Sample} from {@link #start()} and stop it when they finish. Ingestion steps
+ * also run in a child span of the current trace.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PipelineMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String BLOCKED = "blocked";
+
+    static final String NO_MODEL = "none";
+    static final String UNKNOWN_TIER = "unknown";
+
+    public enum ChatStage {
+        GUARD_INPUT, REWRITE, EMBED, SEARCH, RERANK, EXPAND, GRADE, GENERATE, CLARIFY, GUARD_OUTPUT, PERSIST, TOTAL;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    public enum IngestionStage {
+        PARSE, SPLIT, EMBED, STORE, SUMMARIZE, PERSIST;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final MetricsConfig config;
+    private final UserTenantResolver tenantResolver;
+    private final Tracer tracer;
+
+    public <T> T time(ChatStage stage, String userId, Supplier<T> call) {
+        Timer.Sample sample = start();
+        String outcome = ERROR;
+        try {
+            T result = call.get();
+            outcome = SUCCESS;
+            return result;
+        } finally {
+            stop(sample, stage, userId, outcome);
+        }
+    }
+
+    public <T> T time(IngestionStage stage, Supplier<T> call) {
+        Timer.Sample sample = start();
+        Span span = tracer.nextSpan().name("ingestion." + stage.tag()).start();
+        String outcome = ERROR;
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            T result = call.get();
+            outcome = SUCCESS;
+            return result;
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+            stop(sample, stage, outcome);
+        }
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Records a chat step. {@code userId} may be null where the caller does not know the
+     * user, such as the guard aspect; the step is then reported under the unknown tier.
+     */
+    public void stop(Timer.Sample sample, ChatStage stage, String userId, String outcome) {
+        sample.stop(Timer.builder("rag.stage")
+                .description("Time spent in each step of a chat request")
+                .tag("stage", stage.tag())
+                .tag("tier", tierOf(userId))
+                .tag("model", modelOf(stage))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    public void stop(Timer.Sample sample, IngestionStage stage, String outcome) {
+        sample.stop(Timer.builder("ingestion.stage")
+                .description("Time spent in each step of ingesting a file")
+                .tag("stage", stage.tag())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    /**
+     * Records how many documents a search returned and how closely each matched.
+     */
+    public void recordRetrieval(String userId, List<Double> scores) {
+        String tier = tierOf(userId);
+        DistributionSummary.builder("rag.retrieval.documents")
+                .description("Documents returned by the vector search")
+                .tag("tier", tier)
+                .serviceLevelObjectives(0, 1, 2, 3, 4, 5, 10)
+                .register(meterRegistry)
+                .record(scores.size());
+        DistributionSummary scoreSummary = DistributionSummary.builder("rag.retrieval.score")
+                .description("Similarity score of each retrieved document")
+                .tag("tier", tier)
+                .serviceLevelObjectives(0.5, 0.6, 0.7, 0.75, 0.8, 0.85, 0.9, 0.95, 1.0)
+                .register(meterRegistry);
+        scores.forEach(scoreSummary::record);
+    }
+
+    /**
+     * Counts rerank attempts by outcome: {@code reranked}, or the reason the vector order
+     * was kept instead.
+     */
+    public void recordRerank(String userId, String outcome) {
+        meterRegistry.counter("rag.rerank", "tier", tierOf(userId), "outcome", outcome).increment();
+    }
+
+    /**
+     * Records the size of the retrieved context before and after it was fitted into the
+     * prompt budget.
+     */
+    public void recordContextTokens(String userId, int before, int after) {
+        String tier = tierOf(userId);
+        contextTokens(tier, "before").record(before);
+        contextTokens(tier, "after").record(after);
+    }
+
+    private DistributionSummary contextTokens(String tier, String phase) {
+        return DistributionSummary.builder("rag.prompt.context.tokens")
+                .description("Tokens of retrieved context per answer, before and after compression")
+                .baseUnit("tokens")
+                .tag("tier", tier)
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void recordTokens(ChatStage stage, String userId, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        String tier = tierOf(userId);
+        tokens(stage, tier, "input").record(orZero(usage.inputTokenCount()));
+        tokens(stage, tier, "output").record(orZero(usage.outputTokenCount()));
+    }
+
+    private DistributionSummary tokens(ChatStage stage, String tier, String direction) {
+        return DistributionSummary.builder("rag.llm.tokens")
+                .description("Tokens per model call")
+                .baseUnit("tokens")
+                .tag("stage", stage.tag())
+                .tag("tier", tier)
+                .tag("model", modelOf(stage))
+                .tag("direction", direction)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private String modelOf(ChatStage stage) {
+        return switch (stage) {
+            case EMBED -> config.getEmbeddingModel();
+            case REWRITE, GRADE, GENERATE, CLARIFY -> config.getChatModel();
+            default -> NO_MODEL;
+        };
+    }
+
+    private String tierOf(String userId) {
+        if (userId == null) {
+            return UNKNOWN_TIER;
+        }
+        try {
+            return config.tierOf(tenantResolver.tenantOf(userId));
+        } catch (RuntimeException e) {
+            // Metrics must never fail the request they describe
+            log.debug("Could not resolve tenant of user {}: {}", userId, e.getMessage());
+            return UNKNOWN_TIER;
+        }
+    }
+
+    private static int orZero(Integer count) {
+        return count == null ? 0 : count;
+    }
+}
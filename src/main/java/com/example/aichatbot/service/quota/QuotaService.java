@@ -0,0 +1,219 @@
+package com.example.aichatbot.service.quota;
+
+import com.example.aichatbot.config.QuotaConfig;
+import com.example.aichatbot.exception.RateLimitExceededException;
+import com.example.aichatbot.service.UserTenantResolver;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control for chat requests. Each request is charged against token buckets in
+ * Redis for its tenant and its user, counting both requests and estimated tokens, before
+ * any embedding or model call is made.
+ * <p>
+ * To keep Redis off the hot path, each instance keeps a local tier of leases: a user in an
+ * ongoing conversation (admitted again within {@code app.quota.lease-ttl} of their last
+ * admission on this instance, a minute by default, so normal chat cadence qualifies) is
+ * granted a slice of {@code lease-requests} requests and their tokens, which this instance
+ * serves without Redis until it is used up or expires. At steady state that is one Redis
+ * call per slice instead of one per request. A user's first request is charged alone, so
+ * one-off requests do not pay for a slice and its refund. Slices are charged to both the
+ * tenant's and the user's buckets up front, so the buckets never hand out more than their
+ * limits, and whatever is left of a slice when it expires, or when the instance shuts down,
+ * is refunded.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class QuotaService {
+
+    private static final String KEY_PREFIX = "quota:";
+    private static final String REJECTED_MESSAGE = "Rate limit exceeded. Please wait a moment and try again.";
+    private static final RedisScript<Long> TAKE = RedisScript.of(
+            new ClassPathResource("scripts/token-bucket.lua"), Long.class);
+
+    @AllArgsConstructor
+    private static final class Lease {
+        private final String tenantId;
+        private long requests;
+        private long tokens;
+        private final long expiresAt;
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserTenantResolver userTenantResolver;
+    private final QuotaConfig config;
+    private final LongSupplier clock;
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastAdmitted = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QuotaService(StringRedisTemplate redisTemplate, UserTenantResolver userTenantResolver,
+                        QuotaConfig config) {
+        this(redisTemplate, userTenantResolver, config, System::currentTimeMillis);
+    }
+
+    /**
+     * Admits one chat request or throws {@link RateLimitExceededException} with the time
+     * until it would fit.
+     */
+    public void admit(String userId, String message) {
+        if (!config.isEnabled() || userId == null) {
+            return;
+        }
+        long tokens = estimateTokens(message);
+        if (takeFromLease(userId, tokens)) {
+            return;
+        }
+
+        String tenantId = userTenantResolver.tenantOf(userId);
+        long now = clock.getAsLong();
+        Long previous = lastAdmitted.get(userId);
+        boolean bursting = previous != null && now - previous < config.getLeaseTtl().toMillis();
+        int leaseRequests = bursting ? Math.max(1, config.getLeaseRequests()) : 1;
+        long waitMs = take(tenantId, userId, leaseRequests, tokens * leaseRequests);
+        if (waitMs == 0) {
+            if (leaseRequests > 1) {
+                Lease lease = new Lease(tenantId, leaseRequests - 1, tokens * (leaseRequests - 1),
+                        now + config.getLeaseTtl().toMillis());
+                Lease replaced = leases.put(userId, lease);
+                if (replaced != null) {
+                    refund(userId, replaced);
+                }
+            }
+            lastAdmitted.put(userId, now);
+            return;
+        }
+
+        // Not enough room for a whole lease; the request alone may still fit
+        if (leaseRequests > 1) {
+            waitMs = take(tenantId, userId, 1, tokens);
+            if (waitMs == 0) {
+                lastAdmitted.put(userId, now);
+                return;
+            }
+        }
+        log.info("Rejected chat request for user {} of tenant {}, retry in {} ms", userId, tenantId, waitMs);
+        throw new RateLimitExceededException(REJECTED_MESSAGE, formatRetryAfter(waitMs));
+    }
+
+    @Scheduled(fixedDelayString = "${app.quota.lease-eviction-interval-ms:60000}")
+    public void evictExpiredLeases() {
+        long now = clock.getAsLong();
+        leases.forEach((userId, lease) -> {
+            if (lease.expiresAt <= now && leases.remove(userId, lease)) {
+                refund(userId, lease);
+            }
+        });
+        long idleSince = now - config.getLeaseTtl().toMillis();
+        lastAdmitted.values().removeIf(admittedAt -> admittedAt <= idleSince);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leases.forEach((userId, lease) -> {
+            if (leases.remove(userId, lease)) {
+                refund(userId, lease);
+            }
+        });
+    }
+
+    long estimateTokens(String message) {
+        int length = message == null ? 0 : message.length();
+        return (length + config.getCharsPerToken() - 1) / config.getCharsPerToken() + config.getResponseTokenReserve();
+    }
+
+    private boolean takeFromLease(String userId, long tokens) {
+        long now = clock.getAsLong();
+        boolean[] taken = {false};
+        Lease[] expired = {null};
+        leases.computeIfPresent(userId, (id, lease) -> {
+            if (lease.expiresAt <= now) {
+                expired[0] = lease;
+                return null;
+            }
+            if (lease.requests > 0 && lease.tokens >= tokens) {
+                lease.requests--;
+                lease.tokens -= tokens;
+                taken[0] = true;
+                lastAdmitted.put(userId, now);
+            }
+            return lease.requests > 0 ? lease : null;
+        });
+        if (expired[0] != null) {
+            refund(userId, expired[0]);
+        }
+        return taken[0];
+    }
+
+    /**
+     * Returns the unused part of a lease to the buckets it was charged to.
+     */
+    private void refund(String userId, Lease lease) {
+        if (lease.requests > 0 || lease.tokens > 0) {
+            take(lease.tenantId, userId, -lease.requests, -lease.tokens);
+        }
+    }
+
+    /**
+     * Charges all buckets of the tenant and user at once; a negative cost refunds. Returns 0
+     * if admitted, otherwise the milliseconds until the cost would fit.
+     */
+    private long take(String tenantId, String userId, long requests, long tokens) {
+        // The hash tag keeps a tenant's buckets in one slot so the script also runs on a cluster
+        String tenantPrefix = KEY_PREFIX + "{" + tenantId + "}:";
+        String userPrefix = tenantPrefix + "user:" + userId + ":";
+        List<String> keys = new ArrayList<>(4);
+        List<String> args = new ArrayList<>(12);
+        addBucket(keys, args, tenantPrefix + "requests", config.getTenant().getRequestsPerMinute(), requests);
+        addBucket(keys, args, tenantPrefix + "tokens", config.getTenant().getTokensPerMinute(), tokens);
+        addBucket(keys, args, userPrefix + "requests", config.getUser().getRequestsPerMinute(), requests);
+        addBucket(keys, args, userPrefix + "tokens", config.getUser().getTokensPerMinute(), tokens);
+        if (keys.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            Long waitMs = redisTemplate.execute(TAKE, keys, args.toArray());
+            return waitMs == null ? 0 : waitMs;
+        } catch (RuntimeException e) {
+            // Rate limiting protects the provider quota; losing Redis should not take chat down with it
+            log.warn("Rate limiter unavailable, admitting request for user {}: {}", userId, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static void addBucket(List<String> keys, List<String> args, String key, long perMinute, long cost) {
+        if (perMinute <= 0) {
+            return;
+        }
+        keys.add(key);
+        args.add(Long.toString(perMinute));
+        args.add(Double.toString(perMinute / 60.0));
+        args.add(Long.toString(cost));
+    }
+
+    private static String formatRetryAfter(long waitMs) {
+        long seconds = Math.max(1, (waitMs + 999) / 1000);
+        if (seconds < 60) {
+            return seconds + " second" + (seconds > 1 ? "s" : "");
+        }
+        long minutes = (seconds + 59) / 60;
+        return minutes + " minute" + (minutes > 1 ? "s" : "");
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.aichatbot.service.storage;
+
+import com.example.aichatbot.config.FileStorageConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Content-addressed backend. Blobs are stored once per SHA-256 under a sharded layout
+ * ({@code objects/ab/cd/<hash>}) so no directory grows unbounded, and identical uploads share
+ * a blob. A {@code <hash>.refs} file next to each blob counts the keys pointing at it; the
+ * blob is removed when the last key is deleted.
+ * <p>
+ * The existence check, the move or delete of the blob and the reference count update all run
+ * under an in-process lock striped by hash plus an OS file lock on the refs file, so several
+ * nodes may share the storage directory (e.g. over NFS). The refs file is kept at 0 rather
+ * than deleted, so a node waiting for its lock never ends up locking an unlinked file.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "app.file-storage", name = "backend", havingValue = "content-addressed")
+@RequiredArgsConstructor
+public class ContentAddressedFileStorageService implements FileStorageService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final FileStorageConfig config;
+    private final ReentrantLock[] locks = createLocks();
+
+    @Override
+    public String store(InputStream inputStream, String originalFilename) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("Input stream cannot be null");
+        }
+        String safeFilename = StorageSupport.sanitizeFilename(originalFilename, config);
+
+        try {
+            Path tempFile = newTempFile();
+            MessageDigest digest = StorageSupport.newDigest();
+            try (DigestInputStream digestStream = new DigestInputStream(inputStream, digest)) {
+                // Hash while copying so the content is only read once
+                Files.copy(digestStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return commit(tempFile, StorageSupport.toHex(digest), safeFilename).key();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store file " + originalFilename, e);
+        }
+    }
+
+    @Override
+    public StoredFile store(MultipartFile file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        String safeFilename = StorageSupport.sanitizeFilename(file.getOriginalFilename(), config);
+
+        Path tempFile = newTempFile();
+        // Lets the container rename an already spooled part, see LocalFileStorageService
+        file.transferTo(tempFile.toFile());
+        return commit(tempFile, StorageSupport.sha256(tempFile), safeFilename);
+    }
+
+    @Override
+    public InputStream load(String key) {
+        Path blob = blobPath(StorageSupport.hashOf(key));
+        try {
+            return Files.newInputStream(blob);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load file " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        String hash;
+        try {
+            hash = StorageSupport.hashOf(key);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid storage key: {}", key, e);
+            return;
+        }
+
+        if (!Files.exists(refsPath(hash))) {
+            return;
+        }
+        try {
+            withReferences(hash, references -> {
+                if (references > 1) {
+                    return references - 1;
+                }
+                if (Files.deleteIfExists(blobPath(hash))) {
+                    log.info("Removed unreferenced blob {}", hash);
+                }
+                return 0;
+            });
+        } catch (IOException e) {
+            log.warn("Failed to delete file {}", key, e);
+        }
+    }
+
+    @Override
+    public String filenameOf(String key) {
+        return StorageSupport.filenameOf(key);
+    }
+
+    private StoredFile commit(Path tempFile, String hash, String safeFilename) throws IOException {
+        Path blob = blobPath(hash);
+        long size = Files.size(tempFile);
+
+        withReferences(hash, references -> {
+            if (Files.exists(blob)) {
+                Files.delete(tempFile);
+                log.info("Blob {} already stored, reusing it for {}", hash, safeFilename);
+            } else {
+                moveIntoPlace(tempFile, blob);
+                log.info("Stored blob {} ({} bytes) for {}", hash, size, safeFilename);
+            }
+            return references + 1;
+        });
+
+        return new StoredFile(StorageSupport.contentKey(hash, safeFilename), hash, size);
+    }
+
+    private void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Changes the blob and its reference count atomically for all nodes sharing the directory.
+     */
+    @FunctionalInterface
+    private interface ReferenceUpdate {
+        long apply(long references) throws IOException;
+    }
+
+    /**
+     * Runs the update holding both locks for the hash and stores the count it returns.
+     */
+    private long withReferences(String hash, ReferenceUpdate update) throws IOException {
+        Path refs = refsPath(hash);
+        Files.createDirectories(refs.getParent());
+
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try (FileChannel channel = FileChannel.open(refs, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            ByteBuffer buffer = ByteBuffer.allocate(32);
+            channel.read(buffer, 0);
+            String current = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim();
+            long count = Math.max(0, update.apply(current.isEmpty() ? 0 : Long.parseLong(current)));
+
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(Long.toString(count).getBytes(StandardCharsets.US_ASCII)), 0);
+            channel.force(false);
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path newTempFile() throws IOException {
+        Path tempDir = root().resolve("tmp");
+        Files.createDirectories(tempDir);
+        return tempDir.resolve(UUID.randomUUID() + ".upload");
+    }
+
+    private Path blobPath(String hash) {
+        return root().resolve("objects")
+                .resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(hash);
+    }
+
+    private Path refsPath(String hash) {
+        Path blob = blobPath(hash);
+        return blob.resolveSibling(hash + ".refs");
+    }
+
+    private Path root() {
+        return Paths.get(config.getStoragePath()).toAbsolutePath().normalize();
+    }
+
+    private ReentrantLock lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static ReentrantLock[] createLocks() {
+        ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+}
@@ -1,14 +1,30 @@
 package com.example.aichatbot.service.storage;
 
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Path;
 
+/**
+ * Storage for uploaded documents. Every method takes or returns a backend specific storage
+ * key; callers must treat keys as opaque and only pass them back to the same backend.
+ * The backend is selected with {@code app.file-storage.backend}.
+ */
 public interface FileStorageService {
     String store(InputStream inputStream, String originalFilename);
 
+    /**
+     * Stores an uploaded multipart file, moving the container's spooled temp file into
+     * storage when possible instead of copying it, and hashes the stored content.
+     */
+    StoredFile store(MultipartFile file) throws IOException;
+
     InputStream load(String filename);
 
     void delete(String filename);
 
-    Path resolve(String filename);
+    /**
+     * Returns the original (sanitized) filename a key was stored under.
+     */
+    String filenameOf(String key);
 }
@@ -3,9 +3,9 @@ package com.example.aichatbot.service.storage;
 import com.example.aichatbot.config.FileStorageConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FilenameUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -16,42 +16,18 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.UUID;
 
+/**
+ * Flat directory backend: every upload is written as {@code <uuid>_<filename>} and its
+ * absolute path is used as the storage key, so producer and consumer must share a filesystem.
+ */
 @Slf4j
 @Service
+@ConditionalOnProperty(prefix = "app.file-storage", name = "backend", havingValue = "local", matchIfMissing = true)
 @RequiredArgsConstructor
 public class LocalFileStorageService implements FileStorageService {
 
     private final FileStorageConfig config;
 
-    private String sanitizeFilename(String filename) {
-        if (!StringUtils.hasText(filename)) {
-            throw new IllegalArgumentException("Filename cannot be empty");
-        }
-
-        if (filename.contains("..")) {
-            throw new IllegalArgumentException("Invalid filename: path traversal not allowed");
-        }
-
-        // Normalize the path to remove . and .. sequences
-        String normalized = Paths.get(filename).normalize().toString();
-
-        // Get just the filename without path to prevent directory traversal
-        String name = FilenameUtils.getName(normalized);
-
-        // Validate filename length
-        if (name.length() > config.getMaxFilenameLength()) {
-            throw new IllegalArgumentException("Filename is too long");
-        }
-
-        // Validate file extension
-        String extension = FilenameUtils.getExtension(name).toLowerCase();
-        if (!config.getAllowedExtensions().contains(extension)) {
-            throw new IllegalArgumentException("File type not allowed");
-        }
-
-        return name;
-    }
-
     @Override
     public String store(InputStream inputStream, String originalFilename) {
         if (inputStream == null) {
@@ -59,23 +35,7 @@ public class LocalFileStorageService implements FileStorageService {
         }
 
         try {
-            // Sanitize and validate the filename
-            String safeFilename = sanitizeFilename(originalFilename);
-
-            // Create the target directory if it doesn't exist
-            Path uploadDir = Paths.get(config.getStoragePath()).toAbsolutePath().normalize();
-            if (!Files.exists(uploadDir)) {
-                Files.createDirectories(uploadDir);
-            }
-
-            // Generate a unique filename with a random prefix
-            String uniqueFilename = UUID.randomUUID() + "_" + safeFilename;
-            Path targetPath = uploadDir.resolve(uniqueFilename).normalize();
-
-            // Double check that the target path is within the intended directory
-            if (!targetPath.startsWith(uploadDir)) {
-                throw new SecurityException("Invalid file path");
-            }
+            Path targetPath = newTargetPath(StorageSupport.sanitizeFilename(originalFilename, config));
 
             // Copy the file to the target location
             Files.copy(inputStream, targetPath, StandardCopyOption.REPLACE_EXISTING);
@@ -89,6 +49,49 @@ public class LocalFileStorageService implements FileStorageService {
         }
     }
 
+    @Override
+    public StoredFile store(MultipartFile file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        Path targetPath;
+        try {
+            targetPath = newTargetPath(StorageSupport.sanitizeFilename(file.getOriginalFilename(), config));
+        } catch (InvalidPathException | SecurityException e) {
+            throw new IllegalArgumentException("Invalid file path", e);
+        }
+
+        // transferTo(File) lets the container rename a part it has already spooled to disk
+        // (above the multipart file-size-threshold) instead of copying it a second time.
+        // transferTo(Path) would always stream-copy, so the File overload is used on purpose.
+        file.transferTo(targetPath.toFile());
+
+        String contentHash = StorageSupport.sha256(targetPath);
+        long size = Files.size(targetPath);
+        log.info("Stored file: {} ({} bytes, sha256 {})", targetPath, size, contentHash);
+
+        return new StoredFile(targetPath.toString(), contentHash, size);
+    }
+
+    private Path newTargetPath(String safeFilename) throws IOException {
+        // Create the target directory if it doesn't exist
+        Path uploadDir = Paths.get(config.getStoragePath()).toAbsolutePath().normalize();
+        if (!Files.exists(uploadDir)) {
+            Files.createDirectories(uploadDir);
+        }
+
+        // Generate a unique filename with a random prefix
+        String uniqueFilename = UUID.randomUUID() + "_" + safeFilename;
+        Path targetPath = uploadDir.resolve(uniqueFilename).normalize();
+
+        // Double check that the target path is within the intended directory
+        if (!targetPath.startsWith(uploadDir)) {
+            throw new SecurityException("Invalid file path");
+        }
+        return targetPath;
+    }
+
     @Override
     public InputStream load(String filename) {
         try {
@@ -128,7 +131,11 @@ public class LocalFileStorageService implements FileStorageService {
     }
 
     @Override
-    public Path resolve(String filename) {
+    public String filenameOf(String key) {
+        return resolve(key).getFileName().toString();
+    }
+
+    private Path resolve(String filename) {
         try {
             Path uploadDir = Paths.get(config.getStoragePath()).toAbsolutePath().normalize();
             Path filePath = uploadDir.resolve(filename).normalize();
@@ -0,0 +1,252 @@
+package com.example.aichatbot.service.storage;
+
+import com.example.aichatbot.config.FileStorageConfig;
+import com.example.aichatbot.exception.InfrastructureException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * S3-compatible backend (AWS S3, MinIO, ...). Blobs are content-addressed like
+ * {@link ContentAddressedFileStorageService}, so any ingestion consumer can fetch a file by
+ * key without sharing a filesystem with the API node.
+ * <p>
+ * Reference counts live in Redis. Reference changes are serialized with a short Redis lock per
+ * hash, so a delete of the last reference cannot remove a blob that a concurrent upload has
+ * just decided to reuse. A new blob is uploaded outside the lock and only counted once the PUT
+ * succeeded, so a failed upload leaves no reference behind and a large one cannot outlive the
+ * lock.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "app.file-storage", name = "backend", havingValue = "s3")
+@RequiredArgsConstructor
+public class S3FileStorageService implements FileStorageService {
+
+    private static final String REFS_PREFIX = "storage:refs:";
+    private static final String LOCK_PREFIX = "storage:lock:";
+    private static final long LOCK_RETRY_MS = 50;
+    private static final RedisScript<Long> RELEASE_LOCK = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final S3Client s3Client;
+    private final StringRedisTemplate redisTemplate;
+    private final FileStorageConfig config;
+
+    @PostConstruct
+    void ensureBucket() {
+        String bucket = config.getS3().getBucket();
+        try {
+            s3Client.headBucket(b -> b.bucket(bucket));
+        } catch (NoSuchBucketException e) {
+            log.info("Creating bucket '{}'", bucket);
+            s3Client.createBucket(b -> b.bucket(bucket));
+        } catch (SdkException e) {
+            throw new InfrastructureException("S3", "Bucket " + bucket + " is not accessible", e);
+        }
+    }
+
+    @Override
+    public String store(InputStream inputStream, String originalFilename) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("Input stream cannot be null");
+        }
+        String safeFilename = StorageSupport.sanitizeFilename(originalFilename, config);
+
+        Path tempFile = newTempFile();
+        try {
+            MessageDigest digest = StorageSupport.newDigest();
+            try (DigestInputStream digestStream = new DigestInputStream(inputStream, digest)) {
+                Files.copy(digestStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return upload(tempFile, StorageSupport.toHex(digest), safeFilename).key();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store file " + originalFilename, e);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    @Override
+    public StoredFile store(MultipartFile file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        String safeFilename = StorageSupport.sanitizeFilename(file.getOriginalFilename(), config);
+
+        Path tempFile = newTempFile();
+        try {
+            file.transferTo(tempFile.toFile());
+            return upload(tempFile, StorageSupport.sha256(tempFile), safeFilename);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    @Override
+    public InputStream load(String key) {
+        String objectKey = objectKey(StorageSupport.hashOf(key));
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(config.getS3().getBucket())
+                    .key(objectKey)
+                    .build());
+        } catch (SdkException e) {
+            throw new RuntimeException("Failed to load file " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        String hash;
+        try {
+            hash = StorageSupport.hashOf(key);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid storage key: {}", key, e);
+            return;
+        }
+
+        try {
+            withLock(hash, () -> {
+                Long remaining = redisTemplate.opsForValue().decrement(REFS_PREFIX + hash);
+                if (remaining == null || remaining <= 0) {
+                    s3Client.deleteObject(DeleteObjectRequest.builder()
+                            .bucket(config.getS3().getBucket())
+                            .key(objectKey(hash))
+                            .build());
+                    redisTemplate.delete(REFS_PREFIX + hash);
+                    log.info("Removed unreferenced blob {}", hash);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete file {}", key, e);
+        }
+    }
+
+    @Override
+    public String filenameOf(String key) {
+        return StorageSupport.filenameOf(key);
+    }
+
+    private StoredFile upload(Path file, String hash, String safeFilename) throws IOException {
+        long size = Files.size(file);
+        StoredFile stored = new StoredFile(StorageSupport.contentKey(hash, safeFilename), hash, size);
+
+        boolean reused = withLock(hash, () -> {
+            String references = redisTemplate.opsForValue().get(REFS_PREFIX + hash);
+            if (references == null || Long.parseLong(references) <= 0 || !objectExists(hash)) {
+                return false;
+            }
+            redisTemplate.opsForValue().increment(REFS_PREFIX + hash);
+            return true;
+        });
+        if (reused) {
+            log.info("Blob {} already stored, reusing it for {}", hash, safeFilename);
+            return stored;
+        }
+
+        // Same hash means same bytes, so concurrent uploads of one blob may overwrite each other
+        putObject(file, hash, size);
+        withLock(hash, () -> {
+            if (!objectExists(hash)) {
+                // The last earlier reference was deleted while this upload ran
+                putObject(file, hash, size);
+            }
+            redisTemplate.opsForValue().increment(REFS_PREFIX + hash);
+            return null;
+        });
+        log.info("Uploaded blob {} ({} bytes) for {}", hash, size, safeFilename);
+        return stored;
+    }
+
+    private void putObject(Path file, String hash, long size) {
+        s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(config.getS3().getBucket())
+                        .key(objectKey(hash))
+                        .contentLength(size)
+                        .build(),
+                RequestBody.fromFile(file));
+    }
+
+    private boolean objectExists(String hash) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(config.getS3().getBucket())
+                    .key(objectKey(hash))
+                    .build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        }
+    }
+
+    private <T> T withLock(String hash, Supplier<T> action) {
+        String lockKey = LOCK_PREFIX + hash;
+        String token = UUID.randomUUID().toString();
+        Duration ttl = Duration.ofSeconds(config.getS3().getLockTtlSeconds());
+        long deadline = System.nanoTime() + ttl.toNanos();
+
+        while (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, token, ttl))) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Timed out waiting for storage lock on " + hash);
+            }
+            try {
+                Thread.sleep(LOCK_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for storage lock on " + hash, e);
+            }
+        }
+
+        try {
+            return action.get();
+        } finally {
+            redisTemplate.execute(RELEASE_LOCK, List.of(lockKey), token);
+        }
+    }
+
+    private String objectKey(String hash) {
+        return config.getS3().getKeyPrefix() + hash.substring(0, 2) + "/" + hash;
+    }
+
+    private Path newTempFile() {
+        return Paths.get(System.getProperty("java.io.tmpdir")).resolve(UUID.randomUUID() + ".upload");
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temp file {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.aichatbot.service.storage;
+
+import com.example.aichatbot.config.FileStorageConfig;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Filename validation and content hashing shared by the {@link FileStorageService} backends.
+ */
+final class StorageSupport {
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private StorageSupport() {
+    }
+
+    static String sanitizeFilename(String filename, FileStorageConfig config) {
+        if (!StringUtils.hasText(filename)) {
+            throw new IllegalArgumentException("Filename cannot be empty");
+        }
+
+        if (filename.contains("..")) {
+            throw new IllegalArgumentException("Invalid filename: path traversal not allowed");
+        }
+
+        // Normalize the path to remove . and .. sequences
+        String normalized = Paths.get(filename).normalize().toString();
+
+        // Get just the filename without path to prevent directory traversal
+        String name = FilenameUtils.getName(normalized);
+
+        // Validate filename length
+        if (name.length() > config.getMaxFilenameLength()) {
+            throw new IllegalArgumentException("Filename is too long");
+        }
+
+        // Validate file extension
+        String extension = FilenameUtils.getExtension(name).toLowerCase();
+        if (!config.getAllowedExtensions().contains(extension)) {
+            throw new IllegalArgumentException("File type not allowed");
+        }
+
+        return name;
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Hashes a file with a single sequential read. After a rename the content is usually
+     * still in the page cache, so this costs far less than the write it replaces.
+     */
+    static String sha256(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest);
+    }
+
+    static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Content-addressed keys have the form {@code <sha256>/<filename>}: the hash addresses
+     * the blob, the filename is kept only for display and file type detection.
+     */
+    static String contentKey(String contentHash, String safeFilename) {
+        return contentHash + "/" + safeFilename;
+    }
+
+    static String hashOf(String key) {
+        int slash = key == null ? -1 : key.indexOf('/');
+        if (slash <= 0 || !SHA256_HEX.matcher(key.substring(0, slash)).matches()) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return key.substring(0, slash);
+    }
+
+    static String filenameOf(String key) {
+        hashOf(key);
+        return key.substring(key.indexOf('/') + 1);
+    }
+}
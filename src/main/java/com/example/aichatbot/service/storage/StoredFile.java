@@ -0,0 +1,11 @@
+package com.example.aichatbot.service.storage;
+
+/**
+ * Result of storing an uploaded file.
+ *
+ * @param key         storage key to pass back to {@link FileStorageService#load(String)}
+ * @param contentHash hex encoded SHA-256 of the file content, used for de-duplication
+ * @param size        size of the stored file in bytes
+ */
+public record StoredFile(String key, String contentHash, long size) {
+}
@@ -0,0 +1,19 @@
+-- Text of every ingested chunk, keyed by the document it came from, so retrieval can widen a
+-- matched chunk to its neighbours or its section without another vector search.
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS document_key VARCHAR(36);
+
+CREATE SEQUENCE document_chunks_id_seq INCREMENT BY 50;
+
+CREATE TABLE document_chunks
+(
+    id           BIGINT PRIMARY KEY DEFAULT nextval('document_chunks_id_seq'),
+    document_key VARCHAR(36)  NOT NULL,
+    user_id      VARCHAR(255) NOT NULL,
+    chunk_index  INTEGER      NOT NULL,
+    content      TEXT         NOT NULL,
+    CONSTRAINT uq_document_chunks_position UNIQUE (document_key, chunk_index)
+);
+
+ALTER SEQUENCE document_chunks_id_seq OWNED BY document_chunks.id;
+
+CREATE INDEX idx_document_chunks_user ON document_chunks (user_id);
@@ -0,0 +1,11 @@
+-- Per-tenant retrieval settings. A null column falls back to app.retrieval.defaults.
+CREATE TABLE retrieval_profiles
+(
+    tenant_id   VARCHAR(255) PRIMARY KEY REFERENCES tenants (id) ON DELETE CASCADE,
+    max_results INTEGER,
+    min_score   DOUBLE PRECISION,
+    search_ef   INTEGER,
+    rerank      BOOLEAN,
+    grading     VARCHAR(16),
+    updated_at  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
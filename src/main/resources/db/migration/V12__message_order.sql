@@ -0,0 +1,15 @@
+-- Message ids come from per-instance sequence blocks (V6), so they are not in write order
+-- once several instances run. Listings now order by the write timestamp, with the id as a
+-- tie-breaker within one turn.
+
+UPDATE messages m
+SET timestamp = c.created_at
+FROM conversations c
+WHERE m.conversation_id = c.id
+  AND m.timestamp IS NULL;
+UPDATE messages SET timestamp = CURRENT_TIMESTAMP WHERE timestamp IS NULL;
+ALTER TABLE messages ALTER COLUMN timestamp SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_messages_conversation_timestamp_id
+    ON messages (conversation_id, timestamp DESC, id DESC);
+DROP INDEX IF EXISTS idx_messages_conversation_id_id;
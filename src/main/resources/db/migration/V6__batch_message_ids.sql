@@ -0,0 +1,3 @@
+-- Messages now use a pooled sequence generator (allocationSize = 50) so Hibernate can
+-- batch inserts. The sequence increment must match the allocation size.
+ALTER SEQUENCE messages_id_seq INCREMENT BY 50;
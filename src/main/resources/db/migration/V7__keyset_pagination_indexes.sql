@@ -0,0 +1,10 @@
+-- Indexes matching the keyset pagination order of the conversation and message listings.
+-- The single-column indexes are prefixes of the new ones and are no longer needed.
+
+CREATE INDEX IF NOT EXISTS idx_messages_conversation_id_id
+    ON messages (conversation_id, id DESC);
+DROP INDEX IF EXISTS idx_messages_conversation_id;
+
+CREATE INDEX IF NOT EXISTS idx_conversations_user_updated_id
+    ON conversations (user_id, updated_at DESC, id DESC);
+DROP INDEX IF EXISTS idx_conversations_user_id;
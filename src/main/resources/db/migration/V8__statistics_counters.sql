@@ -0,0 +1,54 @@
+-- Incrementally maintained counters behind the statistics endpoints. Scope is 'global' or
+-- 'user:<id>'; the application adds deltas with an upsert, so rows are only ever adjusted,
+-- never recomputed.
+CREATE TABLE statistics_counters
+(
+    scope  VARCHAR(300) NOT NULL,
+    metric VARCHAR(32)  NOT NULL,
+    value  BIGINT       NOT NULL DEFAULT 0,
+    PRIMARY KEY (scope, metric)
+);
+
+-- Seed from the existing history once
+INSERT INTO statistics_counters (scope, metric, value)
+SELECT 'global', 'USERS', COUNT(*) FROM users
+UNION ALL
+SELECT 'global', 'CONVERSATIONS', COUNT(*) FROM conversations
+UNION ALL
+SELECT 'global', 'MESSAGES', COUNT(*) FROM messages
+UNION ALL
+SELECT 'global', 'DOCUMENTS', COUNT(*) FROM documents
+UNION ALL
+SELECT 'global', 'INPUT_TOKENS', COALESCE(SUM(input_tokens), 0) FROM messages
+UNION ALL
+SELECT 'global', 'OUTPUT_TOKENS', COALESCE(SUM(output_tokens), 0) FROM messages;
+
+INSERT INTO statistics_counters (scope, metric, value)
+SELECT 'user:' || user_id, 'CONVERSATIONS', COUNT(*)
+FROM conversations
+GROUP BY user_id;
+
+INSERT INTO statistics_counters (scope, metric, value)
+SELECT 'user:' || c.user_id, 'MESSAGES', COUNT(*)
+FROM messages m
+         JOIN conversations c ON c.id = m.conversation_id
+GROUP BY c.user_id
+UNION ALL
+SELECT 'user:' || c.user_id, 'INPUT_TOKENS', COALESCE(SUM(m.input_tokens), 0)
+FROM messages m
+         JOIN conversations c ON c.id = m.conversation_id
+GROUP BY c.user_id
+UNION ALL
+SELECT 'user:' || c.user_id, 'OUTPUT_TOKENS', COALESCE(SUM(m.output_tokens), 0)
+FROM messages m
+         JOIN conversations c ON c.id = m.conversation_id
+GROUP BY c.user_id;
+
+INSERT INTO statistics_counters (scope, metric, value)
+SELECT 'user:' || user_id, 'DOCUMENTS', COUNT(*)
+FROM documents
+GROUP BY user_id;
+
+-- The 24h activity counts stay live queries; this index bounds them by recent activity
+-- instead of the table size (the per-user variant uses idx_conversations_user_updated_id)
+CREATE INDEX IF NOT EXISTS idx_conversations_updated_at ON conversations (updated_at);
@@ -0,0 +1,35 @@
+-- Append-only record of every model call's token usage. Rows are never updated; the
+-- rollups below are maintained in the same transaction as each ledger batch.
+CREATE SEQUENCE token_usage_ledger_id_seq INCREMENT BY 50;
+
+CREATE TABLE token_usage_ledger
+(
+    id              BIGINT PRIMARY KEY DEFAULT nextval('token_usage_ledger_id_seq'),
+    occurred_at     TIMESTAMP WITH TIME ZONE NOT NULL,
+    tenant_id       VARCHAR(255)             NOT NULL,
+    user_id         VARCHAR(255)             NOT NULL,
+    conversation_id BIGINT,
+    step            VARCHAR(32)              NOT NULL,
+    model           VARCHAR(128)             NOT NULL,
+    input_tokens    INTEGER                  NOT NULL,
+    output_tokens   INTEGER                  NOT NULL
+);
+
+ALTER SEQUENCE token_usage_ledger_id_seq OWNED BY token_usage_ledger.id;
+
+CREATE INDEX idx_token_usage_ledger_tenant_time ON token_usage_ledger (tenant_id, occurred_at);
+
+-- Hourly and daily sums per tenant, user, step and model (buckets are UTC)
+CREATE TABLE token_usage_rollups
+(
+    granularity   VARCHAR(8)               NOT NULL,
+    bucket_start  TIMESTAMP WITH TIME ZONE NOT NULL,
+    tenant_id     VARCHAR(255)             NOT NULL,
+    user_id       VARCHAR(255)             NOT NULL,
+    step          VARCHAR(32)              NOT NULL,
+    model         VARCHAR(128)             NOT NULL,
+    input_tokens  BIGINT                   NOT NULL DEFAULT 0,
+    output_tokens BIGINT                   NOT NULL DEFAULT 0,
+    calls         BIGINT                   NOT NULL DEFAULT 0,
+    PRIMARY KEY (granularity, tenant_id, bucket_start, user_id, step, model)
+);
@@ -0,0 +1,41 @@
+-- Charges several token buckets at once: either every bucket has room and all of them are
+-- charged, or none is touched.
+--
+-- KEYS: one hash per bucket, holding its current level and the time it was last refilled
+-- ARGV: capacity, refill per second and cost for each key, in the same order
+--
+-- Returns 0 when the cost was taken, otherwise the milliseconds until it would fit. A
+-- negative cost refunds, up to the bucket's capacity.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local levels = {}
+local wait = 0
+for i, key in ipairs(KEYS) do
+  local capacity = tonumber(ARGV[i * 3 - 2])
+  local rate = tonumber(ARGV[i * 3 - 1]) / 1000
+  -- A cost above capacity could never fit; let it drain the bucket instead
+  local cost = math.min(tonumber(ARGV[i * 3]), capacity)
+  local state = redis.call('HMGET', key, 'level', 'ts')
+  local level = tonumber(state[1]) or capacity
+  local ts = tonumber(state[2]) or now
+  level = math.min(capacity, level + math.max(0, now - ts) * rate)
+  levels[i] = level
+  if level < cost then
+    wait = math.max(wait, math.ceil((cost - level) / rate))
+  end
+end
+
+if wait > 0 then
+  return wait
+end
+
+for i, key in ipairs(KEYS) do
+  local capacity = tonumber(ARGV[i * 3 - 2])
+  local rate = tonumber(ARGV[i * 3 - 1]) / 1000
+  local cost = math.min(tonumber(ARGV[i * 3]), capacity)
+  redis.call('HSET', key, 'level', tostring(math.min(capacity, levels[i] - cost)), 'ts', now)
+  -- An idle bucket is full again after capacity / rate; keep it no longer than that
+  redis.call('PEXPIRE', key, math.ceil(capacity / rate) + 1000)
+end
+return 0
@@ -0,0 +1,39 @@
+package com.example.aichatbot.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReadTolerantCacheErrorHandlerTest {
+
+    private final ReadTolerantCacheErrorHandler handler = new ReadTolerantCacheErrorHandler();
+
+    @Test
+    void handleCacheGetError_UnreadableEntry_EvictsItAsAMiss() {
+        // Arrange
+        Cache cache = new ConcurrentMapCache("messages-v2");
+        cache.put(1L, "written by an older release");
+
+        // Act
+        assertDoesNotThrow(() -> handler.handleCacheGetError(
+                new SerializationException("Unknown cache entry format"), cache, 1L));
+
+        // Assert
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void handleCacheEvictError_StillPropagates() {
+        // Arrange
+        Cache cache = new ConcurrentMapCache("messages-v2");
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> handler.handleCacheEvictError(
+                new IllegalStateException("Redis unavailable"), cache, 1L));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.aichatbot.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TwoLevelCacheManagerTest {
+
+    private static final String CHANNEL = "cache-invalidation";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ConcurrentMapCacheManager remote;
+    private TwoLevelCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCacheManager();
+        remote.setAllowNullValues(false);
+        cacheManager = new TwoLevelCacheManager(
+                remote,
+                name -> new TwoLevelCacheManager.LocalSpec(Duration.ofMinutes(1), 100),
+                redisTemplate,
+                objectMapper,
+                CHANNEL);
+    }
+
+    @Test
+    void get_RemoteHit_PopulatesLocalTier() {
+        // Arrange
+        Cache cache = cacheManager.getCache("messages");
+        remote.getCache("messages").put(1L, "page");
+
+        // Act
+        Object first = cache.get(1L).get();
+        remote.getCache("messages").evict(1L);
+        Object second = cache.get(1L).get();
+
+        // Assert
+        assertEquals("page", first);
+        // Served from the local tier once the remote entry is gone
+        assertEquals("page", second);
+    }
+
+    @Test
+    void evict_RemovesBothTiersAndPublishes() throws Exception {
+        // Arrange
+        Cache cache = cacheManager.getCache("messages");
+        cache.put(1L, "page");
+
+        // Act
+        cache.evict(1L);
+
+        // Assert
+        assertNull(cache.get(1L));
+        assertNull(remote.getCache("messages").get(1L));
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(2)).convertAndSend(eq(CHANNEL), payload.capture());
+        CacheInvalidation invalidation = objectMapper.readValue(payload.getValue(), CacheInvalidation.class);
+        assertEquals("messages", invalidation.cacheName());
+        assertEquals("1", invalidation.key());
+    }
+
+    @Test
+    void onMessage_FromOtherInstance_EvictsLocalEntry() throws Exception {
+        // Arrange
+        Cache cache = cacheManager.getCache("messages");
+        cache.put(1L, "stale");
+        // Another instance evicted the entry in Redis and announced it
+        remote.getCache("messages").evict(1L);
+        String payload = objectMapper.writeValueAsString(new CacheInvalidation("other-instance", "messages", "1"));
+
+        // Act
+        cacheManager.onMessage(new DefaultMessage(
+                CHANNEL.getBytes(StandardCharsets.UTF_8), payload.getBytes(StandardCharsets.UTF_8)), null);
+
+        // Assert
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void onMessage_OwnMessage_IsIgnored() throws Exception {
+        // Arrange
+        Cache cache = cacheManager.getCache("messages");
+        cache.put(1L, "page");
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CHANNEL), payload.capture());
+        remote.getCache("messages").evict(1L);
+
+        // Act
+        cacheManager.onMessage(new DefaultMessage(
+                CHANNEL.getBytes(StandardCharsets.UTF_8), payload.getValue().getBytes(StandardCharsets.UTF_8)), null);
+
+        // Assert
+        assertEquals("page", cache.get(1L).get());
+    }
+
+    @Test
+    void onMessage_Malformed_IsIgnored() {
+        // Act
+        cacheManager.onMessage(new DefaultMessage(
+                CHANNEL.getBytes(StandardCharsets.UTF_8), "not json".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Assert
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.aichatbot.cache;
+
+import com.example.aichatbot.dto.CursorPage;
+import com.example.aichatbot.dto.MessageDto;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VersionedRedisSerializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JavaType pageType = objectMapper.getTypeFactory()
+            .constructParametricType(CursorPage.class, MessageDto.class);
+
+    private CursorPage<MessageDto> page(int size) {
+        List<MessageDto> items = new ArrayList<>();
+        for (long i = size; i > 0; i--) {
+            items.add(new MessageDto(i, i % 2 == 0 ? "assistant" : "user", "Message number " + i, 10, 20));
+        }
+        return new CursorPage<>(items, size > 0 ? "1" : null);
+    }
+
+    private VersionedRedisSerializer<CursorPage<MessageDto>> serializer(VersionedRedisSerializer.Format format,
+                                                                         int threshold) {
+        return new VersionedRedisSerializer<>(objectMapper, pageType, format, threshold);
+    }
+
+    @Test
+    void smile_RoundTripsAndIsSmallerThanJson() {
+        // Arrange
+        CursorPage<MessageDto> value = page(20);
+
+        // Act
+        byte[] smile = serializer(VersionedRedisSerializer.Format.SMILE, 0).serialize(value);
+        byte[] json = serializer(VersionedRedisSerializer.Format.JSON, 0).serialize(value);
+
+        // Assert
+        assertEquals(value, serializer(VersionedRedisSerializer.Format.SMILE, 0).deserialize(smile));
+        assertTrue(smile.length < json.length);
+    }
+
+    @Test
+    void aboveThreshold_CompressesWithLz4() {
+        // Arrange
+        CursorPage<MessageDto> value = page(50);
+        VersionedRedisSerializer<CursorPage<MessageDto>> uncompressed = serializer(VersionedRedisSerializer.Format.SMILE, 0);
+        VersionedRedisSerializer<CursorPage<MessageDto>> compressed = serializer(VersionedRedisSerializer.Format.SMILE, 64);
+
+        // Act
+        byte[] plain = uncompressed.serialize(value);
+        byte[] packed = compressed.serialize(value);
+
+        // Assert
+        assertEquals(VersionedRedisSerializer.LZ4_FLAG, (byte) (packed[0] & VersionedRedisSerializer.LZ4_FLAG));
+        assertTrue(packed.length < plain.length);
+        assertEquals(value, compressed.deserialize(packed));
+    }
+
+    @Test
+    void belowThreshold_IsNotCompressed() {
+        // Act
+        byte[] bytes = serializer(VersionedRedisSerializer.Format.JSON, 1024).serialize(page(1));
+
+        // Assert
+        assertEquals(0, bytes[0] & VersionedRedisSerializer.LZ4_FLAG);
+    }
+
+    @Test
+    void json_IsWrittenAsHeaderlessPlainJson() throws Exception {
+        // Arrange
+        CursorPage<MessageDto> value = page(50);
+
+        // Act
+        byte[] bytes = serializer(VersionedRedisSerializer.Format.JSON, 64).serialize(value);
+
+        // Assert
+        assertEquals(value, objectMapper.readValue(bytes, pageType));
+    }
+
+    @Test
+    void deserialize_ReadsEntriesWrittenInAnotherFormat() {
+        // Arrange
+        CursorPage<MessageDto> value = page(5);
+        byte[] json = serializer(VersionedRedisSerializer.Format.JSON, 0).serialize(value);
+
+        // Act
+        CursorPage<MessageDto> read = serializer(VersionedRedisSerializer.Format.SMILE, 0).deserialize(json);
+
+        // Assert
+        assertEquals(value, read);
+    }
+
+    @Test
+    void deserialize_LegacyPlainJson_IsReadWithoutHeader() throws Exception {
+        // Arrange
+        CursorPage<MessageDto> value = page(3);
+        byte[] legacy = objectMapper.writerFor(pageType).writeValueAsBytes(value);
+
+        // Act
+        CursorPage<MessageDto> read = serializer(VersionedRedisSerializer.Format.SMILE, 0).deserialize(legacy);
+
+        // Assert
+        assertEquals(value, read);
+    }
+
+    @Test
+    void deserialize_EmptyOrNull_ReturnsNull() {
+        // Assert
+        assertNull(serializer(VersionedRedisSerializer.Format.SMILE, 0).deserialize(null));
+        assertNull(serializer(VersionedRedisSerializer.Format.SMILE, 0).deserialize(new byte[0]));
+    }
+
+    @Test
+    void deserialize_Garbage_ThrowsSerializationException() {
+        // Act & Assert
+        assertThrows(SerializationException.class,
+                () -> serializer(VersionedRedisSerializer.Format.SMILE, 0).deserialize(new byte[]{2, 1, 2, 3}));
+    }
+}
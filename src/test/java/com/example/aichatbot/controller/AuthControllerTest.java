@@ -6,6 +6,7 @@ import com.example.aichatbot.model.User;
 import com.example.aichatbot.repository.UserRepository;
 import com.example.aichatbot.security.JwtAuthenticationFilter;
 import com.example.aichatbot.security.JwtTokenProvider;
+import com.example.aichatbot.service.StatisticsCounterService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,6 +55,9 @@ class AuthControllerTest {
     @MockitoBean
     private JwtTokenProvider jwtTokenProvider;
 
+    @MockitoBean
+    private StatisticsCounterService counterService;
+
     @MockitoBean
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
@@ -2,12 +2,17 @@ package com.example.aichatbot.controller;
 
 import com.example.aichatbot.config.TestSecurityConfig;
 import com.example.aichatbot.dto.ChatRequestDto;
+import com.example.aichatbot.dto.ChatStreamEventDto;
+import com.example.aichatbot.exception.RateLimitExceededException;
 import com.example.aichatbot.model.Conversation;
 import com.example.aichatbot.model.User;
 import com.example.aichatbot.repository.UserRepository;
 import com.example.aichatbot.security.JwtAuthenticationFilter;
 import com.example.aichatbot.service.ChatService;
 import com.example.aichatbot.service.ConversationService;
+import com.example.aichatbot.service.DeadlineService;
+import com.example.aichatbot.service.ReactiveChatService;
+import com.example.aichatbot.service.quota.QuotaService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,14 +32,22 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(ChatController.class)
@@ -52,9 +65,18 @@ class ChatControllerTest {
     @MockitoBean
     private ConversationService conversationService;
 
+    @MockitoBean
+    private ReactiveChatService reactiveChatService;
+
+    @MockitoBean
+    private DeadlineService deadlineService;
+
     @MockitoBean
     private UserRepository userRepository;
 
+    @MockitoBean
+    private QuotaService quotaService;
+
     @MockitoBean
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
@@ -98,7 +120,7 @@ class ChatControllerTest {
         existingConv.setUserId(userId);
         when(conversationService.getConversation(100L)).thenReturn(Optional.of(existingConv));
 
-        when(chatService.processChat(eq(userId), eq(100L), anyString(), any())).thenReturn("AI Response");
+        when(chatService.processChat(eq(userId), eq(100L), anyString(), any(), any())).thenReturn("AI Response");
 
         // Act & Assert
         mockMvc.perform(post("/api/v1/chat")
@@ -119,7 +141,7 @@ class ChatControllerTest {
         mockConv.setId(200L);
 
         when(conversationService.createConversation(eq("1"), anyString())).thenReturn(mockConv);
-        when(chatService.processChat(eq("1"), eq(200L), anyString(), any())).thenReturn("Welcome");
+        when(chatService.processChat(eq("1"), eq(200L), anyString(), any(), any())).thenReturn("Welcome");
 
         // Act & Assert
         mockMvc.perform(post("/api/v1/chat")
@@ -130,6 +152,54 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$.response").value("Welcome"));
     }
 
+    @Test
+    void chat_OverQuota_RejectsBeforeCreatingConversation() throws Exception {
+        // Arrange
+        ChatRequestDto request = new ChatRequestDto(null, "Hello", null);
+        doThrow(new RateLimitExceededException("Rate limit exceeded", "3 seconds"))
+                .when(quotaService).admit("1", "Hello");
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/chat")
+                        .principal(getMockPrincipal())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests());
+        verify(conversationService, never()).createConversation(anyString(), anyString());
+        verify(chatService, never()).processChat(anyString(), any(), anyString(), any(), any());
+    }
+
+    @Test
+    void streamChat_NewConversation_StreamsEvents() throws Exception {
+        // Arrange
+        ChatRequestDto chatRequest = new ChatRequestDto(null, "Hello", null);
+
+        Conversation mockConv = new Conversation();
+        mockConv.setId(300L);
+
+        when(conversationService.createConversation(eq("1"), anyString())).thenReturn(mockConv);
+        when(reactiveChatService.streamChat(eq("1"), eq(300L), eq("Hello"), any(), any())).thenReturn(Flux.just(
+                ChatStreamEventDto.token("Hi"),
+                ChatStreamEventDto.token(" there"),
+                ChatStreamEventDto.done(300L)));
+
+        // Act
+        MvcResult result = mockMvc.perform(post("/api/v1/chat/stream")
+                        .principal(getMockPrincipal())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(chatRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("event:token"));
+        assertTrue(body.contains("\"content\":\" there\""));
+        assertTrue(body.contains("event:done"));
+    }
+
     private static <T> T eq(T value) {
         return ArgumentMatchers.eq(value);
     }
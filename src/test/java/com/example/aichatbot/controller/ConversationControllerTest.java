@@ -1,8 +1,10 @@
 package com.example.aichatbot.controller;
 
 import com.example.aichatbot.config.TestSecurityConfig;
+import com.example.aichatbot.dto.ConversationSummaryDto;
+import com.example.aichatbot.dto.CursorPage;
+import com.example.aichatbot.dto.MessageDto;
 import com.example.aichatbot.model.Conversation;
-import com.example.aichatbot.model.Message;
 import com.example.aichatbot.model.User;
 import com.example.aichatbot.repository.UserRepository;
 import com.example.aichatbot.security.JwtAuthenticationFilter;
@@ -58,29 +60,44 @@ class ConversationControllerTest {
         mockUser.setUsername("testuser");
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(mockUser));
 
-        Conversation conv1 = new Conversation();
-        conv1.setId(1L);
-        conv1.setUserId("10");
-        conv1.setTitle("Chat 1");
-        conv1.setCreatedAt(LocalDateTime.now());
+        ConversationSummaryDto conv1 = new ConversationSummaryDto(1L, "Chat 1", LocalDateTime.now(), LocalDateTime.now());
+        ConversationSummaryDto conv2 = new ConversationSummaryDto(2L, "Chat 2", LocalDateTime.now(), LocalDateTime.now());
 
-        Conversation conv2 = new Conversation();
-        conv2.setId(2L);
-        conv2.setUserId("10");
-        conv2.setTitle("Chat 2");
-        conv2.setCreatedAt(LocalDateTime.now());
+        when(conversationService.getUserConversations("10", null, 50))
+                .thenReturn(new CursorPage<>(Arrays.asList(conv1, conv2), "next-cursor"));
 
-        List<Conversation> conversations = Arrays.asList(conv1, conv2);
-        when(conversationService.getUserConversations("10")).thenReturn(conversations);
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/conversations")
+                .principal(mockPrincipal))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.items[0].title").value("Chat 1"))
+                .andExpect(jsonPath("$.items[1].id").value(2))
+                .andExpect(jsonPath("$.items[1].title").value("Chat 2"))
+                .andExpect(jsonPath("$.nextCursor").value("next-cursor"));
+    }
+
+    @Test
+    void getConversations_WithCursor_PassesCursorAndLimit() throws Exception {
+        // Arrange
+        Principal mockPrincipal = Mockito.mock(Principal.class);
+        when(mockPrincipal.getName()).thenReturn("testuser");
+
+        User mockUser = new User();
+        mockUser.setId("10");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(mockUser));
+        when(conversationService.getUserConversations("10", "abc", 20))
+                .thenReturn(new CursorPage<>(List.of(), null));
 
         // Act & Assert
         mockMvc.perform(get("/api/v1/conversations")
+                .param("cursor", "abc")
+                .param("limit", "20")
                 .principal(mockPrincipal))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].id").value(1))
-                .andExpect(jsonPath("$[0].title").value("Chat 1"))
-                .andExpect(jsonPath("$[1].id").value(2))
-                .andExpect(jsonPath("$[1].title").value("Chat 2"));
+                .andExpect(jsonPath("$.items").isEmpty());
+
+        verify(conversationService).getUserConversations("10", "abc", 20);
     }
 
     @Test
@@ -114,28 +131,44 @@ class ConversationControllerTest {
     @Test
     void getMessages_ReturnsConversationMessages() throws Exception {
         // Arrange
-        Message msg1 = new Message();
-        msg1.setId(1L);
-        msg1.setRole("user");
-        msg1.setContent("Hello");
-        // msg1.setTimestamp(LocalDateTime.now());
-
-        Message msg2 = new Message();
-        msg2.setId(2L);
-        msg2.setRole("assistant");
-        msg2.setContent("Hi there!");
-        // msg2.setTimestamp(LocalDateTime.now());
+        MessageDto msg2 = new MessageDto(2L, "assistant", "Hi there!", 0, 0);
+        MessageDto msg1 = new MessageDto(1L, "user", "Hello", 0, 0);
 
-        List<Message> messages = Arrays.asList(msg1, msg2);
-        when(conversationService.getConversationMessages(100L)).thenReturn(messages);
+        when(conversationService.getConversationMessages(100L, null, 50))
+                .thenReturn(new CursorPage<>(Arrays.asList(msg2, msg1), null));
 
         // Act & Assert
         mockMvc.perform(get("/api/v1/conversations/100/messages"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].role").value("assistant"))
-                .andExpect(jsonPath("$[0].content").value("Hi there!"))
-                .andExpect(jsonPath("$[1].role").value("user"))
-                .andExpect(jsonPath("$[1].content").value("Hello"));
+                .andExpect(jsonPath("$.items[0].role").value("assistant"))
+                .andExpect(jsonPath("$.items[0].content").value("Hi there!"))
+                .andExpect(jsonPath("$.items[1].role").value("user"))
+                .andExpect(jsonPath("$.items[1].content").value("Hello"))
+                .andExpect(jsonPath("$.nextCursor").isEmpty());
+    }
+
+    @Test
+    void getMessages_OlderPage_PassesBeforeId() throws Exception {
+        // Arrange
+        when(conversationService.getConversationMessages(100L, 51L, 50))
+                .thenReturn(new CursorPage<>(List.of(new MessageDto(50L, "user", "Earlier", 0, 0)), "50"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/conversations/100/messages").param("before", "51"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(50))
+                .andExpect(jsonPath("$.nextCursor").value("50"));
+    }
+
+    @Test
+    void getMessages_EmptyConversation_ReturnsNotFound() throws Exception {
+        // Arrange
+        when(conversationService.getConversationMessages(100L, null, 50))
+                .thenReturn(new CursorPage<>(List.of(), null));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/conversations/100/messages"))
+                .andExpect(status().isNotFound());
     }
 
     @Test
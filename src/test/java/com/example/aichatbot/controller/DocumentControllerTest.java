@@ -9,7 +9,9 @@ import com.example.aichatbot.security.JwtAuthenticationFilter;
 import com.example.aichatbot.service.DocumentService;
 import com.example.aichatbot.service.JobService;
 import com.example.aichatbot.service.messaging.IngestionProducer;
+import com.example.aichatbot.service.messaging.JobProgressBroadcaster;
 import com.example.aichatbot.service.storage.FileStorageService;
+import com.example.aichatbot.service.storage.StoredFile;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
@@ -18,16 +20,23 @@ import org.springframework.context.annotation.Import;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(DocumentController.class)
@@ -56,6 +65,9 @@ class DocumentControllerTest {
         @MockitoBean
         private UserRepository userRepository;
 
+        @MockitoBean
+        private JobProgressBroadcaster jobProgressBroadcaster;
+
         @Test
         void ingestDocs_ValidFiles_ReturnsAccepted() throws Exception {
                 // Arrange
@@ -64,6 +76,9 @@ class DocumentControllerTest {
                 mockJob.setStatus(IngestionJob.JobStatus.PENDING);
 
                 when(jobService.createJob(anyInt())).thenReturn(mockJob);
+                when(fileStorageService.store(any(MultipartFile.class)))
+                                .thenReturn(new StoredFile("/tmp/a_test1.txt", "hash-1", 14))
+                                .thenReturn(new StoredFile("/tmp/b_test2.pdf", "hash-2", 11));
 
                 MockMultipartFile file1 = new MockMultipartFile(
                                 "files",
@@ -130,6 +145,27 @@ class DocumentControllerTest {
                                 .andExpect(status().isNotFound());
         }
 
+        @Test
+        void streamStatus_ExistingJob_StartsEventStream() throws Exception {
+                // Arrange
+                when(jobProgressBroadcaster.subscribe("job-456")).thenReturn(Optional.of(new SseEmitter()));
+
+                // Act & Assert
+                mockMvc.perform(get("/api/v1/documents/status/job-456/stream"))
+                                .andExpect(status().isOk())
+                                .andExpect(request().asyncStarted());
+        }
+
+        @Test
+        void streamStatus_NonExistentJob_ReturnsNotFound() throws Exception {
+                // Arrange
+                when(jobProgressBroadcaster.subscribe("non-existent")).thenReturn(Optional.empty());
+
+                // Act & Assert
+                mockMvc.perform(get("/api/v1/documents/status/non-existent/stream"))
+                                .andExpect(status().isNotFound());
+        }
+
         @Test
         void ingestDocs_SingleFile_ProcessesSuccessfully() throws Exception {
                 // Arrange
@@ -137,6 +173,8 @@ class DocumentControllerTest {
                 mockJob.setJobId("single-file-job");
 
                 when(jobService.createJob(1)).thenReturn(mockJob);
+                when(fileStorageService.store(any(MultipartFile.class)))
+                                .thenReturn(new StoredFile("/tmp/a_document.docx", "hash-1", 16));
 
                 MockMultipartFile file = new MockMultipartFile(
                                 "files",
@@ -157,6 +195,60 @@ class DocumentControllerTest {
                                 .andExpect(jsonPath("$.jobId").value("single-file-job"));
         }
 
+        @Test
+        void ingestDocs_DuplicateContent_QueuesSingleCopy() throws Exception {
+                // Arrange
+                IngestionJob mockJob = new IngestionJob();
+                mockJob.setJobId("dedup-job");
+
+                when(jobService.createJob(1)).thenReturn(mockJob);
+                when(fileStorageService.store(any(MultipartFile.class)))
+                                .thenReturn(new StoredFile("/tmp/a_report.pdf", "same-hash", 7))
+                                .thenReturn(new StoredFile("/tmp/b_report-copy.pdf", "same-hash", 7));
+
+                MockMultipartFile file1 = new MockMultipartFile(
+                                "files", "report.pdf", "application/pdf", "content".getBytes());
+                MockMultipartFile file2 = new MockMultipartFile(
+                                "files", "report-copy.pdf", "application/pdf", "content".getBytes());
+
+                User mockUser = new User();
+                mockUser.setId("user-123");
+                mockUser.setUsername("testuser");
+                when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(mockUser));
+
+                // Act & Assert
+                mockMvc.perform(multipart("/api/v1/documents/ingest")
+                                .file(file1)
+                                .file(file2)
+                                .principal(() -> "testuser"))
+                                .andExpect(status().isAccepted())
+                                .andExpect(jsonPath("$.jobId").value("dedup-job"));
+
+                verify(fileStorageService).delete("/tmp/b_report-copy.pdf");
+                verify(ingestionProducer).publish(argThat(event -> event.getFileKeys().size() == 1
+                                && event.getFileKeys().contains("/tmp/a_report.pdf")));
+        }
+
+        @Test
+        void ingestDocs_OnlyEmptyFiles_ReturnsBadRequestWithoutJob() throws Exception {
+                // Arrange
+                MockMultipartFile empty = new MockMultipartFile(
+                                "files", "empty.pdf", "application/pdf", new byte[0]);
+
+                User mockUser = new User();
+                mockUser.setId("user-123");
+                mockUser.setUsername("testuser");
+                when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(mockUser));
+
+                // Act & Assert
+                mockMvc.perform(multipart("/api/v1/documents/ingest")
+                                .file(empty)
+                                .principal(() -> "testuser"))
+                                .andExpect(status().isBadRequest());
+
+                verify(jobService, never()).createJob(anyInt());
+        }
+
         @Test
         void getDocuments_ReturnsList() throws Exception {
                 // Arrange
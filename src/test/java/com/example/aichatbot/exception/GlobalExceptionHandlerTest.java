@@ -140,6 +140,22 @@ class GlobalExceptionHandlerTest {
         assertTrue(problem.getType().toString().contains("infrastructure-error"));
     }
 
+    @Test
+    void handleDeadlineExceededException_ReturnsGatewayTimeout() {
+        // Arrange
+        DeadlineExceededException exception = new DeadlineExceededException("generate");
+        when(webRequest.getDescription(false)).thenReturn("uri=/api/v1/chat");
+
+        // Act
+        ProblemDetail problem = exceptionHandler.handleDeadlineExceededException(exception, webRequest);
+
+        // Assert
+        assertEquals(504, problem.getStatus());
+        assertEquals("Request Timed Out", problem.getTitle());
+        assertEquals("generate", problem.getProperties().get("step"));
+        assertTrue(problem.getType().toString().contains("deadline-exceeded"));
+    }
+
     @Test
     void handleQuotaExceededException_ReturnsTooManyRequests() {
         // Arrange
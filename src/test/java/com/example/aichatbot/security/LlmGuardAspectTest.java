@@ -1,10 +1,16 @@
 package com.example.aichatbot.security;
 
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.service.UserTenantResolver;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
@@ -12,6 +18,7 @@ import java.util.List;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -25,6 +32,10 @@ class LlmGuardAspectTest {
     @Mock
     private ProceedingJoinPoint joinPoint;
 
+    @Spy
+    private PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), new MetricsConfig(),
+            mock(UserTenantResolver.class), Tracer.NOOP);
+
     @InjectMocks
     private LlmGuardAspect aspect;
 
@@ -4,12 +4,16 @@ import com.example.aichatbot.config.StreamConfig;
 import com.example.aichatbot.model.IngestionEvent;
 import com.example.aichatbot.service.messaging.IngestionConsumer;
 import com.example.aichatbot.service.messaging.StreamDLQService;
+import com.example.aichatbot.service.messaging.StreamTracing;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.connection.stream.ObjectRecord;
 import org.springframework.data.redis.core.StreamOperations;
@@ -40,6 +44,8 @@ class ArchitecturalTests {
     private ObjectMapper objectMapper;
     @Mock
     private StreamDLQService dlqService;
+    @Spy
+    private StreamTracing streamTracing = new StreamTracing(Tracer.NOOP, Propagator.NOOP);
 
     @InjectMocks
     private IngestionConsumer ingestionConsumer;
@@ -87,7 +93,8 @@ class ArchitecturalTests {
     @Test
     void chatService_Fallback_ReturnsSafeMessage() {
         // Act
-        String result = chatService.processChatFallback("1", 1L, "msg", null, new RuntimeException("Circuit Open"));
+        String result = chatService.processChatFallback("1", 1L, "msg", null, null,
+                new RuntimeException("Circuit Open"));
 
         // Assert
         assertEquals("The AI service is currently unavailable. Please try again later.", result);
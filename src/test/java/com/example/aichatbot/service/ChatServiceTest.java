@@ -1,25 +1,37 @@
 package com.example.aichatbot.service;
 
+import com.example.aichatbot.config.MetricsConfig;
 import com.example.aichatbot.dto.BotConfigDto;
+import com.example.aichatbot.exception.DeadlineExceededException;
+import com.example.aichatbot.exception.LlmGatewayRejectedException;
 import com.example.aichatbot.security.LlmGuardService;
 import com.example.aichatbot.service.graph.RagState;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
 import org.bsc.langgraph4j.CompiledGraph;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,15 +44,22 @@ class ChatServiceTest {
     private ConversationService conversationService;
     @Mock
     private LlmGuardService guardService;
+    @Mock
+    private RetrievalProfileResolver retrievalProfileResolver;
+    @Spy
+    private PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), new MetricsConfig(),
+            mock(UserTenantResolver.class), Tracer.NOOP);
 
     @InjectMocks
     private ChatService chatService;
 
     private BotConfigDto botConfig;
+    private Deadline deadline;
 
     @BeforeEach
     void setUp() {
         botConfig = new BotConfigDto("friendly");
+        deadline = Deadline.after(Duration.ofMinutes(1), Duration.ofSeconds(20));
     }
 
     @Test
@@ -56,15 +75,17 @@ class ChatServiceTest {
         RagState mockState = new RagState(stateData);
 
         when(ragGraphRunner.invoke(anyMap())).thenReturn(Optional.of(mockState));
+        when(retrievalProfileResolver.resolve(userId, botConfig)).thenReturn(RetrievalProfile.DEFAULT);
 
         // Act
-        String result = chatService.processChat(userId, conversationId, message, botConfig);
+        String result = chatService.processChat(userId, conversationId, message, botConfig, deadline);
 
         // Assert
         assertEquals(expectedResponse, result);
-        verify(conversationService).addMessage(conversationId, "user", message);
-        verify(conversationService).addMessage(conversationId, "assistant", expectedResponse, 0, 0);
-        verify(ragGraphRunner).invoke(argThat(map -> map.get("query").equals(message)));
+        verify(conversationService).appendTurn(userId, conversationId, message, expectedResponse, 0, 0);
+        verify(ragGraphRunner).invoke(argThat(map -> map.get("query").equals(message)
+                && map.get("deadline") == deadline
+                && map.get("retrievalProfile") == RetrievalProfile.DEFAULT));
     }
 
     @Test
@@ -78,7 +99,7 @@ class ChatServiceTest {
 
         // Act & Assert
         Exception exception = assertThrows(IllegalStateException.class,
-                () -> chatService.processChat(userId, conversationId, message, botConfig));
+                () -> chatService.processChat(userId, conversationId, message, botConfig, deadline));
         assertTrue(exception.getMessage().contains("Graph returned empty state"));
     }
 
@@ -93,7 +114,7 @@ class ChatServiceTest {
 
         // Act & Assert
         Exception exception = assertThrows(IllegalStateException.class,
-                () -> chatService.processChat(userId, conversationId, message, botConfig));
+                () -> chatService.processChat(userId, conversationId, message, botConfig, deadline));
         assertTrue(exception.getMessage().contains("Failed to process chat message"));
     }
 
@@ -111,12 +132,37 @@ class ChatServiceTest {
         when(ragGraphRunner.invoke(anyMap())).thenReturn(Optional.of(mockState));
 
         // Act
-        String result = chatService.processChat(userId, conversationId, message, botConfig);
+        String result = chatService.processChat(userId, conversationId, message, botConfig, deadline);
 
         // Assert
         assertEquals("I encountered an error processing your request.", result);
-        verify(conversationService).addMessage(conversationId, "user", message);
-        verify(conversationService).addMessage(conversationId, "assistant",
+        verify(conversationService).appendTurn(userId, conversationId, message,
                 "I encountered an error processing your request.", 0, 0);
     }
+
+    @Test
+    void processChat_DeadlineExceededInGraph_RethrowsForGatewayTimeout() {
+        // Arrange
+        when(ragGraphRunner.invoke(anyMap()))
+                .thenThrow(new CompletionException(new DeadlineExceededException("generate")));
+
+        // Act & Assert
+        DeadlineExceededException exception = assertThrows(DeadlineExceededException.class,
+                () -> chatService.processChat("1", 100L, "Hello", botConfig, deadline));
+        assertEquals("generate", exception.getStep());
+        verifyNoInteractions(conversationService);
+    }
+
+    @Test
+    void processChat_GatewayRejectsCall_RethrowsForServiceUnavailable() {
+        // Arrange
+        when(ragGraphRunner.invoke(anyMap()))
+                .thenThrow(new CompletionException(new LlmGatewayRejectedException("Request queue is full")));
+
+        // Act & Assert
+        assertThrows(LlmGatewayRejectedException.class,
+                () -> chatService.processChat("1", 100L, "Hello", botConfig, deadline));
+        verifyNoInteractions(conversationService);
+    }
+
 }
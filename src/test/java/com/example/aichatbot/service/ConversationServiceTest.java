@@ -1,5 +1,9 @@
 package com.example.aichatbot.service;
 
+import com.example.aichatbot.dto.ConversationSummaryDto;
+import com.example.aichatbot.dto.CursorPage;
+import com.example.aichatbot.dto.MessageDto;
+import com.example.aichatbot.dto.MessageTotalsDto;
 import com.example.aichatbot.exception.ResourceNotFoundException;
 import com.example.aichatbot.model.Conversation;
 import com.example.aichatbot.model.Message;
@@ -7,9 +11,11 @@ import com.example.aichatbot.repository.ConversationRepository;
 import com.example.aichatbot.repository.MessageRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -19,9 +25,14 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -35,6 +46,9 @@ class ConversationServiceTest {
     @Mock
     private MessageRepository messageRepository;
 
+    @Mock
+    private StatisticsCounterService counterService;
+
     @InjectMocks
     private ConversationService conversationService;
 
@@ -57,30 +71,55 @@ class ConversationServiceTest {
         assertEquals("10", result.getUserId());
         assertEquals("New Chat", result.getTitle());
         verify(conversationRepository).save(any(Conversation.class));
+        verify(counterService).record("10", StatisticsCounterService.Metric.CONVERSATIONS, 1);
     }
 
     @Test
-    void getUserConversations_ReturnsUserConversations() {
+    void getUserConversations_FirstPage_ReturnsItemsAndCursor() {
         // Arrange
-        Conversation conv1 = new Conversation();
-        conv1.setId(1L);
-        conv1.setUserId("10");
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123456000);
+        ConversationSummaryDto conv1 = new ConversationSummaryDto(3L, "Chat 3", updatedAt, updatedAt.plusMinutes(5));
+        ConversationSummaryDto conv2 = new ConversationSummaryDto(2L, "Chat 2", updatedAt, updatedAt);
+        ConversationSummaryDto extra = new ConversationSummaryDto(1L, "Chat 1", updatedAt, updatedAt);
+
+        when(conversationRepository.findLatestSummaries("10", Limit.of(3)))
+                .thenReturn(Arrays.asList(conv1, conv2, extra));
+
+        // Act
+        CursorPage<ConversationSummaryDto> result = conversationService.getUserConversations("10", null, 2);
+
+        // Assert
+        assertEquals(List.of(conv1, conv2), result.items());
+        assertNotNull(result.nextCursor());
+    }
 
-        Conversation conv2 = new Conversation();
-        conv2.setId(2L);
-        conv2.setUserId("10");
+    @Test
+    void getUserConversations_NextPage_DecodesCursorIntoKeyset() {
+        // Arrange
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123456000);
+        ConversationSummaryDto first = new ConversationSummaryDto(2L, "Chat 2", updatedAt, updatedAt);
+        ConversationSummaryDto second = new ConversationSummaryDto(1L, "Chat 1", updatedAt, updatedAt);
+        when(conversationRepository.findLatestSummaries("10", Limit.of(2)))
+                .thenReturn(Arrays.asList(first, second));
+        String cursor = conversationService.getUserConversations("10", null, 1).nextCursor();
 
-        List<Conversation> expectedConversations = Arrays.asList(conv1, conv2);
-        when(conversationRepository.findByUserIdOrderByUpdatedAtDesc("10"))
-                .thenReturn(expectedConversations);
+        when(conversationRepository.findSummariesBefore("10", updatedAt, 2L, Limit.of(2)))
+                .thenReturn(List.of(second));
 
         // Act
-        List<Conversation> result = conversationService.getUserConversations("10");
+        CursorPage<ConversationSummaryDto> result = conversationService.getUserConversations("10", cursor, 1);
 
         // Assert
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        verify(conversationRepository).findByUserIdOrderByUpdatedAtDesc("10");
+        assertEquals(List.of(second), result.items());
+        assertNull(result.nextCursor());
+        verify(conversationRepository).findSummariesBefore("10", updatedAt, 2L, Limit.of(2));
+    }
+
+    @Test
+    void getUserConversations_InvalidCursor_ThrowsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> conversationService.getUserConversations("10", "not-a-cursor", 10));
+        verify(conversationRepository, never()).findSummariesBefore(any(), any(), any(), any());
     }
 
     @Test
@@ -155,35 +194,135 @@ class ConversationServiceTest {
     }
 
     @Test
-    void getConversationMessages_ReturnsMessages() {
+    @SuppressWarnings("unchecked")
+    void appendTurn_ValidConversation_SavesBothMessagesInOneBatch() {
         // Arrange
-        Message msg1 = new Message();
-        msg1.setId(1L);
-        msg1.setContent("Hello");
+        Conversation reference = new Conversation();
+        reference.setId(100L);
 
-        Message msg2 = new Message();
-        msg2.setId(2L);
-        msg2.setContent("Hi");
+        when(conversationRepository.touch(eq(100L), eq("user1"), any(LocalDateTime.class))).thenReturn(1);
+        when(conversationRepository.getReferenceById(100L)).thenReturn(reference);
+        when(messageRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
-        List<Message> expectedMessages = Arrays.asList(msg1, msg2);
-        when(messageRepository.findByConversationId(100L))
-                .thenReturn(expectedMessages);
+        // Act
+        List<Message> result = conversationService.appendTurn("user1", 100L, "Hello", "Hi there", 12, 34);
+
+        // Assert
+        ArgumentCaptor<List<Message>> captor = ArgumentCaptor.forClass(List.class);
+        verify(messageRepository).saveAll(captor.capture());
+        List<Message> saved = captor.getValue();
+        assertEquals(2, saved.size());
+        assertEquals("user", saved.get(0).getRole());
+        assertEquals("Hello", saved.get(0).getContent());
+        assertEquals(0, saved.get(0).getInputTokens());
+        assertEquals("assistant", saved.get(1).getRole());
+        assertEquals("Hi there", saved.get(1).getContent());
+        assertEquals(12, saved.get(1).getInputTokens());
+        assertEquals(34, saved.get(1).getOutputTokens());
+        assertEquals(reference, saved.get(1).getConversation());
+        assertEquals(saved, result);
+
+        // The conversation is never loaded or saved as an entity
+        verify(conversationRepository, never()).findById(any());
+        verify(conversationRepository, never()).save(any());
+        verify(messageRepository, never()).save(any());
+
+        verify(counterService).record("user1", StatisticsCounterService.Metric.MESSAGES, 2);
+        verify(counterService).record("user1", StatisticsCounterService.Metric.INPUT_TOKENS, 12);
+        verify(counterService).record("user1", StatisticsCounterService.Metric.OUTPUT_TOKENS, 34);
+    }
+
+    @Test
+    void appendTurn_NonExistingConversation_ThrowsException() {
+        // Arrange
+        when(conversationRepository.touch(eq(999L), eq("user1"), any(LocalDateTime.class))).thenReturn(0);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class,
+                () -> conversationService.appendTurn("user1", 999L, "Hello", "Hi", 0, 0));
+        verify(messageRepository, never()).saveAll(anyList());
+        verify(counterService, never()).record(anyString(), any(), anyLong());
+    }
+
+    @Test
+    void getConversationMessages_LastPage_HasNoCursor() {
+        // Arrange
+        MessageDto msg2 = new MessageDto(2L, "assistant", "Hi", 0, 0);
+        MessageDto msg1 = new MessageDto(1L, "user", "Hello", 0, 0);
+
+        when(messageRepository.findLatest(100L, Limit.of(51)))
+                .thenReturn(Arrays.asList(msg2, msg1));
 
         // Act
-        List<Message> result = conversationService.getConversationMessages(100L);
+        CursorPage<MessageDto> result = conversationService.getConversationMessages(100L, null, 50);
 
         // Assert
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        verify(messageRepository).findByConversationId(100L);
+        assertEquals(List.of(msg2, msg1), result.items());
+        assertNull(result.nextCursor());
     }
 
     @Test
-    void deleteConversation_CallsRepository() {
+    void getConversationMessages_OlderPage_UsesLastIdAsCursor() {
+        // Arrange
+        MessageDto msg9 = new MessageDto(9L, "assistant", "Nine", 0, 0);
+        MessageDto msg8 = new MessageDto(8L, "user", "Eight", 0, 0);
+        MessageDto msg7 = new MessageDto(7L, "assistant", "Seven", 0, 0);
+
+        when(messageRepository.findBefore(100L, 10L, Limit.of(3)))
+                .thenReturn(Arrays.asList(msg9, msg8, msg7));
+
+        // Act
+        CursorPage<MessageDto> result = conversationService.getConversationMessages(100L, 10L, 2);
+
+        // Assert
+        assertEquals(List.of(msg9, msg8), result.items());
+        assertEquals("8", result.nextCursor());
+        verify(messageRepository, never()).findLatest(any(), any());
+    }
+
+    @Test
+    void getConversationMessages_LimitAboveMax_IsClamped() {
+        // Arrange
+        when(messageRepository.findLatest(100L, Limit.of(ConversationService.MAX_PAGE_SIZE + 1)))
+                .thenReturn(List.of());
+
+        // Act
+        CursorPage<MessageDto> result = conversationService.getConversationMessages(100L, null, 10_000);
+
+        // Assert
+        assertTrue(result.items().isEmpty());
+    }
+
+    @Test
+    void deleteConversation_DeletesAndSubtractsItsTotals() {
+        // Arrange
+        Conversation conversation = new Conversation();
+        conversation.setId(100L);
+        conversation.setUserId("user1");
+        when(conversationRepository.findById(100L)).thenReturn(Optional.of(conversation));
+        when(messageRepository.totalsByConversationId(100L)).thenReturn(new MessageTotalsDto(4, 10, 20));
+
+        // Act
+        conversationService.deleteConversation(100L);
+
+        // Assert
+        verify(conversationRepository).delete(conversation);
+        verify(counterService).record("user1", StatisticsCounterService.Metric.CONVERSATIONS, -1);
+        verify(counterService).record("user1", StatisticsCounterService.Metric.MESSAGES, -4);
+        verify(counterService).record("user1", StatisticsCounterService.Metric.INPUT_TOKENS, -10);
+        verify(counterService).record("user1", StatisticsCounterService.Metric.OUTPUT_TOKENS, -20);
+    }
+
+    @Test
+    void deleteConversation_Unknown_DoesNothing() {
+        // Arrange
+        when(conversationRepository.findById(100L)).thenReturn(Optional.empty());
+
         // Act
         conversationService.deleteConversation(100L);
 
         // Assert
-        verify(conversationRepository).deleteById(100L);
+        verify(conversationRepository, never()).delete(any());
+        verify(counterService, never()).record(anyString(), any(), anyLong());
     }
 }
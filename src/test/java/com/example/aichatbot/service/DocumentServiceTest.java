@@ -1,16 +1,36 @@
 package com.example.aichatbot.service;
 
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.model.DocumentChunk;
+import com.example.aichatbot.model.IngestionJob;
+import com.example.aichatbot.repository.DocumentChunkRepository;
 import com.example.aichatbot.repository.DocumentRepository;
+import com.example.aichatbot.service.graph.ChunkExpander;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
 import com.example.aichatbot.service.storage.FileStorageService;
 import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.ChatModel;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
@@ -18,11 +38,15 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -31,7 +55,13 @@ import static org.mockito.Mockito.when;
 class DocumentServiceTest {
 
     @Mock
-    private EmbeddingStoreIngestor ingestor;
+    private DocumentSplitter documentSplitter;
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private EmbeddingStore<TextSegment> embeddingStore;
 
     @Mock
     private ChatModel chatModel;
@@ -42,9 +72,22 @@ class DocumentServiceTest {
     @Mock
     private DocumentRepository documentRepository;
 
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
     @Mock
     private FileStorageService fileStorageService;
 
+    @Mock
+    private StatisticsCounterService counterService;
+
+    @Mock
+    private TokenUsageRecorder tokenUsageRecorder;
+
+    @Spy
+    private PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), new MetricsConfig(),
+            mock(UserTenantResolver.class), Tracer.NOOP);
+
     @InjectMocks
     private DocumentService documentService;
 
@@ -59,15 +102,48 @@ class DocumentServiceTest {
         testFile = tempDir.resolve("test.txt");
         Files.writeString(testFile, "Test content");
 
-        lenient().when(fileStorageService.resolve(anyString()))
-                .thenReturn(testFile);
+        lenient().when(fileStorageService.filenameOf(anyString()))
+                .thenReturn(testFile.getFileName().toString());
         lenient().doNothing().when(fileStorageService).delete(anyString());
+
+        List<TextSegment> segments = List.of(TextSegment.from("Test content"));
+        lenient().when(documentSplitter.split(any(Document.class))).thenReturn(segments);
+        lenient().when(embeddingModel.embedAll(segments))
+                .thenReturn(Response.from(List.of(Embedding.from(new float[]{0.1f, 0.2f}))));
+    }
+
+    private static ChatResponse summary() {
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from("Test summary"))
+                .tokenUsage(new TokenUsage(40, 10))
+                .build();
+    }
+
+    @Test
+    void ingestFiles_ValidFile_RecordsSummaryTokenUsage() throws Exception {
+        // Arrange
+        when(fileStorageService.load(anyString()))
+                .thenReturn(Files.newInputStream(testFile));
+        when(documentRepository.save(any(com.example.aichatbot.model.Document.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        ChatResponse summary = summary();
+        when(chatModel.chat(any(ChatRequest.class))).thenReturn(summary);
+
+        // Act
+        documentService.ingestFiles("test-job-usage", List.of(testFile.toString()), "1");
+
+        // Assert
+        ArgumentCaptor<com.example.aichatbot.model.Document> saved =
+                ArgumentCaptor.forClass(com.example.aichatbot.model.Document.class);
+        verify(documentRepository).save(saved.capture());
+        assertEquals("Test summary", saved.getValue().getSummary());
+        verify(tokenUsageRecorder).record("1", null, "summarize", summary.tokenUsage());
     }
 
     @Test
     void ingestFiles_ValidFiles_ProcessesSuccessfully() throws Exception {
         // Arrange
-        List<Path> files = List.of(testFile);
+        List<String> files = List.of(testFile.toString());
         String jobId = "test-job-123";
 
         when(fileStorageService.load(anyString()))
@@ -78,7 +154,7 @@ class DocumentServiceTest {
         when(documentRepository.save(any(com.example.aichatbot.model.Document.class)))
                 .thenReturn(savedDoc);
 
-        when(chatModel.chat(anyString())).thenReturn("Test summary");
+        when(chatModel.chat(any(ChatRequest.class))).thenReturn(summary());
 
         // Act
         documentService.ingestFiles(jobId, files, "1");
@@ -86,14 +162,71 @@ class DocumentServiceTest {
         // Assert
         verify(jobService).updateProgress(jobId);
         verify(jobService).markCompleted(jobId);
-        verify(ingestor).ingest(any(Document.class));
+        verify(embeddingStore).addAll(anyList(), anyList());
         verify(fileStorageService).delete(testFile.toString());
     }
 
+    @Test
+    void ingestFiles_ValidFile_ReportsPhasesInOrder() throws Exception {
+        // Arrange
+        String jobId = "test-job-phases";
+        when(fileStorageService.load(anyString()))
+                .thenReturn(Files.newInputStream(testFile));
+        when(documentRepository.save(any(com.example.aichatbot.model.Document.class)))
+                .thenReturn(new com.example.aichatbot.model.Document());
+        when(chatModel.chat(any(ChatRequest.class))).thenReturn(summary());
+
+        // Act
+        documentService.ingestFiles(jobId, List.of(testFile.toString()), "1");
+
+        // Assert
+        InOrder order = inOrder(jobService);
+        order.verify(jobService).updatePhase(jobId, "test.txt", IngestionJob.JobPhase.PARSING);
+        order.verify(jobService).updatePhase(jobId, "test.txt", IngestionJob.JobPhase.EMBEDDING);
+        order.verify(jobService).updatePhase(jobId, "test.txt", IngestionJob.JobPhase.STORING);
+        order.verify(jobService).updatePhase(jobId, "test.txt", IngestionJob.JobPhase.SUMMARIZING);
+        order.verify(jobService).updateProgress(jobId);
+        order.verify(jobService).markCompleted(jobId);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ingestFiles_ValidFile_StoresChunkPositions() throws Exception {
+        // Arrange
+        when(fileStorageService.load(anyString()))
+                .thenReturn(Files.newInputStream(testFile));
+        when(documentRepository.save(any(com.example.aichatbot.model.Document.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatModel.chat(any(ChatRequest.class))).thenReturn(summary());
+
+        // Act
+        documentService.ingestFiles("test-job-chunks", List.of(testFile.toString()), "1");
+
+        // Assert
+        ArgumentCaptor<List<TextSegment>> segments = ArgumentCaptor.forClass(List.class);
+        verify(embeddingStore).addAll(anyList(), segments.capture());
+        TextSegment segment = segments.getValue().get(0);
+        String documentKey = segment.metadata().getString(ChunkExpander.DOCUMENT_KEY);
+        assertEquals(0, segment.metadata().getInteger(ChunkExpander.CHUNK_INDEX));
+
+        ArgumentCaptor<List<DocumentChunk>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(chunkRepository).saveAll(chunks.capture());
+        DocumentChunk chunk = chunks.getValue().get(0);
+        assertEquals(documentKey, chunk.getDocumentKey());
+        assertEquals("1", chunk.getUserId());
+        assertEquals("Test content", chunk.getContent());
+
+        ArgumentCaptor<com.example.aichatbot.model.Document> document =
+                ArgumentCaptor.forClass(com.example.aichatbot.model.Document.class);
+        verify(documentRepository).save(document.capture());
+        assertEquals(documentKey, document.getValue().getDocumentKey());
+        assertEquals(1, document.getValue().getChunkCount());
+    }
+
     @Test
     void ingestFiles_EmptyList_CompletesWithoutProcessing() throws Exception {
         // Arrange
-        List<Path> files = List.of();
+        List<String> files = List.of();
         String jobId = "test-job-empty";
 
         // Act
@@ -102,20 +235,20 @@ class DocumentServiceTest {
         // Assert
         verify(jobService).markCompleted(jobId);
         verify(jobService, never()).updateProgress(any());
-        verify(ingestor, never()).ingest(any(Document.class));
+        verify(embeddingStore, never()).addAll(anyList(), anyList());
         verify(fileStorageService, never()).delete(anyString());
     }
 
     @Test
     void ingestFiles_ProcessingError_AddsErrorAndContinues() throws Exception {
         // Arrange
-        List<Path> files = List.of(testFile);
+        List<String> files = List.of(testFile.toString());
         String jobId = "test-job-error";
 
         when(fileStorageService.load(anyString()))
                 .thenReturn(Files.newInputStream(testFile));
         doThrow(new RuntimeException("Processing failed"))
-                .when(ingestor).ingest(any(Document.class));
+                .when(embeddingStore).addAll(anyList(), anyList());
 
         // Act
         documentService.ingestFiles(jobId, files, "1");
@@ -130,7 +263,7 @@ class DocumentServiceTest {
     @Test
     void ingestFiles_DeletesTempFilesAfterProcessing() throws Exception {
         // Arrange
-        List<Path> files = List.of(testFile);
+        List<String> files = List.of(testFile.toString());
         String jobId = "test-job-cleanup";
 
         when(fileStorageService.load(anyString()))
@@ -143,14 +276,14 @@ class DocumentServiceTest {
                 .thenReturn(savedDoc);
 
         // Mock the chat model to return a summary
-        when(chatModel.chat(anyString())).thenReturn("Test summary");
+        when(chatModel.chat(any(ChatRequest.class))).thenReturn(summary());
 
         // Act
         documentService.ingestFiles(jobId, files, "1");
 
         // Assert
         verify(fileStorageService).delete(testFile.toString());
-        verify(ingestor).ingest(any(Document.class));
+        verify(embeddingStore).addAll(anyList(), anyList());
         verify(jobService).updateProgress(jobId);
         verify(jobService).markCompleted(jobId);
     }
@@ -159,7 +292,7 @@ class DocumentServiceTest {
     void ingestFiles_NonExistentFile_HandlesGracefully() throws Exception {
         // Arrange
         Path nonExistentFile = tempDir.resolve("non-existent.txt");
-        List<Path> files = List.of(nonExistentFile);
+        List<String> files = List.of(nonExistentFile.toString());
         String jobId = "test-job-missing";
 
         doThrow(new RuntimeException("File not found"))
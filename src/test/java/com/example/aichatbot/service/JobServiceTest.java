@@ -4,24 +4,32 @@ import com.example.aichatbot.model.IngestionJob;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -30,10 +38,13 @@ import static org.mockito.Mockito.when;
 class JobServiceTest {
 
     @Mock
-    private RedisTemplate<String, IngestionJob> redisTemplate;
+    private StringRedisTemplate redisTemplate;
 
     @Mock
-    private ValueOperations<String, IngestionJob> valueOperations;
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ListOperations<String, String> listOperations;
 
     @InjectMocks
     private JobService jobService;
@@ -42,12 +53,31 @@ class JobServiceTest {
     void setUp() {
         ReflectionTestUtils.setField(jobService, "completedJobTtlMinutes", 30L);
         ReflectionTestUtils.setField(jobService, "activeJobTtlMinutes", 120L);
+        ReflectionTestUtils.setField(jobService, "maxErrors", 100);
+        ReflectionTestUtils.setField(jobService, "progressChannel", "ingestion-job-progress");
+
+        lenient().when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        lenient().when(redisTemplate.opsForList()).thenReturn(listOperations);
+    }
+
+    /**
+     * Runs the pipelined callback against the mocked template so the individual commands can
+     * be verified, and returns the given results as the pipeline output.
+     */
+    @SuppressWarnings("unchecked")
+    private void runPipelineReturning(List<Object> results) {
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            SessionCallback<Object> callback = invocation.getArgument(0);
+            callback.execute(redisTemplate);
+            return results;
+        });
     }
 
     @Test
-    void createJob_ValidData_ReturnsJobAndSavesToRedis() {
+    @SuppressWarnings("unchecked")
+    void createJob_ValidData_ReturnsJobAndSavesHash() {
         // Arrange
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        runPipelineReturning(Collections.emptyList());
 
         // Act
         IngestionJob job = jobService.createJob(5);
@@ -60,20 +90,26 @@ class JobServiceTest {
         assertNotNull(job.getStartTime());
         assertEquals(0, job.getProcessedFiles());
 
-        // Verify save with correct TTL (approx 120 minutes)
-        verify(valueOperations).set(eq(job.getJobId()), eq(job), eq(120L), eq(TimeUnit.MINUTES));
+        String key = "ingestion-job:" + job.getJobId();
+        ArgumentCaptor<Map<String, String>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(hashOperations).putAll(eq(key), fields.capture());
+        assertEquals("5", fields.getValue().get("totalFiles"));
+        assertEquals("PENDING", fields.getValue().get("status"));
+        assertEquals("0", fields.getValue().get("processedFiles"));
+        verify(redisTemplate).expire(key, Duration.ofMinutes(120));
     }
 
     @Test
-    void getJob_ExistingId_ReturnsJob() {
+    void getJob_ExistingId_AssemblesJobFromHashAndErrors() {
         // Arrange
         String jobId = "test-job-id";
-        IngestionJob mockJob = new IngestionJob();
-        mockJob.setJobId(jobId);
-        mockJob.setTotalFiles(3);
-
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(jobId)).thenReturn(mockJob);
+        Map<Object, Object> fields = new HashMap<>();
+        fields.put("jobId", jobId);
+        fields.put("status", "PROCESSING");
+        fields.put("totalFiles", "3");
+        fields.put("processedFiles", "2");
+        fields.put("startTime", "2024-01-01T10:00:00");
+        runPipelineReturning(List.of(fields, List.of("File a.pdf: boom")));
 
         // Act
         IngestionJob retrievedJob = jobService.getJob(jobId);
@@ -81,14 +117,21 @@ class JobServiceTest {
         // Assert
         assertNotNull(retrievedJob);
         assertEquals(jobId, retrievedJob.getJobId());
+        assertEquals(IngestionJob.JobStatus.PROCESSING, retrievedJob.getStatus());
         assertEquals(3, retrievedJob.getTotalFiles());
+        assertEquals(2, retrievedJob.getProcessedFiles());
+        assertNotNull(retrievedJob.getStartTime());
+        assertNull(retrievedJob.getEndTime());
+        assertEquals(List.of("File a.pdf: boom"), retrievedJob.getErrors());
+
+        verify(hashOperations).entries("ingestion-job:" + jobId);
+        verify(listOperations).range("ingestion-job:" + jobId + ":errors", 0, -1);
     }
 
     @Test
     void getJob_NonExistingId_ReturnsNull() {
         // Arrange
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get("non-existent-id")).thenReturn(null);
+        runPipelineReturning(List.of(Collections.emptyMap(), Collections.emptyList()));
 
         // Act
         IngestionJob job = jobService.getJob("non-existent-id");
@@ -98,98 +141,113 @@ class JobServiceTest {
     }
 
     @Test
-    void updateProgress_ValidJob_UpdatesStatusAndCounter() {
+    void getJob_FragmentWithoutCreateFields_ReturnsNull() {
         // Arrange
-        String jobId = "test-job-id";
-        IngestionJob mockJob = new IngestionJob();
-        mockJob.setJobId(jobId);
-        mockJob.setStatus(IngestionJob.JobStatus.PENDING);
-        mockJob.setProcessedFiles(0);
-
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        // We need to return the job when get is called
-        when(valueOperations.get(jobId)).thenReturn(mockJob);
+        Map<Object, Object> fragment = new HashMap<>();
+        fragment.put("processedFiles", "1");
+        runPipelineReturning(List.of(fragment, new ArrayList<>()));
 
         // Act
-        jobService.updateProgress(jobId);
+        IngestionJob job = jobService.getJob("expired-id");
 
         // Assert
-        assertEquals(IngestionJob.JobStatus.PROCESSING, mockJob.getStatus());
-        assertEquals(1, mockJob.getProcessedFiles());
-
-        // Verify Redis updated with refreshed TTL
-        verify(valueOperations).set(eq(jobId), eq(mockJob), eq(120L), eq(TimeUnit.MINUTES));
+        assertNull(job);
     }
 
     @Test
-    void updateProgress_NonExistingJob_DoesNotThrowException() {
+    void updateProgress_IncrementsCounterAtomicallyAndRefreshesTtl() {
         // Arrange
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(anyString())).thenReturn(null);
+        String jobId = "test-job-id";
+        runPipelineReturning(Collections.emptyList());
 
-        // Act & Assert - should not throw
-        assertDoesNotThrow(() -> jobService.updateProgress("non-existent"));
-        verify(valueOperations, never()).set(anyString(), any(), anyLong(), any());
+        // Act
+        jobService.updateProgress(jobId);
+
+        // Assert
+        verify(hashOperations).increment("ingestion-job:" + jobId, "processedFiles", 1);
+        verify(hashOperations).put("ingestion-job:" + jobId, "status", "PROCESSING");
+        verify(redisTemplate).expire("ingestion-job:" + jobId, Duration.ofMinutes(120));
+        verify(redisTemplate).expire("ingestion-job:" + jobId + ":errors", Duration.ofMinutes(120));
+        verify(redisTemplate).convertAndSend("ingestion-job-progress", jobId);
+        // Never read-modify-write the whole job
+        verify(hashOperations, never()).entries(anyString());
     }
 
     @Test
-    void markCompleted_ValidJob_SetsStatusAndEndTime() {
+    @SuppressWarnings("unchecked")
+    void updatePhase_SetsPhaseAndCurrentFileAndPublishes() {
         // Arrange
         String jobId = "test-job-id";
-        IngestionJob mockJob = new IngestionJob();
-        mockJob.setJobId(jobId);
-        mockJob.setStatus(IngestionJob.JobStatus.PROCESSING);
-
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(jobId)).thenReturn(mockJob);
+        runPipelineReturning(Collections.emptyList());
 
         // Act
-        jobService.markCompleted(jobId);
+        jobService.updatePhase(jobId, "report.pdf", IngestionJob.JobPhase.EMBEDDING);
 
         // Assert
-        assertEquals(IngestionJob.JobStatus.COMPLETED, mockJob.getStatus());
-        assertNotNull(mockJob.getEndTime());
-
-        verify(valueOperations).set(eq(jobId), eq(mockJob), eq(30L), eq(TimeUnit.MINUTES));
+        ArgumentCaptor<Map<String, String>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(hashOperations).putAll(eq("ingestion-job:" + jobId), fields.capture());
+        assertEquals("EMBEDDING", fields.getValue().get("phase"));
+        assertEquals("report.pdf", fields.getValue().get("currentFile"));
+        assertEquals("PROCESSING", fields.getValue().get("status"));
+        verify(redisTemplate).convertAndSend("ingestion-job-progress", jobId);
     }
 
     @Test
-    void markCompleted_NonExistingJob_DoesNotThrowException() {
+    void getJob_ProcessingJob_EstimatesRemainingTime() {
         // Arrange
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(anyString())).thenReturn(null);
+        Map<Object, Object> fields = new HashMap<>();
+        fields.put("jobId", "eta-job");
+        fields.put("status", "PROCESSING");
+        fields.put("totalFiles", "4");
+        fields.put("processedFiles", "1");
+        fields.put("phase", "PARSING");
+        fields.put("currentFile", "b.pdf");
+        fields.put("startTime", LocalDateTime.now().minusSeconds(30).toString());
+        runPipelineReturning(List.of(fields, Collections.emptyList()));
+
+        // Act
+        IngestionJob job = jobService.getJob("eta-job");
 
-        // Act & Assert - should not throw
-        assertDoesNotThrow(() -> jobService.markCompleted("non-existent"));
+        // Assert
+        assertNotNull(job);
+        assertEquals(IngestionJob.JobPhase.PARSING, job.getPhase());
+        assertEquals("b.pdf", job.getCurrentFile());
+        // 30s for one file, three files left
+        assertNotNull(job.getEtaSeconds());
+        assertTrue(job.getEtaSeconds() >= 89 && job.getEtaSeconds() <= 93);
     }
 
     @Test
-    void addError_ValidJob_AddsErrorMessage() {
+    void markCompleted_SetsStatusAndEndTimeWithShortTtl() {
         // Arrange
         String jobId = "test-job-id";
-        IngestionJob mockJob = new IngestionJob();
-        mockJob.setJobId(jobId);
-
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(jobId)).thenReturn(mockJob);
+        runPipelineReturning(Collections.emptyList());
 
         // Act
-        jobService.addError(jobId, "Error processing file1.pdf");
+        jobService.markCompleted(jobId);
 
         // Assert
-        assertEquals(1, mockJob.getErrors().size());
-        assertTrue(mockJob.getErrors().contains("Error processing file1.pdf"));
-
-        verify(valueOperations).set(eq(jobId), eq(mockJob), eq(120L), eq(TimeUnit.MINUTES));
+        verify(hashOperations).put("ingestion-job:" + jobId, "status", "COMPLETED");
+        verify(hashOperations).put(eq("ingestion-job:" + jobId), eq("endTime"), anyString());
+        verify(redisTemplate).expire("ingestion-job:" + jobId, Duration.ofMinutes(30));
+        verify(redisTemplate).expire("ingestion-job:" + jobId + ":errors", Duration.ofMinutes(30));
+        verify(hashOperations).delete("ingestion-job:" + jobId, "phase", "currentFile");
+        verify(redisTemplate).convertAndSend("ingestion-job-progress", jobId);
     }
 
     @Test
-    void addError_NonExistingJob_DoesNotThrowException() {
+    void addError_PushesAndCapsErrorList() {
         // Arrange
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        when(valueOperations.get(anyString())).thenReturn(null);
+        String jobId = "test-job-id";
+        runPipelineReturning(Collections.emptyList());
 
-        // Act & Assert - should not throw
-        assertDoesNotThrow(() -> jobService.addError("non-existent", "Some error"));
+        // Act
+        jobService.addError(jobId, "Error processing file1.pdf");
+
+        // Assert
+        String errorsKey = "ingestion-job:" + jobId + ":errors";
+        verify(listOperations).rightPush(errorsKey, "Error processing file1.pdf");
+        verify(listOperations).trim(errorsKey, -100, -1);
+        verify(redisTemplate).expire(errorsKey, Duration.ofMinutes(120));
     }
 }
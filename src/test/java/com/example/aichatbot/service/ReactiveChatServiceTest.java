@@ -0,0 +1,231 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.config.PromptConfig;
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.dto.ChatStreamEventDto;
+import com.example.aichatbot.enums.GradingMode;
+import com.example.aichatbot.repository.DocumentChunkRepository;
+import com.example.aichatbot.security.GuardResult;
+import com.example.aichatbot.security.LlmGuardService;
+import com.example.aichatbot.service.graph.ChunkExpander;
+import com.example.aichatbot.service.graph.CrossEncoderReranker;
+import com.example.aichatbot.service.graph.PromptAssembler;
+import com.example.aichatbot.service.graph.QdrantVectorSearch;
+import com.example.aichatbot.service.graph.RagPrompts;
+import com.example.aichatbot.service.graph.RetrievalPolicy;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+class ReactiveChatServiceTest {
+
+    @Mock
+    private LlmGuardService guardService;
+    @Mock
+    private EmbeddingModel embeddingModel;
+    @Mock
+    private QdrantVectorSearch vectorSearch;
+    @Mock
+    private StreamingAssistant streamingAssistant;
+    @Mock
+    private ConversationService conversationService;
+    @Mock
+    private TokenUsageRecorder tokenUsageRecorder;
+    @Mock
+    private RetrievalProfileResolver retrievalProfileResolver;
+    @Spy
+    private PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), new MetricsConfig(),
+            mock(UserTenantResolver.class), Tracer.NOOP);
+    @Spy
+    private PromptAssembler promptAssembler = new PromptAssembler(new PromptConfig(), new InMemoryChatMemoryStore(),
+            mock(TokenCountEstimator.class), mock(UserTenantResolver.class), metrics);
+    private final ChunkExpander chunkExpander = new ChunkExpander(new RetrievalConfig(),
+            mock(DocumentChunkRepository.class), new PromptConfig(), metrics);
+    private final CrossEncoderReranker reranker = new CrossEncoderReranker(new RetrievalConfig(),
+            mock(ObjectProvider.class), metrics);
+    @Spy
+    private RetrievalPolicy retrievalPolicy = new RetrievalPolicy(reranker, chunkExpander);
+
+    @InjectMocks
+    private ReactiveChatService reactiveChatService;
+
+    private final Deadline deadline = Deadline.after(Duration.ofMinutes(1), Duration.ofSeconds(20));
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(guardService.validateInput(anyString())).thenReturn(GuardResult.safe());
+        lenient().when(guardService.validateOutput(anyString())).thenReturn(GuardResult.safe());
+        lenient().when(guardService.sanitizeOutput(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(retrievalProfileResolver.resolve("1", null)).thenReturn(RetrievalProfile.DEFAULT);
+        lenient().when(embeddingModel.embed("Hello")).thenReturn(Response.from(Embedding.from(new float[]{0.1f})));
+    }
+
+    /**
+     * A token stream that emits the chunks and completes once started.
+     */
+    @SuppressWarnings("unchecked")
+    private static TokenStream tokenStream(List<String> chunks, TokenUsage usage) {
+        TokenStream stream = mock(TokenStream.class, RETURNS_SELF);
+        AtomicReference<Consumer<String>> partial = new AtomicReference<>();
+        AtomicReference<Consumer<ChatResponse>> complete = new AtomicReference<>();
+        when(stream.onPartialResponse(any())).thenAnswer(invocation -> {
+            partial.set(invocation.getArgument(0));
+            return stream;
+        });
+        when(stream.onCompleteResponse(any())).thenAnswer(invocation -> {
+            complete.set(invocation.getArgument(0));
+            return stream;
+        });
+        doAnswer(invocation -> {
+            chunks.forEach(partial.get());
+            complete.get().accept(ChatResponse.builder()
+                    .aiMessage(AiMessage.from(String.join("", chunks)))
+                    .tokenUsage(usage)
+                    .build());
+            return null;
+        }).when(stream).start();
+        return stream;
+    }
+
+    @Test
+    void streamChat_RelevantDocuments_StreamsAnswerAndSavesTurn() {
+        // Arrange
+        when(vectorSearch.search(any(), eq("1"), any()))
+                .thenReturn(Mono.just(List.of(new QdrantVectorSearch.Match("doc", 0.9))));
+        TokenStream grade = tokenStream(List.of("yes"), new TokenUsage(10, 1));
+        TokenStream answer = tokenStream(List.of("Hi", " there"), new TokenUsage(20, 2));
+        when(streamingAssistant.chat(eq("temp-grade"), anyString(), anyString())).thenReturn(grade);
+        when(streamingAssistant.chat(eq("100"), anyString(), anyString())).thenReturn(answer);
+
+        // Act & Assert
+        StepVerifier.create(reactiveChatService.streamChat("1", 100L, "Hello", null, deadline))
+                .expectNext(ChatStreamEventDto.token("Hi"))
+                .expectNext(ChatStreamEventDto.token(" there"))
+                .expectNext(ChatStreamEventDto.done(100L))
+                .verifyComplete();
+
+        verify(conversationService).appendTurn("1", 100L, "Hello", "Hi there", 30, 3);
+        verify(tokenUsageRecorder).record(eq("1"), eq("100"), eq("grade"), any(TokenUsage.class));
+        verify(tokenUsageRecorder).record(eq("1"), eq("100"), eq("generate"), any(TokenUsage.class));
+    }
+
+    @Test
+    void streamChat_ThresholdGrading_AnswersWithoutGrading() {
+        // Arrange
+        when(retrievalProfileResolver.resolve("1", null))
+                .thenReturn(new RetrievalProfile(5, 0.7, 0, false, GradingMode.THRESHOLD));
+        when(vectorSearch.search(any(), eq("1"), any()))
+                .thenReturn(Mono.just(List.of(new QdrantVectorSearch.Match("doc", 0.9))));
+        TokenStream answer = tokenStream(List.of("Hi"), new TokenUsage(20, 2));
+        when(streamingAssistant.chat(eq("100"), anyString(), anyString())).thenReturn(answer);
+
+        // Act & Assert
+        StepVerifier.create(reactiveChatService.streamChat("1", 100L, "Hello", null, deadline))
+                .expectNext(ChatStreamEventDto.token("Hi"))
+                .expectNext(ChatStreamEventDto.done(100L))
+                .verifyComplete();
+
+        verify(streamingAssistant, never()).chat(eq(RagPrompts.GRADER_MEMORY_ID), anyString(), anyString());
+    }
+
+    @Test
+    void streamChat_NoDocuments_ClarifiesWithoutGrading() {
+        // Arrange
+        when(vectorSearch.search(any(), eq("1"), any())).thenReturn(Mono.just(List.of()));
+        TokenStream answer = tokenStream(List.of("Could you clarify?"), new TokenUsage(5, 5));
+        when(streamingAssistant.chat(eq("100"), anyString(), anyString())).thenReturn(answer);
+
+        // Act & Assert
+        StepVerifier.create(reactiveChatService.streamChat("1", 100L, "Hello", null, deadline))
+                .expectNext(ChatStreamEventDto.token("Could you clarify?"))
+                .expectNext(ChatStreamEventDto.done(100L))
+                .verifyComplete();
+
+        verify(streamingAssistant).chat(eq("100"), anyString(),
+                eq(RagPrompts.clarify("Hello")));
+    }
+
+
+    @Test
+    void streamChat_BlockedOutput_ReplacesAnswerAndSavesReplacement() {
+        // Arrange
+        when(vectorSearch.search(any(), eq("1"), any())).thenReturn(Mono.just(List.of()));
+        when(guardService.validateOutput("Here is an exploit"))
+                .thenReturn(GuardResult.blocked("Output validation failed", List.of("exploit")));
+        TokenStream answer = tokenStream(List.of("Here is", " an exploit", " for you"), new TokenUsage(5, 5));
+        when(streamingAssistant.chat(eq("100"), anyString(), anyString())).thenReturn(answer);
+
+        // Act & Assert
+        StepVerifier.create(reactiveChatService.streamChat("1", 100L, "Hello", null, deadline))
+                .expectNext(ChatStreamEventDto.token("Here is"))
+                .expectNext(ChatStreamEventDto.replace(ReactiveChatService.BLOCKED_OUTPUT))
+                .expectNext(ChatStreamEventDto.done(100L))
+                .verifyComplete();
+
+        verify(conversationService).appendTurn(eq("1"), eq(100L), eq("Hello"),
+                eq(ReactiveChatService.BLOCKED_OUTPUT), anyInt(), anyInt());
+    }
+
+    @Test
+    void streamChat_LongAnswer_ValidatesEachChunkWithTrailingWindow() {
+        // Arrange
+        when(vectorSearch.search(any(), eq("1"), any())).thenReturn(Mono.just(List.of()));
+        String first = "a".repeat(100);
+        String second = "b".repeat(100);
+        String third = "c".repeat(100);
+        TokenStream answer = tokenStream(List.of(first, second, third), new TokenUsage(5, 5));
+        when(streamingAssistant.chat(eq("100"), anyString(), anyString())).thenReturn(answer);
+
+        // Act
+        StepVerifier.create(reactiveChatService.streamChat("1", 100L, "Hello", null, deadline))
+                .expectNextCount(4)
+                .verifyComplete();
+
+        // Assert
+        verify(guardService).validateOutput(first);
+        verify(guardService).validateOutput("a".repeat(ReactiveChatService.GUARD_WINDOW) + second);
+        verify(guardService).validateOutput("b".repeat(ReactiveChatService.GUARD_WINDOW) + third);
+        verify(guardService, never()).validateOutput(first + second + third);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.dto.RetrievalProfileDto;
+import com.example.aichatbot.enums.GradingMode;
+import com.example.aichatbot.model.TenantRetrievalProfile;
+import com.example.aichatbot.repository.TenantRetrievalProfileRepository;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RetrievalProfileServiceTest {
+
+    @Mock
+    private TenantRetrievalProfileRepository repository;
+
+    private final RetrievalConfig config = new RetrievalConfig();
+    private RetrievalProfileService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RetrievalProfileService(repository, config);
+    }
+
+    @Test
+    void forTenant_NoStoredProfile_UsesDefaults() {
+        // Arrange
+        when(repository.findById("acme")).thenReturn(Optional.empty());
+
+        // Act
+        RetrievalProfile profile = service.forTenant("acme");
+
+        // Assert
+        assertEquals(RetrievalProfile.DEFAULT, profile);
+    }
+
+    @Test
+    void forTenant_PartialProfile_KeepsDefaultsForUnsetFields() {
+        // Arrange
+        TenantRetrievalProfile stored = new TenantRetrievalProfile();
+        stored.setTenantId("acme");
+        stored.setMaxResults(10);
+        stored.setGrading(GradingMode.THRESHOLD);
+        when(repository.findById("acme")).thenReturn(Optional.of(stored));
+
+        // Act
+        RetrievalProfile profile = service.forTenant("acme");
+
+        // Assert
+        assertEquals(new RetrievalProfile(10, 0.7, 0, false, GradingMode.THRESHOLD), profile);
+    }
+
+    @Test
+    void apply_OverridesBeyondLimits_AreCapped() {
+        // Arrange
+        config.getLimits().setMaxResults(20);
+        config.getLimits().setSearchEf(256);
+        RetrievalProfileDto overrides = new RetrievalProfileDto(100, 1.5, 1000, true, null);
+
+        // Act
+        RetrievalProfile profile = service.apply(RetrievalProfile.DEFAULT, overrides);
+
+        // Assert
+        assertEquals(new RetrievalProfile(20, 1.0, 256, true, GradingMode.LLM), profile);
+    }
+
+    @Test
+    void update_ClearedField_IsStoredAsNull() {
+        // Arrange
+        TenantRetrievalProfile stored = new TenantRetrievalProfile();
+        stored.setTenantId("acme");
+        stored.setMaxResults(10);
+        when(repository.findById("acme")).thenReturn(Optional.of(stored));
+
+        // Act
+        RetrievalProfile profile = service.update("acme", new RetrievalProfileDto(null, 0.6, 128, null, null));
+
+        // Assert
+        ArgumentCaptor<TenantRetrievalProfile> saved = ArgumentCaptor.forClass(TenantRetrievalProfile.class);
+        verify(repository).save(saved.capture());
+        assertNull(saved.getValue().getMaxResults());
+        assertEquals(0.6, saved.getValue().getMinScore());
+        assertEquals(new RetrievalProfile(5, 0.6, 128, false, GradingMode.LLM), profile);
+    }
+
+    @Test
+    void update_OutOfRange_ThrowsWithoutSaving() {
+        // Arrange
+        RetrievalProfileDto settings = new RetrievalProfileDto(0, null, null, null, null);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.update("acme", settings));
+        verify(repository, never()).save(any());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.model.StatisticsCounter;
+import com.example.aichatbot.repository.StatisticsCounterRepository;
+import com.example.aichatbot.service.StatisticsCounterService.Metric;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StatisticsCounterServiceTest {
+
+    @Mock
+    private StatisticsCounterRepository counterRepository;
+
+    @InjectMocks
+    private StatisticsCounterService counterService;
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static StatisticsCounter counter(String scope, Metric metric, long value) {
+        StatisticsCounter counter = new StatisticsCounter();
+        counter.setId(new StatisticsCounter.Key(scope, metric.name()));
+        counter.setValue(value);
+        return counter;
+    }
+
+    @Test
+    void record_AddsUnflushedDeltaToPersistedValue() {
+        // Arrange
+        when(counterRepository.findByScope("user:u1")).thenReturn(List.of(counter("user:u1", Metric.MESSAGES, 10)));
+
+        // Act
+        counterService.record("u1", Metric.MESSAGES, 2);
+        Map<Metric, Long> counters = counterService.getUserCounters("u1");
+
+        // Assert
+        assertEquals(12L, counters.get(Metric.MESSAGES));
+        assertEquals(0L, counters.get(Metric.DOCUMENTS));
+    }
+
+    @Test
+    void flush_UpsertsSummedDeltasForUserAndGlobal() {
+        // Arrange
+        counterService.record("u1", Metric.MESSAGES, 2);
+        counterService.record("u1", Metric.MESSAGES, 3);
+
+        // Act
+        counterService.flush();
+        counterService.flush();
+
+        // Assert
+        verify(counterRepository, times(1)).add("global", "MESSAGES", 5);
+        verify(counterRepository, times(1)).add("user:u1", "MESSAGES", 5);
+    }
+
+    @Test
+    void shutdown_FlushesBufferedDeltas() {
+        // Arrange
+        counterService.record("u1", Metric.DOCUMENTS, 1);
+
+        // Act
+        counterService.shutdown();
+
+        // Assert
+        verify(counterRepository).add("global", "DOCUMENTS", 1);
+        verify(counterRepository).add("user:u1", "DOCUMENTS", 1);
+    }
+
+    @Test
+    void flush_Failure_KeepsDeltaForNextFlush() {
+        // Arrange
+        counterService.recordGlobal(Metric.USERS, 1);
+        doThrow(new RuntimeException("db down")).when(counterRepository).add("global", "USERS", 1);
+        when(counterRepository.findByScope("global")).thenReturn(List.of());
+
+        // Act
+        counterService.flush();
+
+        // Assert
+        assertEquals(1L, counterService.getGlobalCounters().get(Metric.USERS));
+    }
+
+    @Test
+    void record_InTransaction_AppliesOnlyAfterCommit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        counterService.record("u1", Metric.CONVERSATIONS, 1);
+        counterService.flush();
+
+        // Assert
+        verify(counterRepository, never()).add(anyString(), anyString(), anyLong());
+
+        // Act
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        counterService.flush();
+
+        // Assert
+        verify(counterRepository).add("global", "CONVERSATIONS", 1);
+        verify(counterRepository).add("user:u1", "CONVERSATIONS", 1);
+    }
+}
@@ -1,10 +1,9 @@
 package com.example.aichatbot.service;
 
 import com.example.aichatbot.dto.StatisticsDto;
+import com.example.aichatbot.dto.UserStatisticsDto;
 import com.example.aichatbot.repository.ConversationRepository;
-import com.example.aichatbot.repository.DocumentRepository;
-import com.example.aichatbot.repository.MessageRepository;
-import com.example.aichatbot.repository.UserRepository;
+import com.example.aichatbot.service.StatisticsCounterService.Metric;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -12,36 +11,42 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class StatisticsServiceTest {
 
     @Mock
-    private UserRepository userRepository;
+    private StatisticsCounterService counterService;
 
     @Mock
     private ConversationRepository conversationRepository;
 
-    @Mock
-    private MessageRepository messageRepository;
-
-    @Mock
-    private DocumentRepository documentRepository;
-
     @InjectMocks
     private StatisticsService statisticsService;
 
+    private static Map<Metric, Long> counters(long users, long conversations, long messages, long documents,
+                                              long inputTokens, long outputTokens) {
+        Map<Metric, Long> counters = new EnumMap<>(Metric.class);
+        counters.put(Metric.USERS, users);
+        counters.put(Metric.CONVERSATIONS, conversations);
+        counters.put(Metric.MESSAGES, messages);
+        counters.put(Metric.DOCUMENTS, documents);
+        counters.put(Metric.INPUT_TOKENS, inputTokens);
+        counters.put(Metric.OUTPUT_TOKENS, outputTokens);
+        return counters;
+    }
+
     @Test
     void getStatistics_ReturnsCorrectCounts() {
         // Arrange
-        when(userRepository.count()).thenReturn(10L);
-        when(conversationRepository.count()).thenReturn(20L);
-        when(messageRepository.count()).thenReturn(100L);
-        when(documentRepository.count()).thenReturn(5L);
+        when(counterService.getGlobalCounters()).thenReturn(counters(10, 20, 100, 5, 300, 700));
         when(conversationRepository.countByUpdatedAtAfter(any(LocalDateTime.class))).thenReturn(2L);
 
         // Act
@@ -53,5 +58,26 @@ class StatisticsServiceTest {
         assertEquals(100L, stats.totalMessages());
         assertEquals(5L, stats.totalDocuments());
         assertEquals(2L, stats.activeConversations24h());
+        assertEquals(1000L, stats.totalTokens());
+    }
+
+    @Test
+    void getUserStatistics_CombinesUserAndGlobalCounters() {
+        // Arrange
+        when(counterService.getUserCounters("user1")).thenReturn(counters(0, 3, 12, 1, 40, 60));
+        when(counterService.getGlobalCounters()).thenReturn(counters(10, 20, 100, 5, 300, 700));
+        when(conversationRepository.countByUserIdAndUpdatedAtAfter(eq("user1"), any(LocalDateTime.class)))
+                .thenReturn(1L);
+
+        // Act
+        UserStatisticsDto stats = statisticsService.getUserStatistics("user1");
+
+        // Assert
+        assertEquals(3L, stats.myConversations());
+        assertEquals(12L, stats.myMessages());
+        assertEquals(100L, stats.totalMessages());
+        assertEquals(5L, stats.totalDocuments());
+        assertEquals(1L, stats.myActiveConversations24h());
+        assertEquals(100L, stats.myTotalTokens());
     }
 }
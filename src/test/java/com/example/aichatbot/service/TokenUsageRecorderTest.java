@@ -0,0 +1,89 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.model.TokenUsageEntry;
+import dev.langchain4j.model.output.TokenUsage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenUsageRecorderTest {
+
+    @Mock
+    private TokenUsageService tokenUsageService;
+
+    @Mock
+    private UserTenantResolver userTenantResolver;
+
+    private TokenUsageRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        recorder = new TokenUsageRecorder(tokenUsageService, userTenantResolver, 100, 2, "gemini");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_WritesQueuedUsageInBatches() {
+        // Arrange
+        when(userTenantResolver.tenantOf("user-1")).thenReturn("tenant-1");
+        recorder.record("user-1", "42", "grade", new TokenUsage(10, 2));
+        recorder.record("user-1", "42", "generate", new TokenUsage(100, 40));
+        recorder.record("user-1", "temp-grade", "clarify", new TokenUsage(5, 1));
+
+        // Act
+        recorder.flush();
+
+        // Assert
+        ArgumentCaptor<List<TokenUsageEntry>> batches = ArgumentCaptor.forClass(List.class);
+        verify(tokenUsageService, times(2)).writeBatch(batches.capture());
+        TokenUsageEntry first = batches.getAllValues().get(0).get(0);
+        assertEquals("tenant-1", first.getTenantId());
+        assertEquals(42L, first.getConversationId());
+        assertEquals("grade", first.getStep());
+        assertEquals("gemini", first.getModel());
+        assertEquals(10, first.getInputTokens());
+        assertEquals(2, first.getOutputTokens());
+        assertEquals(1, batches.getAllValues().get(1).size());
+        assertNull(batches.getAllValues().get(1).get(0).getConversationId());
+    }
+
+    @Test
+    void flush_Failure_KeepsUsageForNextFlush() {
+        // Arrange
+        when(userTenantResolver.tenantOf("user-1")).thenReturn("tenant-1");
+        recorder.record("user-1", "42", "generate", new TokenUsage(100, 40));
+        doThrow(new RuntimeException("db down")).doNothing().when(tokenUsageService).writeBatch(anyList());
+
+        // Act
+        recorder.flush();
+        recorder.flush();
+
+        // Assert
+        verify(tokenUsageService, times(2)).writeBatch(anyList());
+    }
+
+    @Test
+    void record_WithoutUsage_IsIgnored() {
+        // Act
+        recorder.record("user-1", "42", "generate", null);
+        recorder.flush();
+
+        // Assert
+        verify(tokenUsageService, never()).writeBatch(anyList());
+    }
+}
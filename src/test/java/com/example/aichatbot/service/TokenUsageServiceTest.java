@@ -0,0 +1,79 @@
+package com.example.aichatbot.service;
+
+import com.example.aichatbot.model.TokenUsageEntry;
+import com.example.aichatbot.repository.TokenUsageEntryRepository;
+import com.example.aichatbot.repository.TokenUsageRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TokenUsageServiceTest {
+
+    @Mock
+    private TokenUsageEntryRepository entryRepository;
+
+    @Mock
+    private TokenUsageRollupRepository rollupRepository;
+
+    @InjectMocks
+    private TokenUsageService tokenUsageService;
+
+    private static TokenUsageEntry entry(String occurredAt, String step, int input, int output) {
+        TokenUsageEntry entry = new TokenUsageEntry();
+        entry.setOccurredAt(Instant.parse(occurredAt));
+        entry.setTenantId("tenant-1");
+        entry.setUserId("user-1");
+        entry.setStep(step);
+        entry.setModel("gemini");
+        entry.setInputTokens(input);
+        entry.setOutputTokens(output);
+        return entry;
+    }
+
+    @Test
+    void writeBatch_AppendsLedgerAndAggregatesRollupsPerBucket() {
+        // Arrange
+        List<TokenUsageEntry> entries = List.of(
+                entry("2024-05-01T10:15:00Z", "generate", 100, 40),
+                entry("2024-05-01T10:45:00Z", "generate", 50, 10),
+                entry("2024-05-01T11:05:00Z", "generate", 20, 5));
+
+        // Act
+        tokenUsageService.writeBatch(entries);
+
+        // Assert
+        verify(entryRepository).saveAll(entries);
+        Instant tenOClock = Instant.parse("2024-05-01T10:00:00Z");
+        Instant elevenOClock = Instant.parse("2024-05-01T11:00:00Z");
+        Instant day = Instant.parse("2024-05-01T00:00:00Z");
+        verify(rollupRepository).add("HOUR", tenOClock, "tenant-1", "user-1", "generate", "gemini", 150, 50, 2);
+        verify(rollupRepository).add("HOUR", elevenOClock, "tenant-1", "user-1", "generate", "gemini", 20, 5, 1);
+        verify(rollupRepository).add("DAY", day, "tenant-1", "user-1", "generate", "gemini", 170, 55, 3);
+        verify(rollupRepository, times(3)).add(anyString(), any(), anyString(), anyString(), anyString(),
+                anyString(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void writeBatch_Empty_WritesNothing() {
+        // Act
+        tokenUsageService.writeBatch(List.of());
+
+        // Assert
+        verify(entryRepository, never()).saveAll(any());
+        verify(rollupRepository, never()).add(anyString(), any(), anyString(), anyString(), anyString(),
+                anyString(), anyLong(), anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.aichatbot.service.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingEmbeddingModelTest {
+
+    /**
+     * Embeds each text as its length and records the size of every batch it is given.
+     */
+    private static class RecordingModel implements EmbeddingModel {
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile RuntimeException failure;
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batchSizes.add(textSegments.size());
+            batches.add(textSegments.stream().map(TextSegment::text).toList());
+            if (failure != null) {
+                throw failure;
+            }
+            return Response.from(textSegments.stream()
+                    .map(segment -> Embedding.from(new float[]{segment.text().length()}))
+                    .toList());
+        }
+    }
+
+    private RecordingModel delegate;
+    private BatchingEmbeddingModel model;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new RecordingModel();
+        callers = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        model.close();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void embed_ConcurrentCallers_AreServedFromSharedBatches() throws Exception {
+        // Arrange
+        model = new BatchingEmbeddingModel(delegate, 32, Duration.ofMillis(200));
+        List<Future<Embedding>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            String text = "x".repeat(i + 1);
+            results.add(callers.submit(() -> model.embed(text).content()));
+        }
+
+        // Assert
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i + 1, results.get(i).get(5, TimeUnit.SECONDS).vector()[0]);
+        }
+        assertTrue(delegate.batchSizes.size() < 8, "Expected callers to share batches: " + delegate.batchSizes);
+    }
+
+    @Test
+    void embedAll_MoreThanBatchSize_SplitsIntoFullBatches() {
+        // Arrange
+        model = new BatchingEmbeddingModel(delegate, 4, Duration.ofMillis(50));
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            segments.add(TextSegment.from("segment " + i));
+        }
+
+        // Act
+        List<Embedding> embeddings = model.embedAll(segments).content();
+
+        // Assert
+        assertEquals(10, embeddings.size());
+        assertEquals(List.of(4, 4, 2), delegate.batchSizes);
+    }
+
+    @Test
+    void embed_QueuedBehindDocument_GoesFirst() throws Exception {
+        // Arrange
+        model = new BatchingEmbeddingModel(delegate, 2, Duration.ofMillis(50));
+        delegate.gate = new CountDownLatch(1);
+        List<TextSegment> document = List.of(TextSegment.from("a"), TextSegment.from("b"),
+                TextSegment.from("c"), TextSegment.from("d"));
+        Future<?> ingestion = callers.submit(() -> model.embedAll(document));
+        // Let the first batch of the document start and block
+        Thread.sleep(100);
+        Future<Embedding> question = callers.submit(() -> model.embed("question").content());
+        Thread.sleep(100);
+
+        // Act
+        delegate.gate.countDown();
+        question.get(5, TimeUnit.SECONDS);
+        ingestion.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of("question", "c"), delegate.batches.get(1));
+    }
+
+    @Test
+    void embedAllInteractive_QueuedBehindDocument_GoesFirst() throws Exception {
+        // Arrange
+        model = new BatchingEmbeddingModel(delegate, 2, Duration.ofMillis(50));
+        delegate.gate = new CountDownLatch(1);
+        List<TextSegment> document = List.of(TextSegment.from("a"), TextSegment.from("b"),
+                TextSegment.from("c"), TextSegment.from("d"));
+        Future<?> ingestion = callers.submit(() -> model.embedAll(document));
+        // Let the first batch of the document start and block
+        Thread.sleep(100);
+        Future<?> queries = callers.submit(() -> model.embedAllInteractive(
+                List.of(TextSegment.from("question"), TextSegment.from("variant"))));
+        Thread.sleep(100);
+
+        // Act
+        delegate.gate.countDown();
+        queries.get(5, TimeUnit.SECONDS);
+        ingestion.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of("question", "variant"), delegate.batches.get(1));
+    }
+
+    @Test
+    void embed_ModelFails_PropagatesToCaller() {
+        // Arrange
+        model = new BatchingEmbeddingModel(delegate, 8, Duration.ZERO);
+        delegate.failure = new IllegalArgumentException("bad input");
+
+        // Act & Assert
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> model.embed("text"));
+        assertEquals("bad input", e.getMessage());
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.config.PromptConfig;
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.config.RetrievalConfig.ExpansionMode;
+import com.example.aichatbot.model.DocumentChunk;
+import com.example.aichatbot.repository.DocumentChunkRepository;
+import com.example.aichatbot.service.UserTenantResolver;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChunkExpanderTest {
+
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
+    private final RetrievalConfig config = new RetrievalConfig();
+    private ChunkExpander expander;
+
+    @BeforeEach
+    void setUp() {
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), new MetricsConfig(),
+                mock(UserTenantResolver.class), Tracer.NOOP);
+        expander = new ChunkExpander(config, chunkRepository, new PromptConfig(), metrics);
+    }
+
+    private static TextSegment match(String text, String documentKey, int index) {
+        return TextSegment.from(text, new Metadata()
+                .put(ChunkExpander.DOCUMENT_KEY, documentKey)
+                .put(ChunkExpander.CHUNK_INDEX, index));
+    }
+
+    private static List<DocumentChunk> chunks(String documentKey, int from, int to) {
+        return IntStream.rangeClosed(from, to).mapToObj(index -> {
+            DocumentChunk chunk = new DocumentChunk();
+            chunk.setDocumentKey(documentKey);
+            chunk.setChunkIndex(index);
+            chunk.setContent("chunk " + index);
+            return chunk;
+        }).toList();
+    }
+
+    @Test
+    void expand_Off_ReturnsMatchesWithoutReadingChunks() {
+        // Arrange
+        List<TextSegment> matches = List.of(match("chunk 3", "doc", 3));
+
+        // Act
+        List<String> documents = expander.expand("1", matches);
+
+        // Assert
+        assertEquals(List.of("chunk 3"), documents);
+        verifyNoInteractions(chunkRepository);
+    }
+
+    @Test
+    void expand_Neighbors_MergesAdjacentMatchesOfOneDocument() {
+        // Arrange
+        config.getExpansion().setMode(ExpansionMode.NEIGHBORS);
+        when(chunkRepository.findByUserIdAndDocumentKeyInAndChunkIndexBetweenOrderByChunkIndex("1",
+                Set.of("doc", "other"), 0, 5))
+                .thenReturn(Stream.concat(chunks("other", 0, 5).stream(), chunks("doc", 0, 5).stream()).toList());
+
+        // Act
+        List<String> documents = expander.expand("1",
+                List.of(match("chunk 3", "doc", 3), match("chunk 0", "other", 0), match("chunk 4", "doc", 4)));
+
+        // Assert
+        assertEquals(List.of("chunk 2\nchunk 3\nchunk 4\nchunk 5", "chunk 0\nchunk 1"), documents);
+        verify(chunkRepository).findByUserIdAndDocumentKeyInAndChunkIndexBetweenOrderByChunkIndex(any(), any(),
+                anyInt(), anyInt());
+    }
+
+    @Test
+    void expand_Neighbors_MergesPassagesThatWideningJoins() {
+        // Arrange
+        config.getExpansion().setMode(ExpansionMode.NEIGHBORS);
+        when(chunkRepository.findByUserIdAndDocumentKeyInAndChunkIndexBetweenOrderByChunkIndex("1",
+                Set.of("doc"), 0, 7))
+                .thenReturn(chunks("doc", 0, 7));
+
+        // Act
+        List<String> documents = expander.expand("1",
+                List.of(match("chunk 0", "doc", 0), match("chunk 6", "doc", 6), match("chunk 3", "doc", 3)));
+
+        // Assert
+        assertEquals(List.of("chunk 0\nchunk 1\nchunk 2\nchunk 3\nchunk 4\nchunk 5\nchunk 6\nchunk 7"),
+                documents);
+    }
+
+    @Test
+    void expand_Parent_ReadsTheMatchedChunksSection() {
+        // Arrange
+        config.getExpansion().setMode(ExpansionMode.PARENT);
+        config.getExpansion().setSectionChunks(4);
+        when(chunkRepository.findByUserIdAndDocumentKeyInAndChunkIndexBetweenOrderByChunkIndex("1",
+                Set.of("doc"), 4, 7))
+                .thenReturn(chunks("doc", 4, 7));
+
+        // Act
+        List<String> documents = expander.expand("1", List.of(match("chunk 6", "doc", 6)));
+
+        // Assert
+        assertEquals(List.of("chunk 4\nchunk 5\nchunk 6\nchunk 7"), documents);
+    }
+
+    @Test
+    void expand_ChunkWithoutPosition_IsUsedAsIs() {
+        // Arrange
+        config.getExpansion().setMode(ExpansionMode.NEIGHBORS);
+
+        // Act
+        List<String> documents = expander.expand("1", List.of(TextSegment.from("legacy chunk")));
+
+        // Assert
+        assertEquals(List.of("legacy chunk"), documents);
+        verifyNoInteractions(chunkRepository);
+    }
+
+    @Test
+    void expand_ChunksNotStored_FallsBackToMatches() {
+        // Arrange
+        config.getExpansion().setMode(ExpansionMode.NEIGHBORS);
+        when(chunkRepository.findByUserIdAndDocumentKeyInAndChunkIndexBetweenOrderByChunkIndex("1",
+                Set.of("doc"), 0, 1))
+                .thenReturn(List.of());
+
+        // Act
+        List<String> documents = expander.expand("1", List.of(match("chunk 0", "doc", 0)));
+
+        // Assert
+        assertEquals(List.of("chunk 0"), documents);
+        verify(chunkRepository).findByUserIdAndDocumentKeyInAndChunkIndexBetweenOrderByChunkIndex("1",
+                Set.of("doc"), 0, 1);
+    }
+
+    @Test
+    void join_OverlappingChunks_KeepsSharedTextOnce() {
+        // Arrange
+        String first = "The first sentence is here. The overlap sentence is shared.";
+        String second = "The overlap sentence is shared. The last sentence follows.";
+
+        // Act
+        String joined = expander.join(List.of(first, second));
+
+        // Assert
+        assertEquals("The first sentence is here. The overlap sentence is shared. The last sentence follows.",
+                joined);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.service.Deadline;
+import com.example.aichatbot.service.UserTenantResolver;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.scoring.ScoringModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CrossEncoderRerankerTest {
+
+    @Mock
+    private ObjectProvider<ScoringModel> scoringModelProvider;
+
+    @Mock
+    private ScoringModel scoringModel;
+
+    private final RetrievalConfig config = new RetrievalConfig();
+    private CrossEncoderReranker reranker;
+
+    private final List<TextSegment> candidates = List.of(
+            TextSegment.from("first"), TextSegment.from("second"), TextSegment.from("third"));
+
+    @BeforeEach
+    void setUp() {
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), new MetricsConfig(),
+                mock(UserTenantResolver.class), Tracer.NOOP);
+        reranker = new CrossEncoderReranker(config, scoringModelProvider, metrics);
+        lenient().when(scoringModelProvider.getIfAvailable()).thenReturn(scoringModel);
+    }
+
+    @Test
+    void rerank_ScoredCandidates_KeepsTheBestFirst() {
+        // Arrange
+        config.getRerank().setBatchSize(2);
+        when(scoringModel.scoreAll(anyList(), eq("question")))
+                .thenReturn(Response.from(List.of(0.2, 0.9)))
+                .thenReturn(Response.from(List.of(0.6)));
+
+        // Act
+        CrossEncoderReranker.Reranked reranked = reranker.rerank("1", "question", candidates, 2, null);
+
+        // Assert
+        assertEquals(List.of("second", "third"), reranked.segments().stream().map(TextSegment::text).toList());
+        assertEquals(0.9, reranked.topScore());
+        verify(scoringModel, times(2)).scoreAll(anyList(), eq("question"));
+    }
+
+    @Test
+    void rerank_DeadlineNear_KeepsVectorOrderWithoutScoring() {
+        // Arrange
+        Deadline deadline = Deadline.after(Duration.ofSeconds(10), Duration.ofSeconds(20));
+
+        // Act
+        CrossEncoderReranker.Reranked reranked = reranker.rerank("1", "question", candidates, 2, deadline);
+
+        // Assert
+        assertEquals(candidates.subList(0, 2), reranked.segments());
+        assertEquals(0.0, reranked.topScore());
+        verifyNoInteractions(scoringModel);
+    }
+
+    @Test
+    void rerank_ModelFails_KeepsVectorOrder() {
+        // Arrange
+        when(scoringModel.scoreAll(anyList(), eq("question"))).thenThrow(new IllegalStateException("onnx"));
+
+        // Act
+        CrossEncoderReranker.Reranked reranked = reranker.rerank("1", "question", candidates, 2, null);
+
+        // Assert
+        assertEquals(candidates.subList(0, 2), reranked.segments());
+        assertFalse(reranker.settlesRelevance(reranked.topScore()));
+    }
+
+    @Test
+    void settlesRelevance_HighTopScore_SkipsGrading() {
+        // Act & Assert
+        assertTrue(reranker.settlesRelevance(0.95));
+        assertFalse(reranker.settlesRelevance(0.5));
+        config.getRerank().setSkipGradingScore(0);
+        assertFalse(reranker.settlesRelevance(1.0));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.service.UserTenantResolver;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MultiQueryRetrieverTest {
+
+    @Mock
+    private QdrantVectorSearch vectorSearch;
+    @Mock
+    private EmbeddingModel embeddingModel;
+    @Mock
+    private ChatModel chatModel;
+
+    private final RetrievalConfig config = new RetrievalConfig();
+    private MultiQueryRetriever retriever;
+
+    @BeforeEach
+    void setUp() {
+        config.getMultiQuery().setMode(RetrievalConfig.MultiQueryMode.ALWAYS);
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), new MetricsConfig(),
+                mock(UserTenantResolver.class), Tracer.NOOP);
+        retriever = new MultiQueryRetriever(config, vectorSearch, embeddingModel, chatModel, metrics, Runnable::run);
+    }
+
+    private static QdrantVectorSearch.Match match(String id, double score) {
+        return new QdrantVectorSearch.Match("text " + id, score);
+    }
+
+    private static List<String> texts(MultiQueryRetriever.Retrieval retrieval) {
+        return retrieval.matches().stream().map(TextSegment::text).toList();
+    }
+
+    private void embedsEveryQuery() {
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> Response.from(
+                ((List<?>) invocation.getArgument(0)).stream()
+                        .map(segment -> Embedding.from(new float[]{1f}))
+                        .toList()));
+    }
+
+    @Test
+    void fuse_DocumentFoundByEveryQuery_RanksAboveSingleTopHit() {
+        // Arrange
+        List<List<QdrantVectorSearch.Match>> rankings = List.of(
+                List.of(match("a", 0.95), match("b", 0.8)),
+                List.of(match("b", 0.85), match("c", 0.9)),
+                List.of(match("c", 0.7), match("b", 0.75)));
+
+        // Act
+        List<QdrantVectorSearch.Match> fused = MultiQueryRetriever.fuse(rankings, 60, 5);
+
+        // Assert
+        assertEquals(List.of("text b", "text c", "text a"), fused.stream().map(QdrantVectorSearch.Match::text).toList());
+        assertEquals(0.85, fused.get(0).score());
+    }
+
+    @Test
+    void localVariants_Question_AddsKeywordsAndSentences() {
+        // Act
+        List<String> variants = MultiQueryRetriever.localVariants("What is our refund policy? How long does it take?");
+
+        // Assert
+        assertEquals(List.of("our refund policy long take", "What is our refund policy?", "How long does it take?"),
+                variants);
+    }
+
+    @Test
+    void parseVariants_NumberedList_StripsNumbering() {
+        // Act
+        List<String> variants = MultiQueryRetriever.parseVariants("1. refund rules\n- returns window\n\n3) money back");
+
+        // Assert
+        assertEquals(List.of("refund rules", "returns window", "money back"), variants);
+    }
+
+    @Test
+    void retrieve_LlmRewriter_EmbedsAllQueriesInOneBatchAndSearchesEach() {
+        // Arrange
+        config.getMultiQuery().setRewriter(RetrievalConfig.Rewriter.LLM);
+        config.getMultiQuery().setVariants(2);
+        when(chatModel.chat(any(ChatRequest.class))).thenReturn(ChatResponse.builder()
+                .aiMessage(AiMessage.from("refund rules\nreturns window\nmoney back"))
+                .tokenUsage(new TokenUsage(40, 8))
+                .build());
+        embedsEveryQuery();
+        when(vectorSearch.search(any(Embedding.class), eq("user"), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of(match("a", 0.9))));
+
+        // Act
+        MultiQueryRetriever.Retrieval retrieval = retriever.retrieve("What is the refund policy?", "user",
+                RetrievalProfile.DEFAULT, null);
+
+        // Assert
+        verify(embeddingModel).embedAll(anyList());
+        verify(vectorSearch, times(3)).search(any(Embedding.class), eq("user"),
+                argThat(profile -> profile.maxResults() == config.getMultiQuery().getCandidatesPerQuery()));
+        assertEquals(List.of("text a"), texts(retrieval));
+        assertEquals(40, retrieval.rewriteUsage().inputTokenCount());
+    }
+
+    @Test
+    void retrieve_RewriterFails_FallsBackToLocalVariants() {
+        // Arrange
+        config.getMultiQuery().setRewriter(RetrievalConfig.Rewriter.LLM);
+        when(chatModel.chat(any(ChatRequest.class))).thenThrow(new RuntimeException("429 RESOURCE_EXHAUSTED"));
+        embedsEveryQuery();
+        when(vectorSearch.search(any(Embedding.class), eq("user"), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of(match("a", 0.9))));
+
+        // Act
+        MultiQueryRetriever.Retrieval retrieval = retriever.retrieve("What is the refund policy?", "user",
+                RetrievalProfile.DEFAULT, null);
+
+        // Assert
+        verify(vectorSearch, times(2)).search(any(Embedding.class), eq("user"), any(RetrievalProfile.class));
+        assertEquals(List.of("text a"), texts(retrieval));
+        assertNull(retrieval.rewriteUsage());
+    }
+
+    @Test
+    void retrieve_VariantSearchFails_KeepsOtherResults() {
+        // Arrange
+        embedsEveryQuery();
+        // Variant searches are handed to the executor before the question's own search runs
+        when(vectorSearch.search(any(Embedding.class), eq("user"), any(RetrievalProfile.class)))
+                .thenReturn(Mono.error(new RuntimeException("Qdrant unavailable")))
+                .thenReturn(Mono.just(List.of(match("a", 0.9))));
+
+        // Act
+        MultiQueryRetriever.Retrieval retrieval = retriever.retrieve("What is the refund policy?", "user",
+                RetrievalProfile.DEFAULT, null);
+
+        // Assert
+        assertEquals(List.of("text a"), texts(retrieval));
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.aichatbot.service.graph;
+
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.config.PromptConfig;
+import com.example.aichatbot.service.UserTenantResolver;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PromptAssemblerTest {
+
+    @Mock
+    private TokenCountEstimator tokenCountEstimator;
+    @Mock
+    private UserTenantResolver tenantResolver;
+
+    private final PromptConfig config = new PromptConfig();
+    private final InMemoryChatMemoryStore chatMemoryStore = new InMemoryChatMemoryStore();
+    private SimpleMeterRegistry meterRegistry;
+    private PromptAssembler assembler;
+
+    @BeforeEach
+    void setUp() {
+        // One token per word keeps the arithmetic readable
+        lenient().when(tokenCountEstimator.estimateTokenCountInText(anyString()))
+                .thenAnswer(invocation -> ((String) invocation.getArgument(0)).split("\\s+").length);
+        lenient().when(tokenCountEstimator.estimateTokenCountInMessages(any())).thenReturn(0);
+        lenient().when(tenantResolver.tenantOf("user")).thenReturn("acme");
+        meterRegistry = new SimpleMeterRegistry();
+        PipelineMetrics metrics = new PipelineMetrics(meterRegistry, new MetricsConfig(), tenantResolver, Tracer.NOOP);
+        assembler = new PromptAssembler(config, chatMemoryStore, tokenCountEstimator, tenantResolver, metrics);
+    }
+
+    @Test
+    void assemble_ContextWithinBudget_KeepsDocumentsWhole() {
+        // Arrange
+        List<String> documents = List.of("Refunds take five days.", "Shipping is free over fifty euros.");
+
+        // Act
+        PromptAssembler.AssembledPrompt prompt = assembler.assemble("user", "1", "How long do refunds take?", documents);
+
+        // Assert
+        assertEquals(RagPrompts.generate(documents), prompt.systemPrompt());
+        assertEquals("How long do refunds take?", prompt.question());
+        assertEquals(prompt.contextTokensBefore(), prompt.contextTokensAfter());
+        assertEquals(2, meterRegistry.get("rag.prompt.context.tokens").summaries().size());
+    }
+
+    @Test
+    void dedupe_SplitterOverlap_TrimsRepeatedText() {
+        // Arrange
+        String first = "Refunds are issued to the original payment method within five working days.";
+        String second = "within five working days. Store credit is issued immediately instead.";
+
+        // Act
+        List<String> chunks = assembler.dedupe(List.of(first, second, first));
+
+        // Assert
+        assertEquals(List.of(first, "Store credit is issued immediately instead."), chunks);
+    }
+
+    @Test
+    void assemble_OverBudget_KeepsSentencesMentioningTheQuestion() {
+        // Arrange
+        config.getTenants().put("acme", 47);
+        List<String> documents = List.of(
+                "Our company was founded in 1999 in Berlin by two engineers. Refunds take five working days. "
+                        + "The office is open on weekdays from nine to five.",
+                "Gift cards never expire and can be used online or in any store across the country.");
+
+        // Act
+        PromptAssembler.AssembledPrompt prompt = assembler.assemble("user", "1", "How long do refunds take?", documents);
+
+        // Assert
+        assertTrue(prompt.systemPrompt().contains("Refunds take five working days."));
+        assertFalse(prompt.systemPrompt().contains("founded"));
+        assertFalse(prompt.systemPrompt().contains("Gift cards"));
+        assertTrue(prompt.contextTokensAfter() < prompt.contextTokensBefore());
+    }
+
+    @Test
+    void assemble_LongConversation_LeavesLessRoomForContext() {
+        // Arrange
+        config.getTenants().put("acme", 30);
+        config.setHistoryShare(1.0);
+        chatMemoryStore.updateMessages("1", List.of(UserMessage.from("earlier question"), AiMessage.from("answer")));
+        when(tokenCountEstimator.estimateTokenCountInMessages(any())).thenReturn(20);
+        List<String> documents = List.of("Refunds take five working days. Refunds are paid to the card used.");
+
+        // Act
+        PromptAssembler.AssembledPrompt prompt = assembler.assemble("user", "1", "refunds", documents);
+
+        // Assert
+        assertEquals(0, prompt.contextTokensAfter());
+        assertEquals(RagPrompts.generate(List.of()), prompt.systemPrompt());
+    }
+
+    @Test
+    void assemble_MultiTurnConversation_KeepsContextOutOfMemory() {
+        // Arrange
+        config.getTenants().put("acme", 80);
+        when(tokenCountEstimator.estimateTokenCountInMessages(any())).thenAnswer(invocation -> {
+            Iterable<ChatMessage> messages = invocation.getArgument(0);
+            int words = 0;
+            for (ChatMessage message : messages) {
+                words += words(message);
+            }
+            return words;
+        });
+        // The memory the assistant writes to, as configured in AiConfig
+        ChatMemory memory = MessageWindowChatMemory.builder()
+                .id("1").maxMessages(10).chatMemoryStore(chatMemoryStore).build();
+        List<String> documents = List.of("Refunds take five working days and are paid to the card used for the order.");
+
+        // Act
+        PromptAssembler.AssembledPrompt prompt = null;
+        for (int turn = 0; turn < 5; turn++) {
+            prompt = assembler.assemble("user", "1", "How long do refunds take this time?", documents);
+            memory.add(SystemMessage.from(prompt.systemPrompt()));
+            memory.add(UserMessage.from(prompt.question()));
+            memory.add(AiMessage.from("Refunds take five working days."));
+        }
+        prompt = assembler.assemble("user", "1", "And for gift cards?", documents);
+
+        // Assert
+        assertEquals(prompt.contextTokensBefore(), prompt.contextTokensAfter());
+        assertTrue(prompt.systemPrompt().contains(documents.get(0)));
+        List<ChatMessage> stored = chatMemoryStore.getMessages("1");
+        assertEquals(1, stored.stream().filter(SystemMessage.class::isInstance).count());
+        assertTrue(stored.stream().filter(UserMessage.class::isInstance)
+                .allMatch(message -> ((UserMessage) message).singleText().equals("How long do refunds take this time?")));
+        List<ChatMessage> turns = stored.stream().filter(message -> !(message instanceof SystemMessage)).toList();
+        assertTrue(turns.stream().mapToInt(this::words).sum() <= 40);
+        assertTrue(turns.get(0) instanceof UserMessage);
+    }
+
+    private int words(ChatMessage message) {
+        String text = "";
+        if (message instanceof SystemMessage system) {
+            text = system.text();
+        } else if (message instanceof UserMessage user) {
+            text = user.singleText();
+        } else if (message instanceof AiMessage ai) {
+            text = ai.text();
+        }
+        return text.split("\\s+").length;
+    }
+}
@@ -1,23 +1,39 @@
 package com.example.aichatbot.service.graph;
 
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.config.PromptConfig;
+import com.example.aichatbot.config.RetrievalConfig;
+import com.example.aichatbot.enums.GradingMode;
+import com.example.aichatbot.exception.DeadlineExceededException;
+import com.example.aichatbot.repository.DocumentChunkRepository;
 import com.example.aichatbot.service.Assistant;
+import com.example.aichatbot.service.Deadline;
+import com.example.aichatbot.service.TokenUsageRecorder;
+import com.example.aichatbot.service.UserTenantResolver;
+import com.example.aichatbot.service.metrics.PipelineMetrics;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.Response;
 import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.model.scoring.ScoringModel;
 import dev.langchain4j.service.Result;
-import dev.langchain4j.store.embedding.EmbeddingMatch;
-import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
-import dev.langchain4j.store.embedding.EmbeddingSearchResult;
-import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
 import org.bsc.langgraph4j.CompiledGraph;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,17 +41,24 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class RagGraphTest {
 
     @Mock
-    private EmbeddingStore<TextSegment> embeddingStore;
+    private QdrantVectorSearch vectorSearch;
 
     @Mock
     private EmbeddingModel embeddingModel;
@@ -43,14 +66,51 @@ class RagGraphTest {
     @Mock
     private Assistant assistant;
 
+    @Mock
+    private TokenUsageRecorder tokenUsageRecorder;
+
+    @Mock
+    private UserTenantResolver userTenantResolver;
+
     private CompiledGraph<RagState> graph;
     private static final String CONV_ID = "123";
     private static final String USER_ID = "test-user";
 
+    @Mock
+    private ChatModel chatModel;
+
+    @Mock
+    private TokenCountEstimator tokenCountEstimator;
+
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
+    @Mock
+    private ObjectProvider<ScoringModel> scoringModelProvider;
+
+    @Mock
+    private ScoringModel scoringModel;
+
+    private final RetrievalConfig retrievalConfig = new RetrievalConfig();
+
     @BeforeEach
     void setUp() throws Exception {
-        RagGraph ragGraph = new RagGraph(embeddingStore, embeddingModel, assistant);
-        graph = ragGraph.buildGraph();
+        graph = buildGraph();
+    }
+
+    private CompiledGraph<RagState> buildGraph() throws Exception {
+        PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry(), new MetricsConfig(),
+                userTenantResolver, Tracer.NOOP);
+        MultiQueryRetriever multiQueryRetriever = new MultiQueryRetriever(retrievalConfig, vectorSearch,
+                embeddingModel, chatModel, metrics, Runnable::run);
+        PromptAssembler promptAssembler = new PromptAssembler(new PromptConfig(), new InMemoryChatMemoryStore(),
+                tokenCountEstimator, userTenantResolver, metrics);
+        ChunkExpander chunkExpander = new ChunkExpander(retrievalConfig, chunkRepository, new PromptConfig(), metrics);
+        CrossEncoderReranker reranker = new CrossEncoderReranker(retrievalConfig, scoringModelProvider, metrics);
+        RagGraph ragGraph = new RagGraph(vectorSearch, embeddingModel, assistant, tokenUsageRecorder,
+                metrics, multiQueryRetriever, promptAssembler, new RetrievalPolicy(reranker, chunkExpander),
+                Runnable::run);
+        return ragGraph.buildGraph();
     }
 
     @Test
@@ -62,11 +122,10 @@ class RagGraphTest {
         Embedding queryEmbedding = new Embedding(new float[384]);
         when(embeddingModel.embed(anyString())).thenReturn(Response.from(queryEmbedding));
 
-        // Mock EmbeddingStore
-        EmbeddingMatch<TextSegment> match = new EmbeddingMatch<>(0.9, "id1", queryEmbedding,
-                TextSegment.from(documentText));
-        when(embeddingStore.search(any(EmbeddingSearchRequest.class)))
-                .thenReturn(new EmbeddingSearchResult<>(List.of(match)));
+        // Mock the vector search
+        QdrantVectorSearch.Match match = new QdrantVectorSearch.Match(documentText, 0.9);
+        when(vectorSearch.search(any(Embedding.class), anyString(), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of(match)));
 
         when(assistant.chat(eq("temp-grade"), anyString(), anyString()))
                 .thenReturn(Result.<String>builder()
@@ -97,6 +156,10 @@ class RagGraphTest {
         Map<String, Integer> usage = finalState.getTokenUsage();
         assertEquals(60, usage.get("totalInputTokens"));
         assertEquals(25, usage.get("totalOutputTokens"));
+
+        // Each step's usage also goes to the ledger
+        verify(tokenUsageRecorder).record(eq(USER_ID), eq(CONV_ID), eq("grade"), any(TokenUsage.class));
+        verify(tokenUsageRecorder).record(eq(USER_ID), eq(CONV_ID), eq("generate"), any(TokenUsage.class));
     }
 
     @Test
@@ -107,11 +170,10 @@ class RagGraphTest {
         Embedding queryEmbedding = new Embedding(new float[384]);
         when(embeddingModel.embed(anyString())).thenReturn(Response.from(queryEmbedding));
 
-        // Mock EmbeddingStore (return irrelevant doc or just something)
-        EmbeddingMatch<TextSegment> match = new EmbeddingMatch<>(0.8, "id2", queryEmbedding,
-                TextSegment.from("Irrelevant text"));
-        when(embeddingStore.search(any(EmbeddingSearchRequest.class)))
-                .thenReturn(new EmbeddingSearchResult<>(List.of(match)));
+        // Mock the vector search (return irrelevant doc or just something)
+        QdrantVectorSearch.Match match = new QdrantVectorSearch.Match("Irrelevant text", 0.8);
+        when(vectorSearch.search(any(Embedding.class), anyString(), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of(match)));
 
         when(assistant.chat(eq("temp-grade"), anyString(), anyString()))
                 .thenReturn(Result.<String>builder()
@@ -148,8 +210,8 @@ class RagGraphTest {
         Embedding queryEmbedding = new Embedding(new float[384]);
         when(embeddingModel.embed(anyString())).thenReturn(Response.from(queryEmbedding));
 
-        when(embeddingStore.search(any(EmbeddingSearchRequest.class)))
-                .thenReturn(new EmbeddingSearchResult<>(List.of()));
+        when(vectorSearch.search(any(Embedding.class), anyString(), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of()));
 
         when(assistant.chat(eq(CONV_ID), anyString(), anyString()))
                 .thenReturn(Result.<String>builder()
@@ -171,4 +233,199 @@ class RagGraphTest {
         assertFalse(finalState.getIsRelevant());
         assertEquals("No documents found.", finalState.getResponse());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGraphWithLittleTimeLeft_SkipsGrading() {
+        // Arrange
+        Embedding queryEmbedding = new Embedding(new float[384]);
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(queryEmbedding));
+
+        QdrantVectorSearch.Match match = new QdrantVectorSearch.Match("Paris is the capital of France.", 0.9);
+        when(vectorSearch.search(any(Embedding.class), anyString(), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of(match)));
+
+        when(assistant.chat(eq(CONV_ID), anyString(), anyString()))
+                .thenReturn(Result.<String>builder()
+                        .content("Paris.")
+                        .tokenUsage(new TokenUsage(50, 2))
+                        .build());
+
+        // Act
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("query", "What is the capital of France?");
+        inputs.put("conversationId", CONV_ID);
+        inputs.put("userId", USER_ID);
+        inputs.put("deadline", Deadline.after(Duration.ofSeconds(10), Duration.ofSeconds(20)));
+
+        Optional<RagState> optionalState = graph.invoke(inputs);
+
+        // Assert
+        assertTrue(optionalState.isPresent());
+        assertEquals("Paris.", optionalState.get().getResponse());
+        verify(assistant, never()).chat(eq("temp-grade"), anyString(), anyString());
+    }
+
+    @Test
+    void testGraphWithThresholdProfile_SearchesWithProfileAndSkipsGrading() {
+        // Arrange
+        Embedding queryEmbedding = new Embedding(new float[384]);
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(queryEmbedding));
+
+        QdrantVectorSearch.Match match = new QdrantVectorSearch.Match("Paris is the capital of France.", 0.9);
+        when(vectorSearch.search(any(Embedding.class), anyString(), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of(match)));
+
+        when(assistant.chat(eq(CONV_ID), anyString(), anyString()))
+                .thenReturn(Result.<String>builder()
+                        .content("Paris.")
+                        .tokenUsage(new TokenUsage(50, 2))
+                        .build());
+
+        // Act
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("query", "What is the capital of France?");
+        inputs.put("conversationId", CONV_ID);
+        inputs.put("userId", USER_ID);
+        inputs.put("retrievalProfile", new RetrievalProfile(8, 0.5, 128, false, GradingMode.THRESHOLD));
+
+        Optional<RagState> optionalState = graph.invoke(inputs);
+
+        // Assert
+        assertTrue(optionalState.isPresent());
+        assertEquals("Paris.", optionalState.get().getResponse());
+        verify(vectorSearch).search(any(Embedding.class), eq(USER_ID),
+                argThat(profile -> profile.maxResults() == 8 && profile.minScore() == 0.5
+                        && profile.searchEf() == 128));
+        verify(assistant, never()).chat(eq("temp-grade"), anyString(), anyString());
+    }
+
+    @Test
+    void testGraphWithRerankProfile_ReordersCandidatesAndSkipsGrading() {
+        // Arrange
+        when(scoringModelProvider.getIfAvailable()).thenReturn(scoringModel);
+        Embedding queryEmbedding = new Embedding(new float[384]);
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(queryEmbedding));
+
+        TextSegment nearby = TextSegment.from("France borders Spain.");
+        TextSegment answer = TextSegment.from("Paris is the capital of France.");
+        when(vectorSearch.search(any(Embedding.class), anyString(), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of(
+                        new QdrantVectorSearch.Match(nearby.text(), 0.9),
+                        new QdrantVectorSearch.Match(answer.text(), 0.8))));
+        when(scoringModel.scoreAll(anyList(), anyString())).thenReturn(Response.from(List.of(0.1, 0.97)));
+
+        when(assistant.chat(eq(CONV_ID), anyString(), anyString()))
+                .thenReturn(Result.<String>builder()
+                        .content("Paris.")
+                        .tokenUsage(new TokenUsage(50, 2))
+                        .build());
+
+        // Act
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("query", "What is the capital of France?");
+        inputs.put("conversationId", CONV_ID);
+        inputs.put("userId", USER_ID);
+        inputs.put("retrievalProfile", new RetrievalProfile(1, 0.5, 0, true, GradingMode.LLM));
+
+        Optional<RagState> optionalState = graph.invoke(inputs);
+
+        // Assert
+        assertTrue(optionalState.isPresent());
+        assertEquals(List.of("Paris is the capital of France."), optionalState.get().getDocuments());
+        verify(vectorSearch).search(any(Embedding.class), eq(USER_ID), argThat(profile -> profile.maxResults() == 30));
+        verify(assistant, never()).chat(eq("temp-grade"), anyString(), anyString());
+    }
+
+    @Test
+    void testGraphPastDeadline_FailsWithoutModelCalls() {
+        // Arrange
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("query", "What is the capital of France?");
+        inputs.put("conversationId", CONV_ID);
+        inputs.put("userId", USER_ID);
+        inputs.put("deadline", Deadline.after(Duration.ZERO, Duration.ZERO));
+
+        // Act
+        Exception exception = assertThrows(Exception.class, () -> graph.invoke(inputs));
+
+        // Assert
+        Throwable cause = exception;
+        while (cause != null && !(cause instanceof DeadlineExceededException)) {
+            cause = cause.getCause();
+        }
+        assertNotNull(cause);
+        verifyNoInteractions(embeddingModel, vectorSearch, assistant);
+    }
+
+    @Test
+    void testGraphSaturatedExecutor_InterruptsInlineNodeAtDeadline() {
+        // Arrange
+        // The test executor runs nodes on the calling thread, as CallerRunsPolicy does when saturated
+        when(embeddingModel.embed(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(10_000);
+            return Response.from(new Embedding(new float[384]));
+        });
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("query", "What is the capital of France?");
+        inputs.put("conversationId", CONV_ID);
+        inputs.put("userId", USER_ID);
+        inputs.put("deadline", Deadline.after(Duration.ofMillis(300), Duration.ZERO));
+        long start = System.nanoTime();
+
+        // Act
+        Exception exception = assertThrows(Exception.class, () -> graph.invoke(inputs));
+
+        // Assert
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+        Throwable cause = exception;
+        while (cause != null && !(cause instanceof DeadlineExceededException)) {
+            cause = cause.getCause();
+        }
+        assertNotNull(cause);
+        assertFalse(Thread.currentThread().isInterrupted());
+        verifyNoInteractions(vectorSearch, assistant);
+    }
+
+    @Test
+    void testGraphOnMiss_RetriesWithQueryVariantsBeforeClarifying() throws Exception {
+        // Arrange
+        retrievalConfig.getMultiQuery().setMode(RetrievalConfig.MultiQueryMode.ON_MISS);
+        graph = buildGraph();
+
+        Embedding queryEmbedding = new Embedding(new float[384]);
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(queryEmbedding));
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> Response.from(
+                ((List<?>) invocation.getArgument(0)).stream().map(segment -> queryEmbedding).toList()));
+
+        QdrantVectorSearch.Match offTopic = new QdrantVectorSearch.Match("Lyon is a city in France.", 0.75);
+        QdrantVectorSearch.Match onTopic = new QdrantVectorSearch.Match("Paris is the capital of France.", 0.8);
+        when(vectorSearch.search(any(Embedding.class), anyString(), any(RetrievalProfile.class)))
+                .thenReturn(Mono.just(List.of(offTopic)))
+                .thenReturn(Mono.just(List.of(onTopic, offTopic)));
+
+        when(assistant.chat(eq("temp-grade"), anyString(), anyString()))
+                .thenReturn(Result.<String>builder().content("no").tokenUsage(new TokenUsage(10, 1)).build())
+                .thenReturn(Result.<String>builder().content("yes").tokenUsage(new TokenUsage(10, 1)).build());
+        when(assistant.chat(eq(CONV_ID), anyString(), anyString()))
+                .thenReturn(Result.<String>builder()
+                        .content("The capital of France is Paris.")
+                        .tokenUsage(new TokenUsage(50, 20))
+                        .build());
+
+        // Act
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("query", "What is the capital of France?");
+        inputs.put("conversationId", CONV_ID);
+        inputs.put("userId", USER_ID);
+
+        Optional<RagState> optionalState = graph.invoke(inputs);
+
+        // Assert
+        assertTrue(optionalState.isPresent());
+        RagState finalState = optionalState.get();
+        assertEquals("The capital of France is Paris.", finalState.getResponse());
+        assertEquals(2, finalState.getRetrievalAttempts());
+        assertEquals("Paris is the capital of France.", finalState.getDocuments().get(0));
+        verify(chatModel, never()).chat(any(ChatRequest.class));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.aichatbot.service.llm;
+
+import com.example.aichatbot.config.LlmGatewayConfig;
+import com.example.aichatbot.exception.LlmGatewayRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmGatewayTest {
+
+    private LlmGatewayConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        config = new LlmGatewayConfig();
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void execute_ProviderRateLimits_BacksOffLimit() {
+        // Arrange
+        LlmGateway gateway = new LlmGateway(config, meterRegistry);
+
+        // Act
+        assertThrows(RuntimeException.class, () -> gateway.execute(LlmPriority.INTERACTIVE, () -> {
+            throw new RuntimeException("429 RESOURCE_EXHAUSTED");
+        }));
+
+        // Assert
+        assertEquals(4, gateway.getLimit());
+        assertEquals(0, gateway.getInFlight());
+        assertEquals(1.0, meterRegistry.get("llm.gateway.overloaded").counter().count());
+    }
+
+    @Test
+    void execute_OtherFailure_KeepsLimit() {
+        // Arrange
+        LlmGateway gateway = new LlmGateway(config, meterRegistry);
+
+        // Act
+        assertThrows(IllegalArgumentException.class, () -> gateway.execute(LlmPriority.INTERACTIVE, () -> {
+            throw new IllegalArgumentException("bad prompt");
+        }));
+
+        // Assert
+        assertEquals(8, gateway.getLimit());
+    }
+
+    @Test
+    void execute_MixedShortAndLongCalls_KeepsLimit() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        LlmGateway gateway = new LlmGateway(config, meterRegistry, now::get);
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            // A grade answers in a few tokens, a generated answer in hundreds
+            gateway.execute(LlmPriority.INTERACTIVE, () -> {
+                now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+                return 3;
+            }, tokens -> tokens);
+            gateway.execute(LlmPriority.INTERACTIVE, () -> {
+                now.addAndGet(TimeUnit.MILLISECONDS.toNanos(4000));
+                return 600;
+            }, tokens -> tokens);
+        }
+
+        // Assert
+        assertEquals(8, gateway.getLimit());
+    }
+
+    @Test
+    void execute_ConcurrentRateLimits_BacksOffOncePerBurst() {
+        // Arrange
+        config.setInitialLimit(32);
+        AtomicLong now = new AtomicLong();
+        LlmGateway gateway = new LlmGateway(config, meterRegistry, now::get);
+        List<LlmGateway.Permit> burst = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            burst.add(gateway.acquireAsync(LlmPriority.INTERACTIVE).join());
+        }
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Act
+        burst.forEach(permit -> permit.failed(new RuntimeException("429 RESOURCE_EXHAUSTED")));
+        int afterBurst = gateway.getLimit();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        gateway.acquireAsync(LlmPriority.INTERACTIVE).join().failed(new RuntimeException("429 RESOURCE_EXHAUSTED"));
+
+        // Assert
+        assertEquals(16, afterBurst);
+        assertEquals(8, gateway.getLimit());
+        assertEquals(11.0, meterRegistry.get("llm.gateway.overloaded").counter().count());
+    }
+
+    @Test
+    void execute_QueueFull_RejectsWithoutCalling() throws Exception {
+        // Arrange
+        config.setInitialLimit(1);
+        config.setMaxQueueSize(0);
+        LlmGateway gateway = new LlmGateway(config, meterRegistry);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Future<String> holder = executor.submit(() -> gateway.execute(LlmPriority.INTERACTIVE, () -> {
+            running.countDown();
+            await(finish);
+            return "done";
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        // Act & Assert
+        assertThrows(LlmGatewayRejectedException.class,
+                () -> gateway.execute(LlmPriority.BACKGROUND, () -> "never"));
+        finish.countDown();
+        assertEquals("done", holder.get(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.get("llm.gateway.rejected").counter().count());
+    }
+
+    @Test
+    void execute_SlotFreed_ServesInteractiveBeforeBackground() throws Exception {
+        // Arrange
+        config.setInitialLimit(1);
+        config.setMaxLimit(1);
+        LlmGateway gateway = new LlmGateway(config, meterRegistry);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> gateway.execute(LlmPriority.BACKGROUND, () -> {
+            running.countDown();
+            await(finish);
+            return null;
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        Future<?> background = executor.submit(() -> gateway.execute(LlmPriority.BACKGROUND, () -> order.add("background")));
+        waitForQueueSize(gateway, 1);
+        Future<?> interactive = executor.submit(() -> gateway.execute(LlmPriority.INTERACTIVE, () -> order.add("interactive")));
+        waitForQueueSize(gateway, 2);
+
+        // Act
+        finish.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        background.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of("interactive", "background"), order);
+        assertEquals(2, meterRegistry.get("llm.gateway.queue.time").tag("priority", "background").timer().count());
+        assertEquals(1, meterRegistry.get("llm.gateway.queue.time").tag("priority", "interactive").timer().count());
+    }
+
+    private static void waitForQueueSize(LlmGateway gateway, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (gateway.getQueueSize() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(size, gateway.getQueueSize());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
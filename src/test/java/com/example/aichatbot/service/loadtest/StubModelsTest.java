@@ -0,0 +1,114 @@
+package com.example.aichatbot.service.loadtest;
+
+import com.example.aichatbot.config.LoadTestConfig;
+import com.example.aichatbot.enums.GradingMode;
+import com.example.aichatbot.service.graph.ChunkExpander;
+import com.example.aichatbot.service.graph.QdrantVectorSearch;
+import com.example.aichatbot.service.graph.RagPrompts;
+import com.example.aichatbot.service.graph.RetrievalProfile;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StubModelsTest {
+
+    private static StubBehaviour behaviour(double errorRate, double rateLimitRate) {
+        return new StubBehaviour(new LoadTestConfig.Stub(Duration.ofMillis(1), Duration.ofMillis(2),
+                errorRate, rateLimitRate));
+    }
+
+    @Test
+    void chat_GradingPrompt_AnswersRelevant() {
+        // Arrange
+        StubChatModel model = new StubChatModel(behaviour(0, 0), 50);
+        ChatRequest request = ChatRequest.builder()
+                .messages(SystemMessage.from(RagPrompts.GRADER_SYSTEM_PROMPT),
+                        UserMessage.from(RagPrompts.grade("query", List.of("doc"))))
+                .build();
+
+        // Act
+        ChatResponse response = model.chat(request);
+
+        // Assert
+        assertTrue(RagPrompts.isRelevant(response.aiMessage().text()));
+    }
+
+    @Test
+    void chat_Question_AnswersWithConfiguredLengthAndUsage() {
+        // Arrange
+        StubChatModel model = new StubChatModel(behaviour(0, 0), 50);
+
+        // Act
+        ChatResponse response = model.chat(ChatRequest.builder()
+                .messages(UserMessage.from("How does RAG work?"))
+                .build());
+
+        // Assert
+        assertEquals(50, response.aiMessage().text().split(" ").length);
+        assertEquals(50, response.tokenUsage().outputTokenCount());
+        assertTrue(response.tokenUsage().inputTokenCount() > 0);
+    }
+
+    @Test
+    void chat_RateLimitInjected_FailsLikeTheProvider() {
+        // Arrange
+        StubChatModel model = new StubChatModel(behaviour(0, 1.0), 50);
+
+        // Act & Assert
+        RateLimitException e = assertThrows(RateLimitException.class, () -> model.chat("Hello"));
+        assertTrue(e.getMessage().contains("RESOURCE_EXHAUSTED"));
+    }
+
+    @Test
+    void embed_SharedWords_ScoreHigherThanUnrelatedText() {
+        // Arrange
+        StubEmbeddingModel model = new StubEmbeddingModel(behaviour(0, 0), 384);
+
+        // Act
+        Embedding question = model.embed("How does the gateway limit model calls?").content();
+        Embedding related = model.embed("The gateway limits concurrent model calls.").content();
+        Embedding unrelated = model.embed("Quarterly revenue grew in Europe.").content();
+
+        // Assert
+        assertEquals(384, question.dimension());
+        assertTrue(CosineSimilarity.between(question, related) > CosineSimilarity.between(question, unrelated));
+    }
+
+    @Test
+    void search_InMemoryStore_FindsOnlyTheUsersChunks() {
+        // Arrange
+        StubEmbeddingModel model = new StubEmbeddingModel(behaviour(0, 0), 384);
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        TextSegment own = TextSegment.from("The gateway limits concurrent model calls.", new Metadata()
+                .put("userId", "1").put(ChunkExpander.DOCUMENT_KEY, "doc").put(ChunkExpander.CHUNK_INDEX, 3));
+        TextSegment other = TextSegment.from("The gateway limits concurrent model calls.",
+                new Metadata().put("userId", "2"));
+        store.add(model.embed(own).content(), own);
+        store.add(model.embed(other).content(), other);
+        InMemoryVectorSearch search = new InMemoryVectorSearch(store);
+
+        // Act
+        List<QdrantVectorSearch.Match> matches = search.search(model.embed("gateway model calls").content(), "1",
+                new RetrievalProfile(5, 0.1, 128, false, GradingMode.LLM)).block();
+
+        // Assert
+        assertEquals(1, matches.size());
+        assertEquals("doc", matches.get(0).documentKey());
+        assertEquals(3, matches.get(0).chunkIndex());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.aichatbot.service.metrics;
+
+import com.example.aichatbot.config.MetricsConfig;
+import com.example.aichatbot.service.UserTenantResolver;
+import com.example.aichatbot.service.metrics.PipelineMetrics.ChatStage;
+import com.example.aichatbot.service.metrics.PipelineMetrics.IngestionStage;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PipelineMetricsTest {
+
+    @Mock
+    private UserTenantResolver tenantResolver;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PipelineMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        MetricsConfig config = new MetricsConfig();
+        config.setTenantTiers(Map.of("acme", "enterprise"));
+        config.setChatModel("gemini");
+        config.setEmbeddingModel("huggingface");
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new PipelineMetrics(meterRegistry, config, tenantResolver, Tracer.NOOP);
+    }
+
+    @Test
+    void time_ModelStep_TagsTierModelAndOutcome() {
+        // Arrange
+        when(tenantResolver.tenantOf("1")).thenReturn("acme");
+
+        // Act
+        String result = metrics.time(ChatStage.GENERATE, "1", () -> "answer");
+
+        // Assert
+        assertEquals("answer", result);
+        assertEquals(1, meterRegistry.get("rag.stage")
+                .tags("stage", "generate", "tier", "enterprise", "model", "gemini", "outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    void time_Failure_RecordsErrorAndRethrows() {
+        // Arrange
+        when(tenantResolver.tenantOf("1")).thenReturn("other");
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> metrics.time(ChatStage.EMBED, "1", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        // Assert
+        assertEquals(1, meterRegistry.get("rag.stage")
+                .tags("stage", "embed", "tier", "standard", "model", "huggingface", "outcome", "error")
+                .timer().count());
+    }
+
+    @Test
+    void stop_UnknownUser_UsesUnknownTierWithoutLookup() {
+        // Act
+        metrics.stop(metrics.start(), ChatStage.GUARD_INPUT, null, PipelineMetrics.BLOCKED);
+
+        // Assert
+        assertEquals(1, meterRegistry.get("rag.stage")
+                .tags("stage", "guard_input", "tier", "unknown", "model", "none", "outcome", "blocked")
+                .timer().count());
+    }
+
+    @Test
+    void recordRetrieval_RecordsCountAndEachScore() {
+        // Arrange
+        when(tenantResolver.tenantOf("1")).thenReturn("acme");
+
+        // Act
+        metrics.recordRetrieval("1", List.of(0.9, 0.75));
+
+        // Assert
+        assertEquals(2.0, meterRegistry.get("rag.retrieval.documents").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("rag.retrieval.score").summary().count());
+        assertEquals(0.9, meterRegistry.get("rag.retrieval.score").summary().max(), 0.0001);
+    }
+
+    @Test
+    void recordTokens_SplitsInputAndOutput() {
+        // Arrange
+        when(tenantResolver.tenantOf("1")).thenReturn("acme");
+
+        // Act
+        metrics.recordTokens(ChatStage.GRADE, "1", new TokenUsage(120, 3));
+
+        // Assert
+        assertEquals(120.0, meterRegistry.get("rag.llm.tokens").tag("direction", "input").summary().totalAmount());
+        assertEquals(3.0, meterRegistry.get("rag.llm.tokens").tag("direction", "output").summary().totalAmount());
+    }
+
+    @Test
+    void timeIngestion_TagsStage() {
+        // Act
+        metrics.time(IngestionStage.PARSE, () -> "document");
+
+        // Assert
+        assertEquals(1, meterRegistry.get("ingestion.stage")
+                .tags("stage", "parse", "outcome", "success")
+                .timer().count());
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.aichatbot.service.quota;
+
+import com.example.aichatbot.config.QuotaConfig;
+import com.example.aichatbot.exception.RateLimitExceededException;
+import com.example.aichatbot.service.UserTenantResolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+class QuotaServiceTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private UserTenantResolver userTenantResolver;
+
+    private QuotaConfig config;
+    private QuotaService quotaService;
+
+    @BeforeEach
+    void setUp() {
+        config = new QuotaConfig();
+        quotaService = new QuotaService(redisTemplate, userTenantResolver, config);
+        lenient().when(userTenantResolver.tenantOf("1")).thenReturn("tenant-1");
+    }
+
+    @Test
+    void admit_OccasionalRequest_ChargesOnlyItself() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+
+        // Act
+        quotaService.admit("1", "Hello");
+
+        // Assert
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(any(RedisScript.class), anyList(), args.capture());
+        assertEquals("1", args.getValue()[2]);
+    }
+
+    @Test
+    void admit_QuickSuccession_ServesLeaseLocally() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+
+        // Act
+        for (int i = 0; i <= config.getLeaseRequests(); i++) {
+            quotaService.admit("1", "Hello");
+        }
+
+        // Assert
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), keys.capture(), any(Object[].class));
+        assertEquals(List.of(
+                "quota:{tenant-1}:requests",
+                "quota:{tenant-1}:tokens",
+                "quota:{tenant-1}:user:1:requests",
+                "quota:{tenant-1}:user:1:tokens"), keys.getValue());
+    }
+
+    @Test
+    void admit_SteadyChatCadence_CallsRedisOncePerLease() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        QuotaService service = new QuotaService(redisTemplate, userTenantResolver, config, now::get);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+
+        // Act
+        // Ten minutes of one message every ten seconds
+        for (int i = 0; i < 60; i++) {
+            service.admit("1", "Hello");
+            now.addAndGet(10_000);
+        }
+
+        // Assert
+        // The first request is charged alone, the other 59 take 12 leases of five
+        verify(redisTemplate, times(13))
+                .execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void admit_LeaseExpired_RefundsTheRest() {
+        // Arrange
+        AtomicLong now = new AtomicLong();
+        QuotaService service = new QuotaService(redisTemplate, userTenantResolver, config, now::get);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+        service.admit("1", "Hello");
+        service.admit("1", "Hello");
+        now.addAndGet(config.getLeaseTtl().toMillis());
+
+        // Act
+        service.evictExpiredLeases();
+
+        // Assert
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), anyList(), args.capture());
+        assertEquals(String.valueOf(-(config.getLeaseRequests() - 1)), args.getValue()[2]);
+    }
+
+    @Test
+    void admit_LeaseExhausted_ChargesRedisAgain() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+
+        // Act
+        for (int i = 0; i <= config.getLeaseRequests() + 1; i++) {
+            quotaService.admit("1", "Hello");
+        }
+
+        // Assert
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void shutdown_RefundsUnusedLease() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+        quotaService.admit("1", "Hello");
+        quotaService.admit("1", "Hello");
+
+        // Act
+        quotaService.shutdown();
+
+        // Assert
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), anyList(), args.capture());
+        assertEquals(String.valueOf(-(config.getLeaseRequests() - 1)), args.getValue()[2]);
+    }
+
+    @Test
+    void admit_NoRoomForLease_AdmitsSingleRequest() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(0L, 4000L, 0L);
+        quotaService.admit("1", "Hello");
+
+        // Act & Assert
+        assertDoesNotThrow(() -> quotaService.admit("1", "Hello"));
+        verify(redisTemplate, times(3)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void admit_OverQuota_ThrowsWithRetryAfter() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenReturn(2500L);
+
+        // Act & Assert
+        RateLimitExceededException exception = assertThrows(RateLimitExceededException.class,
+                () -> quotaService.admit("1", "Hello"));
+        assertEquals("3 seconds", exception.getRetryAfter());
+    }
+
+    @Test
+    void admit_RedisUnavailable_AdmitsRequest() {
+        // Arrange
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> quotaService.admit("1", "Hello"));
+    }
+
+    @Test
+    void admit_Disabled_SkipsRedis() {
+        // Arrange
+        config.setEnabled(false);
+
+        // Act
+        quotaService.admit("1", "Hello");
+
+        // Assert
+        verifyNoInteractions(redisTemplate, userTenantResolver);
+    }
+
+    @Test
+    void estimateTokens_AddsResponseReserveToMessageEstimate() {
+        // Act & Assert
+        assertEquals(3 + config.getResponseTokenReserve(), quotaService.estimateTokens("0123456789"));
+    }
+}
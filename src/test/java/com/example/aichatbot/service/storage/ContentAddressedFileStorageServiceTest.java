@@ -0,0 +1,121 @@
+package com.example.aichatbot.service.storage;
+
+import com.example.aichatbot.config.FileStorageConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentAddressedFileStorageServiceTest {
+
+    private static final String HELLO_HASH = "dffd6021bb2bd5b0af676290809ec3a53191dd81c7f70a4b28688a362182986f";
+
+    @TempDir
+    Path tempDir;
+
+    private ContentAddressedFileStorageService service;
+
+    @BeforeEach
+    void setUp() {
+        FileStorageConfig config = new FileStorageConfig();
+        config.setStoragePath(tempDir.toString());
+        config.setMaxFilenameLength(255);
+        config.setAllowedExtensions(List.of("pdf", "txt"));
+        service = new ContentAddressedFileStorageService(config);
+    }
+
+    @Test
+    void store_ShardsBlobByHashPrefix() throws Exception {
+        // Arrange
+        InputStream content = new ByteArrayInputStream("Hello, World!".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        String key = service.store(content, "test.txt");
+
+        // Assert
+        assertEquals(HELLO_HASH + "/test.txt", key);
+        Path blob = tempDir.resolve("objects").resolve("df").resolve("fd").resolve(HELLO_HASH);
+        assertTrue(Files.exists(blob));
+        assertEquals("test.txt", service.filenameOf(key));
+        try (InputStream loaded = service.load(key)) {
+            assertArrayEquals("Hello, World!".getBytes(StandardCharsets.UTF_8), loaded.readAllBytes());
+        }
+    }
+
+    @Test
+    void store_IdenticalContent_SharesBlob() throws Exception {
+        // Arrange
+        byte[] bytes = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        StoredFile first = service.store(new MockMultipartFile("files", "a.pdf", "application/pdf", bytes));
+        StoredFile second = service.store(new MockMultipartFile("files", "b.pdf", "application/pdf", bytes));
+
+        // Assert
+        assertEquals(first.contentHash(), second.contentHash());
+        assertNotEquals(first.key(), second.key());
+        assertEquals(StorageSupport.hashOf(first.key()), StorageSupport.hashOf(second.key()));
+        assertEquals("2", Files.readString(refsFile()).trim());
+        try (var tmp = Files.list(tempDir.resolve("tmp"))) {
+            assertEquals(0, tmp.count());
+        }
+    }
+
+    @Test
+    void delete_KeepsBlobUntilLastReference() throws Exception {
+        // Arrange
+        byte[] bytes = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+        String first = service.store(new ByteArrayInputStream(bytes), "a.txt");
+        String second = service.store(new ByteArrayInputStream(bytes), "b.txt");
+        Path blob = tempDir.resolve("objects").resolve("df").resolve("fd").resolve(HELLO_HASH);
+
+        // Act
+        service.delete(first);
+
+        // Assert
+        assertTrue(Files.exists(blob));
+        assertEquals("1", Files.readString(refsFile()).trim());
+
+        // Act
+        service.delete(second);
+
+        // Assert
+        assertFalse(Files.exists(blob));
+        assertEquals("0", Files.readString(refsFile()).trim());
+    }
+
+    @Test
+    void delete_InvalidKey_DoesNotThrow() {
+        assertDoesNotThrow(() -> service.delete("../../etc/passwd"));
+    }
+
+    @Test
+    void load_InvalidKey_ThrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> service.load("not-a-hash/test.txt"));
+    }
+
+    @Test
+    void store_DisallowedExtension_ThrowsException() {
+        InputStream content = new ByteArrayInputStream(new byte[]{1});
+        assertThrows(IllegalArgumentException.class, () -> service.store(content, "malware.exe"));
+    }
+
+    private Path refsFile() {
+        return tempDir.resolve("objects").resolve("df").resolve("fd").resolve(HELLO_HASH + ".refs");
+    }
+}
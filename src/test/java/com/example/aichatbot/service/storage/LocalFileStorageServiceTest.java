@@ -14,6 +14,7 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockMultipartFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
@@ -25,6 +26,7 @@ import java.util.List;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -96,6 +98,52 @@ class LocalFileStorageServiceTest {
         assertEquals(content, Files.readString(storedFile));
     }
 
+    @Test
+    void storeMultipart_ValidFile_MovesContentAndHashesIt() throws Exception {
+        // Arrange
+        setupWithAllowedExtensions("txt");
+        String content = "Hello, World!";
+        MockMultipartFile file = new MockMultipartFile("files", "test.txt", "text/plain",
+                content.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        StoredFile result = service.store(file);
+
+        // Assert
+        Path storedFile = Path.of(result.key());
+        assertTrue(Files.exists(storedFile));
+        assertTrue(storedFile.startsWith(tempDir));
+        assertEquals(content, Files.readString(storedFile));
+        assertEquals(content.length(), result.size());
+        assertEquals("dffd6021bb2bd5b0af676290809ec3a53191dd81c7f70a4b28688a362182986f", result.contentHash());
+    }
+
+    @Test
+    void storeMultipart_SameContent_ProducesSameHash() throws Exception {
+        // Arrange
+        setupWithAllowedExtensions("txt");
+        byte[] content = "duplicate".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        StoredFile first = service.store(new MockMultipartFile("files", "a.txt", "text/plain", content));
+        StoredFile second = service.store(new MockMultipartFile("files", "b.txt", "text/plain", content));
+
+        // Assert
+        assertNotEquals(first.key(), second.key());
+        assertEquals(first.contentHash(), second.contentHash());
+    }
+
+    @Test
+    void storeMultipart_WithInvalidExtension_ThrowsException() {
+        // Arrange
+        setupWithAllowedExtensions("txt");
+        MockMultipartFile file = new MockMultipartFile("files", "test.exe", "application/octet-stream",
+                "test".getBytes(StandardCharsets.UTF_8));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.store(file));
+    }
+
     @Test
     void store_WithEmptyFilename_ThrowsException() {
         // Arrange
@@ -263,27 +311,26 @@ class LocalFileStorageServiceTest {
     }
 
     @Test
-    void resolve_ValidPath_ReturnsPath() {
+    void filenameOf_ValidPath_ReturnsFilename() {
         // Arrange
         setupBasicMocks();
-        String filename = "test.txt";
-        Path expectedPath = tempDir.resolve(filename).normalize();
+        String key = tempDir.resolve("test.txt").normalize().toString();
 
         // Act
-        Path result = service.resolve(filename);
+        String result = service.filenameOf(key);
 
         // Assert
-        assertEquals(expectedPath, result);
+        assertEquals("test.txt", result);
     }
 
     @Test
-    void resolve_OutsideStorageDirectory_ThrowsException() {
+    void filenameOf_OutsideStorageDirectory_ThrowsException() {
         // Arrange
         setupBasicMocks();
         String maliciousPath = "../outside.txt";
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class,
-                () -> service.resolve(maliciousPath));
+                () -> service.filenameOf(maliciousPath));
     }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.example.aichatbot.service.storage;
+
+import com.example.aichatbot.config.FileStorageConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the S3 backend against MinIO and Redis containers. Skipped when Docker is unavailable.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class S3FileStorageServiceTest {
+
+    @Container
+    static final MinIOContainer minio = new MinIOContainer("minio/minio:latest");
+
+    @Container
+    static final GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private S3FileStorageService service;
+    private StringRedisTemplate redisTemplate;
+    private FileStorageConfig config;
+
+    @BeforeAll
+    static void startRedisClient() {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+    }
+
+    @AfterAll
+    static void stopRedisClient() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        config = new FileStorageConfig();
+        config.setMaxFilenameLength(255);
+        config.setAllowedExtensions(List.of("pdf", "txt"));
+        config.getS3().setEndpoint(minio.getS3URL());
+        config.getS3().setAccessKey(minio.getUserName());
+        config.getS3().setSecretKey(minio.getPassword());
+        // Fresh bucket per test so reference counts never leak between tests
+        config.getS3().setBucket("documents-" + UUID.randomUUID().toString().substring(0, 8));
+        config.getS3().setLockTtlSeconds(5);
+
+        S3Client s3Client = config.s3Client();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        redisTemplate.getConnectionFactory().getConnection().serverCommands().flushAll();
+
+        service = new S3FileStorageService(s3Client, redisTemplate, config);
+        service.ensureBucket();
+    }
+
+    @Test
+    void store_ThenLoad_RoundTripsContent() throws Exception {
+        // Arrange
+        byte[] bytes = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        String key = service.store(new ByteArrayInputStream(bytes), "test.txt");
+
+        // Assert
+        assertEquals("test.txt", service.filenameOf(key));
+        try (InputStream loaded = service.load(key)) {
+            assertArrayEquals(bytes, loaded.readAllBytes());
+        }
+    }
+
+    @Test
+    void store_IdenticalContent_CountsReferences() throws Exception {
+        // Arrange
+        byte[] bytes = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        StoredFile first = service.store(new MockMultipartFile("files", "a.pdf", "application/pdf", bytes));
+        StoredFile second = service.store(new MockMultipartFile("files", "b.pdf", "application/pdf", bytes));
+
+        // Assert
+        assertEquals(first.contentHash(), second.contentHash());
+        assertEquals("2", redisTemplate.opsForValue().get("storage:refs:" + first.contentHash()));
+    }
+
+    @Test
+    void store_FailedUpload_LeavesNoReference() {
+        // Arrange
+        config.getS3().setBucket("missing-" + UUID.randomUUID().toString().substring(0, 8));
+        S3FileStorageService unbucketed = new S3FileStorageService(config.s3Client(), redisTemplate, config);
+        byte[] bytes = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class,
+                () -> unbucketed.store(new MockMultipartFile("files", "a.pdf", "application/pdf", bytes)));
+        assertEquals(Set.of(), redisTemplate.keys("storage:refs:*"));
+    }
+
+    @Test
+    void delete_RemovesObjectAfterLastReference() throws Exception {
+        // Arrange
+        byte[] bytes = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+        String first = service.store(new ByteArrayInputStream(bytes), "a.txt");
+        String second = service.store(new ByteArrayInputStream(bytes), "b.txt");
+
+        // Act
+        service.delete(first);
+
+        // Assert
+        try (InputStream loaded = service.load(second)) {
+            assertArrayEquals(bytes, loaded.readAllBytes());
+        }
+
+        // Act
+        service.delete(second);
+
+        // Assert
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> service.load(second));
+        assertEquals(NoSuchKeyException.class, ex.getCause().getClass());
+    }
+}